@@ -22,13 +22,18 @@ import static org.springframework.test.web.client.match.MockRestRequestMatchers.
 import static org.springframework.test.web.client.match.MockRestRequestMatchers.requestTo;
 import static org.springframework.test.web.client.response.MockRestResponseCreators.withSuccess;
 import static org.trustedanalytics.h2oscoringengine.publisher.tapapi.TestTapApiResponses.offeringCreated;
-import static org.trustedanalytics.h2oscoringengine.publisher.tapapi.TestTapApiResponses.offeringReady;
 import static org.trustedanalytics.h2oscoringengine.publisher.tapapi.TestTapApiResponses.oneOfferingString;
+import static org.trustedanalytics.h2oscoringengine.publisher.tapapi.TestTapApiResponses.readyOfferingString;
 
 import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.ObjectMapper;
 import java.io.IOException;
 import java.nio.file.Files;
 import java.util.UUID;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import org.junit.After;
 import org.junit.Before;
 import org.junit.Test;
 import org.springframework.http.HttpMethod;
@@ -39,7 +44,9 @@ import org.trustedanalytics.h2oscoringengine.publisher.enginename.EngineNameSupp
 import org.trustedanalytics.h2oscoringengine.publisher.http.BasicAuthServerCredentials;
 import org.trustedanalytics.h2oscoringengine.publisher.modelcatalog.ModelCatalogMocks;
 import org.trustedanalytics.h2oscoringengine.publisher.restapi.ScoringEngineData;
+import org.trustedanalytics.h2oscoringengine.publisher.steps.AssureOfferingPresenceStepConfig;
 import org.trustedanalytics.h2oscoringengine.publisher.steps.H2oResourcesDownloadingStep;
+import org.trustedanalytics.h2oscoringengine.publisher.steps.OfferingReadinessTracker;
 import org.trustedanalytics.h2oscoringengine.publisher.tapapi.OfferingCreator;
 import org.trustedanalytics.h2oscoringengine.publisher.tapapi.OfferingsFetcher;
 import org.trustedanalytics.h2oscoringengine.publisher.tapapi.ServiceCreator;
@@ -52,6 +59,9 @@ public class PublisherIntegrationTest {
   private MockRestServiceServer tapApiServerMock;
   private ModelCatalogReaderClient modelCatalogMock;
   private EngineNameSupplier engineNameSupplierMock;
+  private ScheduledExecutorService readinessScheduler;
+  private ExecutorService publishingExecutor;
+  private OfferingReadinessTracker readinessTracker;
   private RestTemplate h2oRestTemplate = new RestTemplate();
   private RestTemplate tapApiRestTemplate = new RestTemplate();
   private String testTapApiServiceUrl = "tap-api-kajdhf";
@@ -84,13 +94,27 @@ public class PublisherIntegrationTest {
     when(engineNameSupplierMock.generateName(eq(testModelName), any()))
         .thenReturn("some-engine-name");
     modelCatalogMock = ModelCatalogMocks.mockThatReturnsArtifact(testModelId, testArtifactId);
+
+    readinessScheduler = Executors.newSingleThreadScheduledExecutor();
+    publishingExecutor = Executors.newSingleThreadExecutor();
+    readinessTracker = new OfferingReadinessTracker(
+        new OfferingsFetcher(tapApiRestTemplate, testTapApiServiceUrl, new ObjectMapper()),
+        AssureOfferingPresenceStepConfig.defaultConfig());
+    readinessTracker.start(readinessScheduler);
+  }
+
+  @After
+  public void tearDown() {
+    readinessScheduler.shutdownNow();
+    publishingExecutor.shutdownNow();
   }
 
   @Test
   public void getScoringEngineJar_h2oRequestsOccured() throws Exception {
     // given
     Publisher publisher = new Publisher(h2oRestTemplate, new RestTemplate(), "tap-api-host",
-        engineBaseResourcePath, modelCatalogMock, engineNameSupplierMock);
+        engineBaseResourcePath, modelCatalogMock, engineNameSupplierMock, readinessTracker,
+        publishingExecutor);
     setH2oServerExpectedCalls();
 
     // when
@@ -104,12 +128,13 @@ public class PublisherIntegrationTest {
   public void publishScoringEngine_tapApiServiceRequestsOccured() throws Exception {
     // given
     Publisher sut = new Publisher(h2oRestTemplate, tapApiRestTemplate, testTapApiServiceUrl,
-        engineBaseResourcePath, modelCatalogMock, engineNameSupplierMock);
+        engineBaseResourcePath, modelCatalogMock, engineNameSupplierMock, readinessTracker,
+        publishingExecutor);
     setTapApiServiceExpectedCalls();
 
     // when
     sut.publishScoringEngine(
-        new ScoringEngineData(testModelId, testArtifactId, "some-scoring-engine"));
+        new ScoringEngineData(testModelId, testArtifactId, "some-scoring-engine")).get();
 
     // then
     tapApiServerMock.verify();
@@ -143,11 +168,10 @@ public class PublisherIntegrationTest {
     tapApiServerMock.expect(requestTo(testTapApiServiceUrl + createOfferingRequest))
         .andExpect(method(HttpMethod.POST))
         .andRespond(withSuccess(offeringCreated("some-offering-id"), MediaType.APPLICATION_JSON));
-    tapApiServerMock
-        .expect(
-            requestTo(testTapApiServiceUrl + OfferingsFetcher.pathForOffering("some-offering-id")))
+    tapApiServerMock.expect(requestTo(testTapApiServiceUrl + getOfferingsRequest))
         .andExpect(method(HttpMethod.GET))
-        .andRespond(withSuccess(offeringReady(), MediaType.APPLICATION_JSON));
+        .andRespond(withSuccess(readyOfferingString("some-offering-id"),
+            MediaType.APPLICATION_JSON));
     tapApiServerMock.expect(requestTo(testTapApiServiceUrl + createServiceInstanceRequest))
         .andExpect(method(HttpMethod.POST))
         .andRespond(withSuccess(offeringCreated("some-offering-id"), MediaType.APPLICATION_JSON));
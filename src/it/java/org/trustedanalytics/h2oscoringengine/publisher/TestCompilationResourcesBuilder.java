@@ -47,6 +47,52 @@ public class TestCompilationResourcesBuilder {
     return Files.write(sourceFile, h2oModelSourceCode.toString().getBytes());
   }
 
+  public Path prepareModelJavaFileWithTreeClasses(String className, int treesCount)
+      throws IOException {
+    return prepareModelJavaFileWithTreeClasses(className, treesCount, 0);
+  }
+
+  /**
+   * @param treeDepth depth of decision tree generated in every tree class, the way H2O generates
+   *        it (nested conditional expressions); 0 for trivial tree classes
+   */
+  public Path prepareModelJavaFileWithTreeClasses(String className, int treesCount, int treeDepth)
+      throws IOException {
+    StringBuffer h2oModelSourceCode = new StringBuffer();
+    h2oModelSourceCode.append("import hex.genmodel.GenModel;\n");
+    h2oModelSourceCode.append("public class " + className + " extends GenModel {\n");
+    h2oModelSourceCode
+        .append("public " + className + "() { super(new String[0],new String[0][0]); }\n");
+    h2oModelSourceCode.append(
+        "public hex.ModelCategory getModelCategory() { return hex.ModelCategory.Multinomial; }\n");
+    h2oModelSourceCode.append("public final double[] score0( double[] data, double[] preds ) {\n");
+    for (int i = 0; i < treesCount; i++) {
+      h2oModelSourceCode.append("preds[0] += " + className + "_Tree_" + i + ".score0(data);\n");
+    }
+    h2oModelSourceCode.append("return preds;\n");
+    h2oModelSourceCode.append("}\n");
+    h2oModelSourceCode
+        .append("public String getUUID() { return Long.toString(1406937660108778282L); }\n");
+    h2oModelSourceCode.append("}\n");
+    for (int i = 0; i < treesCount; i++) {
+      h2oModelSourceCode.append("class " + className + "_Tree_" + i + " {\n");
+      h2oModelSourceCode.append("static double score0(double[] data) { return "
+          + treeExpression(i, treeDepth) + "; }\n");
+      h2oModelSourceCode.append("}\n");
+    }
+
+    Path sourceFile = tempDir.resolve(className + ".java");
+    return Files.write(sourceFile, h2oModelSourceCode.toString().getBytes());
+  }
+
+  private String treeExpression(int tree, int depth) {
+    if (0 == depth) {
+      return "data[0] * " + tree;
+    }
+    return "(data[" + depth % 5 + "] < " + depth + "." + tree + " ? "
+        + treeExpression(tree, depth - 1) + " : " + treeExpression(tree + 1, depth - 1) + ")";
+  }
+
   public Path prepareLibraryFile() throws IOException {
     String libDependency = "h2o-genmodel-3.6.0.11.jar";
     String libDependencyPath = "/lib/" + libDependency;
@@ -0,0 +1,114 @@
+/**
+ * Copyright (c) 2016 Intel Corporation
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file except
+ * in compliance with the License. You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software distributed under the License
+ * is distributed on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express
+ * or implied. See the License for the specific language governing permissions and limitations under
+ * the License.
+ */
+package org.trustedanalytics.h2oscoringengine.publisher.load;
+
+import com.google.common.util.concurrent.ThreadFactoryBuilder;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.stream.Stream;
+
+/**
+ * Collects latencies of requests sent by load test clients and samples heap and disk usage of the
+ * publisher while the test runs.
+ */
+public class LoadRecorder implements AutoCloseable {
+
+  private static final long SAMPLING_PERIOD_MILLIS = 100;
+
+  private final Path diskUsageDir;
+  private final ConcurrentLinkedQueue<Long> latenciesNanos = new ConcurrentLinkedQueue<>();
+  private final AtomicLong failuresCount = new AtomicLong();
+  private final AtomicLong peakHeapBytes = new AtomicLong();
+  private final AtomicLong peakDiskBytes = new AtomicLong();
+  private final ScheduledExecutorService sampler = Executors.newSingleThreadScheduledExecutor(
+      new ThreadFactoryBuilder().setNameFormat("load-sampler-%d").setDaemon(true).build());
+  private final long startNanos;
+
+  public LoadRecorder(Path diskUsageDir) {
+    this.diskUsageDir = diskUsageDir;
+    this.startNanos = System.nanoTime();
+    sampler.scheduleAtFixedRate(this::sample, 0, SAMPLING_PERIOD_MILLIS, TimeUnit.MILLISECONDS);
+  }
+
+  public void succeeded(long requestStartNanos) {
+    latenciesNanos.add(System.nanoTime() - requestStartNanos);
+  }
+
+  public void failed() {
+    failuresCount.incrementAndGet();
+  }
+
+  public long getFailuresCount() {
+    return failuresCount.get();
+  }
+
+  public String report(String scenario) {
+    double elapsedSeconds = (System.nanoTime() - startNanos) / 1e9;
+    List<Long> sorted = new ArrayList<>(latenciesNanos);
+    Collections.sort(sorted);
+    return String.format(
+        "%s: %d requests (%d failed) in %.1f s, %.2f req/s, latency p50=%d ms p99=%d ms "
+            + "max=%d ms, peak heap=%d MB, peak disk=%d MB",
+        scenario, sorted.size() + failuresCount.get(), failuresCount.get(), elapsedSeconds,
+        sorted.size() / elapsedSeconds, percentileMillis(sorted, 50), percentileMillis(sorted, 99),
+        percentileMillis(sorted, 100), peakHeapBytes.get() / (1024 * 1024),
+        peakDiskBytes.get() / (1024 * 1024));
+  }
+
+  @Override
+  public void close() {
+    sampler.shutdownNow();
+  }
+
+  private static long percentileMillis(List<Long> sortedNanos, int percentile) {
+    if (sortedNanos.isEmpty()) {
+      return 0;
+    }
+    int index = (int) Math.ceil(percentile / 100.0 * sortedNanos.size()) - 1;
+    return TimeUnit.NANOSECONDS.toMillis(sortedNanos.get(Math.max(index, 0)));
+  }
+
+  private void sample() {
+    Runtime runtime = Runtime.getRuntime();
+    peakHeapBytes.accumulateAndGet(runtime.totalMemory() - runtime.freeMemory(), Math::max);
+    peakDiskBytes.accumulateAndGet(directorySize(diskUsageDir), Math::max);
+  }
+
+  private static long directorySize(Path dir) {
+    try (Stream<Path> files = Files.walk(dir)) {
+      return files.filter(Files::isRegularFile).mapToLong(LoadRecorder::sizeOrZero).sum();
+    } catch (IOException | UncheckedIOException e) {
+      // files are created and deleted by builds while walking
+      return 0;
+    }
+  }
+
+  private static long sizeOrZero(Path file) {
+    try {
+      return Files.size(file);
+    } catch (IOException e) {
+      return 0;
+    }
+  }
+}
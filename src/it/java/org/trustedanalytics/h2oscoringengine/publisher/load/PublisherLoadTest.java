@@ -0,0 +1,282 @@
+/**
+ * Copyright (c) 2016 Intel Corporation
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file except
+ * in compliance with the License. You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software distributed under the License
+ * is distributed on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express
+ * or implied. See the License for the specific language governing permissions and limitations under
+ * the License.
+ */
+package org.trustedanalytics.h2oscoringengine.publisher.load;
+
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.equalTo;
+import static org.mockito.Mockito.mock;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.google.common.io.ByteStreams;
+import com.google.common.util.concurrent.ThreadFactoryBuilder;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.UUID;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import org.apache.commons.io.FileUtils;
+import org.junit.After;
+import org.junit.Assume;
+import org.junit.Before;
+import org.junit.Test;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.http.ResponseEntity;
+import org.springframework.mock.web.MockHttpServletResponse;
+import org.springframework.util.LinkedMultiValueMap;
+import org.springframework.util.MultiValueMap;
+import org.springframework.web.client.RestTemplate;
+import org.springframework.web.context.request.async.DeferredResult;
+import org.trustedanalytics.h2oscoringengine.publisher.Publisher;
+import org.trustedanalytics.h2oscoringengine.publisher.TestCompilationResourcesBuilder;
+import org.trustedanalytics.h2oscoringengine.publisher.builds.BuildScheduler;
+import org.trustedanalytics.h2oscoringengine.publisher.cache.GenModelCache;
+import org.trustedanalytics.h2oscoringengine.publisher.cache.ScoringEngineCache;
+import org.trustedanalytics.h2oscoringengine.publisher.compilation.JavaCompilerPool;
+import org.trustedanalytics.h2oscoringengine.publisher.compilation.SplitCompilation;
+import org.trustedanalytics.h2oscoringengine.publisher.enginename.EngineNameSupplier;
+import org.trustedanalytics.h2oscoringengine.publisher.enginename.KeyCounterConnectionData;
+import org.trustedanalytics.h2oscoringengine.publisher.filesystem.EngineBaseJarTemplate;
+import org.trustedanalytics.h2oscoringengine.publisher.filesystem.FsDirectoryOperations;
+import org.trustedanalytics.h2oscoringengine.publisher.filesystem.WorkingDirectories;
+import org.trustedanalytics.h2oscoringengine.publisher.http.BasicAuthServerCredentials;
+import org.trustedanalytics.h2oscoringengine.publisher.http.HttpClientPool;
+import org.trustedanalytics.h2oscoringengine.publisher.metrics.BuildMetrics;
+import org.trustedanalytics.h2oscoringengine.publisher.restapi.PublisherController;
+import org.trustedanalytics.h2oscoringengine.publisher.restapi.ScoringEngineData;
+import org.trustedanalytics.h2oscoringengine.publisher.restapi.validation.DownloadRequestValidationRules;
+import org.trustedanalytics.h2oscoringengine.publisher.steps.AssureOfferingPresenceStepConfig;
+import org.trustedanalytics.h2oscoringengine.publisher.steps.H2oResourcesDownloadingStep;
+import org.trustedanalytics.h2oscoringengine.publisher.steps.OfferingReadinessTracker;
+import org.trustedanalytics.h2oscoringengine.publisher.tapapi.OfferingsFetcher;
+import org.trustedanalytics.h2oscoringengine.publisher.tapapi.OfferingsIndex;
+import org.trustedanalytics.h2oscoringengine.publisher.tapapi.ServiceCreator;
+import org.trustedanalytics.modelcatalog.rest.client.ModelCatalogReaderClient;
+
+/**
+ * Drives {@link PublisherController} with concurrent clients against embedded stubs of H2O,
+ * tap-api-service and key-counter, and logs throughput, latency percentiles and peak heap and disk
+ * usage. Runs only when {@code loadTest} system property is set, e.g.
+ * {@code mvn test -Dtest=PublisherLoadTest -DloadTest=true -DloadTest.clients=16}.
+ */
+public class PublisherLoadTest {
+
+  private static final Logger LOGGER = LoggerFactory.getLogger(PublisherLoadTest.class);
+
+  private static final String ENGINE_BASE_RESOURCE_PATH =
+      "/runtime/h2o-scoring-engine-base-0.5.0.jar";
+
+  private final int clients = Integer.getInteger("loadTest.clients", 8);
+  private final int requestsPerClient = Integer.getInteger("loadTest.requestsPerClient", 5);
+  private final int stubLatencyMillis = Integer.getInteger("loadTest.latencyMs", 20);
+  private final int modelTreesCount = Integer.getInteger("loadTest.treesCount", 200);
+  private final int offeringsCount = Integer.getInteger("loadTest.offeringsCount", 1000);
+
+  private final String testModelName = "load_test_model";
+  private final UUID testModelId = UUID.randomUUID();
+  private final UUID testArtifactId = UUID.randomUUID();
+
+  private Path rootDir;
+  private StubServer h2oServer;
+  private StubServer tapApiServer;
+  private StubServer keyCounterServer;
+  private HttpClientPool httpClientPool;
+  private ExecutorService publisherExecutor;
+  private ScheduledExecutorService publisherScheduler;
+  private ExecutorService clientsExecutor;
+  private PublisherController sut;
+
+  @Before
+  public void setUp() throws Exception {
+    Assume.assumeTrue("Load test runs only with -DloadTest=true", Boolean.getBoolean("loadTest"));
+
+    rootDir = Files.createTempDirectory("h2o-publisher-load-test");
+    startStubServers();
+
+    httpClientPool = new HttpClientPool(64, 16, 10_000, 300_000, 30_000);
+    RestTemplate restTemplate = new RestTemplate(httpClientPool.requestFactory());
+    int threads = Runtime.getRuntime().availableProcessors();
+    publisherExecutor = Executors.newCachedThreadPool(
+        new ThreadFactoryBuilder().setNameFormat("load-publisher-%d").setDaemon(true).build());
+    publisherScheduler = Executors.newSingleThreadScheduledExecutor(
+        new ThreadFactoryBuilder().setNameFormat("load-scheduler-%d").setDaemon(true).build());
+    clientsExecutor = Executors.newFixedThreadPool(clients,
+        new ThreadFactoryBuilder().setNameFormat("load-client-%d").setDaemon(true).build());
+
+    OfferingReadinessTracker readinessTracker = new OfferingReadinessTracker(
+        new OfferingsFetcher(restTemplate, tapApiServer.getUrl(), new ObjectMapper()),
+        AssureOfferingPresenceStepConfig.defaultConfig());
+    readinessTracker.start(publisherScheduler);
+
+    // built engines are not cached, so that every request runs a whole build
+    Publisher publisher = new Publisher(restTemplate, restTemplate, tapApiServer.getUrl(),
+        EngineBaseJarTemplate.load(ENGINE_BASE_RESOURCE_PATH,
+            Files.createDirectory(rootDir.resolve(".engine-base"))),
+        mock(ModelCatalogReaderClient.class),
+        new EngineNameSupplier(new KeyCounterConnectionData(restTemplate,
+            new BasicAuthServerCredentials(keyCounterServer.getUrl(), "user", "password"))),
+        ScoringEngineCache.disabled(), new GenModelCache(rootDir.resolve(".genmodel-cache")),
+        publisherExecutor, true, new JavaCompilerPool(rootDir.resolve(".compiler-pool"), threads),
+        new SplitCompilation(publisherExecutor, threads, 1024 * 1024),
+        new WorkingDirectories(rootDir, new FsDirectoryOperations(), TimeUnit.HOURS.toMillis(1),
+            Long.MAX_VALUE),
+        publisherExecutor, readinessTracker, publisherExecutor,
+        new OfferingsIndex(
+            new OfferingsFetcher(restTemplate, tapApiServer.getUrl(), new ObjectMapper()),
+            TimeUnit.MINUTES.toMillis(2)),
+        BuildMetrics.disabled(), BuildScheduler.unbounded());
+    sut = new PublisherController(publisher, new DownloadRequestValidationRules());
+  }
+
+  @After
+  public void tearDown() throws Exception {
+    if (rootDir == null) {
+      return;
+    }
+    clientsExecutor.shutdownNow();
+    publisherExecutor.shutdownNow();
+    publisherScheduler.shutdownNow();
+    httpClientPool.close();
+    h2oServer.close();
+    tapApiServer.close();
+    keyCounterServer.close();
+    FileUtils.deleteDirectory(rootDir.toFile());
+  }
+
+  @Test
+  public void downloadEngine_concurrentClients_allEnginesBuilt() throws Exception {
+    // given
+    MultiValueMap<String, String> downloadRequest = new LinkedMultiValueMap<>();
+    downloadRequest.add("hostname", h2oServer.getUrl());
+    downloadRequest.add("login", "user");
+    downloadRequest.add("password", "password");
+
+    // when
+    LoadRecorder recorder = runClients(() -> {
+      try (InputStream jar = sut
+          .downloadEngine(new MockHttpServletResponse(), downloadRequest, testModelName)
+          .getInputStream()) {
+        ByteStreams.exhaust(jar);
+      }
+    });
+
+    // then
+    LOGGER.info(recorder.report("downloadEngine") + ", H2O requests="
+        + h2oServer.getRequestsCount());
+    assertThat(recorder.getFailuresCount(), equalTo(0L));
+  }
+
+  @Test
+  public void publishEngine_concurrentClients_allInstancesCreated() throws Exception {
+    // given
+    ScoringEngineData publishRequest =
+        new ScoringEngineData(testModelId, testArtifactId, testModelName);
+
+    // when
+    LoadRecorder recorder = runClients(() -> {
+      DeferredResult<ResponseEntity<Void>> result = sut.publishEngine(publishRequest);
+      CompletableFuture<Object> published = new CompletableFuture<>();
+      result.setResultHandler(published::complete);
+      Object response = published.get(1, TimeUnit.MINUTES);
+      if (!(response instanceof ResponseEntity)) {
+        throw new IllegalStateException("Publishing failed: " + response);
+      }
+    });
+
+    // then
+    LOGGER.info(recorder.report("publishEngine") + ", tap-api requests="
+        + tapApiServer.getRequestsCount() + ", key-counter requests="
+        + keyCounterServer.getRequestsCount());
+    assertThat(recorder.getFailuresCount(), equalTo(0L));
+  }
+
+  @FunctionalInterface
+  private interface ClientRequest {
+    void send() throws Exception;
+  }
+
+  private LoadRecorder runClients(ClientRequest request) throws Exception {
+    List<Future<?>> clientRuns = new ArrayList<>();
+    try (LoadRecorder recorder = new LoadRecorder(rootDir)) {
+      for (int i = 0; i < clients; i++) {
+        clientRuns.add(clientsExecutor.submit(() -> {
+          for (int j = 0; j < requestsPerClient; j++) {
+            long requestStartNanos = System.nanoTime();
+            try {
+              request.send();
+              recorder.succeeded(requestStartNanos);
+            } catch (Exception e) {
+              LOGGER.warn("Load test request failed: ", e);
+              recorder.failed();
+            }
+          }
+        }));
+      }
+      for (Future<?> clientRun : clientRuns) {
+        clientRun.get();
+      }
+      return recorder;
+    }
+  }
+
+  private void startStubServers() throws IOException {
+    TestCompilationResourcesBuilder resourcesBuilder = new TestCompilationResourcesBuilder();
+    byte[] modelPojo = Files.readAllBytes(
+        resourcesBuilder.prepareModelJavaFileWithTreeClasses(testModelName, modelTreesCount));
+    byte[] genModelLib = Files.readAllBytes(resourcesBuilder.prepareLibraryFile());
+
+    h2oServer = new StubServer(stubLatencyMillis)
+        .respond(H2oResourcesDownloadingStep.H2O_SERVER_MODEL_PATH_PREFIX, "text/plain",
+            modelPojo)
+        .respond(H2oResourcesDownloadingStep.H2O_SERVER_LIB_PATH, "application/octet-stream",
+            genModelLib)
+        .respond(GenModelCache.H2O_SERVER_CLOUD_PATH, "application/json",
+            "{\"version\":\"3.6.0.11\"}".getBytes());
+    tapApiServer = new StubServer(stubLatencyMillis)
+        .respond(OfferingsFetcher.TAP_API_SERVICE_OFFERINGS_PATH, "application/json",
+            offeringsList())
+        .respond(ServiceCreator.TAP_API_SERVICE_CREATE_SERVICE_INSTANCE_PATH, "application/json",
+            "{}".getBytes());
+    keyCounterServer = new StubServer(stubLatencyMillis)
+        .respond(EngineNameSupplier.KEY_COUNTER_ENDPOINT, "application/json", "1".getBytes());
+  }
+
+  /**
+   * Ready offering of the tested model among offerings of other models, which make the list as
+   * big as on a busy platform.
+   */
+  private byte[] offeringsList() {
+    StringBuilder offerings = new StringBuilder("[");
+    offerings.append(offering(testModelId, testArtifactId));
+    for (int i = 1; i < offeringsCount; i++) {
+      offerings.append(",").append(offering(UUID.randomUUID(), UUID.randomUUID()));
+    }
+    return offerings.append("]").toString().getBytes();
+  }
+
+  private static String offering(UUID modelId, UUID artifactId) {
+    return "{\"id\":\"" + UUID.randomUUID() + "\",\"state\":\"READY\","
+        + "\"offeringPlans\":[{\"id\":\"" + UUID.randomUUID() + "\"}],"
+        + "\"metadata\":[{\"key\":\"MODEL_ID\",\"value\":\"" + modelId + "\"},"
+        + "{\"key\":\"ARTIFACT_ID\",\"value\":\"" + artifactId + "\"}]}";
+  }
+}
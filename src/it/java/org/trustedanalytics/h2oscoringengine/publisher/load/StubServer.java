@@ -0,0 +1,84 @@
+/**
+ * Copyright (c) 2016 Intel Corporation
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file except
+ * in compliance with the License. You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software distributed under the License
+ * is distributed on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express
+ * or implied. See the License for the specific language governing permissions and limitations under
+ * the License.
+ */
+package org.trustedanalytics.h2oscoringengine.publisher.load;
+
+import com.google.common.io.ByteStreams;
+import com.google.common.util.concurrent.ThreadFactoryBuilder;
+import com.sun.net.httpserver.HttpServer;
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.net.InetSocketAddress;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Embedded HTTP server standing in for H2O, tap-api-service or key-counter in load tests. Every
+ * response is delayed by a configured latency to imitate a remote server.
+ */
+public class StubServer implements Closeable {
+
+  private final HttpServer server;
+  private final ExecutorService requestExecutor;
+  private final long latencyMillis;
+  private final AtomicLong requestsCount = new AtomicLong();
+
+  public StubServer(long latencyMillis) throws IOException {
+    this.latencyMillis = latencyMillis;
+    this.server = HttpServer.create(new InetSocketAddress("localhost", 0), 0);
+    this.requestExecutor = Executors.newCachedThreadPool(
+        new ThreadFactoryBuilder().setNameFormat("stub-server-%d").setDaemon(true).build());
+    server.setExecutor(requestExecutor);
+    server.start();
+  }
+
+  /**
+   * Responds with a given body to every request of a path starting with a given prefix.
+   */
+  public StubServer respond(String pathPrefix, String contentType, byte[] body) {
+    server.createContext(pathPrefix, exchange -> {
+      requestsCount.incrementAndGet();
+      try {
+        ByteStreams.exhaust(exchange.getRequestBody());
+        TimeUnit.MILLISECONDS.sleep(latencyMillis);
+        exchange.getResponseHeaders().set("Content-Type", contentType);
+        exchange.sendResponseHeaders(200, body.length);
+        try (OutputStream responseBody = exchange.getResponseBody()) {
+          responseBody.write(body);
+        }
+      } catch (InterruptedException e) {
+        Thread.currentThread().interrupt();
+      } finally {
+        exchange.close();
+      }
+    });
+    return this;
+  }
+
+  public String getUrl() {
+    return "http://localhost:" + server.getAddress().getPort();
+  }
+
+  public long getRequestsCount() {
+    return requestsCount.get();
+  }
+
+  @Override
+  public void close() {
+    server.stop(0);
+    requestExecutor.shutdownNow();
+  }
+}
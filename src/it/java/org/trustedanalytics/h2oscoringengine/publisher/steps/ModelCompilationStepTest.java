@@ -15,18 +15,30 @@
 package org.trustedanalytics.h2oscoringengine.publisher.steps;
 
 import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.equalTo;
+import static org.hamcrest.Matchers.greaterThan;
 import static org.hamcrest.Matchers.hasItemInArray;
+import static org.hamcrest.Matchers.hasItems;
+import static org.hamcrest.Matchers.not;
 
 import java.io.File;
 import java.io.IOException;
 import java.nio.file.Files;
 import java.nio.file.Path;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.jar.JarFile;
+import java.util.stream.Collectors;
 import org.junit.Before;
 import org.junit.Rule;
 import org.junit.Test;
 import org.junit.rules.ExpectedException;
 import org.trustedanalytics.h2oscoringengine.publisher.EngineBuildingException;
 import org.trustedanalytics.h2oscoringengine.publisher.TestCompilationResourcesBuilder;
+import org.trustedanalytics.h2oscoringengine.publisher.compilation.JavaCompilerPool;
+import org.trustedanalytics.h2oscoringengine.publisher.compilation.SplitCompilation;
 
 public class ModelCompilationStepTest {
 
@@ -74,6 +86,137 @@ public class ModelCompilationStepTest {
     
   }
 
+  @Test
+  public void getDiagnosticsCount_modelClassWithCompilationError_diagnosticsCounted()
+      throws Exception {
+    // given
+    ModelCompilationStep step =
+        new ModelCompilationStep(testModelJavaFileWithCompilationError, testLibFile);
+
+    // when
+    try {
+      step.compileModelInMemory();
+    } catch (EngineBuildingException e) {
+      // expected
+    }
+
+    // then
+    assertThat(step.getDiagnosticsCount(), greaterThan(0));
+  }
+
+  @Test
+  public void compileModelInMemory_packagedJarContainsClassFile() throws Exception {
+    // given
+    ModelCompilationStep step = new ModelCompilationStep(testModelJavaFile, testLibFile);
+
+    // when
+    step.compileModelInMemory().packageModel(expectedClassesDir);
+
+    // then
+    try (JarFile modelJar = new JarFile(expectedClassesDir.resolve("model.jar").toFile())) {
+      assertThat(Collections.list(modelJar.entries()).stream().map(e -> e.getName())
+          .collect(Collectors.toList()), hasItems("model.class"));
+    }
+    assertThat(new File(expectedClassesDir.toString()).list(), not(hasItemInArray("model.class")));
+  }
+
+  @Test
+  public void compileModelInMemory_modelClassWithCompilationError_exceptionThrown()
+      throws Exception {
+    // given
+    ModelCompilationStep step =
+        new ModelCompilationStep(testModelJavaFileWithCompilationError, testLibFile);
+
+    // when
+
+    // then
+    thrown.expect(EngineBuildingException.class);
+    step.compileModelInMemory();
+  }
+
+  @Test
+  public void compileModelInMemory_splitCompilation_allTopLevelClassesPackaged() throws Exception {
+    // given
+    TestCompilationResourcesBuilder resourcesBuilder = new TestCompilationResourcesBuilder();
+    ModelCompilationStep step = new ModelCompilationStep(
+        resourcesBuilder.prepareModelJavaFileWithTreeClasses("split_model", 10), testLibFile);
+    ExecutorService executor = Executors.newFixedThreadPool(3);
+    JavaCompilerPool compilerPool = new JavaCompilerPool(Files.createTempDirectory("pool"), 3);
+
+    // when
+    try {
+      step.compileModelInMemory(compilerPool, new SplitCompilation(executor, 3, 1))
+          .packageModel(expectedClassesDir);
+    } finally {
+      executor.shutdown();
+      compilerPool.close();
+    }
+
+    // then
+    try (JarFile modelJar = new JarFile(expectedClassesDir.resolve("model.jar").toFile())) {
+      List<String> entries = Collections.list(modelJar.entries()).stream().map(e -> e.getName())
+          .collect(Collectors.toList());
+      assertThat(entries, hasItems("split_model.class", "split_model_Tree_0.class",
+          "split_model_Tree_9.class"));
+      assertThat(entries.size(), equalTo(11));
+    }
+  }
+
+  @Test
+  public void compileModelInMemory_splitCompilation_sameClassesAsWithoutSplit() throws Exception {
+    // given
+    TestCompilationResourcesBuilder resourcesBuilder = new TestCompilationResourcesBuilder();
+    Path modelPojo = resourcesBuilder.prepareModelJavaFileWithTreeClasses("split_model", 20, 4);
+    ExecutorService executor = Executors.newFixedThreadPool(3);
+    JavaCompilerPool compilerPool = new JavaCompilerPool(Files.createTempDirectory("pool"), 3);
+    Path splitClassesDir = Files.createTempDirectory("h2o-publisher-test-split");
+
+    // when
+    try {
+      new ModelCompilationStep(modelPojo, testLibFile)
+          .compileModelInMemory(compilerPool, SplitCompilation.disabled())
+          .packageModel(expectedClassesDir);
+      new ModelCompilationStep(modelPojo, testLibFile)
+          .compileModelInMemory(compilerPool, new SplitCompilation(executor, 3, 1))
+          .packageModel(splitClassesDir);
+    } finally {
+      executor.shutdown();
+      compilerPool.close();
+    }
+
+    // then
+    assertThat(jarEntries(splitClassesDir.resolve("model.jar")),
+        equalTo(jarEntries(expectedClassesDir.resolve("model.jar"))));
+  }
+
+  @Test
+  public void compileModelInMemory_splitCompilationErrorInTreeClass_exceptionThrown()
+      throws Exception {
+    // given
+    Path modelPojo = Files.write(expectedClassesDir.resolve("broken_model.java"),
+        ("public class broken_model { double score() { return broken_model_Tree_0.score0(); } }\n"
+            + "class broken_model_Tree_0 { static double score0() { return missing; } }\n"
+            + "class broken_model_Tree_1 { static double score0() { return 1; } }\n").getBytes());
+    ExecutorService executor = Executors.newFixedThreadPool(2);
+
+    // when
+    // then
+    thrown.expect(EngineBuildingException.class);
+    try {
+      new ModelCompilationStep(modelPojo, testLibFile)
+          .compileModelInMemory(JavaCompilerPool.unpooled(), new SplitCompilation(executor, 2, 1));
+    } finally {
+      executor.shutdown();
+    }
+  }
+
+  private List<String> jarEntries(Path jarPath) throws IOException {
+    try (JarFile jar = new JarFile(jarPath.toFile())) {
+      return Collections.list(jar.entries()).stream().map(e -> e.getName()).sorted()
+          .collect(Collectors.toList());
+    }
+  }
+
   // @Test
   public void getModelPojoPath() throws Exception {
     throw new RuntimeException("not yet implemented");
@@ -14,6 +14,7 @@
 package org.trustedanalytics.h2oscoringengine.publisher.steps;
 
 import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.equalTo;
 import static org.hamcrest.Matchers.hasItemInArray;
 import static org.mockito.Mockito.doThrow;
 import static org.mockito.Mockito.mock;
@@ -25,6 +26,12 @@ import java.io.IOException;
 import java.nio.file.Files;
 import java.nio.file.Path;
 import java.nio.file.Paths;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.jar.JarFile;
+import java.util.stream.Collectors;
 import java.util.jar.JarEntry;
 import java.util.jar.JarOutputStream;
 import org.junit.Before;
@@ -72,6 +79,26 @@ public class ModelPackagingStepTest {
     assertThat(files, hasItemInArray("model.jar"));
   }
 
+  @Test
+  public void packageModel_compiledClassesInMemory_jarContainsAllClasses() throws Exception {
+    // given
+    Map<String, byte[]> compiledClasses = new TreeMap<>();
+    compiledClasses.put("model.class", "model class content".getBytes());
+    compiledClasses.put("model$Tree_0.class", "tree class content".getBytes());
+    ModelPackagingStep step = new ModelPackagingStep(compiledClasses);
+
+    // when
+    step.packageModel(expectedJarDir);
+
+    // then
+    try (JarFile modelJar = new JarFile(expectedJarDir.resolve("model.jar").toFile())) {
+      assertThat(
+          Collections.list(modelJar.entries()).stream().map(e -> e.getName())
+              .collect(Collectors.toList()),
+          equalTo(Arrays.asList("model$Tree_0.class", "model.class")));
+    }
+  }
+
   @Test
   public void packageModel_invalidClassesDir_exceptionThrown() throws Exception {
     // given
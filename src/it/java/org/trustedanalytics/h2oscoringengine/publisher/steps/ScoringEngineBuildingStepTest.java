@@ -15,17 +15,22 @@ package org.trustedanalytics.h2oscoringengine.publisher.steps;
 
 import static org.hamcrest.CoreMatchers.endsWith;
 import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.equalTo;
+import static org.hamcrest.Matchers.notNullValue;
 
 import java.io.IOException;
 import java.nio.file.Files;
 import java.nio.file.Path;
 import java.nio.file.Paths;
+import java.util.Arrays;
+import java.util.jar.JarFile;
 import org.junit.Before;
 import org.junit.Rule;
 import org.junit.Test;
 import org.junit.rules.ExpectedException;
 import org.trustedanalytics.h2oscoringengine.publisher.EngineBuildingException;
 import org.trustedanalytics.h2oscoringengine.publisher.TestCompilationResourcesBuilder;
+import org.trustedanalytics.h2oscoringengine.publisher.filesystem.EngineBaseJarTemplate;
 
 public class ScoringEngineBuildingStepTest {
   
@@ -59,6 +64,30 @@ public class ScoringEngineBuildingStepTest {
     assertThat(scoringEngineJar.toString(), endsWith(".jar"));
   }
   
+  @Test
+  public void buildScoringEngine_loadedTemplateSharedByBuilds_jarsContainBaseAndModel()
+      throws Exception {
+    // given
+    EngineBaseJarTemplate template = EngineBaseJarTemplate.load(engineBaseResourcePath,
+        Files.createTempDirectory("h2o-publisher-test-template"));
+    ScoringEngineBuildingStep step = new ModelPackagingStep(compiledClasses).packageModel(jarDir);
+
+    // when
+    Path firstJar = step.buildScoringEngine(expectedScoringEngineDir, template);
+    Path secondJar =
+        step.buildScoringEngine(Files.createTempDirectory("h2o-publisher-test-engine"), template);
+
+    // then
+    try (JarFile baseJar = new JarFile(template.getJarPath().toFile())) {
+      for (Path engineJarPath : Arrays.asList(firstJar, secondJar)) {
+        try (JarFile engineJar = new JarFile(engineJarPath.toFile())) {
+          assertThat(engineJar.size(), equalTo(baseJar.size() + 1));
+          assertThat(engineJar.getEntry("lib/model.jar"), notNullValue());
+        }
+      }
+    }
+  }
+
   @Test
   public void buildScoringEngine_invalidDir_exceptionThrown() throws Exception {
     // given 
@@ -0,0 +1,211 @@
+/**
+ * Copyright (c) 2016 Intel Corporation
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file except
+ * in compliance with the License. You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software distributed under the License
+ * is distributed on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express
+ * or implied. See the License for the specific language governing permissions and limitations under
+ * the License.
+ */
+package org.trustedanalytics.h2oscoringengine.publisher.steps;
+
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.equalTo;
+import static org.hamcrest.Matchers.is;
+import static org.hamcrest.Matchers.notNullValue;
+import static org.junit.Assert.fail;
+import static org.mockito.Matchers.anyDouble;
+import static org.mockito.Matchers.eq;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.verify;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.jar.JarFile;
+import java.util.zip.ZipException;
+import org.junit.Before;
+import org.junit.Test;
+import org.springframework.boot.actuate.metrics.GaugeService;
+import org.trustedanalytics.h2oscoringengine.publisher.EngineBuildingException;
+import org.trustedanalytics.h2oscoringengine.publisher.filesystem.EngineBaseJarTemplate;
+import org.trustedanalytics.h2oscoringengine.publisher.metrics.BuildMetrics;
+
+public class ScoringEngineStreamingStepTest {
+
+  private final String engineBaseResourcePath = "/runtime/h2o-scoring-engine-base-0.5.0.jar";
+  private final byte[] testModelJarContent = "some model jar content".getBytes();
+  private final AtomicInteger finishedCount = new AtomicInteger();
+  private final ClosingAwareOutputStream output = new ClosingAwareOutputStream();
+  private final GaugeService gaugeServiceMock = mock(GaugeService.class);
+  private final BuildMetrics buildMetrics = new BuildMetrics(gaugeServiceMock);
+  private Path tempDir;
+  private Path modelJar;
+  private EngineBaseJarTemplate template;
+
+  @Before
+  public void setUp() throws IOException {
+    this.tempDir = Files.createTempDirectory("h2o-publisher-test-streaming");
+    this.modelJar = Files.write(tempDir.resolve("model.jar"), testModelJarContent);
+    this.template = EngineBaseJarTemplate.load(engineBaseResourcePath,
+        Files.createDirectory(tempDir.resolve("template")));
+  }
+
+  @Test
+  public void streamScoringEngine_modelJarBuilt_completeJarStreamedAndStreamLeftOpen()
+      throws Exception {
+    // given
+    ScoringEngineStreamingStep sut =
+        new ScoringEngineStreamingStep(CompletableFuture.completedFuture(modelJar), template,
+            tempDir, buildMetrics, finishedCount::incrementAndGet);
+
+    // when
+    sut.streamScoringEngine(output);
+
+    // then
+    assertStreamedJarContainsBaseAndModel();
+    assertThat(output.closed, is(false));
+    assertThat(finishedCount.get(), equalTo(1));
+    verify(gaugeServiceMock).submit(eq("timer.publisher.build.assemble"), anyDouble());
+    verify(gaugeServiceMock).submit("histogram.publisher.build.bytesWritten",
+        output.size() + testModelJarContent.length);
+  }
+
+  @Test
+  public void streamScoringEngine_baseJarNotRawCopyable_completeJarStreamedAndStreamLeftOpen()
+      throws Exception {
+    // given
+    ScoringEngineStreamingStep sut =
+        new ScoringEngineStreamingStep(CompletableFuture.completedFuture(modelJar),
+            template.withoutIndex(), tempDir, buildMetrics, finishedCount::incrementAndGet);
+
+    // when
+    sut.streamScoringEngine(output);
+
+    // then
+    assertStreamedJarContainsBaseAndModel();
+    assertThat(output.closed, is(false));
+    assertThat(finishedCount.get(), equalTo(1));
+  }
+
+  @Test
+  public void streamScoringEngine_compilationFailed_truncatedJarStreamedAndExceptionThrown()
+      throws Exception {
+    // given
+    CompletableFuture<Path> failedModelJar = new CompletableFuture<>();
+    failedModelJar.completeExceptionally(new EngineBuildingException("compilation failed"));
+    ScoringEngineStreamingStep sut = new ScoringEngineStreamingStep(failedModelJar, template,
+        tempDir, buildMetrics, finishedCount::incrementAndGet);
+
+    // when
+    try {
+      sut.streamScoringEngine(output);
+      fail("Streaming should fail when model JAR can not be built");
+    } catch (EngineBuildingException e) {
+      assertThat(e.getMessage(), equalTo("compilation failed"));
+    }
+
+    // then
+    assertThat(output.size() > 0, is(true));
+    assertThat(isReadableJar(output.toByteArray()), is(false));
+    assertThat(finishedCount.get(), equalTo(1));
+    verify(gaugeServiceMock).submit(eq("timer.publisher.build.assemble.failed"), anyDouble());
+  }
+
+  @Test
+  public void streamScoringEngine_compilationFailedWithBaseJarNotRawCopyable_truncatedJarStreamed()
+      throws Exception {
+    // given
+    CompletableFuture<Path> failedModelJar = new CompletableFuture<>();
+    failedModelJar.completeExceptionally(new IllegalStateException("compiler crashed"));
+    ScoringEngineStreamingStep sut = new ScoringEngineStreamingStep(failedModelJar,
+        template.withoutIndex(), tempDir, buildMetrics, finishedCount::incrementAndGet);
+
+    // when
+    try {
+      sut.streamScoringEngine(output);
+      fail("Streaming should fail when model JAR can not be built");
+    } catch (EngineBuildingException e) {
+      // expected
+    }
+
+    // then
+    assertThat(isReadableJar(output.toByteArray()), is(false));
+    assertThat(output.closed, is(false));
+    assertThat(finishedCount.get(), equalTo(1));
+  }
+
+  @Test
+  public void streamScoringEngine_builtEngine_jarCopiedAndStreamLeftOpen() throws Exception {
+    // given
+    Path cachedJar = Files.write(tempDir.resolve("cached.jar"), testModelJarContent);
+    ScoringEngineStreamingStep sut =
+        ScoringEngineStreamingStep.builtEngine(cachedJar, finishedCount::incrementAndGet);
+
+    // when
+    sut.streamScoringEngine(output);
+
+    // then
+    assertThat(output.toByteArray(), equalTo(testModelJarContent));
+    assertThat(output.closed, is(false));
+    assertThat(finishedCount.get(), equalTo(1));
+  }
+
+  @Test
+  public void streamScoringEngine_engineBuiltByAnotherRequestFailed_exceptionThrown()
+      throws Exception {
+    // given
+    CompletableFuture<Path> failedScoringEngineJar = new CompletableFuture<>();
+    failedScoringEngineJar.completeExceptionally(new EngineBuildingException("build failed"));
+    ScoringEngineStreamingStep sut = ScoringEngineStreamingStep
+        .builtEngine(failedScoringEngineJar, finishedCount::incrementAndGet);
+
+    // when
+    try {
+      sut.streamScoringEngine(output);
+      fail("Streaming should fail when scoring engine can not be built");
+    } catch (EngineBuildingException e) {
+      assertThat(e.getMessage(), equalTo("build failed"));
+    }
+
+    // then
+    assertThat(output.size(), equalTo(0));
+    assertThat(finishedCount.get(), equalTo(1));
+  }
+
+  private void assertStreamedJarContainsBaseAndModel() throws IOException {
+    Path streamedJar = Files.write(tempDir.resolve("streamed.jar"), output.toByteArray());
+    try (JarFile baseJar = new JarFile(template.getJarPath().toFile());
+        JarFile engineJar = new JarFile(streamedJar.toFile())) {
+      assertThat(engineJar.size(), equalTo(baseJar.size() + 1));
+      assertThat(engineJar.getEntry("lib/model.jar"), notNullValue());
+    }
+  }
+
+  private boolean isReadableJar(byte[] content) throws IOException {
+    Path jar = Files.write(Files.createTempFile(tempDir, "truncated", ".jar"), content);
+    try (JarFile ignored = new JarFile(jar.toFile())) {
+      return true;
+    } catch (ZipException e) {
+      return false;
+    }
+  }
+
+  private static class ClosingAwareOutputStream extends ByteArrayOutputStream {
+
+    private boolean closed;
+
+    @Override
+    public void close() throws IOException {
+      closed = true;
+      super.close();
+    }
+  }
+}
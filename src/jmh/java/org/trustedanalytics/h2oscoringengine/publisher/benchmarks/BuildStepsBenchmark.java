@@ -0,0 +1,93 @@
+/**
+ * Copyright (c) 2016 Intel Corporation
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file except
+ * in compliance with the License. You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software distributed under the License
+ * is distributed on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express
+ * or implied. See the License for the specific language governing permissions and limitations under
+ * the License.
+ */
+package org.trustedanalytics.h2oscoringengine.publisher.benchmarks;
+
+import com.google.common.io.ByteStreams;
+import java.io.IOException;
+import java.nio.file.Path;
+import java.util.concurrent.TimeUnit;
+import java.util.jar.JarFile;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Warmup;
+import org.trustedanalytics.h2oscoringengine.publisher.EngineBuildingException;
+import org.trustedanalytics.h2oscoringengine.publisher.filesystem.UpdatableJar;
+import org.trustedanalytics.h2oscoringengine.publisher.steps.ModelCompilationStep;
+import org.trustedanalytics.h2oscoringengine.publisher.steps.ModelPackagingStep;
+import org.trustedanalytics.h2oscoringengine.publisher.steps.ScoringEngineBuildingStep;
+
+/**
+ * Measures every step of scoring engine build separately. Throughput and latency percentiles are
+ * reported for each step; allocation rate is reported when run with GC profiler, as
+ * {@code benchmarks} Maven profile does.
+ */
+@BenchmarkMode({Mode.Throughput, Mode.SampleTime})
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 5)
+@Measurement(iterations = 5, time = 5)
+@Fork(1)
+public class BuildStepsBenchmark {
+
+  @Benchmark
+  public ModelPackagingStep compileModel(ModelResources resources, OutputDirectory output)
+      throws EngineBuildingException, IOException {
+    return new ModelCompilationStep(resources.modelPojo, resources.genModelLib)
+        .compileModel(output.next());
+  }
+
+  @Benchmark
+  public ModelPackagingStep compileModelInMemory(ModelResources resources)
+      throws EngineBuildingException {
+    return new ModelCompilationStep(resources.modelPojo, resources.genModelLib)
+        .compileModelInMemory();
+  }
+
+  @Benchmark
+  public ModelPackagingStep compileModelInMemorySplit(ModelResources resources,
+      SplitCompilationResources compilation) throws EngineBuildingException {
+    return new ModelCompilationStep(resources.modelPojo, resources.genModelLib)
+        .compileModelInMemory(compilation.compilerPool, compilation.splitCompilation);
+  }
+
+  @Benchmark
+  public ScoringEngineBuildingStep packageModel(ModelResources resources, OutputDirectory output)
+      throws EngineBuildingException, IOException {
+    return new ModelPackagingStep(resources.compiledClasses).packageModel(output.next());
+  }
+
+  @Benchmark
+  public UpdatableJar addJarContent(ModelResources resources) throws IOException {
+    try (UpdatableJar jar = new UpdatableJar(ByteStreams.nullOutputStream())) {
+      return jar.addJarContent(new JarFile(resources.engineBaseJar.getJarPath().toFile()));
+    }
+  }
+
+  @Benchmark
+  public UpdatableJar addUncompressedLibJar(ModelResources resources) throws IOException {
+    try (UpdatableJar jar = new UpdatableJar(ByteStreams.nullOutputStream())) {
+      return jar.addUncompressedLibJar(resources.modelJar);
+    }
+  }
+
+  @Benchmark
+  public Path buildScoringEngine(ModelResources resources, OutputDirectory output)
+      throws EngineBuildingException, IOException {
+    return new ScoringEngineBuildingStep(resources.modelJar).buildScoringEngine(output.next(),
+        resources.engineBaseJar);
+  }
+}
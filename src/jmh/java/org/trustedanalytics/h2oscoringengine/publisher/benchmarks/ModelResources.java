@@ -0,0 +1,74 @@
+/**
+ * Copyright (c) 2016 Intel Corporation
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file except
+ * in compliance with the License. You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software distributed under the License
+ * is distributed on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express
+ * or implied. See the License for the specific language governing permissions and limitations under
+ * the License.
+ */
+package org.trustedanalytics.h2oscoringengine.publisher.benchmarks;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import org.apache.commons.io.FileUtils;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.trustedanalytics.h2oscoringengine.publisher.EngineBuildingException;
+import org.trustedanalytics.h2oscoringengine.publisher.TestCompilationResourcesBuilder;
+import org.trustedanalytics.h2oscoringengine.publisher.filesystem.EngineBaseJarTemplate;
+import org.trustedanalytics.h2oscoringengine.publisher.steps.ModelCompilationStep;
+
+/**
+ * Inputs of every build step, prepared once per trial from a synthetic H2O POJO with a given
+ * number of tree classes of a given depth.
+ */
+@State(Scope.Benchmark)
+public class ModelResources {
+
+  static final String MODEL_NAME = "benchmark_model";
+  static final String ENGINE_BASE_RESOURCE_PATH = "/runtime/h2o-scoring-engine-base-0.5.0.jar";
+
+  @Param({"10", "500", "3000"})
+  public int treesCount;
+
+  @Param({"5"})
+  public int treeDepth;
+
+  Path workDir;
+  Path modelPojo;
+  Path genModelLib;
+  Path compiledClasses;
+  Path modelJar;
+  EngineBaseJarTemplate engineBaseJar;
+
+  @Setup(Level.Trial)
+  public void prepare() throws IOException, EngineBuildingException {
+    TestCompilationResourcesBuilder resourcesBuilder = new TestCompilationResourcesBuilder();
+    workDir = Files.createTempDirectory("h2o-publisher-benchmark");
+    modelPojo =
+        resourcesBuilder.prepareModelJavaFileWithTreeClasses(MODEL_NAME, treesCount, treeDepth);
+    genModelLib = resourcesBuilder.prepareLibraryFile();
+
+    compiledClasses = Files.createDirectory(workDir.resolve("classes"));
+    modelJar = new ModelCompilationStep(modelPojo, genModelLib).compileModel(compiledClasses)
+        .packageModel(Files.createDirectory(workDir.resolve("model"))).getModelJarPath();
+    engineBaseJar = EngineBaseJarTemplate.load(ENGINE_BASE_RESOURCE_PATH,
+        Files.createDirectory(workDir.resolve("engine-base")));
+  }
+
+  @TearDown(Level.Trial)
+  public void cleanUp() throws IOException {
+    FileUtils.deleteDirectory(workDir.toFile());
+    FileUtils.deleteDirectory(modelPojo.getParent().toFile());
+  }
+}
@@ -0,0 +1,48 @@
+/**
+ * Copyright (c) 2016 Intel Corporation
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file except
+ * in compliance with the License. You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software distributed under the License
+ * is distributed on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express
+ * or implied. See the License for the specific language governing permissions and limitations under
+ * the License.
+ */
+package org.trustedanalytics.h2oscoringengine.publisher.benchmarks;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import org.apache.commons.io.FileUtils;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+
+/**
+ * Gives every benchmark invocation an empty directory for its output. Directories are deleted
+ * between iterations, so that measurements don't include removing files.
+ */
+@State(Scope.Thread)
+public class OutputDirectory {
+
+  private Path iterationDir;
+
+  @Setup(Level.Iteration)
+  public void createIterationDir() throws IOException {
+    iterationDir = Files.createTempDirectory("h2o-publisher-benchmark-output");
+  }
+
+  @TearDown(Level.Iteration)
+  public void deleteIterationDir() throws IOException {
+    FileUtils.deleteDirectory(iterationDir.toFile());
+  }
+
+  Path next() throws IOException {
+    return Files.createTempDirectory(iterationDir, "invocation");
+  }
+}
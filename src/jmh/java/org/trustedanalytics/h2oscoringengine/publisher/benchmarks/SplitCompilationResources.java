@@ -0,0 +1,50 @@
+/**
+ * Copyright (c) 2016 Intel Corporation
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file except
+ * in compliance with the License. You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software distributed under the License
+ * is distributed on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express
+ * or implied. See the License for the specific language governing permissions and limitations under
+ * the License.
+ */
+package org.trustedanalytics.h2oscoringengine.publisher.benchmarks;
+
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.trustedanalytics.h2oscoringengine.publisher.compilation.JavaCompilerPool;
+import org.trustedanalytics.h2oscoringengine.publisher.compilation.SplitCompilation;
+
+/**
+ * Executor for split compilation, sized to available processors the same way as by default in the
+ * application. Every model is split, regardless of its size. Compilers are not pooled, so results
+ * can be compared with {@link BuildStepsBenchmark#compileModelInMemory}.
+ */
+@State(Scope.Benchmark)
+public class SplitCompilationResources {
+
+  ExecutorService executor;
+  JavaCompilerPool compilerPool;
+  SplitCompilation splitCompilation;
+
+  @Setup(Level.Trial)
+  public void prepare() {
+    int parallelism = Math.max(Runtime.getRuntime().availableProcessors(), 2);
+    executor = Executors.newFixedThreadPool(parallelism);
+    compilerPool = JavaCompilerPool.unpooled();
+    splitCompilation = new SplitCompilation(executor, parallelism, 1);
+  }
+
+  @TearDown(Level.Trial)
+  public void cleanUp() {
+    executor.shutdown();
+  }
+}
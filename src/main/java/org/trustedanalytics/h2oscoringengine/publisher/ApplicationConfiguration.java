@@ -13,8 +13,24 @@
  */
 package org.trustedanalytics.h2oscoringengine.publisher;
 
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.google.common.util.concurrent.ThreadFactoryBuilder;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
 import javax.validation.constraints.NotNull;
+import org.springframework.beans.factory.annotation.Qualifier;
 import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.actuate.metrics.GaugeService;
 import org.springframework.boot.context.properties.ConfigurationProperties;
 import org.springframework.context.annotation.Bean;
 import org.springframework.context.annotation.Configuration;
@@ -25,27 +41,266 @@ import org.springframework.security.oauth2.client.token.DefaultAccessTokenReques
 import org.springframework.security.oauth2.client.token.grant.client.ClientCredentialsAccessTokenProvider;
 import org.springframework.security.oauth2.client.token.grant.client.ClientCredentialsResourceDetails;
 import org.springframework.web.client.RestTemplate;
+import org.trustedanalytics.h2oscoringengine.publisher.batch.BatchPublisher;
+import org.trustedanalytics.h2oscoringengine.publisher.builds.BuildScheduler;
+import org.trustedanalytics.h2oscoringengine.publisher.builds.BuildSchedulerMetrics;
+import org.trustedanalytics.h2oscoringengine.publisher.builds.EngineBuildRegistry;
+import org.trustedanalytics.h2oscoringengine.publisher.cache.GenModelCache;
+import org.trustedanalytics.h2oscoringengine.publisher.cache.ScoringEngineCache;
+import org.trustedanalytics.h2oscoringengine.publisher.cache.ScoringEngineCacheMetrics;
+import org.trustedanalytics.h2oscoringengine.publisher.compilation.JavaCompilerPool;
+import org.trustedanalytics.h2oscoringengine.publisher.compilation.SplitCompilation;
 import org.trustedanalytics.h2oscoringengine.publisher.enginename.EngineNameSupplier;
 import org.trustedanalytics.h2oscoringengine.publisher.enginename.KeyCounterConnectionData;
+import org.trustedanalytics.h2oscoringengine.publisher.filesystem.EngineBaseJarTemplate;
+import org.trustedanalytics.h2oscoringengine.publisher.filesystem.FsDirectoryOperations;
+import org.trustedanalytics.h2oscoringengine.publisher.filesystem.PublisherWorkingDirectory;
+import org.trustedanalytics.h2oscoringengine.publisher.filesystem.WorkingDirectories;
 import org.trustedanalytics.h2oscoringengine.publisher.http.BasicAuthServerCredentials;
+import org.trustedanalytics.h2oscoringengine.publisher.http.HttpClientPool;
+import org.trustedanalytics.h2oscoringengine.publisher.http.HttpClientPoolMetrics;
+import org.trustedanalytics.h2oscoringengine.publisher.metrics.BuildMetrics;
 import org.trustedanalytics.h2oscoringengine.publisher.modelcatalog.OAuth2TokenProvider;
 import org.trustedanalytics.h2oscoringengine.publisher.restapi.validation.DownloadRequestValidationRules;
+import org.trustedanalytics.h2oscoringengine.publisher.steps.AssureOfferingPresenceStepConfig;
+import org.trustedanalytics.h2oscoringengine.publisher.steps.OfferingReadinessTracker;
+import org.trustedanalytics.h2oscoringengine.publisher.tapapi.OfferingsFetcher;
+import org.trustedanalytics.h2oscoringengine.publisher.tapapi.OfferingsIndex;
 import org.trustedanalytics.modelcatalog.rest.client.ModelCatalogClientBuilder;
 import org.trustedanalytics.modelcatalog.rest.client.ModelCatalogReaderClient;
 
 @Configuration
 public class ApplicationConfiguration {
 
+  // leading dot keeps the directory apart from working directories named after models
+  static final String GENMODEL_CACHE_DIR_NAME = ".genmodel-cache";
+  static final String COMPILER_POOL_DIR_NAME = ".compiler-pool";
+  static final String ENGINE_BASE_DIR_NAME = ".engine-base";
+
   @Bean
-  public Publisher publisher(
-      @NotNull @Value("${publisher.engineBaseJar.resourcePath}") String engineBaseJarPath,
+  public Publisher publisher(EngineBaseJarTemplate engineBaseJarTemplate,
       OAuth2RestTemplate tapApiServiceRestTemplate,
       @NotNull @Value("${tapApiService.url}") String tapApiServiceUrl,
-      ModelCatalogReaderClient modelCatalogClient, KeyCounterConnectionData keyCounter) {
+      ModelCatalogReaderClient modelCatalogClient, KeyCounterConnectionData keyCounter,
+      ScoringEngineCache scoringEngineCache, GenModelCache genModelCache,
+      @Qualifier("h2oDownloadExecutor") ExecutorService h2oDownloadExecutor,
+      @Value("${publisher.compilation.inMemory}") boolean compileModelsInMemory,
+      JavaCompilerPool compilerPool, SplitCompilation splitCompilation,
+      WorkingDirectories workingDirectories,
+      @Qualifier("streamingBuildExecutor") ExecutorService streamingBuildExecutor,
+      OfferingReadinessTracker offeringReadinessTracker,
+      @Qualifier("publishingExecutor") ExecutorService publishingExecutor,
+      OfferingsIndex offeringsIndex, HttpClientPool httpClientPool, BuildMetrics buildMetrics,
+      BuildScheduler buildScheduler) {
+
+    return new Publisher(new RestTemplate(httpClientPool.requestFactory()),
+        tapApiServiceRestTemplate, getUrlWithHttpProtocol(tapApiServiceUrl),
+        engineBaseJarTemplate, modelCatalogClient,
+        new EngineNameSupplier(keyCounter), scoringEngineCache, genModelCache,
+        h2oDownloadExecutor, compileModelsInMemory, compilerPool, splitCompilation,
+        workingDirectories, streamingBuildExecutor, offeringReadinessTracker, publishingExecutor,
+        offeringsIndex, buildMetrics, buildScheduler);
+  }
+
+  @Bean
+  public BuildMetrics buildMetrics(GaugeService gaugeService) {
+    return new BuildMetrics(gaugeService);
+  }
+
+  @Bean(destroyMethod = "close")
+  public HttpClientPool httpClientPool(
+      @Value("${publisher.http.maxConnections}") int maxConnections,
+      @Value("${publisher.http.maxConnectionsPerRoute}") int maxConnectionsPerRoute,
+      @Value("${publisher.http.connectTimeoutMs}") int connectTimeoutMs,
+      @Value("${publisher.http.readTimeoutMs}") int readTimeoutMs,
+      @Value("${publisher.http.keepAliveMs}") long keepAliveMs) {
+    return new HttpClientPool(maxConnections, maxConnectionsPerRoute, connectTimeoutMs,
+        readTimeoutMs, keepAliveMs);
+  }
+
+  @Bean
+  public HttpClientPoolMetrics httpClientPoolMetrics(HttpClientPool httpClientPool) {
+    return new HttpClientPoolMetrics(httpClientPool);
+  }
+
+  @Bean
+  public BatchPublisher batchPublisher(Publisher publisher,
+      @Qualifier("publishingExecutor") ExecutorService publishingExecutor) {
+    return new BatchPublisher(publisher, publishingExecutor);
+  }
+
+  @Bean(destroyMethod = "shutdownNow")
+  public ExecutorService publishingExecutor(
+      @Value("${publisher.offerings.publishingThreads}") int threads) {
+    return Executors.newFixedThreadPool(threads,
+        new ThreadFactoryBuilder().setNameFormat("publishing-%d").setDaemon(true).build());
+  }
+
+  @Bean
+  public OfferingsIndex offeringsIndex(OAuth2RestTemplate tapApiServiceRestTemplate,
+      @NotNull @Value("${tapApiService.url}") String tapApiServiceUrl,
+      @Qualifier("offeringsIndexRefresher") ScheduledExecutorService refresher,
+      @Value("${publisher.offerings.indexRefreshSeconds}") long indexRefreshSeconds,
+      @Value("${publisher.offerings.indexMaxAgeSeconds}") long indexMaxAgeSeconds) {
+    OfferingsIndex offeringsIndex = new OfferingsIndex(
+        new OfferingsFetcher(tapApiServiceRestTemplate, getUrlWithHttpProtocol(tapApiServiceUrl),
+            new ObjectMapper()),
+        TimeUnit.SECONDS.toMillis(indexMaxAgeSeconds));
+    offeringsIndex.startRefreshing(refresher, indexRefreshSeconds);
+    return offeringsIndex;
+  }
+
+  @Bean(destroyMethod = "shutdownNow")
+  public ScheduledExecutorService offeringsIndexRefresher() {
+    return Executors.newSingleThreadScheduledExecutor(
+        new ThreadFactoryBuilder().setNameFormat("offerings-index-%d").setDaemon(true).build());
+  }
+
+  @Bean
+  public OfferingReadinessTracker offeringReadinessTracker(
+      OAuth2RestTemplate tapApiServiceRestTemplate,
+      @NotNull @Value("${tapApiService.url}") String tapApiServiceUrl,
+      @Qualifier("offeringReadinessScheduler") ScheduledExecutorService scheduler,
+      @Value("${publisher.offerings.readinessChecks}") int readinessChecks,
+      @Value("${publisher.offerings.initialCheckDelayMs}") long initialCheckDelayMs,
+      @Value("${publisher.offerings.maxCheckDelayMs}") long maxCheckDelayMs) {
+    OfferingReadinessTracker tracker = new OfferingReadinessTracker(
+        new OfferingsFetcher(tapApiServiceRestTemplate, getUrlWithHttpProtocol(tapApiServiceUrl),
+            new ObjectMapper()),
+        new AssureOfferingPresenceStepConfig(readinessChecks, initialCheckDelayMs,
+            maxCheckDelayMs, AssureOfferingPresenceStepConfig.defaultConfig().getDesiredState()));
+    tracker.start(scheduler);
+    return tracker;
+  }
+
+  @Bean(destroyMethod = "shutdownNow")
+  public ScheduledExecutorService offeringReadinessScheduler() {
+    return Executors.newSingleThreadScheduledExecutor(
+        new ThreadFactoryBuilder().setNameFormat("offering-readiness-%d").setDaemon(true).build());
+  }
+
+  @Bean
+  public EngineBaseJarTemplate engineBaseJarTemplate(
+      @NotNull @Value("${publisher.engineBaseJar.resourcePath}") String engineBaseJarPath)
+      throws IOException {
+    Path templateDir =
+        PublisherWorkingDirectory.publisherRootDirectory().resolve(ENGINE_BASE_DIR_NAME);
+    return EngineBaseJarTemplate.load(engineBaseJarPath,
+        Files.createDirectories(templateDir));
+  }
+
+  @Bean
+  public WorkingDirectories workingDirectories(
+      @Qualifier("workingDirectoriesJanitor") ScheduledExecutorService janitor,
+      @Value("${publisher.workingDirectories.maxAgeMinutes}") long maxAgeMinutes,
+      @Value("${publisher.workingDirectories.quotaMb}") long quotaMb,
+      @Value("${publisher.workingDirectories.janitorPeriodSeconds}") long janitorPeriodSeconds) {
+    WorkingDirectories workingDirectories =
+        new WorkingDirectories(PublisherWorkingDirectory.publisherRootDirectory(),
+            new FsDirectoryOperations(), TimeUnit.MINUTES.toMillis(maxAgeMinutes),
+            quotaMb * 1024 * 1024);
+    workingDirectories.startJanitor(janitor, janitorPeriodSeconds);
+    return workingDirectories;
+  }
 
-    return new Publisher(new RestTemplate(), tapApiServiceRestTemplate,
-        getUrlWithHttpProtocol(tapApiServiceUrl), engineBaseJarPath, modelCatalogClient,
-        new EngineNameSupplier(keyCounter));
+  @Bean(destroyMethod = "shutdownNow")
+  public ScheduledExecutorService workingDirectoriesJanitor() {
+    return Executors.newSingleThreadScheduledExecutor(
+        new ThreadFactoryBuilder().setNameFormat("working-dir-janitor-%d").setDaemon(true).build());
+  }
+
+  @Bean
+  public JavaCompilerPool compilerPool(
+      @Value("${publisher.compilation.compilerPoolSize}") int compilerPoolSize) {
+    int size =
+        compilerPoolSize > 0 ? compilerPoolSize : Runtime.getRuntime().availableProcessors();
+    return new JavaCompilerPool(
+        PublisherWorkingDirectory.publisherRootDirectory().resolve(COMPILER_POOL_DIR_NAME), size);
+  }
+
+  @Bean(destroyMethod = "shutdownNow")
+  public ExecutorService h2oDownloadExecutor(
+      @Value("${publisher.h2oDownloads.threads}") int threads) {
+    return Executors.newFixedThreadPool(threads,
+        new ThreadFactoryBuilder().setNameFormat("h2o-download-%d").setDaemon(true).build());
+  }
+
+  @Bean
+  public SplitCompilation splitCompilation(JavaCompilerPool compilerPool,
+      @Qualifier("compilationExecutor") ExecutorService compilationExecutor,
+      @Value("${publisher.compilation.splitThresholdKb}") long splitThresholdKb) {
+    return new SplitCompilation(compilationExecutor, compilerPool.getSize(),
+        splitThresholdKb * 1024);
+  }
+
+  @Bean(destroyMethod = "shutdownNow")
+  public ExecutorService compilationExecutor(JavaCompilerPool compilerPool) {
+    return Executors.newFixedThreadPool(compilerPool.getSize(),
+        new ThreadFactoryBuilder().setNameFormat("model-compilation-%d").setDaemon(true).build());
+  }
+
+  @Bean
+  public EngineBuildRegistry engineBuildRegistry(Publisher publisher,
+      @Qualifier("engineBuildExecutor") ExecutorService engineBuildExecutor,
+      @Value("${publisher.builds.retentionMinutes}") long retentionMinutes,
+      @Qualifier("workingDirectoriesJanitor") ScheduledExecutorService janitor,
+      @Value("${publisher.workingDirectories.janitorPeriodSeconds}") long janitorPeriodSeconds) {
+    EngineBuildRegistry engineBuildRegistry = new EngineBuildRegistry(publisher,
+        engineBuildExecutor, TimeUnit.MINUTES.toMillis(retentionMinutes));
+    engineBuildRegistry.startEvicting(janitor, janitorPeriodSeconds);
+    return engineBuildRegistry;
+  }
+
+  @Bean(destroyMethod = "shutdownNow")
+  public ExecutorService engineBuildExecutor(@Value("${publisher.builds.threads}") int threads,
+      @Value("${publisher.builds.queueCapacity}") int queueCapacity) {
+    return new ThreadPoolExecutor(threads, threads, 0L, TimeUnit.MILLISECONDS,
+        new ArrayBlockingQueue<>(queueCapacity),
+        new ThreadFactoryBuilder().setNameFormat("engine-build-%d").setDaemon(true).build());
+  }
+
+  @Bean
+  public BuildScheduler buildScheduler(@Value("${publisher.builds.concurrency}") int concurrency,
+      @Value("${publisher.builds.maxWaiting}") int maxWaiting,
+      @Value("${publisher.builds.maxWaitingPerTenant}") int maxWaitingPerTenant,
+      @Value("${publisher.builds.waitTimeoutSeconds}") long waitTimeoutSeconds,
+      @Value("${publisher.builds.tenantWeights}") String tenantWeights) {
+    // 0 means as many concurrent builds as there are cores, as builds are mostly CPU bound
+    int slots = concurrency > 0 ? concurrency : Runtime.getRuntime().availableProcessors();
+    return new BuildScheduler(slots, maxWaiting, maxWaitingPerTenant,
+        TimeUnit.SECONDS.toMillis(waitTimeoutSeconds), waitTimeoutSeconds,
+        parseTenantWeights(tenantWeights));
+  }
+
+  @Bean
+  public BuildSchedulerMetrics buildSchedulerMetrics(BuildScheduler buildScheduler) {
+    return new BuildSchedulerMetrics(buildScheduler);
+  }
+
+  // streamed builds are limited by the build scheduler, so the executor itself is unbounded
+  @Bean(destroyMethod = "shutdownNow")
+  public ExecutorService streamingBuildExecutor() {
+    return Executors.newCachedThreadPool(
+        new ThreadFactoryBuilder().setNameFormat("streaming-build-%d").setDaemon(true).build());
+  }
+
+  @Bean
+  public GenModelCache genModelCache() {
+    return new GenModelCache(
+        PublisherWorkingDirectory.publisherRootDirectory().resolve(GENMODEL_CACHE_DIR_NAME));
+  }
+
+  @Bean
+  public ScoringEngineCache scoringEngineCache(
+      @NotNull @Value("${publisher.buildCache.directory}") String cacheDirectory,
+      @Value("${publisher.buildCache.maxSizeMb}") long maxSizeMb) throws IOException {
+    return new ScoringEngineCache(Paths.get(cacheDirectory), maxSizeMb * 1024 * 1024);
+  }
+
+  @Bean
+  public ScoringEngineCacheMetrics scoringEngineCacheMetrics(
+      ScoringEngineCache scoringEngineCache) {
+    return new ScoringEngineCacheMetrics(scoringEngineCache);
   }
 
   @Bean
@@ -54,11 +309,14 @@ public class ApplicationConfiguration {
   }
 
   @Bean
-  public OAuth2RestTemplate oAuth2RestTemplate(OAuth2ProtectedResourceDetails clientCredentials) {
+  public OAuth2RestTemplate oAuth2RestTemplate(OAuth2ProtectedResourceDetails clientCredentials,
+      HttpClientPool httpClientPool) {
     OAuth2RestTemplate restTemplate = new OAuth2RestTemplate(clientCredentials,
         new DefaultOAuth2ClientContext(new DefaultAccessTokenRequest()));
     ClientCredentialsAccessTokenProvider tokenProvider = new ClientCredentialsAccessTokenProvider();
+    tokenProvider.setRequestFactory(httpClientPool.requestFactory());
     restTemplate.setAccessTokenProvider(tokenProvider);
+    restTemplate.setRequestFactory(httpClientPool.requestFactory());
 
     return restTemplate;
   }
@@ -72,10 +330,12 @@ public class ApplicationConfiguration {
   @Bean
   public ModelCatalogReaderClient modelCatalogClient(
       OAuth2ProtectedResourceDetails modelCatalogCredentials,
-      @NotNull @Value("${modelCatalog.url}") String modelCatalogUrl) {
+      @NotNull @Value("${modelCatalog.url}") String modelCatalogUrl,
+      HttpClientPool httpClientPool) {
     ModelCatalogClientBuilder builder =
         new ModelCatalogClientBuilder(getUrlWithHttpProtocol(modelCatalogUrl));
-    return builder.oAuthTokenProvider(new OAuth2TokenProvider(modelCatalogCredentials))
+    return builder.oAuthTokenProvider(
+        new OAuth2TokenProvider(modelCatalogCredentials, httpClientPool.requestFactory()))
         .buildReader();
   }
 
@@ -86,8 +346,10 @@ public class ApplicationConfiguration {
   }
 
   @Bean
-  public KeyCounterConnectionData keyCounter(BasicAuthServerCredentials keyCounterCredentials) {
-    return new KeyCounterConnectionData(new RestTemplate(), keyCounterCredentials);
+  public KeyCounterConnectionData keyCounter(BasicAuthServerCredentials keyCounterCredentials,
+      HttpClientPool httpClientPool) {
+    return new KeyCounterConnectionData(new RestTemplate(httpClientPool.requestFactory()),
+        keyCounterCredentials);
   }
 
   @Bean
@@ -102,4 +364,21 @@ public class ApplicationConfiguration {
   String getUrlWithHttpProtocol(String url) {
     return url.toLowerCase().matches("^http.?:.*$") ? url : "http://" + url;
   }
+
+  // weights are given as comma-separated hostname=weight pairs, e.g. "h2o-a:54321=3,h2o-b=1"
+  Map<String, Integer> parseTenantWeights(String tenantWeights) {
+    Map<String, Integer> weights = new HashMap<>();
+    for (String entry : tenantWeights.split(",")) {
+      if (entry.trim().isEmpty()) {
+        continue;
+      }
+      int separator = entry.lastIndexOf('=');
+      if (separator < 0) {
+        throw new IllegalArgumentException("Tenant weight not given as hostname=weight: " + entry);
+      }
+      weights.put(entry.substring(0, separator).trim(),
+          Integer.valueOf(entry.substring(separator + 1).trim()));
+    }
+    return weights;
+  }
 }
@@ -16,74 +16,422 @@ package org.trustedanalytics.h2oscoringengine.publisher;
 import com.fasterxml.jackson.databind.ObjectMapper;
 import java.io.IOException;
 import java.nio.file.Path;
+import java.util.Optional;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.Executor;
+import java.util.concurrent.RejectedExecutionException;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
 import org.springframework.web.client.RestTemplate;
+import org.trustedanalytics.h2oscoringengine.publisher.builds.BuildPriority;
+import org.trustedanalytics.h2oscoringengine.publisher.builds.BuildScheduler;
+import org.trustedanalytics.h2oscoringengine.publisher.cache.GenModelCache;
+import org.trustedanalytics.h2oscoringengine.publisher.cache.InFlightBuilds;
+import org.trustedanalytics.h2oscoringengine.publisher.cache.ScoringEngineCache;
+import org.trustedanalytics.h2oscoringengine.publisher.cache.ScoringEngineFingerprint;
+import org.trustedanalytics.h2oscoringengine.publisher.compilation.JavaCompilerPool;
+import org.trustedanalytics.h2oscoringengine.publisher.compilation.SplitCompilation;
 import org.trustedanalytics.h2oscoringengine.publisher.enginename.EngineNameSupplier;
-import org.trustedanalytics.h2oscoringengine.publisher.filesystem.FsDirectoryOperations;
+import org.trustedanalytics.h2oscoringengine.publisher.filesystem.EngineBaseJarTemplate;
 import org.trustedanalytics.h2oscoringengine.publisher.filesystem.PublisherWorkingDirectory;
+import org.trustedanalytics.h2oscoringengine.publisher.filesystem.WorkingDirectories;
 import org.trustedanalytics.h2oscoringengine.publisher.http.BasicAuthServerCredentials;
 import org.trustedanalytics.h2oscoringengine.publisher.http.FilesDownloader;
+import org.trustedanalytics.h2oscoringengine.publisher.metrics.BuildMetrics;
 import org.trustedanalytics.h2oscoringengine.publisher.restapi.ScoringEngineData;
 import org.trustedanalytics.h2oscoringengine.publisher.steps.AssureOfferingPresenceStep;
 import org.trustedanalytics.h2oscoringengine.publisher.steps.H2oResourcesDownloadingStep;
+import org.trustedanalytics.h2oscoringengine.publisher.steps.ModelCompilationStep;
+import org.trustedanalytics.h2oscoringengine.publisher.steps.ModelPackagingStep;
+import org.trustedanalytics.h2oscoringengine.publisher.steps.OfferingReadinessTracker;
+import org.trustedanalytics.h2oscoringengine.publisher.steps.ScoringEngineBuildingStep;
+import org.trustedanalytics.h2oscoringengine.publisher.steps.ScoringEngineStreamingStep;
 import org.trustedanalytics.h2oscoringengine.publisher.tapapi.OfferingCreator;
 import org.trustedanalytics.h2oscoringengine.publisher.tapapi.OfferingsFetcher;
+import org.trustedanalytics.h2oscoringengine.publisher.tapapi.OfferingsIndex;
 import org.trustedanalytics.h2oscoringengine.publisher.tapapi.ServiceCreator;
 import org.trustedanalytics.modelcatalog.rest.client.ModelCatalogReaderClient;
 
 public class Publisher {
 
+  private static final Logger LOGGER = LoggerFactory.getLogger(Publisher.class);
+
   private final RestTemplate h2oServerRestTemplate;
   private final RestTemplate tapApiServiceRestTemplate;
   private final String tapApiServiceUrl;
-  private final String engineBaseResourcePath;
+  private final EngineBaseJarTemplate engineBaseJar;
   private final ModelCatalogReaderClient modelCatalogClient;
   private final EngineNameSupplier engineNameSupplier;
+  private final ScoringEngineCache scoringEngineCache;
+  private final GenModelCache genModelCache;
+  private final Executor h2oDownloadExecutor;
+  private final boolean compileModelsInMemory;
+  private final JavaCompilerPool compilerPool;
+  private final SplitCompilation splitCompilation;
+  private final WorkingDirectories workingDirectories;
+  private final Executor streamingBuildExecutor;
+  private final OfferingReadinessTracker offeringReadinessTracker;
+  private final Executor publishingExecutor;
+  private final OfferingsIndex offeringsIndex;
+  private final BuildMetrics buildMetrics;
+  private final BuildScheduler buildScheduler;
+  private final ScoringEngineFingerprint scoringEngineFingerprint;
+  private final InFlightBuilds inFlightBuilds = new InFlightBuilds();
 
+  /**
+   * @param offeringReadinessTracker started tracker, shared by publishers
+   * @param publishingExecutor executor creating offering instances once offerings are ready, not
+   *        the one running offering readiness tracker
+   */
   public Publisher(RestTemplate h2oServerRestTemplate, RestTemplate tapApiServiceRestTemplate,
       String tapApiServiceUrl, String engineBaseJar, ModelCatalogReaderClient modelCatalogClient,
-      EngineNameSupplier engineNameSupplier) {
-    this.engineBaseResourcePath = engineBaseJar;
+      EngineNameSupplier engineNameSupplier, OfferingReadinessTracker offeringReadinessTracker,
+      Executor publishingExecutor) {
+    this(h2oServerRestTemplate, tapApiServiceRestTemplate, tapApiServiceUrl,
+        EngineBaseJarTemplate.notLoaded(engineBaseJar), modelCatalogClient, engineNameSupplier,
+        ScoringEngineCache.disabled(), GenModelCache.disabled(), Runnable::run, false,
+        JavaCompilerPool.unpooled(), SplitCompilation.disabled(), WorkingDirectories.unmanaged(),
+        Runnable::run, offeringReadinessTracker, publishingExecutor,
+        new OfferingsIndex(
+            new OfferingsFetcher(tapApiServiceRestTemplate, tapApiServiceUrl, new ObjectMapper()),
+            0),
+        BuildMetrics.disabled(), BuildScheduler.unbounded());
+  }
+
+  public Publisher(RestTemplate h2oServerRestTemplate, RestTemplate tapApiServiceRestTemplate,
+      String tapApiServiceUrl, EngineBaseJarTemplate engineBaseJar,
+      ModelCatalogReaderClient modelCatalogClient, EngineNameSupplier engineNameSupplier,
+      ScoringEngineCache scoringEngineCache, GenModelCache genModelCache,
+      Executor h2oDownloadExecutor, boolean compileModelsInMemory, JavaCompilerPool compilerPool,
+      SplitCompilation splitCompilation, WorkingDirectories workingDirectories,
+      Executor streamingBuildExecutor, OfferingReadinessTracker offeringReadinessTracker,
+      Executor publishingExecutor, OfferingsIndex offeringsIndex, BuildMetrics buildMetrics,
+      BuildScheduler buildScheduler) {
+    this.engineBaseJar = engineBaseJar;
     this.h2oServerRestTemplate = h2oServerRestTemplate;
     this.tapApiServiceRestTemplate = tapApiServiceRestTemplate;
     this.tapApiServiceUrl = tapApiServiceUrl;
     this.modelCatalogClient = modelCatalogClient;
     this.engineNameSupplier = engineNameSupplier;
+    this.scoringEngineCache = scoringEngineCache;
+    this.genModelCache = genModelCache;
+    this.h2oDownloadExecutor = h2oDownloadExecutor;
+    this.compileModelsInMemory = compileModelsInMemory;
+    this.compilerPool = compilerPool;
+    this.splitCompilation = splitCompilation;
+    this.workingDirectories = workingDirectories;
+    this.streamingBuildExecutor = streamingBuildExecutor;
+    this.offeringReadinessTracker = offeringReadinessTracker;
+    this.publishingExecutor = publishingExecutor;
+    this.offeringsIndex = offeringsIndex;
+    this.buildMetrics = buildMetrics;
+    this.buildScheduler = buildScheduler;
+    this.scoringEngineFingerprint =
+        new ScoringEngineFingerprint(engineBaseJar, compilerPool.getLibraryHashes());
   }
 
   public Path getScoringEngineJar(BasicAuthServerCredentials h2oCredentials, String modelName)
       throws EngineBuildingException {
-    return buildScoringEngineJar(new FilesDownloader(h2oCredentials, h2oServerRestTemplate),
-        modelName);
+    return getScoringEngineJar(h2oCredentials, modelName, BuildPriority.INTERACTIVE);
+  }
+
+  /**
+   * Builds scoring engine once the build is admitted by the build scheduler. Builds are scheduled
+   * fairly between H2O servers. An interactive request joining a batch build of the same model
+   * promotes the build, so that the request doesn't wait behind other batch builds.
+   * 
+   * @param h2oCredentials credentials of H2O server hosting the model
+   * @param modelName name of the model on H2O server
+   * @param priority priority of the build among other builds waiting for a free slot
+   * @return path to scoring engine JAR
+   * @throws EngineBuildingException if the build was not admitted or failed
+   */
+  public Path getScoringEngineJar(BasicAuthServerCredentials h2oCredentials, String modelName,
+      BuildPriority priority) throws EngineBuildingException {
+    BuildScheduler.Ticket ticket = buildScheduler.ticket(h2oCredentials.getUrl(), priority);
+    return inFlightBuilds.run(InFlightBuilds.key(h2oCredentials, modelName),
+        priority == BuildPriority.INTERACTIVE, ticket::promote,
+        () -> buildScheduler.run(ticket,
+            () -> buildScoringEngineJar(
+                new FilesDownloader(h2oCredentials, h2oServerRestTemplate), modelName)),
+        this::retainScoringEngineJar);
+  }
+
+  /**
+   * Lets working directory or cache entry of a scoring engine returned by
+   * {@link #getScoringEngineJar(BasicAuthServerCredentials, String)} be reclaimed. Should be called
+   * once for every returned JAR when it's not needed anymore, e.g. has been sent to a client.
+   * 
+   * @param scoringEngineJar JAR which is not needed anymore
+   */
+  public void releaseScoringEngineJar(Path scoringEngineJar) {
+    workingDirectories.release(scoringEngineJar);
+    scoringEngineCache.release(scoringEngineJar);
+  }
+
+  /**
+   * Keeps working directory of a scoring engine returned by
+   * {@link #getScoringEngineJar(BasicAuthServerCredentials, String, BuildPriority)} regardless of
+   * its age and working directories quota, for results kept for a long time. Reference of the
+   * caller has to be given back with {@link #releaseHeldScoringEngineJar(Path)} instead of
+   * {@link #releaseScoringEngineJar(Path)}.
+   * 
+   * @param scoringEngineJar JAR to be kept
+   */
+  public void holdScoringEngineJar(Path scoringEngineJar) {
+    workingDirectories.hold(scoringEngineJar);
   }
 
-  public void publishScoringEngine(ScoringEngineData scoringEngineData)
+  /**
+   * Releases scoring engine held with {@link #holdScoringEngineJar(Path)}.
+   * 
+   * @param scoringEngineJar JAR which is not needed anymore
+   */
+  public void releaseHeldScoringEngineJar(Path scoringEngineJar) {
+    workingDirectories.releaseHold(scoringEngineJar);
+    releaseScoringEngineJar(scoringEngineJar);
+  }
+
+  /**
+   * Prepares scoring engine to be streamed while its model is being built. Model resources are
+   * downloaded before this method returns, so that problems with H2O server are reported before
+   * anything is streamed. Model is compiled and packaged in background. Scoring engine JAR is also
+   * assembled to a file in background, so that it can be cached and handed over to requests which
+   * joined the build. A request coming while the same model is being built, either streamed or
+   * not, joins that build and streams its result.
+   * 
+   * @param h2oCredentials credentials of H2O server hosting the model
+   * @param modelName name of the model on H2O server
+   * @return step streaming the scoring engine
+   * @throws EngineBuildingException if the build was not admitted by the scheduler or model
+   *         resources could not be downloaded
+   */
+  public ScoringEngineStreamingStep streamScoringEngineJar(
+      BasicAuthServerCredentials h2oCredentials, String modelName) throws EngineBuildingException {
+    ScoringEngineStreamingStep[] ownBuild = {null};
+    CompletableFuture<Path> handedOver = new CompletableFuture<>();
+    CompletableFuture<Path> scoringEngineJar =
+        inFlightBuilds.start(InFlightBuilds.key(h2oCredentials, modelName), true, () -> {
+        }, () -> {
+          CompletableFuture<Path> builtScoringEngineJar = new CompletableFuture<>();
+          ownBuild[0] =
+              startStreamedBuild(h2oCredentials, modelName, builtScoringEngineJar, handedOver);
+          return builtScoringEngineJar;
+        }, this::retainScoringEngineJar);
+
+    if (ownBuild[0] == null) {
+      LOGGER.info("Streaming scoring engine for model " + modelName + " built by another request");
+      return ScoringEngineStreamingStep.builtEngine(scoringEngineJar,
+          () -> scoringEngineJar.thenAccept(this::releaseScoringEngineJar));
+    }
+    // own build keeps its working directory until joined requests have retained the result
+    scoringEngineJar.whenComplete((jar, e) -> {
+      if (e == null) {
+        handedOver.complete(jar);
+      } else {
+        handedOver.completeExceptionally(e);
+      }
+    });
+    return ownBuild[0];
+  }
+
+  /**
+   * Publishes scoring engine from model-catalog as a tap-api-service offering instance. Offering
+   * is created, if needed, before this method returns. Waiting for the offering to get ready
+   * doesn't occupy the calling thread, its instance is created on the publishing executor.
+   * 
+   * @param scoringEngineData model and artifact to publish
+   * @return future completed when the instance is created or completed exceptionally with
+   *         {@link EnginePublishingException}
+   * @throws EnginePublishingException if offering could not be found nor created
+   */
+  public CompletableFuture<Void> publishScoringEngine(ScoringEngineData scoringEngineData)
       throws EnginePublishingException {
     ObjectMapper jsonMapper = new ObjectMapper();
-    AssureOfferingPresenceStep assureOfferingPresenceStep = new AssureOfferingPresenceStep(
-        new OfferingsFetcher(tapApiServiceRestTemplate, tapApiServiceUrl, jsonMapper),
-        new OfferingCreator(tapApiServiceRestTemplate, tapApiServiceUrl, jsonMapper),
-        modelCatalogClient);
-    assureOfferingPresenceStep.ensureOfferingExists(scoringEngineData).createOfferingInstance(
-        new ServiceCreator(tapApiServiceRestTemplate, tapApiServiceUrl, jsonMapper),
-        scoringEngineData, engineNameSupplier);
+    AssureOfferingPresenceStep assureOfferingPresenceStep =
+        new AssureOfferingPresenceStep(offeringReadinessTracker, offeringsIndex,
+            new OfferingCreator(tapApiServiceRestTemplate, tapApiServiceUrl, jsonMapper),
+            modelCatalogClient);
+    return buildMetrics
+        .timeAsync(BuildMetrics.ASSURE_OFFERING,
+            () -> assureOfferingPresenceStep.ensureOfferingExists(scoringEngineData))
+        .thenAcceptAsync(offeringInstanceCreationStep -> {
+          try {
+            buildMetrics.timeAction(BuildMetrics.CREATE_INSTANCE,
+                () -> offeringInstanceCreationStep.createOfferingInstance(
+                    new ServiceCreator(tapApiServiceRestTemplate, tapApiServiceUrl, jsonMapper),
+                    scoringEngineData, engineNameSupplier));
+          } catch (EnginePublishingException e) {
+            throw new CompletionException(e);
+          }
+        }, publishingExecutor);
+  }
+
+  private ScoringEngineStreamingStep startStreamedBuild(BasicAuthServerCredentials h2oCredentials,
+      String modelName, CompletableFuture<Path> scoringEngineJar,
+      CompletableFuture<Path> handedOver) throws EngineBuildingException {
+    BuildScheduler.Slot slot =
+        buildScheduler.admit(h2oCredentials.getUrl(), BuildPriority.INTERACTIVE);
+    PublisherWorkingDirectory workingDir;
+    try {
+      workingDir = createWorkingDirectory(modelName);
+    } catch (EngineBuildingException | RuntimeException e) {
+      slot.release();
+      throw e;
+    }
+    buildMetrics.buildStarted();
+    Runnable finishBuild = () -> {
+      buildMetrics.buildFinished();
+      workingDirectories.release(workingDir.getPath());
+      slot.release();
+    };
+    Runnable finishStreaming = () -> handedOver.whenComplete((jar, e) -> {
+      if (jar != null) {
+        // cache entry pinned for the streaming request, which didn't use it
+        scoringEngineCache.release(jar);
+      }
+      finishBuild.run();
+    });
+    try {
+      ModelCompilationStep modelCompilationStep = downloadResources(
+          new FilesDownloader(h2oCredentials, h2oServerRestTemplate), modelName, workingDir);
+
+      Optional<String> cacheKey = computeCacheKey(modelCompilationStep);
+      Optional<Path> cachedScoringEngineJar = cacheKey.flatMap(scoringEngineCache::get);
+      if (cachedScoringEngineJar.isPresent()) {
+        LOGGER.info("Streaming cached scoring engine for model " + modelName);
+        scoringEngineJar.complete(cachedScoringEngineJar.get());
+        return ScoringEngineStreamingStep.builtEngine(cachedScoringEngineJar.get(),
+            finishStreaming);
+      }
+
+      CompletableFuture<Path> modelJar = new CompletableFuture<>();
+      streamingBuildExecutor.execute(() -> {
+        try {
+          ScoringEngineBuildingStep scoringEngineBuildingStep =
+              packageModel(compileModel(modelCompilationStep, workingDir), workingDir);
+          modelJar.complete(scoringEngineBuildingStep.getModelJarPath());
+          // assembly of the streamed JAR is what gets recorded in build metrics
+          Path builtScoringEngineJar = scoringEngineBuildingStep
+              .buildScoringEngine(workingDir.getScoringEngineJarDir(), engineBaseJar);
+          scoringEngineJar.complete(cacheKey
+              .map(key -> scoringEngineCache.put(key, builtScoringEngineJar))
+              .orElse(builtScoringEngineJar));
+        } catch (EngineBuildingException | RuntimeException e) {
+          modelJar.completeExceptionally(e);
+          scoringEngineJar.completeExceptionally(e);
+        }
+      });
+      return new ScoringEngineStreamingStep(modelJar, engineBaseJar,
+          workingDir.getScoringEngineJarDir(), buildMetrics, finishStreaming);
+
+    } catch (RejectedExecutionException e) {
+      finishBuild.run();
+      throw new EngineBuildingException(
+          "Too many scoring engine builds in progress. Try again later.", e);
+    } catch (EngineBuildingException | RuntimeException e) {
+      finishBuild.run();
+      throw e;
+    }
+  }
+
+  private void retainScoringEngineJar(Path scoringEngineJar, int joinedRequests) {
+    workingDirectories.retain(scoringEngineJar, joinedRequests);
+    scoringEngineCache.retain(scoringEngineJar, joinedRequests);
   }
 
   private Path buildScoringEngineJar(FilesDownloader h2oFilesDownloader, String modelName)
       throws EngineBuildingException {
 
+    PublisherWorkingDirectory workingDir = createWorkingDirectory(modelName);
+    Path scoringEngineJar = null;
+    buildMetrics.buildStarted();
     try {
-      PublisherWorkingDirectory workingDir =
-          new PublisherWorkingDirectory(modelName, new FsDirectoryOperations());
+      scoringEngineJar = buildScoringEngineJar(h2oFilesDownloader, modelName, workingDir);
+      return scoringEngineJar;
+    } finally {
+      buildMetrics.buildFinished();
+      if (scoringEngineJar == null || !scoringEngineJar.startsWith(workingDir.getPath())) {
+        // nothing from working directory is handed over to clients
+        workingDirectories.release(workingDir.getPath());
+      }
+    }
+  }
 
-      H2oResourcesDownloadingStep h2oResourcesDownloadingStep = new H2oResourcesDownloadingStep();
-      return h2oResourcesDownloadingStep
-          .downloadResources(h2oFilesDownloader, modelName, workingDir.getH2oResourcesPath())
-          .compileModel(workingDir.getCompiledModelPath())
-          .packageModel(workingDir.getModelJarPath())
-          .buildScoringEngine(workingDir.getScoringEngineJarDir(), engineBaseResourcePath);
+  private Path buildScoringEngineJar(FilesDownloader h2oFilesDownloader, String modelName,
+      PublisherWorkingDirectory workingDir) throws EngineBuildingException {
 
+    ModelCompilationStep modelCompilationStep =
+        downloadResources(h2oFilesDownloader, modelName, workingDir);
+
+    Optional<String> cacheKey = computeCacheKey(modelCompilationStep);
+    Optional<Path> cachedScoringEngineJar = cacheKey.flatMap(scoringEngineCache::get);
+    if (cachedScoringEngineJar.isPresent()) {
+      LOGGER.info("Serving cached scoring engine for model " + modelName);
+      return cachedScoringEngineJar.get();
+    }
+
+    ScoringEngineBuildingStep scoringEngineBuildingStep =
+        packageModel(compileModel(modelCompilationStep, workingDir), workingDir);
+    Path scoringEngineJar = buildMetrics.time(BuildMetrics.ASSEMBLE, () -> scoringEngineBuildingStep
+        .buildScoringEngine(workingDir.getScoringEngineJarDir(), engineBaseJar));
+    buildMetrics.recordBytesWritten(scoringEngineBuildingStep.getModelJarPath(), scoringEngineJar);
+
+    return cacheKey.map(key -> scoringEngineCache.put(key, scoringEngineJar))
+        .orElse(scoringEngineJar);
+  }
+
+  private PublisherWorkingDirectory createWorkingDirectory(String modelName)
+      throws EngineBuildingException {
+    try {
+      return workingDirectories.create(modelName);
     } catch (IOException e) {
       throw new EngineBuildingException("Unable to create dir for publisher: ", e);
     }
   }
+
+  private ModelCompilationStep downloadResources(FilesDownloader h2oFilesDownloader,
+      String modelName, PublisherWorkingDirectory workingDir) throws EngineBuildingException {
+    H2oResourcesDownloadingStep h2oResourcesDownloadingStep =
+        new H2oResourcesDownloadingStep(genModelCache, h2oDownloadExecutor);
+    try {
+      return buildMetrics.time(BuildMetrics.DOWNLOAD, () -> h2oResourcesDownloadingStep
+          .downloadResources(h2oFilesDownloader, modelName, workingDir.getH2oResourcesPath()));
+    } finally {
+      buildMetrics.recordBytesDownloaded(h2oFilesDownloader.getBytesDownloaded());
+    }
+  }
+
+  private ModelPackagingStep compileModel(ModelCompilationStep modelCompilationStep,
+      PublisherWorkingDirectory workingDir) throws EngineBuildingException {
+    try {
+      return buildMetrics.time(BuildMetrics.COMPILE,
+          () -> compileModelsInMemory
+              ? modelCompilationStep.compileModelInMemory(compilerPool, splitCompilation)
+              : modelCompilationStep.compileModel(workingDir.getCompiledModelPath(),
+                  compilerPool));
+    } finally {
+      buildMetrics.recordCompilerDiagnostics(modelCompilationStep.getDiagnosticsCount());
+    }
+  }
+
+  private ScoringEngineBuildingStep packageModel(ModelPackagingStep modelPackagingStep,
+      PublisherWorkingDirectory workingDir) throws EngineBuildingException {
+    return buildMetrics.time(BuildMetrics.PACKAGE,
+        () -> modelPackagingStep.packageModel(workingDir.getModelJarPath()));
+  }
+
+  private Optional<String> computeCacheKey(ModelCompilationStep modelCompilationStep) {
+    if (!scoringEngineCache.isEnabled()) {
+      return Optional.empty();
+    }
+    try {
+      return Optional.of(scoringEngineFingerprint.compute(modelCompilationStep.getModelPojoPath(),
+          modelCompilationStep.getLibPath()));
+    } catch (IOException e) {
+      LOGGER.warn("Unable to compute scoring engine cache key. Building without cache: ", e);
+      return Optional.empty();
+    }
+  }
 }
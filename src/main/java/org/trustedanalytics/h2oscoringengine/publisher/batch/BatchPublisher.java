@@ -0,0 +1,89 @@
+/**
+ * Copyright (c) 2016 Intel Corporation
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file except
+ * in compliance with the License. You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software distributed under the License
+ * is distributed on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express
+ * or implied. See the License for the specific language governing permissions and limitations under
+ * the License.
+ */
+package org.trustedanalytics.h2oscoringengine.publisher.batch;
+
+import java.util.Arrays;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.Executor;
+import java.util.stream.Collectors;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.trustedanalytics.h2oscoringengine.publisher.EnginePublishingException;
+import org.trustedanalytics.h2oscoringengine.publisher.Publisher;
+import org.trustedanalytics.h2oscoringengine.publisher.restapi.PublishingResult;
+import org.trustedanalytics.h2oscoringengine.publisher.restapi.ScoringEngineData;
+
+/**
+ * Publishes many scoring engines at once. Engines are published in parallel, bounded by the number
+ * of threads of the publishing executor, and failure of one of them doesn't affect the others.
+ * Offerings of all engines are looked up in the shared offerings index, so a batch costs at most
+ * one fetch of the offerings list. An engine requested more than once in a batch is published
+ * once and all its occurrences share the result.
+ */
+public class BatchPublisher {
+
+  private static final Logger LOGGER = LoggerFactory.getLogger(BatchPublisher.class);
+
+  private final Publisher publisher;
+  private final Executor publishingExecutor;
+
+  public BatchPublisher(Publisher publisher, Executor publishingExecutor) {
+    this.publisher = publisher;
+    this.publishingExecutor = publishingExecutor;
+  }
+
+  /**
+   * @param scoringEngines engines to publish
+   * @return future completed with results in order of given engines, when all of them are
+   *         published or failed
+   */
+  public CompletableFuture<List<PublishingResult>> publish(List<ScoringEngineData> scoringEngines) {
+    LOGGER.info("Publishing batch of {} scoring engines.", scoringEngines.size());
+    Map<List<Object>, CompletableFuture<PublishingResult>> publishings = new LinkedHashMap<>();
+    List<CompletableFuture<PublishingResult>> results = scoringEngines.stream()
+        .map(engine -> publishings.computeIfAbsent(
+            Arrays.asList(engine.getModelId(), engine.getArtifactId()), key -> publish(engine)))
+        .collect(Collectors.toList());
+    if (publishings.size() < scoringEngines.size()) {
+      LOGGER.info("Skipped {} duplicated scoring engines in batch.",
+          scoringEngines.size() - publishings.size());
+    }
+
+    return CompletableFuture.allOf(results.toArray(new CompletableFuture<?>[results.size()]))
+        .thenApply(allPublished -> results.stream().map(CompletableFuture::join)
+            .collect(Collectors.toList()));
+  }
+
+  private CompletableFuture<PublishingResult> publish(ScoringEngineData scoringEngineData) {
+    return CompletableFuture.supplyAsync(() -> {
+      try {
+        return publisher.publishScoringEngine(scoringEngineData);
+      } catch (EnginePublishingException e) {
+        throw new CompletionException(e);
+      }
+    }, publishingExecutor).thenCompose(publishing -> publishing).handle((nothing, e) -> {
+      if (e == null) {
+        return PublishingResult.published(scoringEngineData);
+      }
+      Throwable failure = e instanceof CompletionException ? e.getCause() : e;
+      LOGGER.error("Unable to publish scoring engine of model " + scoringEngineData.getModelId(),
+          failure);
+      return PublishingResult.failed(scoringEngineData, failure);
+    });
+  }
+}
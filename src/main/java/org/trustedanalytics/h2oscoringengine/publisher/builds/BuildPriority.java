@@ -0,0 +1,31 @@
+/**
+ * Copyright (c) 2016 Intel Corporation
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file except
+ * in compliance with the License. You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software distributed under the License
+ * is distributed on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express
+ * or implied. See the License for the specific language governing permissions and limitations under
+ * the License.
+ */
+package org.trustedanalytics.h2oscoringengine.publisher.builds;
+
+/**
+ * Priority of a scoring engine build waiting for a free build slot.
+ */
+public enum BuildPriority {
+
+  /**
+   * Build of a download or streaming download a client is waiting for. Admitted before any batch
+   * build.
+   */
+  INTERACTIVE,
+
+  /**
+   * Build run in background by build API. Admitted only when no interactive build is waiting.
+   */
+  BATCH
+}
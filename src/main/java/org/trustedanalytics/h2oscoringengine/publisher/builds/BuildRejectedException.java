@@ -0,0 +1,41 @@
+/**
+ * Copyright (c) 2016 Intel Corporation
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file except
+ * in compliance with the License. You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software distributed under the License
+ * is distributed on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express
+ * or implied. See the License for the specific language governing permissions and limitations under
+ * the License.
+ */
+package org.trustedanalytics.h2oscoringengine.publisher.builds;
+
+import org.trustedanalytics.h2oscoringengine.publisher.EngineBuildingException;
+
+/**
+ * Thrown when a build is not admitted because too many builds are already running or waiting.
+ * Clients are expected to retry after {@link #getRetryAfterSeconds()}.
+ */
+public class BuildRejectedException extends EngineBuildingException {
+
+  private static final long serialVersionUID = 6021436614911734523L;
+
+  private final long retryAfterSeconds;
+
+  public BuildRejectedException(String message, long retryAfterSeconds) {
+    super(message);
+    this.retryAfterSeconds = retryAfterSeconds;
+  }
+
+  public BuildRejectedException(String message, long retryAfterSeconds, Throwable cause) {
+    super(message, cause);
+    this.retryAfterSeconds = retryAfterSeconds;
+  }
+
+  public long getRetryAfterSeconds() {
+    return retryAfterSeconds;
+  }
+}
@@ -0,0 +1,608 @@
+/**
+ * Copyright (c) 2016 Intel Corporation
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file except
+ * in compliance with the License. You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software distributed under the License
+ * is distributed on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express
+ * or implied. See the License for the specific language governing permissions and limitations under
+ * the License.
+ */
+package org.trustedanalytics.h2oscoringengine.publisher.builds;
+
+import java.net.URI;
+import java.net.URISyntaxException;
+import java.util.ArrayDeque;
+import java.util.Collections;
+import java.util.Deque;
+import java.util.EnumMap;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.locks.Condition;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.stream.Collectors;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.trustedanalytics.h2oscoringengine.publisher.EngineBuildingException;
+
+/**
+ * Admission control of scoring engine builds. At most {@code concurrency} builds run at the same
+ * time, other builds wait for a free slot.
+ *
+ * Waiting builds are queued per tenant, i.e. per H2O server hosting the model, so that bulk builds
+ * of one tenant don't starve the others. Free slots are handed out in weighted round-robin: each
+ * tenant with waiting builds gets as many slots in a row as its weight (1 by default) before the
+ * next tenant gets its turn. Interactive builds are admitted before batch builds, but a batch build
+ * is admitted after every {@code INTERACTIVE_ADMISSIONS_PER_BATCH} interactive ones admitted while
+ * it waits, so that sustained interactive load doesn't starve batch builds and the background
+ * threads waiting for them. A batch build which an interactive request waits for can be promoted,
+ * so that it's admitted like an interactive one. Tenants are identified by normalized URLs of H2O servers and forgotten after
+ * being idle for {@code tenantIdleMs}.
+ *
+ * Up to {@code maxWaiting} interactive builds wait, at most {@code maxWaitingPerTenant} of them of
+ * one tenant, each for at most {@code waitTimeoutMs}. Builds which don't fit in the wait queue or
+ * time out waiting are rejected with {@link BuildRejectedException}, so that clients can be told to
+ * come back later instead of piling up on request threads. Batch builds run on the bounded
+ * background build pool, so they are not limited here and wait for as long as it takes.
+ */
+public class BuildScheduler {
+
+  private static final Logger LOGGER = LoggerFactory.getLogger(BuildScheduler.class);
+
+  static final long DEFAULT_TENANT_IDLE_MS = TimeUnit.MINUTES.toMillis(10);
+  static final int INTERACTIVE_ADMISSIONS_PER_BATCH = 4;
+
+  private final int concurrency;
+  private final int maxWaiting;
+  private final int maxWaitingPerTenant;
+  private final long waitTimeoutMs;
+  private final long retryAfterSeconds;
+  private final Map<String, Integer> tenantWeights = new HashMap<>();
+  private final long tenantIdleNanos;
+
+  private final ReentrantLock lock = new ReentrantLock();
+  private final Map<String, Tenant> tenants = new LinkedHashMap<>();
+  private final Map<BuildPriority, Rotation> rotations = new EnumMap<>(BuildPriority.class);
+  private int runningCount;
+  private int rejectedCount;
+  // interactive builds admitted from the queue since a batch build was, while batch builds wait
+  private int interactiveAdmissionsInRow;
+
+  @FunctionalInterface
+  public interface Build<T> {
+    T run() throws EngineBuildingException;
+  }
+
+  /**
+   * Slot of an admitted build. Has to be released when the build is finished.
+   */
+  public final class Slot {
+
+    private final Tenant tenant;
+    private final AtomicBoolean released = new AtomicBoolean();
+
+    private Slot(Tenant tenant) {
+      this.tenant = tenant;
+    }
+
+    public void release() {
+      if (released.compareAndSet(false, true)) {
+        lock.lock();
+        try {
+          runningCount--;
+          tenant.finished(System.nanoTime());
+          dispatch();
+        } finally {
+          lock.unlock();
+        }
+      }
+    }
+  }
+
+  /**
+   * Build not admitted yet. Lets the build be promoted while it's waiting for a slot.
+   */
+  public final class Ticket {
+
+    private final String tenantName;
+    private final BuildPriority priority;
+    // guarded by lock
+    private boolean promoted;
+    private Waiter waiter;
+
+    private Ticket(String tenantName, BuildPriority priority) {
+      this.tenantName = tenantName;
+      this.priority = priority;
+    }
+
+    /**
+     * Queues a batch build, which is waiting or is going to wait for a slot, with interactive
+     * builds. The build itself still waits without a timeout and is never rejected.
+     */
+    public void promote() {
+      lock.lock();
+      try {
+        if (priority == BuildPriority.INTERACTIVE || promoted) {
+          return;
+        }
+        promoted = true;
+        if (waiter != null && !waiter.admitted) {
+          LOGGER.info("Promoting batch build of tenant " + tenantName + " waiting for a slot");
+          rotations.get(waiter.queuedPriority).remove(waiter);
+          waiter.queuedPriority = BuildPriority.INTERACTIVE;
+          rotations.get(BuildPriority.INTERACTIVE).add(waiter);
+        }
+      } finally {
+        lock.unlock();
+      }
+    }
+
+    private BuildPriority queuedPriority() {
+      return promoted ? BuildPriority.INTERACTIVE : priority;
+    }
+  }
+
+  /**
+   * @param concurrency maximum number of builds running at the same time
+   * @param maxWaiting maximum number of interactive builds waiting for a free slot
+   * @param maxWaitingPerTenant maximum number of interactive builds of one tenant waiting for a
+   *        free slot
+   * @param waitTimeoutMs maximum time an interactive build waits for a free slot
+   * @param retryAfterSeconds time after which rejected clients are advised to retry
+   * @param tenantWeights weights of tenants in round-robin; tenants not given have weight 1
+   */
+  public BuildScheduler(int concurrency, int maxWaiting, int maxWaitingPerTenant,
+      long waitTimeoutMs, long retryAfterSeconds, Map<String, Integer> tenantWeights) {
+    this(concurrency, maxWaiting, maxWaitingPerTenant, waitTimeoutMs, retryAfterSeconds,
+        tenantWeights, DEFAULT_TENANT_IDLE_MS);
+  }
+
+  BuildScheduler(int concurrency, int maxWaiting, int maxWaitingPerTenant, long waitTimeoutMs,
+      long retryAfterSeconds, Map<String, Integer> tenantWeights, long tenantIdleMs) {
+    if (concurrency < 1) {
+      throw new IllegalArgumentException("Build concurrency must be positive: " + concurrency);
+    }
+    this.concurrency = concurrency;
+    this.maxWaiting = maxWaiting;
+    this.maxWaitingPerTenant = maxWaitingPerTenant;
+    this.waitTimeoutMs = waitTimeoutMs;
+    this.retryAfterSeconds = retryAfterSeconds;
+    tenantWeights.forEach((tenant, weight) -> this.tenantWeights.put(tenantName(tenant), weight));
+    this.tenantIdleNanos = TimeUnit.MILLISECONDS.toNanos(tenantIdleMs);
+    for (BuildPriority priority : BuildPriority.values()) {
+      rotations.put(priority, new Rotation(priority));
+    }
+  }
+
+  public static BuildScheduler unbounded() {
+    return new BuildScheduler(Integer.MAX_VALUE, Integer.MAX_VALUE, Integer.MAX_VALUE,
+        Long.MAX_VALUE, 0, Collections.emptyMap());
+  }
+
+  /**
+   * Runs a build once it's admitted.
+   * 
+   * @param tenant tenant requesting the build, e.g. URL of H2O server
+   * @param priority priority of the build
+   * @param build build to run
+   * @return result of the build
+   * @throws BuildRejectedException if the build was not admitted
+   * @throws EngineBuildingException if the build failed
+   */
+  public <T> T run(String tenant, BuildPriority priority, Build<T> build)
+      throws EngineBuildingException {
+    return run(ticket(tenant, priority), build);
+  }
+
+  /**
+   * Runs a build once it's admitted.
+   * 
+   * @param ticket ticket of the build
+   * @param build build to run
+   * @return result of the build
+   * @throws BuildRejectedException if the build was not admitted
+   * @throws EngineBuildingException if the build failed
+   */
+  public <T> T run(Ticket ticket, Build<T> build) throws EngineBuildingException {
+    Slot slot = admit(ticket);
+    try {
+      return build.run();
+    } finally {
+      slot.release();
+    }
+  }
+
+  /**
+   * @param tenant tenant requesting the build, e.g. URL of H2O server
+   * @param priority priority of the build
+   * @return ticket with which the build can be admitted
+   */
+  public Ticket ticket(String tenant, BuildPriority priority) {
+    return new Ticket(tenantName(tenant), priority);
+  }
+
+  /**
+   * Waits for a free slot for a build which finishes asynchronously. Returned slot has to be
+   * released by whoever finishes the build.
+   * 
+   * @param tenantName tenant requesting the build, e.g. URL of H2O server
+   * @param priority priority of the build
+   * @return slot of the admitted build
+   * @throws BuildRejectedException if the build was not admitted
+   * @throws EngineBuildingException if the calling thread was interrupted while waiting
+   */
+  public Slot admit(String tenantName, BuildPriority priority) throws EngineBuildingException {
+    return admit(ticket(tenantName, priority));
+  }
+
+  private Slot admit(Ticket ticket) throws EngineBuildingException {
+    lock.lock();
+    try {
+      long now = System.nanoTime();
+      evictIdleTenants(now);
+      Tenant tenant = tenants.computeIfAbsent(ticket.tenantName,
+          name -> new Tenant(name, tenantWeights.getOrDefault(name, 1)));
+      tenant.lastActiveNanos = now;
+      if (runningCount < concurrency) {
+        runningCount++;
+        tenant.admitted();
+        return new Slot(tenant);
+      }
+      if (ticket.priority == BuildPriority.INTERACTIVE) {
+        if (rotations.get(BuildPriority.INTERACTIVE).waitingCount >= maxWaiting) {
+          throw reject(tenant, "Too many scoring engine builds in progress. Try again later.");
+        }
+        if (tenant.queue(BuildPriority.INTERACTIVE).size() >= maxWaitingPerTenant) {
+          throw reject(tenant, "Too many scoring engine builds of this H2O server in progress. "
+              + "Try again later.");
+        }
+      }
+
+      Waiter waiter = new Waiter(tenant, lock.newCondition(), ticket.queuedPriority());
+      ticket.waiter = waiter;
+      rotations.get(waiter.queuedPriority).add(waiter);
+      try {
+        awaitAdmission(waiter, ticket.priority);
+      } catch (InterruptedException e) {
+        Thread.currentThread().interrupt();
+        if (waiter.admitted) {
+          runningCount--;
+          tenant.finished(System.nanoTime());
+          dispatch();
+        } else {
+          rotations.get(waiter.queuedPriority).remove(waiter);
+        }
+        throw new EngineBuildingException("Interrupted while waiting for a build slot", e);
+      } finally {
+        ticket.waiter = null;
+      }
+      if (!waiter.admitted) {
+        rotations.get(waiter.queuedPriority).remove(waiter);
+        throw reject(tenant,
+            "Timed out waiting for a scoring engine build slot. Try again later.");
+      }
+      return new Slot(tenant);
+    } finally {
+      lock.unlock();
+    }
+  }
+
+  public int getConcurrency() {
+    return concurrency;
+  }
+
+  public int getRunningCount() {
+    lock.lock();
+    try {
+      return runningCount;
+    } finally {
+      lock.unlock();
+    }
+  }
+
+  public int getWaitingCount() {
+    lock.lock();
+    try {
+      return rotations.values().stream().mapToInt(rotation -> rotation.waitingCount).sum();
+    } finally {
+      lock.unlock();
+    }
+  }
+
+  public int getRejectedCount() {
+    lock.lock();
+    try {
+      return rejectedCount;
+    } finally {
+      lock.unlock();
+    }
+  }
+
+  /**
+   * @return queue depth and wait time statistics of every tenant which requested a build and
+   *         hasn't been idle for long
+   */
+  public List<TenantStats> getTenantStats() {
+    long now = System.nanoTime();
+    lock.lock();
+    try {
+      evictIdleTenants(now);
+      return tenants.values().stream().map(tenant -> tenant.stats(now))
+          .collect(Collectors.toList());
+    } finally {
+      lock.unlock();
+    }
+  }
+
+  /**
+   * Normalizes URL of H2O server, so that different spellings of the same URL, e.g.
+   * {@code h2o:54321} and {@code http://H2O:54321/}, name the same tenant.
+   */
+  static String tenantName(String tenant) {
+    String url = tenant.trim();
+    if (!url.contains("://")) {
+      url = "http://" + url;
+    }
+    try {
+      URI uri = new URI(url);
+      if (uri.getHost() != null) {
+        String scheme = uri.getScheme().toLowerCase(Locale.ROOT);
+        int port = uri.getPort();
+        boolean defaultPort = port == 80 && "http".equals(scheme)
+            || port == 443 && "https".equals(scheme);
+        String path = uri.getPath() == null ? "" : uri.getPath();
+        return scheme + "://" + uri.getHost().toLowerCase(Locale.ROOT)
+            + (port < 0 || defaultPort ? "" : ":" + port) + path.replaceAll("/+$", "");
+      }
+    } catch (URISyntaxException e) {
+      LOGGER.debug("Tenant is not a valid URL, using it as given: " + tenant);
+    }
+    return url.toLowerCase(Locale.ROOT).replaceAll("/+$", "");
+  }
+
+  private void awaitAdmission(Waiter waiter, BuildPriority priority)
+      throws InterruptedException {
+    if (priority == BuildPriority.BATCH) {
+      while (!waiter.admitted) {
+        waiter.condition.await();
+      }
+      return;
+    }
+    long remainingNanos = TimeUnit.MILLISECONDS.toNanos(waitTimeoutMs);
+    while (!waiter.admitted && remainingNanos > 0) {
+      remainingNanos = waiter.condition.awaitNanos(remainingNanos);
+    }
+  }
+
+  private void dispatch() {
+    while (runningCount < concurrency) {
+      Waiter next = nextWaiter();
+      if (next == null) {
+        return;
+      }
+      runningCount++;
+      next.admitted = true;
+      next.tenant.admitted();
+      next.tenant.totalWaitNanos += System.nanoTime() - next.enqueuedNanos;
+      next.condition.signal();
+    }
+  }
+
+  private Waiter nextWaiter() {
+    Rotation interactive = rotations.get(BuildPriority.INTERACTIVE);
+    Rotation batch = rotations.get(BuildPriority.BATCH);
+    if (batch.waitingCount == 0) {
+      interactiveAdmissionsInRow = 0;
+      return interactive.poll();
+    }
+    if (interactive.waitingCount == 0
+        || interactiveAdmissionsInRow >= INTERACTIVE_ADMISSIONS_PER_BATCH) {
+      interactiveAdmissionsInRow = 0;
+      return batch.poll();
+    }
+    interactiveAdmissionsInRow++;
+    return interactive.poll();
+  }
+
+  private void evictIdleTenants(long now) {
+    tenants.values().removeIf(tenant -> tenant.isIdle(now, tenantIdleNanos));
+  }
+
+  private BuildRejectedException reject(Tenant tenant, String message) {
+    rejectedCount++;
+    tenant.rejectedCount++;
+    LOGGER.warn(message + " Tenant: " + tenant.name + ", running: " + runningCount
+        + ", waiting: " + getWaitingCount());
+    return new BuildRejectedException(message, retryAfterSeconds);
+  }
+
+  /**
+   * Weighted round-robin over tenants having builds of one priority waiting. Tenant at the head
+   * of the rotation is served until it runs out of credits or waiting builds.
+   */
+  private static final class Rotation {
+
+    private final BuildPriority priority;
+    private final Deque<Tenant> tenants = new ArrayDeque<>();
+    private int credits;
+    private int waitingCount;
+
+    Rotation(BuildPriority priority) {
+      this.priority = priority;
+    }
+
+    void add(Waiter waiter) {
+      Deque<Waiter> queue = waiter.tenant.queue(priority);
+      if (queue.isEmpty()) {
+        tenants.addLast(waiter.tenant);
+      }
+      queue.addLast(waiter);
+      waitingCount++;
+    }
+
+    Waiter poll() {
+      Tenant current = tenants.peekFirst();
+      if (current == null) {
+        return null;
+      }
+      if (credits == 0) {
+        credits = current.weight;
+      }
+      Deque<Waiter> queue = current.queue(priority);
+      Waiter next = queue.pollFirst();
+      waitingCount--;
+      credits--;
+      if (queue.isEmpty()) {
+        tenants.pollFirst();
+        credits = 0;
+      } else if (credits == 0) {
+        tenants.addLast(tenants.pollFirst());
+      }
+      return next;
+    }
+
+    void remove(Waiter waiter) {
+      Deque<Waiter> queue = waiter.tenant.queue(priority);
+      if (!queue.remove(waiter)) {
+        return;
+      }
+      waitingCount--;
+      if (queue.isEmpty()) {
+        if (tenants.peekFirst() == waiter.tenant) {
+          credits = 0;
+        }
+        tenants.remove(waiter.tenant);
+      }
+    }
+  }
+
+  private static final class Tenant {
+
+    private final String name;
+    private final int weight;
+    private final Map<BuildPriority, Deque<Waiter>> queues = new EnumMap<>(BuildPriority.class);
+    private int runningCount;
+    private long lastActiveNanos;
+    private long admittedCount;
+    private long rejectedCount;
+    private long totalWaitNanos;
+
+    Tenant(String name, int weight) {
+      this.name = name;
+      this.weight = Math.max(weight, 1);
+      for (BuildPriority priority : BuildPriority.values()) {
+        queues.put(priority, new ArrayDeque<>());
+      }
+    }
+
+    Deque<Waiter> queue(BuildPriority priority) {
+      return queues.get(priority);
+    }
+
+    void admitted() {
+      runningCount++;
+      admittedCount++;
+    }
+
+    void finished(long now) {
+      runningCount--;
+      lastActiveNanos = now;
+    }
+
+    boolean isIdle(long now, long idleNanos) {
+      return runningCount == 0 && queues.values().stream().allMatch(Deque::isEmpty)
+          && now - lastActiveNanos >= idleNanos;
+    }
+
+    TenantStats stats(long now) {
+      long oldestWaitNanos = queues.values().stream().map(Deque::peekFirst)
+          .filter(waiter -> waiter != null).mapToLong(waiter -> now - waiter.enqueuedNanos)
+          .max().orElse(0);
+      return new TenantStats(name, queue(BuildPriority.INTERACTIVE).size(),
+          queue(BuildPriority.BATCH).size(), TimeUnit.NANOSECONDS.toMillis(oldestWaitNanos),
+          admittedCount, rejectedCount, TimeUnit.NANOSECONDS.toMillis(totalWaitNanos));
+    }
+  }
+
+  private static final class Waiter {
+
+    private final Tenant tenant;
+    private final Condition condition;
+    private final long enqueuedNanos = System.nanoTime();
+    private BuildPriority queuedPriority;
+    private boolean admitted;
+
+    Waiter(Tenant tenant, Condition condition, BuildPriority queuedPriority) {
+      this.tenant = tenant;
+      this.condition = condition;
+      this.queuedPriority = queuedPriority;
+    }
+  }
+
+  /**
+   * Snapshot of builds of one tenant.
+   */
+  public static final class TenantStats {
+
+    private final String tenant;
+    private final int interactiveWaitingCount;
+    private final int batchWaitingCount;
+    private final long oldestWaitMs;
+    private final long admittedCount;
+    private final long rejectedCount;
+    private final long totalWaitMs;
+
+    TenantStats(String tenant, int interactiveWaitingCount, int batchWaitingCount,
+        long oldestWaitMs, long admittedCount, long rejectedCount, long totalWaitMs) {
+      this.tenant = tenant;
+      this.interactiveWaitingCount = interactiveWaitingCount;
+      this.batchWaitingCount = batchWaitingCount;
+      this.oldestWaitMs = oldestWaitMs;
+      this.admittedCount = admittedCount;
+      this.rejectedCount = rejectedCount;
+      this.totalWaitMs = totalWaitMs;
+    }
+
+    public String getTenant() {
+      return tenant;
+    }
+
+    public int getInteractiveWaitingCount() {
+      return interactiveWaitingCount;
+    }
+
+    public int getBatchWaitingCount() {
+      return batchWaitingCount;
+    }
+
+    /**
+     * @return time the longest waiting build of the tenant has been waiting so far
+     */
+    public long getOldestWaitMs() {
+      return oldestWaitMs;
+    }
+
+    public long getAdmittedCount() {
+      return admittedCount;
+    }
+
+    public long getRejectedCount() {
+      return rejectedCount;
+    }
+
+    /**
+     * @return mean time builds of the tenant waited for a slot, including builds admitted at once
+     */
+    public long getMeanWaitMs() {
+      return admittedCount == 0 ? 0 : totalWaitMs / admittedCount;
+    }
+  }
+}
@@ -0,0 +1,59 @@
+/**
+ * Copyright (c) 2016 Intel Corporation
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file except
+ * in compliance with the License. You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software distributed under the License
+ * is distributed on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express
+ * or implied. See the License for the specific language governing permissions and limitations under
+ * the License.
+ */
+package org.trustedanalytics.h2oscoringengine.publisher.builds;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+import org.springframework.boot.actuate.endpoint.PublicMetrics;
+import org.springframework.boot.actuate.metrics.Metric;
+
+/**
+ * Exposes running and waiting builds of {@link BuildScheduler}, in total and per tenant, in
+ * actuator's metrics endpoint.
+ */
+public class BuildSchedulerMetrics implements PublicMetrics {
+
+  static final String PREFIX = "builds.scheduler.";
+  static final String TENANT_PREFIX = PREFIX + "tenant.";
+
+  private final BuildScheduler buildScheduler;
+
+  public BuildSchedulerMetrics(BuildScheduler buildScheduler) {
+    this.buildScheduler = buildScheduler;
+  }
+
+  @Override
+  public Collection<Metric<?>> metrics() {
+    List<Metric<?>> metrics = new ArrayList<>();
+    metrics.add(new Metric<>(PREFIX + "running", buildScheduler.getRunningCount()));
+    metrics.add(new Metric<>(PREFIX + "waiting", buildScheduler.getWaitingCount()));
+    metrics.add(new Metric<>(PREFIX + "rejected", buildScheduler.getRejectedCount()));
+    for (BuildScheduler.TenantStats stats : buildScheduler.getTenantStats()) {
+      String prefix = TENANT_PREFIX + metricName(stats.getTenant()) + ".";
+      metrics.add(new Metric<>(prefix + "waiting.interactive", stats.getInteractiveWaitingCount()));
+      metrics.add(new Metric<>(prefix + "waiting.batch", stats.getBatchWaitingCount()));
+      metrics.add(new Metric<>(prefix + "oldestWaitMs", stats.getOldestWaitMs()));
+      metrics.add(new Metric<>(prefix + "meanWaitMs", stats.getMeanWaitMs()));
+      metrics.add(new Metric<>(prefix + "admitted", stats.getAdmittedCount()));
+      metrics.add(new Metric<>(prefix + "rejected", stats.getRejectedCount()));
+    }
+    return metrics;
+  }
+
+  // tenants are H2O server URLs, whose dots would be taken for metric name separators
+  static String metricName(String tenant) {
+    return tenant.replaceAll("[^A-Za-z0-9_-]", "_");
+  }
+}
@@ -0,0 +1,108 @@
+/**
+ * Copyright (c) 2016 Intel Corporation
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file except
+ * in compliance with the License. You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software distributed under the License
+ * is distributed on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express
+ * or implied. See the License for the specific language governing permissions and limitations under
+ * the License.
+ */
+package org.trustedanalytics.h2oscoringengine.publisher.builds;
+
+import java.nio.file.Path;
+import java.util.Optional;
+import org.trustedanalytics.h2oscoringengine.publisher.EngineBuildingException;
+
+/**
+ * State of a single scoring engine build run in background. Status is updated by a build executor
+ * thread and read by request threads polling for the result.
+ */
+public class EngineBuild {
+
+  private final String id;
+  private final String modelName;
+  private final long submittedAtMillis;
+
+  private volatile EngineBuildStatus status = EngineBuildStatus.QUEUED;
+  private volatile long finishedAtMillis;
+  private volatile Path scoringEngineJar;
+  private volatile EngineBuildingException failure;
+
+  EngineBuild(String id, String modelName) {
+    this.id = id;
+    this.modelName = modelName;
+    this.submittedAtMillis = System.currentTimeMillis();
+  }
+
+  public String getId() {
+    return id;
+  }
+
+  public String getModelName() {
+    return modelName;
+  }
+
+  public EngineBuildStatus getStatus() {
+    return status;
+  }
+
+  public long getSubmittedAtMillis() {
+    return submittedAtMillis;
+  }
+
+  public String getFailureMessage() {
+    return failure == null ? null : failure.getMessage();
+  }
+
+  /**
+   * Returns built scoring engine.
+   * 
+   * @return path to scoring engine JAR
+   * @throws EngineBuildingException if build failed
+   * @throws BuildNotFinishedException if build is still queued or running
+   */
+  public Path getScoringEngineJar() throws EngineBuildingException, BuildNotFinishedException {
+    EngineBuildStatus currentStatus = status;
+    if (currentStatus == EngineBuildStatus.FAILED) {
+      throw failure;
+    }
+    if (currentStatus != EngineBuildStatus.SUCCEEDED) {
+      throw new BuildNotFinishedException(
+          "Build " + id + " of model " + modelName + " is " + currentStatus);
+    }
+    return scoringEngineJar;
+  }
+
+  Optional<Path> getBuiltScoringEngineJar() {
+    return Optional.ofNullable(scoringEngineJar);
+  }
+
+  boolean isExpired(long nowMillis, long retentionMillis) {
+    return status.isFinished() && nowMillis - finishedAtMillis >= retentionMillis;
+  }
+
+  void started() {
+    status = EngineBuildStatus.RUNNING;
+  }
+
+  void succeeded(Path scoringEngineJar) {
+    this.scoringEngineJar = scoringEngineJar;
+    this.finishedAtMillis = System.currentTimeMillis();
+    this.status = EngineBuildStatus.SUCCEEDED;
+  }
+
+  void failed(EngineBuildingException failure) {
+    this.failure = failure;
+    this.finishedAtMillis = System.currentTimeMillis();
+    this.status = EngineBuildStatus.FAILED;
+  }
+
+  @Override
+  public String toString() {
+    return "EngineBuild [id=" + id + ", modelName=" + modelName + ", status=" + status + "]";
+  }
+}
@@ -0,0 +1,165 @@
+/**
+ * Copyright (c) 2016 Intel Corporation
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file except
+ * in compliance with the License. You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software distributed under the License
+ * is distributed on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express
+ * or implied. See the License for the specific language governing permissions and limitations under
+ * the License.
+ */
+package org.trustedanalytics.h2oscoringengine.publisher.builds;
+
+import java.nio.file.Path;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Optional;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.Executor;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Collectors;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.trustedanalytics.h2oscoringengine.publisher.EngineBuildingException;
+import org.trustedanalytics.h2oscoringengine.publisher.Publisher;
+import org.trustedanalytics.h2oscoringengine.publisher.http.BasicAuthServerCredentials;
+
+/**
+ * Runs scoring engine builds on a bounded executor and keeps track of them by build id, so that
+ * request threads don't wait for builds to finish. Scoring engines of finished builds are held
+ * until the builds are forgotten after retention time passes. Expired builds are forgotten whenever
+ * the registry is used and, once {@link #startEvicting} is called, periodically in the background.
+ */
+public class EngineBuildRegistry {
+
+  private static final Logger LOGGER = LoggerFactory.getLogger(EngineBuildRegistry.class);
+
+  private final Publisher publisher;
+  private final Executor buildExecutor;
+  private final long retentionMillis;
+  private final ConcurrentMap<String, EngineBuild> builds = new ConcurrentHashMap<>();
+
+  public EngineBuildRegistry(Publisher publisher, Executor buildExecutor, long retentionMillis) {
+    this.publisher = publisher;
+    this.buildExecutor = buildExecutor;
+    this.retentionMillis = retentionMillis;
+  }
+
+  /**
+   * Forgets expired builds periodically on a given scheduler, so that their scoring engines are
+   * released also when no requests come.
+   *
+   * @param scheduler scheduler running the eviction
+   * @param periodSeconds time between eviction runs
+   */
+  public void startEvicting(ScheduledExecutorService scheduler, long periodSeconds) {
+    scheduler.scheduleWithFixedDelay(() -> {
+      try {
+        evictExpiredBuilds();
+      } catch (RuntimeException e) {
+        LOGGER.error("Problem while forgetting expired builds, will retry in a while: ", e);
+      }
+    }, periodSeconds, periodSeconds, TimeUnit.SECONDS);
+  }
+
+  /**
+   * Schedules build of scoring engine for a given model.
+   * 
+   * @param h2oCredentials credentials of H2O server hosting the model
+   * @param modelName name of the model on H2O server
+   * @return scheduled build
+   * @throws EngineBuildingException if build executor doesn't accept more builds
+   */
+  public EngineBuild submit(BasicAuthServerCredentials h2oCredentials, String modelName)
+      throws EngineBuildingException {
+    evictExpiredBuilds();
+
+    EngineBuild build = new EngineBuild(UUID.randomUUID().toString(), modelName);
+    builds.put(build.getId(), build);
+    try {
+      buildExecutor.execute(() -> run(build, h2oCredentials));
+    } catch (RejectedExecutionException e) {
+      builds.remove(build.getId());
+      throw new EngineBuildingException(
+          "Too many scoring engine builds in progress. Try again later.", e);
+    }
+    LOGGER.info("Scheduled " + build);
+    return build;
+  }
+
+  /**
+   * Schedules builds of scoring engines for several models hosted on the same H2O server. Builds
+   * run in parallel on the build executor and share genmodel library downloaded once per H2O
+   * version. Duplicated model names are built once. A build not accepted by the build executor is
+   * reported as failed instead of failing the others.
+   * 
+   * @param h2oCredentials credentials of H2O server hosting the models
+   * @param modelNames names of the models on H2O server
+   * @return scheduled builds, in order of model names
+   */
+  public List<EngineBuild> submitAll(BasicAuthServerCredentials h2oCredentials,
+      List<String> modelNames) {
+    evictExpiredBuilds();
+
+    return new LinkedHashSet<>(modelNames).stream()
+        .map(modelName -> schedule(h2oCredentials, modelName)).collect(Collectors.toList());
+  }
+
+  public EngineBuild find(String buildId) throws UnknownBuildException {
+    evictExpiredBuilds();
+    return Optional.ofNullable(builds.get(buildId))
+        .orElseThrow(() -> new UnknownBuildException("Build " + buildId + " not found"));
+  }
+
+  int size() {
+    return builds.size();
+  }
+
+  private EngineBuild schedule(BasicAuthServerCredentials h2oCredentials, String modelName) {
+    EngineBuild build = new EngineBuild(UUID.randomUUID().toString(), modelName);
+    builds.put(build.getId(), build);
+    try {
+      buildExecutor.execute(() -> run(build, h2oCredentials));
+      LOGGER.info("Scheduled " + build);
+    } catch (RejectedExecutionException e) {
+      LOGGER.warn("Build executor rejected " + build);
+      build.failed(new EngineBuildingException(
+          "Too many scoring engine builds in progress. Try again later.", e));
+    }
+    return build;
+  }
+
+  private void run(EngineBuild build, BasicAuthServerCredentials h2oCredentials) {
+    build.started();
+    try {
+      Path scoringEngineJar =
+          publisher.getScoringEngineJar(h2oCredentials, build.getModelName(), BuildPriority.BATCH);
+      publisher.holdScoringEngineJar(scoringEngineJar);
+      build.succeeded(scoringEngineJar);
+      LOGGER.info("Finished " + build);
+    } catch (EngineBuildingException e) {
+      LOGGER.error("Problem while building scoring engine in " + build + ": ", e);
+      build.failed(e);
+    } catch (RuntimeException e) {
+      LOGGER.error("Unexpected error in " + build + ": ", e);
+      build.failed(new EngineBuildingException("Unexpected error while building scoring engine: "
+          + e.getMessage(), e));
+    }
+  }
+
+  private void evictExpiredBuilds() {
+    long now = System.currentTimeMillis();
+    builds.values().stream().filter(build -> build.isExpired(now, retentionMillis))
+        // removal succeeds for one thread only, so every scoring engine is released once
+        .filter(build -> builds.remove(build.getId(), build))
+        .forEach(build -> build.getBuiltScoringEngineJar()
+            .ifPresent(publisher::releaseHeldScoringEngineJar));
+  }
+}
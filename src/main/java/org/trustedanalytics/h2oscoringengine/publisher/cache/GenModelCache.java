@@ -0,0 +1,142 @@
+/**
+ * Copyright (c) 2016 Intel Corporation
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file except
+ * in compliance with the License. You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software distributed under the License
+ * is distributed on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express
+ * or implied. See the License for the specific language governing permissions and limitations under
+ * the License.
+ */
+package org.trustedanalytics.h2oscoringengine.publisher.cache;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import org.apache.commons.codec.digest.DigestUtils;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.trustedanalytics.h2oscoringengine.publisher.http.FilesDownloader;
+
+/**
+ * Keeps one copy of h2o-genmodel library per H2O server and its version. The library changes only
+ * together with H2O version, so it is downloaded once per version and then linked into working
+ * directories of subsequent builds. Copies are not shared between servers, as a version reported by
+ * a server can't be trusted to identify content of the library other servers would serve.
+ */
+public class GenModelCache {
+
+  private static final Logger LOGGER = LoggerFactory.getLogger(GenModelCache.class);
+
+  public static final String H2O_SERVER_CLOUD_PATH = "/3/Cloud";
+  static final String CACHED_LIB_FILE_NAME = "h2o-genmodel.jar";
+  private static final int SERVER_HASH_LENGTH = 16;
+
+  private final Path cacheDir;
+  private final ConcurrentMap<Path, Object> libLocks = new ConcurrentHashMap<>();
+
+  public GenModelCache(Path cacheDir) {
+    this.cacheDir = cacheDir;
+  }
+
+  public static GenModelCache disabled() {
+    return new GenModelCache(null);
+  }
+
+  public boolean isEnabled() {
+    return cacheDir != null;
+  }
+
+  /**
+   * Places h2o-genmodel library matching version of H2O server in a given file. Library is
+   * downloaded from the server only if it's not cached yet.
+   * 
+   * @param h2oFilesDownloader downloader connected to H2O server
+   * @param libResourcePath path of the library on H2O server
+   * @param destinationFilePath file in which library should be placed
+   * @return path to the library
+   * @throws IOException if library could not be downloaded nor copied from cache
+   */
+  public Path fetch(FilesDownloader h2oFilesDownloader, String libResourcePath,
+      Path destinationFilePath) throws IOException {
+    if (!isEnabled()) {
+      return h2oFilesDownloader.download(libResourcePath, destinationFilePath);
+    }
+
+    String h2oVersion;
+    try {
+      h2oVersion = fetchH2oVersion(h2oFilesDownloader);
+    } catch (IOException e) {
+      LOGGER.warn("Unable to check version of H2O server " + h2oFilesDownloader.getServerUrl()
+          + ". Downloading h2o-genmodel library without cache: ", e);
+      return h2oFilesDownloader.download(libResourcePath, destinationFilePath);
+    }
+
+    Path cachedLib = cachedLibPath(h2oFilesDownloader.getServerUrl(), h2oVersion);
+    if (!Files.exists(cachedLib)) {
+      synchronized (libLocks.computeIfAbsent(cachedLib, lib -> new Object())) {
+        if (!Files.exists(cachedLib)) {
+          downloadToCache(h2oFilesDownloader, libResourcePath, cachedLib);
+        }
+      }
+    } else {
+      LOGGER.info("Using cached h2o-genmodel library of " + h2oFilesDownloader.getServerUrl()
+          + " for H2O version " + h2oVersion);
+    }
+
+    return linkOrCopy(cachedLib, destinationFilePath);
+  }
+
+  private String fetchH2oVersion(FilesDownloader h2oFilesDownloader) throws IOException {
+    JsonNode cloudInfo = h2oFilesDownloader.fetchJson(H2O_SERVER_CLOUD_PATH);
+    String version = cloudInfo.at("/version").textValue();
+    if (version == null || version.isEmpty()) {
+      throw new IOException("No version in H2O cloud info: " + cloudInfo);
+    }
+    return version;
+  }
+
+  private Path cachedLibPath(String serverUrl, String h2oVersion) {
+    // hash keeps servers whose URLs differ only in unsafe characters apart
+    String normalizedUrl = serverUrl.toLowerCase().replaceAll("/+$", "");
+    String serverDirName = safeFileName(normalizedUrl) + "-"
+        + DigestUtils.sha256Hex(normalizedUrl).substring(0, SERVER_HASH_LENGTH);
+    return cacheDir.resolve(serverDirName).resolve(safeFileName(h2oVersion))
+        .resolve(CACHED_LIB_FILE_NAME);
+  }
+
+  // URL and version are used as directory names, so only safe characters are allowed
+  private static String safeFileName(String name) {
+    return name.replaceAll("[^A-Za-z0-9._-]", "_");
+  }
+
+  private void downloadToCache(FilesDownloader h2oFilesDownloader, String libResourcePath,
+      Path cachedLib) throws IOException {
+    Files.createDirectories(cachedLib.getParent());
+    Path tempFile = Files.createTempFile(cachedLib.getParent(), CACHED_LIB_FILE_NAME, ".tmp");
+    try {
+      h2oFilesDownloader.download(libResourcePath, tempFile);
+      Files.move(tempFile, cachedLib, StandardCopyOption.ATOMIC_MOVE);
+      LOGGER.info("Cached h2o-genmodel library in " + cachedLib);
+    } finally {
+      Files.deleteIfExists(tempFile);
+    }
+  }
+
+  private Path linkOrCopy(Path cachedLib, Path destinationFilePath) throws IOException {
+    Files.deleteIfExists(destinationFilePath);
+    try {
+      return Files.createLink(destinationFilePath, cachedLib);
+    } catch (IOException | UnsupportedOperationException e) {
+      LOGGER.debug("Unable to link " + cachedLib + ", copying it instead: " + e.getMessage());
+      return Files.copy(cachedLib, destinationFilePath);
+    }
+  }
+}
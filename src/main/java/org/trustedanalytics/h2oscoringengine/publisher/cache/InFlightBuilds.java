@@ -0,0 +1,240 @@
+/**
+ * Copyright (c) 2016 Intel Corporation
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file except
+ * in compliance with the License. You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software distributed under the License
+ * is distributed on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express
+ * or implied. See the License for the specific language governing permissions and limitations under
+ * the License.
+ */
+package org.trustedanalytics.h2oscoringengine.publisher.cache;
+
+import java.nio.file.Path;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.atomic.AtomicLong;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.trustedanalytics.h2oscoringengine.publisher.EngineBuildingException;
+import org.trustedanalytics.h2oscoringengine.publisher.http.BasicAuthServerCredentials;
+
+/**
+ * Coalesces concurrent builds of the same model from the same H2O server. The first request runs
+ * the build, requests coming while it's running wait for it and get the same scoring engine JAR.
+ * Builds are keyed by credentials too, so a request never gets a result it wouldn't be able to
+ * build itself. Number of requests sharing the result is reported to {@link HandOver} so that
+ * resources of the build are kept until every request is served. An urgent request joining a
+ * build which isn't urgent expedites it, so that it doesn't wait behind less urgent builds. Builds
+ * completing in background, e.g. streamed ones, are coalesced with the others the same way.
+ */
+public class InFlightBuilds {
+
+  private static final Logger LOGGER = LoggerFactory.getLogger(InFlightBuilds.class);
+
+  private final ConcurrentMap<String, InFlightBuild> builds = new ConcurrentHashMap<>();
+  private final AtomicLong coalescedCount = new AtomicLong();
+
+  @FunctionalInterface
+  public interface Build {
+    Path run() throws EngineBuildingException;
+  }
+
+  @FunctionalInterface
+  public interface AsyncBuild {
+    /**
+     * @return scoring engine JAR, completed when the build running in background finishes
+     * @throws EngineBuildingException if the build could not be started
+     */
+    CompletableFuture<Path> start() throws EngineBuildingException;
+  }
+
+  @FunctionalInterface
+  public interface HandOver {
+    /**
+     * Called by the thread finishing the build after the build succeeded, before waiting requests
+     * get the result. No more requests join the build at this point.
+     * 
+     * @param scoringEngineJar built scoring engine
+     * @param joinedRequests number of requests waiting for the build
+     */
+    void handOver(Path scoringEngineJar, int joinedRequests);
+  }
+
+  public static String key(BasicAuthServerCredentials h2oCredentials, String modelName) {
+    return h2oCredentials.getUrl() + "\n" + h2oCredentials.getBasicAuthToken() + "\n" + modelName;
+  }
+
+  public Path run(String key, Build build) throws EngineBuildingException {
+    return run(key, build, (scoringEngineJar, joinedRequests) -> {
+    });
+  }
+
+  /**
+   * Runs a build of a request which is not urgent, see
+   * {@link #run(String, boolean, Runnable, Build, HandOver)}.
+   */
+  public Path run(String key, Build build, HandOver handOver) throws EngineBuildingException {
+    return run(key, false, () -> {
+    }, build, handOver);
+  }
+
+  /**
+   * Runs a build unless a build with the same key is already running, in which case waits for
+   * its result.
+   * 
+   * @param key build key, see {@link #key(BasicAuthServerCredentials, String)}
+   * @param urgent whether the request is urgent
+   * @param expedite called, at most once, when an urgent request joins the build of a request
+   *        which is not urgent
+   * @param build build to run
+   * @param handOver called before the result is handed over to waiting requests
+   * @return path to scoring engine JAR
+   * @throws EngineBuildingException if the build, either own or awaited, failed
+   */
+  public Path run(String key, boolean urgent, Runnable expedite, Build build, HandOver handOver)
+      throws EngineBuildingException {
+    InFlightBuild ownBuild = new InFlightBuild(urgent, expedite);
+    InFlightBuild runningBuild = join(key, ownBuild);
+    if (runningBuild != ownBuild) {
+      return await(runningBuild.result);
+    }
+
+    try {
+      Path scoringEngineJar = build.run();
+      handOver.handOver(scoringEngineJar, closeForJoining(key, ownBuild));
+      ownBuild.result.complete(scoringEngineJar);
+      return scoringEngineJar;
+    } catch (EngineBuildingException | RuntimeException e) {
+      builds.remove(key, ownBuild);
+      ownBuild.result.completeExceptionally(e);
+      throw e;
+    }
+  }
+
+  /**
+   * Starts a build completing in background unless a build with the same key is already running,
+   * in which case joins it instead. Joined build may be either synchronous or started in
+   * background.
+   * 
+   * @param key build key, see {@link #key(BasicAuthServerCredentials, String)}
+   * @param urgent whether the request is urgent
+   * @param expedite called, at most once, when an urgent request joins the build of a request
+   *        which is not urgent
+   * @param build build to start, not called if another build is joined
+   * @param handOver called before the result is handed over to waiting requests
+   * @return result of own or joined build, completed after the result is handed over
+   * @throws EngineBuildingException if own build could not be started
+   */
+  public CompletableFuture<Path> start(String key, boolean urgent, Runnable expedite,
+      AsyncBuild build, HandOver handOver) throws EngineBuildingException {
+    InFlightBuild ownBuild = new InFlightBuild(urgent, expedite);
+    InFlightBuild runningBuild = join(key, ownBuild);
+    if (runningBuild != ownBuild) {
+      return runningBuild.result;
+    }
+
+    CompletableFuture<Path> startedBuild;
+    try {
+      startedBuild = build.start();
+    } catch (EngineBuildingException | RuntimeException e) {
+      builds.remove(key, ownBuild);
+      ownBuild.result.completeExceptionally(e);
+      throw e;
+    }
+    startedBuild.whenComplete((scoringEngineJar, buildError) -> {
+      if (buildError != null) {
+        builds.remove(key, ownBuild);
+        ownBuild.result.completeExceptionally(
+            buildError instanceof CompletionException ? buildError.getCause() : buildError);
+        return;
+      }
+      try {
+        handOver.handOver(scoringEngineJar, closeForJoining(key, ownBuild));
+        ownBuild.result.complete(scoringEngineJar);
+      } catch (RuntimeException e) {
+        builds.remove(key, ownBuild);
+        ownBuild.result.completeExceptionally(e);
+      }
+    });
+    return ownBuild.result;
+  }
+
+  public int getInFlightCount() {
+    return builds.size();
+  }
+
+  public long getCoalescedCount() {
+    return coalescedCount.get();
+  }
+
+  private InFlightBuild join(String key, InFlightBuild ownBuild) {
+    boolean[] expediting = {false};
+    InFlightBuild runningBuild = builds.compute(key, (k, inFlight) -> {
+      if (inFlight == null) {
+        return ownBuild;
+      }
+      inFlight.joinedRequests++;
+      if (ownBuild.urgent && !inFlight.urgent) {
+        inFlight.urgent = true;
+        expediting[0] = true;
+      }
+      return inFlight;
+    });
+    if (runningBuild != ownBuild) {
+      coalescedCount.incrementAndGet();
+      LOGGER.info("Waiting for the same build already in progress");
+      if (expediting[0]) {
+        runningBuild.expedite.run();
+      }
+    }
+    return runningBuild;
+  }
+
+  private int closeForJoining(String key, InFlightBuild ownBuild) {
+    int[] joinedRequests = {0};
+    builds.computeIfPresent(key, (k, inFlight) -> {
+      if (inFlight != ownBuild) {
+        return inFlight;
+      }
+      joinedRequests[0] = inFlight.joinedRequests;
+      return null;
+    });
+    return joinedRequests[0];
+  }
+
+  private Path await(CompletableFuture<Path> runningBuild) throws EngineBuildingException {
+    try {
+      return runningBuild.get();
+    } catch (InterruptedException e) {
+      Thread.currentThread().interrupt();
+      throw new EngineBuildingException("Interrupted while waiting for scoring engine build", e);
+    } catch (ExecutionException e) {
+      if (e.getCause() instanceof EngineBuildingException) {
+        throw (EngineBuildingException) e.getCause();
+      }
+      throw new EngineBuildingException(
+          "Unable to build scoring engine: " + e.getCause().getMessage(), e.getCause());
+    }
+  }
+
+  private static class InFlightBuild {
+
+    private final CompletableFuture<Path> result = new CompletableFuture<>();
+    private final Runnable expedite;
+    // guarded by ConcurrentHashMap.compute on the build's key
+    private int joinedRequests;
+    private boolean urgent;
+
+    InFlightBuild(boolean urgent, Runnable expedite) {
+      this.urgent = urgent;
+      this.expedite = expedite;
+    }
+  }
+}
@@ -0,0 +1,296 @@
+/**
+ * Copyright (c) 2016 Intel Corporation
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file except
+ * in compliance with the License. You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software distributed under the License
+ * is distributed on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express
+ * or implied. See the License for the specific language governing permissions and limitations under
+ * the License.
+ */
+package org.trustedanalytics.h2oscoringengine.publisher.cache;
+
+import java.io.IOException;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.attribute.FileTime;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.concurrent.atomic.AtomicLong;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Persistent, size-bounded store of built scoring engine JARs addressed by
+ * {@link ScoringEngineFingerprint} keys. Entries are evicted in least-recently-used order when
+ * total size of the cache exceeds configured limit. Last access time of an entry is kept as
+ * modification time of its file, so the order survives application restarts.
+ *
+ * <p>Entries returned by {@link #get(String)} and {@link #put(String, Path)} are pinned until
+ * {@link #release(Path)} is called for them, so that an engine is not evicted while it's being
+ * sent to a client. Cache may exceed its size limit while pinned entries keep it from evicting.
+ */
+public class ScoringEngineCache {
+
+  private static final Logger LOGGER = LoggerFactory.getLogger(ScoringEngineCache.class);
+
+  static final String ENTRY_FILE_EXTENSION = ".jar";
+  static final String TEMP_FILE_EXTENSION = ".tmp";
+
+  private final Path cacheDir;
+  private final long maxSizeBytes;
+
+  // entry key -> entry size in bytes; iteration order is access order (eldest first)
+  private final LinkedHashMap<String, Long> entries = new LinkedHashMap<>(16, 0.75f, true);
+  private long sizeBytes;
+  // entry key -> number of clients using the entry
+  private final Map<String, Integer> pins = new HashMap<>();
+
+  private final AtomicLong hits = new AtomicLong();
+  private final AtomicLong misses = new AtomicLong();
+
+  public ScoringEngineCache(Path cacheDir, long maxSizeBytes) throws IOException {
+    this.cacheDir = cacheDir;
+    this.maxSizeBytes = maxSizeBytes;
+
+    if (isEnabled()) {
+      Files.createDirectories(cacheDir);
+      loadExistingEntries();
+    }
+  }
+
+  public static ScoringEngineCache disabled() {
+    try {
+      return new ScoringEngineCache(null, 0);
+    } catch (IOException e) {
+      // disabled cache does not touch file system
+      throw new IllegalStateException(e);
+    }
+  }
+
+  public boolean isEnabled() {
+    return maxSizeBytes > 0;
+  }
+
+  /**
+   * Finds cached scoring engine. Returned entry is pinned until it's released.
+   * 
+   * @param key cache key of the engine
+   * @return path to cached engine, if present
+   */
+  public Optional<Path> get(String key) {
+    if (!isEnabled()) {
+      return Optional.empty();
+    }
+
+    Path entry = entryPath(key);
+    synchronized (this) {
+      if (entries.get(key) != null && Files.exists(entry)) {
+        touch(entry);
+        pin(key, 1);
+        hits.incrementAndGet();
+        LOGGER.info("Scoring engine cache hit: " + key);
+        return Optional.of(entry);
+      }
+      // the file is gone, so pins left by its clients must not keep a later entry from eviction
+      forget(key);
+      pins.remove(key);
+    }
+    misses.incrementAndGet();
+    LOGGER.info("Scoring engine cache miss: " + key);
+    return Optional.empty();
+  }
+
+  /**
+   * Stores copy of a given scoring engine JAR in the cache.
+   * 
+   * @param key cache key of the engine
+   * @param scoringEngineJar built scoring engine
+   * @return path to cached copy of the engine, pinned until it's released, or the given path if
+   *         the engine could not be cached
+   */
+  public Path put(String key, Path scoringEngineJar) {
+    if (!isEnabled()) {
+      return scoringEngineJar;
+    }
+
+    try {
+      long entrySize = Files.size(scoringEngineJar);
+      if (entrySize > maxSizeBytes) {
+        LOGGER.warn("Scoring engine " + scoringEngineJar + " is bigger than the whole cache ("
+            + maxSizeBytes + " bytes). Not caching it.");
+        return scoringEngineJar;
+      }
+
+      Path entry = entryPath(key);
+      Path tempFile = Files.createTempFile(cacheDir, key, TEMP_FILE_EXTENSION);
+      Files.copy(scoringEngineJar, tempFile, StandardCopyOption.REPLACE_EXISTING);
+      Files.move(tempFile, entry, StandardCopyOption.REPLACE_EXISTING,
+          StandardCopyOption.ATOMIC_MOVE);
+
+      synchronized (this) {
+        forget(key);
+        entries.put(key, entrySize);
+        sizeBytes += entrySize;
+        pin(key, 1);
+        evictExceedingEntries();
+      }
+      return entry;
+    } catch (IOException e) {
+      LOGGER.warn("Unable to put scoring engine " + scoringEngineJar + " into cache: ", e);
+      return scoringEngineJar;
+    }
+  }
+
+  /**
+   * Pins cached engine for additional clients. Does nothing if the file is not a cache entry.
+   * 
+   * @param entry cached engine
+   * @param references number of clients going to use the engine
+   */
+  public void retain(Path entry, int references) {
+    entryKey(entry).ifPresent(key -> {
+      synchronized (this) {
+        pin(key, references);
+      }
+    });
+  }
+
+  /**
+   * Unpins cached engine once a client doesn't use it anymore. Does nothing if the file is not a
+   * cache entry.
+   * 
+   * @param entry cached engine returned by {@link #get(String)} or {@link #put(String, Path)}
+   */
+  public void release(Path entry) {
+    entryKey(entry).ifPresent(key -> {
+      synchronized (this) {
+        Integer count = pins.get(key);
+        if (count == null) {
+          return;
+        }
+        if (count > 1) {
+          pins.put(key, count - 1);
+        } else {
+          pins.remove(key);
+          evictExceedingEntries();
+        }
+      }
+    });
+  }
+
+  public long getHitCount() {
+    return hits.get();
+  }
+
+  public long getMissCount() {
+    return misses.get();
+  }
+
+  public synchronized long getSizeBytes() {
+    return sizeBytes;
+  }
+
+  public synchronized int getEntryCount() {
+    return entries.size();
+  }
+
+  private Path entryPath(String key) {
+    return cacheDir.resolve(key + ENTRY_FILE_EXTENSION);
+  }
+
+  private Optional<String> entryKey(Path file) {
+    if (!isEnabled() || !cacheDir.equals(file.getParent())) {
+      return Optional.empty();
+    }
+    String fileName = file.getFileName().toString();
+    if (!fileName.endsWith(ENTRY_FILE_EXTENSION)) {
+      return Optional.empty();
+    }
+    return Optional.of(fileName.substring(0, fileName.length() - ENTRY_FILE_EXTENSION.length()));
+  }
+
+  private void pin(String key, int references) {
+    if (references > 0) {
+      pins.merge(key, references, Integer::sum);
+    }
+  }
+
+  private void loadExistingEntries() throws IOException {
+    List<Path> entryFiles = new ArrayList<>();
+    try (DirectoryStream<Path> files = Files.newDirectoryStream(cacheDir)) {
+      for (Path file : files) {
+        String fileName = file.getFileName().toString();
+        if (fileName.endsWith(TEMP_FILE_EXTENSION)) {
+          Files.deleteIfExists(file);
+        } else if (fileName.endsWith(ENTRY_FILE_EXTENSION)) {
+          entryFiles.add(file);
+        }
+      }
+    }
+
+    entryFiles.sort(Comparator.comparing(ScoringEngineCache::lastModified));
+    synchronized (this) {
+      for (Path entryFile : entryFiles) {
+        long entrySize = Files.size(entryFile);
+        entries.put(entryKey(entryFile).get(), entrySize);
+        sizeBytes += entrySize;
+      }
+      evictExceedingEntries();
+    }
+    LOGGER.info("Loaded " + entries.size() + " scoring engines (" + sizeBytes
+        + " bytes) from cache directory " + cacheDir);
+  }
+
+  private void evictExceedingEntries() {
+    Iterator<Map.Entry<String, Long>> eldestFirst = entries.entrySet().iterator();
+    while (sizeBytes > maxSizeBytes && eldestFirst.hasNext()) {
+      Map.Entry<String, Long> entry = eldestFirst.next();
+      if (pins.containsKey(entry.getKey())) {
+        continue;
+      }
+      try {
+        Files.deleteIfExists(entryPath(entry.getKey()));
+        LOGGER.info("Evicted scoring engine from cache: " + entry.getKey());
+      } catch (IOException e) {
+        LOGGER.warn("Unable to delete evicted cache entry " + entry.getKey() + ": ", e);
+      }
+      sizeBytes -= entry.getValue();
+      eldestFirst.remove();
+    }
+  }
+
+  private void forget(String key) {
+    Long entrySize = entries.remove(key);
+    if (entrySize != null) {
+      sizeBytes -= entrySize;
+    }
+  }
+
+  private static void touch(Path entry) {
+    try {
+      Files.setLastModifiedTime(entry, FileTime.fromMillis(System.currentTimeMillis()));
+    } catch (IOException e) {
+      LOGGER.warn("Unable to update access time of cache entry " + entry + ": ", e);
+    }
+  }
+
+  private static long lastModified(Path file) {
+    try {
+      return Files.getLastModifiedTime(file).toMillis();
+    } catch (IOException e) {
+      return 0;
+    }
+  }
+}
@@ -0,0 +1,41 @@
+/**
+ * Copyright (c) 2016 Intel Corporation
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file except
+ * in compliance with the License. You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software distributed under the License
+ * is distributed on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express
+ * or implied. See the License for the specific language governing permissions and limitations under
+ * the License.
+ */
+package org.trustedanalytics.h2oscoringengine.publisher.cache;
+
+import java.util.Arrays;
+import java.util.Collection;
+import org.springframework.boot.actuate.endpoint.PublicMetrics;
+import org.springframework.boot.actuate.metrics.Metric;
+
+/**
+ * Exposes hits, misses and size of {@link ScoringEngineCache} in actuator's metrics endpoint.
+ */
+public class ScoringEngineCacheMetrics implements PublicMetrics {
+
+  static final String PREFIX = "cache.scoringEngine.";
+
+  private final ScoringEngineCache scoringEngineCache;
+
+  public ScoringEngineCacheMetrics(ScoringEngineCache scoringEngineCache) {
+    this.scoringEngineCache = scoringEngineCache;
+  }
+
+  @Override
+  public Collection<Metric<?>> metrics() {
+    return Arrays.asList(new Metric<>(PREFIX + "hits", scoringEngineCache.getHitCount()),
+        new Metric<>(PREFIX + "misses", scoringEngineCache.getMissCount()),
+        new Metric<>(PREFIX + "entries", scoringEngineCache.getEntryCount()),
+        new Metric<>(PREFIX + "sizeBytes", scoringEngineCache.getSizeBytes()));
+  }
+}
@@ -0,0 +1,58 @@
+/**
+ * Copyright (c) 2016 Intel Corporation
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file except
+ * in compliance with the License. You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software distributed under the License
+ * is distributed on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express
+ * or implied. See the License for the specific language governing permissions and limitations under
+ * the License.
+ */
+package org.trustedanalytics.h2oscoringengine.publisher.cache;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import org.apache.commons.codec.digest.DigestUtils;
+import org.trustedanalytics.h2oscoringengine.publisher.compilation.LibraryHashes;
+import org.trustedanalytics.h2oscoringengine.publisher.filesystem.EngineBaseJarTemplate;
+
+/**
+ * Computes cache keys of scoring engines. A key identifies all inputs of a build: model POJO,
+ * h2o-genmodel library and engine base JAR. Hash of the library is taken from {@link LibraryHashes}
+ * so it is not computed again for every build.
+ */
+public class ScoringEngineFingerprint {
+
+  private final EngineBaseJarTemplate engineBaseJar;
+  private final LibraryHashes libraryHashes;
+
+  public ScoringEngineFingerprint(String engineBaseJarResourcePath) {
+    this(EngineBaseJarTemplate.notLoaded(engineBaseJarResourcePath));
+  }
+
+  public ScoringEngineFingerprint(EngineBaseJarTemplate engineBaseJar) {
+    this(engineBaseJar, new LibraryHashes());
+  }
+
+  public ScoringEngineFingerprint(EngineBaseJarTemplate engineBaseJar,
+      LibraryHashes libraryHashes) {
+    this.engineBaseJar = engineBaseJar;
+    this.libraryHashes = libraryHashes;
+  }
+
+  public String compute(Path modelPojoPath, Path libPath) throws IOException {
+    return DigestUtils
+        .sha256Hex(fileHash(modelPojoPath) + libraryHashes.hash(libPath) + engineBaseJar.getSha256());
+  }
+
+  private String fileHash(Path file) throws IOException {
+    try (InputStream fileStream = Files.newInputStream(file)) {
+      return DigestUtils.sha256Hex(fileStream);
+    }
+  }
+}
@@ -0,0 +1,172 @@
+/**
+ * Copyright (c) 2016 Intel Corporation
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file except
+ * in compliance with the License. You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software distributed under the License
+ * is distributed on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express
+ * or implied. See the License for the specific language governing permissions and limitations under
+ * the License.
+ */
+package org.trustedanalytics.h2oscoringengine.publisher.compilation;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.net.URI;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.stream.Collectors;
+import javax.tools.FileObject;
+import javax.tools.ForwardingJavaFileManager;
+import javax.tools.JavaFileManager;
+import javax.tools.JavaFileObject;
+import javax.tools.SimpleJavaFileObject;
+import javax.tools.StandardLocation;
+
+/**
+ * File manager which keeps class files produced by compiler in memory instead of writing them to
+ * output directory. Reading of classpath is delegated to wrapped file manager. Optionally classes
+ * compiled in memory earlier can be added to classpath, so compiler can resolve classes compiled
+ * in another task without parsing their sources again.
+ */
+public class InMemoryJavaFileManager extends ForwardingJavaFileManager<JavaFileManager> {
+
+  private final Map<String, ClassFileBuffer> classFiles = new ConcurrentHashMap<>();
+  private final Map<String, byte[]> compiledClassPath;
+
+  public InMemoryJavaFileManager(JavaFileManager fileManager) {
+    this(fileManager, Collections.emptyMap());
+  }
+
+  /**
+   * @param compiledClassPath classes added to classpath, by JAR entry name as returned by
+   *        {@link #getCompiledClasses()}
+   */
+  public InMemoryJavaFileManager(JavaFileManager fileManager,
+      Map<String, byte[]> compiledClassPath) {
+    super(fileManager);
+    this.compiledClassPath = compiledClassPath;
+  }
+
+  @Override
+  public JavaFileObject getJavaFileForOutput(Location location, String className,
+      JavaFileObject.Kind kind, FileObject sibling) {
+    ClassFileBuffer classFile = new ClassFileBuffer(className, kind);
+    classFiles.put(className, classFile);
+    return classFile;
+  }
+
+  @Override
+  public Iterable<JavaFileObject> list(Location location, String packageName,
+      Set<JavaFileObject.Kind> kinds, boolean recurse) throws IOException {
+    Iterable<JavaFileObject> listed = super.list(location, packageName, kinds, recurse);
+    if (StandardLocation.CLASS_PATH != location || compiledClassPath.isEmpty()
+        || !kinds.contains(JavaFileObject.Kind.CLASS)) {
+      return listed;
+    }
+
+    List<JavaFileObject> classes = new ArrayList<>();
+    listed.forEach(classes::add);
+    compiledClassPath.forEach((entryName, content) -> {
+      CompiledClassFile classFile = new CompiledClassFile(entryName, content);
+      if (isInPackage(classFile.getPackageName(), packageName, recurse)) {
+        classes.add(classFile);
+      }
+    });
+    return classes;
+  }
+
+  @Override
+  public String inferBinaryName(Location location, JavaFileObject file) {
+    if (file instanceof CompiledClassFile) {
+      return ((CompiledClassFile) file).className;
+    }
+    return super.inferBinaryName(location, file);
+  }
+
+  @Override
+  public boolean isSameFile(FileObject a, FileObject b) {
+    if (a instanceof InMemorySourceFile || b instanceof InMemorySourceFile
+        || a instanceof ClassFileBuffer || b instanceof ClassFileBuffer
+        || a instanceof CompiledClassFile || b instanceof CompiledClassFile) {
+      return a.toUri().equals(b.toUri());
+    }
+    return super.isSameFile(a, b);
+  }
+
+  private boolean isInPackage(String classPackage, String packageName, boolean recurse) {
+    if (classPackage.equals(packageName)) {
+      return true;
+    }
+    return recurse && (packageName.isEmpty() || classPackage.startsWith(packageName + "."));
+  }
+
+  /**
+   * @return compiled classes content by JAR entry name (e.g. <code>model$Tree_0.class</code>),
+   *         sorted by the name
+   */
+  public Map<String, byte[]> getCompiledClasses() {
+    return classFiles.values().stream().collect(Collectors.toMap(ClassFileBuffer::getEntryName,
+        ClassFileBuffer::getContent, (first, second) -> second, TreeMap::new));
+  }
+
+  private static class ClassFileBuffer extends SimpleJavaFileObject {
+
+    private final String className;
+    private final ByteArrayOutputStream content = new ByteArrayOutputStream();
+
+    ClassFileBuffer(String className, Kind kind) {
+      super(URI.create("bytes:///" + className.replace('.', '/') + kind.extension), kind);
+      this.className = className;
+    }
+
+    @Override
+    public OutputStream openOutputStream() {
+      content.reset();
+      return content;
+    }
+
+    String getEntryName() {
+      return className.replace('.', '/') + kind.extension;
+    }
+
+    byte[] getContent() {
+      return content.toByteArray();
+    }
+  }
+
+  private static class CompiledClassFile extends SimpleJavaFileObject {
+
+    private final String className;
+    private final byte[] content;
+
+    CompiledClassFile(String entryName, byte[] content) {
+      super(URI.create("bytes:///" + entryName), Kind.CLASS);
+      this.className =
+          entryName.substring(0, entryName.length() - Kind.CLASS.extension.length())
+              .replace('/', '.');
+      this.content = content;
+    }
+
+    @Override
+    public InputStream openInputStream() {
+      return new ByteArrayInputStream(content);
+    }
+
+    String getPackageName() {
+      int lastDot = className.lastIndexOf('.');
+      return lastDot < 0 ? "" : className.substring(0, lastDot);
+    }
+  }
+}
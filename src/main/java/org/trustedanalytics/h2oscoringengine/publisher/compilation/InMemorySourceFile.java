@@ -0,0 +1,55 @@
+/**
+ * Copyright (c) 2016 Intel Corporation
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file except
+ * in compliance with the License. You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software distributed under the License
+ * is distributed on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express
+ * or implied. See the License for the specific language governing permissions and limitations under
+ * the License.
+ */
+package org.trustedanalytics.h2oscoringengine.publisher.compilation;
+
+import java.net.URI;
+import java.nio.charset.StandardCharsets;
+import javax.tools.SimpleJavaFileObject;
+
+/**
+ * Java source file kept in memory. Source has to declare top level class with the same name as
+ * the file, the same way as source files on disk.
+ */
+public class InMemorySourceFile extends SimpleJavaFileObject {
+
+  private final String className;
+  private final String sourceCode;
+
+  /**
+   * @param className binary name of top level class declared in the source
+   */
+  public InMemorySourceFile(String className, String sourceCode) {
+    super(URI.create("string:///" + className.replace('.', '/') + Kind.SOURCE.extension),
+        Kind.SOURCE);
+    this.className = className;
+    this.sourceCode = sourceCode;
+  }
+
+  public InMemorySourceFile(String className, byte[] sourceCode) {
+    this(className, new String(sourceCode, StandardCharsets.UTF_8));
+  }
+
+  @Override
+  public CharSequence getCharContent(boolean ignoreEncodingErrors) {
+    return sourceCode;
+  }
+
+  public String getClassName() {
+    return className;
+  }
+
+  public int getLength() {
+    return sourceCode.length();
+  }
+}
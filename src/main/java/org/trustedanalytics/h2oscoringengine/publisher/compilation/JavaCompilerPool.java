@@ -0,0 +1,293 @@
+/**
+ * Copyright (c) 2016 Intel Corporation
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file except
+ * in compliance with the License. You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software distributed under the License
+ * is distributed on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express
+ * or implied. See the License for the specific language governing permissions and limitations under
+ * the License.
+ */
+package org.trustedanalytics.h2oscoringengine.publisher.compilation;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.util.ArrayDeque;
+import java.util.Collections;
+import java.util.Deque;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.Map;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.atomic.AtomicLong;
+import javax.tools.JavaCompiler;
+import javax.tools.StandardJavaFileManager;
+import javax.tools.StandardLocation;
+import javax.tools.ToolProvider;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Pool of warm file managers used for model compilation. File manager keeps JDK platform classes
+ * and classpath JARs opened and indexed between compilations, so only the first compilation
+ * against given h2o-genmodel library pays for it. Pooled file managers are keyed by content of the
+ * library, which is copied to pool directory to keep their classpath valid after working directory
+ * of the build is removed. Hash of the library is remembered by {@link LibraryHashes}, which is
+ * shared with cache keys of scoring engines, and the copy is removed once no file manager uses it
+ * anymore.
+ * Copies left by previous runs are removed when the pool is created.
+ *
+ * Number of file managers borrowed at the same time is limited to pool size, which also limits
+ * number of concurrent compilations.
+ */
+public class JavaCompilerPool implements Closeable {
+
+  private static final Logger LOGGER = LoggerFactory.getLogger(JavaCompilerPool.class);
+
+  private final JavaCompiler compiler = ToolProvider.getSystemJavaCompiler();
+  private final Path classpathDir;
+  private final int size;
+  private final Semaphore leases;
+  private final Deque<PooledFileManager> idleFileManagers = new ArrayDeque<>();
+  private final Map<String, Integer> copyUsers = new HashMap<>();
+  private final LibraryHashes libraryHashes = new LibraryHashes();
+
+  private final AtomicLong warmHitCount = new AtomicLong();
+  private final AtomicLong coldStartCount = new AtomicLong();
+
+  /**
+   * @param classpathDir directory for copies of libraries used as classpath of pooled file managers
+   * @param size maximum number of file managers kept and borrowed at the same time; 0 disables
+   *        pooling
+   */
+  public JavaCompilerPool(Path classpathDir, int size) {
+    this.classpathDir = classpathDir;
+    this.size = size;
+    this.leases = new Semaphore(Math.max(size, 1), true);
+    if (isEnabled()) {
+      deleteStaleCopies();
+    }
+  }
+
+  public static JavaCompilerPool unpooled() {
+    return new JavaCompilerPool(null, 0);
+  }
+
+  public boolean isEnabled() {
+    return size > 0;
+  }
+
+  public int getSize() {
+    return size;
+  }
+
+  /**
+   * Borrows compiler together with file manager which has classpath set to given library. Lease has
+   * to be closed when compilation finishes. Blocks while all pooled file managers are in use.
+   */
+  public Lease borrow(Path libPath) throws IOException, InterruptedException {
+    if (!isEnabled()) {
+      return new Lease(null, newFileManager(libPath));
+    }
+
+    leases.acquire();
+    try {
+      String libHash = libraryHashes.hash(libPath);
+      StandardJavaFileManager fileManager = takeIdle(libHash);
+      if (null == fileManager) {
+        coldStartCount.incrementAndGet();
+        LOGGER.info("Creating compiler file manager for library " + libPath);
+        fileManager = newPooledFileManager(libPath, libHash);
+      } else {
+        warmHitCount.incrementAndGet();
+      }
+      return new Lease(libHash, fileManager);
+    } catch (IOException | RuntimeException e) {
+      leases.release();
+      throw e;
+    }
+  }
+
+  public long getWarmHitCount() {
+    return warmHitCount.get();
+  }
+
+  public long getColdStartCount() {
+    return coldStartCount.get();
+  }
+
+  public long getHashComputationCount() {
+    return libraryHashes.getComputationCount();
+  }
+
+  public LibraryHashes getLibraryHashes() {
+    return libraryHashes;
+  }
+
+  public synchronized int getIdleCount() {
+    return idleFileManagers.size();
+  }
+
+  @Override
+  public synchronized void close() {
+    idleFileManagers.forEach(pooled -> closePooledFileManager(pooled));
+    idleFileManagers.clear();
+  }
+
+  private synchronized StandardJavaFileManager takeIdle(String libHash) {
+    Iterator<PooledFileManager> idle = idleFileManagers.iterator();
+    while (idle.hasNext()) {
+      PooledFileManager pooled = idle.next();
+      if (pooled.libHash.equals(libHash)) {
+        idle.remove();
+        return pooled.fileManager;
+      }
+    }
+    return null;
+  }
+
+  private void giveBack(Lease lease) {
+    if (!isEnabled()) {
+      closeFileManager(lease.fileManager);
+      return;
+    }
+
+    PooledFileManager evicted = null;
+    synchronized (this) {
+      idleFileManagers.addFirst(new PooledFileManager(lease.libHash, lease.fileManager));
+      if (idleFileManagers.size() > size) {
+        evicted = idleFileManagers.removeLast();
+      }
+    }
+    if (null != evicted) {
+      closePooledFileManager(evicted);
+    }
+    leases.release();
+  }
+
+  private StandardJavaFileManager newPooledFileManager(Path libPath, String libHash)
+      throws IOException {
+    synchronized (this) {
+      copyUsers.merge(libHash, 1, Integer::sum);
+    }
+    try {
+      return newFileManager(copyToClasspathDir(libPath, libHash));
+    } catch (IOException | RuntimeException e) {
+      releaseCopy(libHash);
+      throw e;
+    }
+  }
+
+  private void closePooledFileManager(PooledFileManager pooled) {
+    closeFileManager(pooled.fileManager);
+    releaseCopy(pooled.libHash);
+  }
+
+  private synchronized void releaseCopy(String libHash) {
+    Integer users = copyUsers.merge(libHash, -1, Integer::sum);
+    if (null != users && users > 0) {
+      return;
+    }
+    copyUsers.remove(libHash);
+    try {
+      Files.deleteIfExists(classpathDir.resolve(libHash + ".jar"));
+    } catch (IOException e) {
+      LOGGER.warn("Problem while deleting pooled library copy: ", e);
+    }
+  }
+
+  private void deleteStaleCopies() {
+    if (!Files.isDirectory(classpathDir)) {
+      return;
+    }
+    try (DirectoryStream<Path> copies = Files.newDirectoryStream(classpathDir)) {
+      for (Path copy : copies) {
+        LOGGER.info("Deleting stale pooled library copy " + copy);
+        Files.deleteIfExists(copy);
+      }
+    } catch (IOException e) {
+      LOGGER.warn("Problem while deleting stale pooled library copies: ", e);
+    }
+  }
+
+  private StandardJavaFileManager newFileManager(Path libPath) throws IOException {
+    StandardJavaFileManager fileManager = compiler.getStandardFileManager(null, null, null);
+    fileManager.setLocation(StandardLocation.CLASS_PATH,
+        Collections.singletonList(libPath.toFile()));
+    return fileManager;
+  }
+
+  private Path copyToClasspathDir(Path libPath, String libHash) throws IOException {
+    Path pooledLib = classpathDir.resolve(libHash + ".jar");
+    if (Files.exists(pooledLib)) {
+      return pooledLib;
+    }
+
+    Files.createDirectories(classpathDir);
+    Path tempFile = Files.createTempFile(classpathDir, libHash, ".tmp");
+    try {
+      Files.copy(libPath, tempFile, StandardCopyOption.REPLACE_EXISTING);
+      Files.move(tempFile, pooledLib, StandardCopyOption.ATOMIC_MOVE);
+    } finally {
+      Files.deleteIfExists(tempFile);
+    }
+    return pooledLib;
+  }
+
+  private void closeFileManager(StandardJavaFileManager fileManager) {
+    try {
+      fileManager.close();
+    } catch (IOException e) {
+      LOGGER.warn("Problem while closing compiler file manager: ", e);
+    }
+  }
+
+  private static class PooledFileManager {
+
+    private final String libHash;
+    private final StandardJavaFileManager fileManager;
+
+    PooledFileManager(String libHash, StandardJavaFileManager fileManager) {
+      this.libHash = libHash;
+      this.fileManager = fileManager;
+    }
+  }
+
+  /**
+   * Compiler and file manager borrowed from the pool. Closing the lease gives file manager back.
+   */
+  public class Lease implements AutoCloseable {
+
+    private final String libHash;
+    private final StandardJavaFileManager fileManager;
+    private boolean closed;
+
+    Lease(String libHash, StandardJavaFileManager fileManager) {
+      this.libHash = libHash;
+      this.fileManager = fileManager;
+    }
+
+    public JavaCompiler getCompiler() {
+      return compiler;
+    }
+
+    public StandardJavaFileManager getFileManager() {
+      return fileManager;
+    }
+
+    @Override
+    public void close() {
+      if (!closed) {
+        closed = true;
+        giveBack(this);
+      }
+    }
+  }
+}
@@ -0,0 +1,91 @@
+/**
+ * Copyright (c) 2016 Intel Corporation
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file except
+ * in compliance with the License. You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software distributed under the License
+ * is distributed on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express
+ * or implied. See the License for the specific language governing permissions and limitations under
+ * the License.
+ */
+package org.trustedanalytics.h2oscoringengine.publisher.compilation;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicLong;
+import org.apache.commons.codec.digest.DigestUtils;
+
+/**
+ * Remembers SHA-256 hashes of h2o-genmodel libraries. Every build gets its own link to the library
+ * kept by {@link org.trustedanalytics.h2oscoringengine.publisher.cache.GenModelCache}, so hashes
+ * are keyed by identity of the file (inode on POSIX file systems) rather than by its path. Hash is
+ * reused as long as size and modification time of the file stay the same. File systems without
+ * file identity fall back to the absolute path.
+ */
+public class LibraryHashes {
+
+  private static final int MAX_REMEMBERED_HASHES = 64;
+
+  private final Map<Object, LibraryHash> hashes =
+      new LinkedHashMap<Object, LibraryHash>(16, 0.75f, true) {
+        @Override
+        protected boolean removeEldestEntry(Map.Entry<Object, LibraryHash> eldest) {
+          return size() > MAX_REMEMBERED_HASHES;
+        }
+      };
+
+  private final AtomicLong computationCount = new AtomicLong();
+
+  public String hash(Path libPath) throws IOException {
+    BasicFileAttributes attributes = Files.readAttributes(libPath, BasicFileAttributes.class);
+    Object key = null != attributes.fileKey() ? attributes.fileKey()
+        : libPath.toAbsolutePath().normalize();
+    long size = attributes.size();
+    long lastModified = attributes.lastModifiedTime().toMillis();
+    synchronized (hashes) {
+      LibraryHash known = hashes.get(key);
+      if (null != known && known.matches(size, lastModified)) {
+        return known.hash;
+      }
+    }
+
+    computationCount.incrementAndGet();
+    String hash;
+    try (InputStream lib = Files.newInputStream(libPath)) {
+      hash = DigestUtils.sha256Hex(lib);
+    }
+    synchronized (hashes) {
+      hashes.put(key, new LibraryHash(size, lastModified, hash));
+    }
+    return hash;
+  }
+
+  public long getComputationCount() {
+    return computationCount.get();
+  }
+
+  private static class LibraryHash {
+
+    private final long size;
+    private final long lastModified;
+    private final String hash;
+
+    LibraryHash(long size, long lastModified, String hash) {
+      this.size = size;
+      this.lastModified = lastModified;
+      this.hash = hash;
+    }
+
+    boolean matches(long size, long lastModified) {
+      return this.size == size && this.lastModified == lastModified;
+    }
+  }
+}
@@ -0,0 +1,149 @@
+/**
+ * Copyright (c) 2016 Intel Corporation
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file except
+ * in compliance with the License. You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software distributed under the License
+ * is distributed on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express
+ * or implied. See the License for the specific language governing permissions and limitations under
+ * the License.
+ */
+package org.trustedanalytics.h2oscoringengine.publisher.compilation;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+/**
+ * Splits model POJO source into separate compilation units - one for each top level class. H2O
+ * generates tree ensembles as thousands of top level classes in a single file, which javac
+ * compiles as one unit. Package and import declarations are repeated in each unit. Nested classes
+ * stay within their top level class.
+ */
+public class PojoSplitter {
+
+  private static final Pattern PACKAGE_DECLARATION =
+      Pattern.compile("\\bpackage\\s+([\\w$.\\s]+?)\\s*;");
+  private static final Pattern TYPE_DECLARATION =
+      Pattern.compile("\\b(?:class|interface|enum)\\s+([A-Za-z_$][\\w$]*)");
+
+  /**
+   * @return compilation units with top level classes of the source or single unit with whole
+   *         source when it declares only one top level class or can not be split
+   */
+  public List<InMemorySourceFile> split(String className, String sourceCode) {
+    String code = maskCommentsAndLiterals(sourceCode);
+    List<int[]> typeDeclarations = findTopLevelTypeDeclarations(code);
+    if (typeDeclarations.size() < 2) {
+      return wholeSource(className, sourceCode);
+    }
+
+    int preambleEnd = typeDeclarations.get(0)[0];
+    String preamble = sourceCode.substring(0, preambleEnd);
+    String packagePrefix = packagePrefix(code.substring(0, preambleEnd));
+
+    List<InMemorySourceFile> units = new ArrayList<>(typeDeclarations.size());
+    for (int[] declaration : typeDeclarations) {
+      Matcher typeName = TYPE_DECLARATION.matcher(code.substring(declaration[0], declaration[1]));
+      if (!typeName.find()) {
+        return wholeSource(className, sourceCode);
+      }
+      units.add(new InMemorySourceFile(packagePrefix + typeName.group(1),
+          preamble + "\n" + sourceCode.substring(declaration[0], declaration[1])));
+    }
+    return units;
+  }
+
+  /**
+   * Finds ranges of top level type declarations. Declaration starts after previous declaration, or
+   * after last package or import statement in case of the first one, and ends with its closing
+   * brace.
+   */
+  private List<int[]> findTopLevelTypeDeclarations(String code) {
+    List<int[]> declarations = new ArrayList<>();
+    int depth = 0;
+    int declarationStart = 0;
+    for (int i = 0; i < code.length(); i++) {
+      char c = code.charAt(i);
+      if (c == ';' && depth == 0 && declarations.isEmpty()) {
+        declarationStart = i + 1;
+      } else if (c == '{') {
+        depth++;
+      } else if (c == '}') {
+        depth--;
+        if (depth < 0) {
+          return Collections.emptyList();
+        }
+        if (depth == 0) {
+          declarations.add(new int[] {declarationStart, i + 1});
+          declarationStart = i + 1;
+        }
+      }
+    }
+    return depth == 0 ? declarations : Collections.emptyList();
+  }
+
+  /**
+   * Replaces comments, string and character literals with spaces, so braces and keywords inside
+   * them are not taken into account. Length of the source is preserved.
+   */
+  String maskCommentsAndLiterals(String sourceCode) {
+    char[] code = sourceCode.toCharArray();
+    int i = 0;
+    while (i < code.length) {
+      char c = code[i];
+      char next = i + 1 < code.length ? code[i + 1] : 0;
+      int end;
+      if (c == '/' && next == '/') {
+        end = indexOf(sourceCode, "\n", i + 2);
+      } else if (c == '/' && next == '*') {
+        end = indexOf(sourceCode, "*/", i + 2) + 2;
+      } else if (c == '"' || c == '\'') {
+        end = endOfLiteral(code, i) + 1;
+      } else {
+        i++;
+        continue;
+      }
+      end = Math.min(end, code.length);
+      for (int j = i; j < end; j++) {
+        if (code[j] != '\n') {
+          code[j] = ' ';
+        }
+      }
+      i = end;
+    }
+    return new String(code);
+  }
+
+  private int endOfLiteral(char[] code, int start) {
+    char quote = code[start];
+    for (int i = start + 1; i < code.length; i++) {
+      if (code[i] == '\\') {
+        i++;
+      } else if (code[i] == quote || code[i] == '\n') {
+        return i;
+      }
+    }
+    return code.length;
+  }
+
+  private int indexOf(String sourceCode, String text, int from) {
+    int index = sourceCode.indexOf(text, from);
+    return index < 0 ? sourceCode.length() : index;
+  }
+
+  private String packagePrefix(String preamble) {
+    Matcher packageDeclaration = PACKAGE_DECLARATION.matcher(preamble);
+    return packageDeclaration.find()
+        ? packageDeclaration.group(1).replaceAll("\\s", "") + "." : "";
+  }
+
+  private List<InMemorySourceFile> wholeSource(String className, String sourceCode) {
+    return Collections.singletonList(new InMemorySourceFile(className, sourceCode));
+  }
+}
@@ -0,0 +1,169 @@
+/**
+ * Copyright (c) 2016 Intel Corporation
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file except
+ * in compliance with the License. You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software distributed under the License
+ * is distributed on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express
+ * or implied. See the License for the specific language governing permissions and limitations under
+ * the License.
+ */
+package org.trustedanalytics.h2oscoringengine.publisher.compilation;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.Executor;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+import java.util.stream.Collectors;
+import java.util.stream.IntStream;
+
+/**
+ * Decides whether model source is split into compilation units compiled in parallel and
+ * distributes the units between compilation groups of similar size. Only units which do not refer
+ * to other units of the model (tree classes of H2O ensembles) are compiled in parallel groups. The
+ * remaining units (the model class) are compiled afterwards against class files of the groups, so
+ * no unit is parsed and attributed more than once.
+ */
+public class SplitCompilation {
+
+  private static final Pattern IDENTIFIER = Pattern.compile("[A-Za-z_$][\\w$]*");
+
+  private final PojoSplitter splitter = new PojoSplitter();
+  private final Executor executor;
+  private final int parallelism;
+  private final long splitThreshold;
+
+  /**
+   * @param executor executor on which compilation groups are compiled
+   * @param parallelism maximum number of compilation groups
+   * @param splitThreshold minimum source length (in characters) of model which is split; 0
+   *        disables splitting
+   */
+  public SplitCompilation(Executor executor, int parallelism, long splitThreshold) {
+    this.executor = executor;
+    this.parallelism = parallelism;
+    this.splitThreshold = splitThreshold;
+  }
+
+  public static SplitCompilation disabled() {
+    return new SplitCompilation(Runnable::run, 1, 0);
+  }
+
+  public boolean isEnabled() {
+    return parallelism > 1 && splitThreshold > 0;
+  }
+
+  /**
+   * @return plan with whole source as single dependent unit when splitting is disabled, source is
+   *         smaller than threshold or no unit can be compiled independently
+   */
+  public Plan planCompilation(String className, String sourceCode) {
+    Plan wholeSource = new Plan(Collections.emptyList(),
+        Collections.singletonList(new InMemorySourceFile(className, sourceCode)));
+    if (!isEnabled() || sourceCode.length() < splitThreshold) {
+      return wholeSource;
+    }
+
+    List<InMemorySourceFile> units = splitter.split(className, sourceCode);
+    Set<String> unitNames = new HashSet<>();
+    units.forEach(unit -> unitNames.add(simpleName(unit)));
+
+    List<InMemorySourceFile> independentUnits = new ArrayList<>();
+    List<InMemorySourceFile> dependentUnits = new ArrayList<>();
+    for (InMemorySourceFile unit : units) {
+      if (refersToOtherUnit(unit, unitNames)) {
+        dependentUnits.add(unit);
+      } else {
+        independentUnits.add(unit);
+      }
+    }
+    if (independentUnits.isEmpty() || units.size() < 2) {
+      return wholeSource;
+    }
+    return new Plan(groupUnits(independentUnits), dependentUnits);
+  }
+
+  /**
+   * Identifiers are matched outside comments and literals without parsing, so a unit may be taken
+   * as dependent by mistake (e.g. local variable named as other class), which costs only
+   * parallelism.
+   */
+  private boolean refersToOtherUnit(InMemorySourceFile unit, Set<String> unitNames) {
+    String ownName = simpleName(unit);
+    Matcher identifier = IDENTIFIER
+        .matcher(splitter.maskCommentsAndLiterals(unit.getCharContent(true).toString()));
+    while (identifier.find()) {
+      String name = identifier.group();
+      if (unitNames.contains(name) && !name.equals(ownName)) {
+        return true;
+      }
+    }
+    return false;
+  }
+
+  private String simpleName(InMemorySourceFile unit) {
+    String className = unit.getClassName();
+    return className.substring(className.lastIndexOf('.') + 1);
+  }
+
+  private List<List<InMemorySourceFile>> groupUnits(List<InMemorySourceFile> units) {
+    int groupsCount = Math.min(parallelism, units.size());
+    List<List<InMemorySourceFile>> groups = IntStream.range(0, groupsCount)
+        .mapToObj(i -> new ArrayList<InMemorySourceFile>()).collect(Collectors.toList());
+    long[] groupLengths = new long[groupsCount];
+
+    units.stream()
+        .sorted(Comparator.comparingInt(InMemorySourceFile::getLength).reversed())
+        .forEach(unit -> {
+          int smallestGroup = IntStream.range(0, groupsCount)
+              .reduce((a, b) -> groupLengths[a] <= groupLengths[b] ? a : b).getAsInt();
+          groups.get(smallestGroup).add(unit);
+          groupLengths[smallestGroup] += unit.getLength();
+        });
+    return groups;
+  }
+
+  public Executor getExecutor() {
+    return executor;
+  }
+
+  /**
+   * Order of model compilation: independent groups are compiled in parallel first, then dependent
+   * units are compiled together in a single task.
+   */
+  public static class Plan {
+
+    private final List<List<InMemorySourceFile>> independentGroups;
+    private final List<InMemorySourceFile> dependentUnits;
+
+    Plan(List<List<InMemorySourceFile>> independentGroups,
+        List<InMemorySourceFile> dependentUnits) {
+      this.independentGroups = independentGroups;
+      this.dependentUnits = dependentUnits;
+    }
+
+    public boolean isSplit() {
+      return !independentGroups.isEmpty();
+    }
+
+    public List<List<InMemorySourceFile>> getIndependentGroups() {
+      return independentGroups;
+    }
+
+    public List<InMemorySourceFile> getDependentUnits() {
+      return dependentUnits;
+    }
+
+    public int getUnitsCount() {
+      return independentGroups.stream().mapToInt(List::size).sum() + dependentUnits.size();
+    }
+  }
+}
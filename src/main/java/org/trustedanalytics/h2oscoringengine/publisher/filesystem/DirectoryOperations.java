@@ -29,4 +29,11 @@ public interface DirectoryOperations {
 
   Path createSubdirectory(Path dir, String subdirectoryName) throws IOException;
 
+  /**
+   * Deletes a given directory together with all its content.
+   * @param dir directory to delete
+   * @throws IOException if an I/O error occurs
+   */
+  void deleteDirectoryTree(Path dir) throws IOException;
+
 }
@@ -0,0 +1,149 @@
+/**
+ * Copyright (c) 2016 Intel Corporation
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file except
+ * in compliance with the License. You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software distributed under the License
+ * is distributed on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express
+ * or implied. See the License for the specific language governing permissions and limitations under
+ * the License.
+ */
+package org.trustedanalytics.h2oscoringengine.publisher.filesystem;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.util.Optional;
+import java.util.zip.ZipException;
+import org.apache.commons.codec.digest.DigestUtils;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Engine base JAR extracted from classpath resource, memory mapped and indexed. Loaded template is
+ * immutable and shared read-only by all builds. Template which is not loaded extracts the resource
+ * for each build separately.
+ */
+public class EngineBaseJarTemplate {
+
+  private static final Logger LOGGER = LoggerFactory.getLogger(EngineBaseJarTemplate.class);
+  private static final String ENGINE_BASE_JAR_NAME = "scoring-engine-base.jar";
+
+  private final String resourcePath;
+  private final Path jarPath;
+  private final ZipIndex index;
+  private String sha256;
+
+  private EngineBaseJarTemplate(String resourcePath, Path jarPath, ZipIndex index,
+      String sha256) {
+    this.resourcePath = resourcePath;
+    this.jarPath = jarPath;
+    this.index = index;
+    this.sha256 = sha256;
+  }
+
+  /**
+   * Extracts engine base JAR resource to given directory, maps it to memory and reads its central
+   * directory.
+   */
+  public static EngineBaseJarTemplate load(String resourcePath, Path targetDir)
+      throws IOException {
+    Path jarPath = targetDir.resolve(ENGINE_BASE_JAR_NAME);
+    Path tempFile = Files.createTempFile(targetDir, ENGINE_BASE_JAR_NAME, ".tmp");
+    try (InputStream resource = openResource(resourcePath)) {
+      Files.copy(resource, tempFile, StandardCopyOption.REPLACE_EXISTING);
+      Files.move(tempFile, jarPath, StandardCopyOption.REPLACE_EXISTING,
+          StandardCopyOption.ATOMIC_MOVE);
+    } finally {
+      Files.deleteIfExists(tempFile);
+    }
+
+    String sha256;
+    try (InputStream jar = Files.newInputStream(jarPath)) {
+      sha256 = DigestUtils.sha256Hex(jar);
+    }
+    return new EngineBaseJarTemplate(resourcePath, jarPath, indexJar(jarPath), sha256);
+  }
+
+  public static EngineBaseJarTemplate notLoaded(String resourcePath) {
+    return new EngineBaseJarTemplate(resourcePath, null, null, null);
+  }
+
+  public boolean isLoaded() {
+    return null != jarPath;
+  }
+
+  /**
+   * @return this template if it is loaded, otherwise template loaded to given working directory
+   */
+  public EngineBaseJarTemplate loadedOrExtractedTo(Path workingDir) throws IOException {
+    return isLoaded() ? this : load(resourcePath, workingDir);
+  }
+
+  /**
+   * @return index for copying entries raw, empty when the JAR can not be copied this way
+   */
+  public Optional<ZipIndex> getIndex() {
+    return Optional.ofNullable(index);
+  }
+
+  /**
+   * @return the same template without index, so that its entries are recompressed instead of
+   *         copied raw, as when the JAR requires ZIP64
+   */
+  public EngineBaseJarTemplate withoutIndex() {
+    return new EngineBaseJarTemplate(resourcePath, jarPath, null, sha256);
+  }
+
+  public Path getJarPath() {
+    return jarPath;
+  }
+
+  public String getResourcePath() {
+    return resourcePath;
+  }
+
+  /**
+   * Engine base JAR is a classpath resource, so it can not change while application is running and
+   * its hash is computed once.
+   */
+  public synchronized String getSha256() throws IOException {
+    if (null == sha256) {
+      try (InputStream resource = openResource(resourcePath)) {
+        sha256 = DigestUtils.sha256Hex(resource);
+      }
+    }
+    return sha256;
+  }
+
+  private static InputStream openResource(String resourcePath) throws IOException {
+    InputStream resource = EngineBaseJarTemplate.class.getResourceAsStream(resourcePath);
+    if (null == resource) {
+      throw new IOException("JAR resource " + resourcePath + " not found");
+    }
+    return resource;
+  }
+
+  private static ZipIndex indexJar(Path jarPath) throws IOException {
+    try {
+      ZipIndex index = ZipIndex.map(jarPath);
+      if (index.isRawCopyable(0)) {
+        return index;
+      }
+      LOGGER.info("Engine base JAR requires ZIP64, its entries will be recompressed");
+    } catch (ZipException e) {
+      LOGGER.warn("Unable to index engine base JAR, its entries will be recompressed: ", e);
+    }
+    return null;
+  }
+
+  @Override
+  public String toString() {
+    return isLoaded() ? jarPath.toString() : resourcePath;
+  }
+}
@@ -30,7 +30,7 @@ public class FsDirectoryOperations implements DirectoryOperations {
   public Path createEmptyDirectoryTree(Path path) throws IOException {
     if (Files.exists(path)) {
       LOGGER.info("Directory " + path.toString() + " exists. Deleting all files...");
-      clearDirectory(path);
+      deleteDirectoryTree(path);
     }
     return Files.createDirectories(path);
   }
@@ -41,7 +41,8 @@ public class FsDirectoryOperations implements DirectoryOperations {
     return Files.createDirectory(subDirPath);
   }
 
-  private void clearDirectory(Path dir) throws IOException {
+  @Override
+  public void deleteDirectoryTree(Path dir) throws IOException {
     Files.walkFileTree(dir, new SimpleFileVisitor<Path>() {
 
       @Override
@@ -24,6 +24,7 @@ public class PublisherWorkingDirectory {
   static final String H2O_RESOURCES_SUBDIR_NAME = "model";
   static final String COMPILED_MODEL_SUBDIR_NAME = "classes";
 
+  private Path rootDirectory;
   private String workingDirectoryName;
   private DirectoryOperations directoryOperations;
 
@@ -34,12 +35,29 @@ public class PublisherWorkingDirectory {
 
   public PublisherWorkingDirectory(String workingDirectoryName, DirectoryOperations dirOperations)
       throws IOException {
+    this(publisherRootDirectory(), workingDirectoryName, dirOperations);
+  }
+
+  public PublisherWorkingDirectory(Path rootDirectory, String workingDirectoryName,
+      DirectoryOperations dirOperations) throws IOException {
+    this.rootDirectory = rootDirectory;
     this.workingDirectoryName = workingDirectoryName;
     this.directoryOperations = dirOperations;
 
     createDirectoryTree();
   }
 
+  /**
+   * @return directory under which all working directories of the publisher are created
+   */
+  public static Path publisherRootDirectory() {
+    return Paths.get(SYSTEM_TMP, PUBLISHER_PARENT_DIRECTORY_NAME);
+  }
+
+  public Path getPath() {
+    return rootDirectory.resolve(workingDirectoryName);
+  }
+
   public Path getCompiledModelPath() {
     return compiledModelPath;
   }
@@ -57,7 +75,7 @@ public class PublisherWorkingDirectory {
   }
   
   private void createDirectoryTree() throws IOException {
-    Path workingDir = Paths.get(SYSTEM_TMP, PUBLISHER_PARENT_DIRECTORY_NAME, workingDirectoryName);
+    Path workingDir = rootDirectory.resolve(workingDirectoryName);
     directoryOperations.createEmptyDirectoryTree(workingDir);
 
     this.h2oResourcesPath =
@@ -0,0 +1,257 @@
+/**
+ * Copyright (c) 2016 Intel Corporation
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file except
+ * in compliance with the License. You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software distributed under the License
+ * is distributed on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express
+ * or implied. See the License for the specific language governing permissions and limitations under
+ * the License.
+ */
+package org.trustedanalytics.h2oscoringengine.publisher.filesystem;
+
+import java.io.ByteArrayOutputStream;
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.channels.WritableByteChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardOpenOption;
+import java.time.LocalDateTime;
+import java.util.zip.CRC32;
+import java.util.zip.ZipException;
+
+/**
+ * JAR assembled from entries of other archives copied as they are - local headers, compressed
+ * data and CRCs are not recomputed - and from uncompressed libraries streamed in a single pass.
+ * Central directory is written when the JAR is closed.
+ *
+ * <p>JAR can be written to a file or to a stream. In the latter case libraries are read twice, as
+ * CRC written in the local header can't be updated after data is written.
+ */
+public class RawCopyingJar implements Closeable {
+
+  private static final String LIB_DIR = "lib/";
+  private static final int TRANSFER_BUFFER_SIZE = 64 * 1024;
+  private static final int LOCAL_HEADER_LENGTH = 30;
+  private static final int LOCAL_HEADER_CRC_OFFSET = 14;
+  private static final short VERSION_STORED = 10;
+  private static final short VERSION_MADE_BY = 20;
+  private static final short FLAG_UTF8_NAME = 0x0800;
+
+  private final Path jarPath;
+  private final WritableByteChannel jar;
+  private final FileChannel jarFile;
+  private long position;
+  private final ByteArrayOutputStream centralDirectory = new ByteArrayOutputStream();
+  private int entriesCount;
+  private boolean closed;
+
+  public RawCopyingJar(String fileName, Path targetDirectory) throws IOException {
+    String jarFileName = fileName.endsWith(".jar") ? fileName : fileName.concat(".jar");
+    this.jarPath = Paths.get(targetDirectory.toString(), jarFileName);
+    this.jarFile = FileChannel.open(jarPath, StandardOpenOption.CREATE,
+        StandardOpenOption.TRUNCATE_EXISTING, StandardOpenOption.WRITE);
+    this.jar = jarFile;
+  }
+
+  /**
+   * Creates JAR written to a given stream. The stream is not closed when the JAR is closed.
+   */
+  public RawCopyingJar(OutputStream output) {
+    this.jarPath = null;
+    this.jarFile = null;
+    this.jar = Channels.newChannel(output);
+  }
+
+  /**
+   * Copies all entries of indexed archive byte-for-byte.
+   */
+  public RawCopyingJar addJarContent(ZipIndex source) throws IOException {
+    for (ZipIndex.Entry entry : source.getEntries()) {
+      long localHeaderOffset = position;
+      writeFully(source.localEntryContent(entry));
+
+      ByteBuffer record =
+          ByteBuffer.wrap(entry.getCentralDirectoryRecord()).order(ByteOrder.LITTLE_ENDIAN);
+      record.putInt(ZipIndex.CENTRAL_DIRECTORY_LOCAL_HEADER_OFFSET, (int) localHeaderOffset);
+      addCentralDirectoryRecord(record.array());
+    }
+    return this;
+  }
+
+  /**
+   * Adds library as uncompressed entry in <code>lib/</code> directory. When writing to a file,
+   * library is read once - CRC is computed while data is written and then written to the local
+   * header.
+   */
+  public RawCopyingJar addUncompressedLibJar(Path libJarPath) throws IOException {
+    byte[] name = (LIB_DIR + libJarPath.getFileName().toString()).getBytes(StandardCharsets.UTF_8);
+    long size = Files.size(libJarPath);
+    long localHeaderOffset = position;
+    if (localHeaderOffset + LOCAL_HEADER_LENGTH + name.length + size >= ZipIndex.MAX_ZIP_OFFSET) {
+      throw new ZipException("Library " + libJarPath + " does not fit in JAR without ZIP64");
+    }
+    int dosDateTime = dosDateTime(LocalDateTime.now());
+
+    long crc;
+    if (jarFile != null) {
+      writeFully(localHeader(name, size, 0, dosDateTime));
+      crc = writeWithCrc(libJarPath, size);
+
+      ByteBuffer crcValue = ByteBuffer.allocate(4).order(ByteOrder.LITTLE_ENDIAN);
+      crcValue.putInt(0, (int) crc);
+      jarFile.write(crcValue, localHeaderOffset + LOCAL_HEADER_CRC_OFFSET);
+    } else {
+      crc = crcOf(libJarPath);
+      writeFully(localHeader(name, size, crc, dosDateTime));
+      if (writeWithCrc(libJarPath, size) != crc) {
+        throw new IOException("Library " + libJarPath + " changed while being added to JAR");
+      }
+    }
+
+    addCentralDirectoryRecord(
+        centralDirectoryRecord(name, size, crc, dosDateTime, localHeaderOffset));
+    return this;
+  }
+
+  public Path getJarPath() {
+    return jarPath;
+  }
+
+  @Override
+  public void close() throws IOException {
+    if (closed) {
+      return;
+    }
+    closed = true;
+    try {
+      long centralDirectoryOffset = position;
+      writeFully(ByteBuffer.wrap(centralDirectory.toByteArray()));
+      writeFully(endOfCentralDirectory(centralDirectoryOffset));
+    } finally {
+      if (jarFile != null) {
+        jarFile.close();
+      }
+    }
+  }
+
+  private long writeWithCrc(Path libJarPath, long expectedSize) throws IOException {
+    CRC32 crc = new CRC32();
+    long written = 0;
+    try (FileChannel lib = FileChannel.open(libJarPath, StandardOpenOption.READ)) {
+      ByteBuffer buffer = ByteBuffer.allocate(TRANSFER_BUFFER_SIZE);
+      while (lib.read(buffer) >= 0) {
+        buffer.flip();
+        written += buffer.remaining();
+        crc.update(buffer.array(), 0, buffer.limit());
+        writeFully(buffer);
+        buffer.clear();
+      }
+    }
+    if (written != expectedSize) {
+      throw new IOException("Library " + libJarPath + " changed while being added to JAR");
+    }
+    return crc.getValue();
+  }
+
+  private static long crcOf(Path libJarPath) throws IOException {
+    CRC32 crc = new CRC32();
+    byte[] buffer = new byte[TRANSFER_BUFFER_SIZE];
+    try (InputStream lib = Files.newInputStream(libJarPath)) {
+      int read;
+      while ((read = lib.read(buffer)) >= 0) {
+        crc.update(buffer, 0, read);
+      }
+    }
+    return crc.getValue();
+  }
+
+  private void addCentralDirectoryRecord(byte[] record) throws ZipException {
+    if (++entriesCount >= ZipIndex.MAX_ZIP_ENTRIES) {
+      throw new ZipException("Too many entries for JAR without ZIP64");
+    }
+    centralDirectory.write(record, 0, record.length);
+  }
+
+  private ByteBuffer localHeader(byte[] name, long size, long crc, int dosDateTime) {
+    ByteBuffer header =
+        ByteBuffer.allocate(LOCAL_HEADER_LENGTH + name.length).order(ByteOrder.LITTLE_ENDIAN);
+    header.putInt(ZipIndex.LOCAL_HEADER_SIGNATURE)
+        .putShort(VERSION_STORED)
+        .putShort(FLAG_UTF8_NAME)
+        .putShort((short) 0) // method: stored
+        .putInt(dosDateTime)
+        .putInt((int) crc) // zero when written after data
+        .putInt((int) size)
+        .putInt((int) size)
+        .putShort((short) name.length)
+        .putShort((short) 0) // extra field length
+        .put(name);
+    header.flip();
+    return header;
+  }
+
+  private byte[] centralDirectoryRecord(byte[] name, long size, long crc, int dosDateTime,
+      long localHeaderOffset) {
+    ByteBuffer record = ByteBuffer.allocate(46 + name.length).order(ByteOrder.LITTLE_ENDIAN);
+    record.putInt(ZipIndex.CENTRAL_DIRECTORY_SIGNATURE)
+        .putShort(VERSION_MADE_BY)
+        .putShort(VERSION_STORED)
+        .putShort(FLAG_UTF8_NAME)
+        .putShort((short) 0) // method: stored
+        .putInt(dosDateTime)
+        .putInt((int) crc)
+        .putInt((int) size)
+        .putInt((int) size)
+        .putShort((short) name.length)
+        .putShort((short) 0) // extra field length
+        .putShort((short) 0) // comment length
+        .putShort((short) 0) // disk number
+        .putShort((short) 0) // internal attributes
+        .putInt(0) // external attributes
+        .putInt((int) localHeaderOffset)
+        .put(name);
+    return record.array();
+  }
+
+  private ByteBuffer endOfCentralDirectory(long centralDirectoryOffset) {
+    ByteBuffer end = ByteBuffer.allocate(22).order(ByteOrder.LITTLE_ENDIAN);
+    end.putInt(ZipIndex.END_OF_CENTRAL_DIRECTORY_SIGNATURE)
+        .putShort((short) 0) // disk number
+        .putShort((short) 0) // disk with central directory
+        .putShort((short) entriesCount)
+        .putShort((short) entriesCount)
+        .putInt(centralDirectory.size())
+        .putInt((int) centralDirectoryOffset)
+        .putShort((short) 0); // comment length
+    end.flip();
+    return end;
+  }
+
+  /**
+   * @return MS-DOS time in lower and date in upper 16 bits, as stored in ZIP headers
+   */
+  private int dosDateTime(LocalDateTime time) {
+    int dosTime = time.getHour() << 11 | time.getMinute() << 5 | time.getSecond() >> 1;
+    int dosDate = (time.getYear() - 1980) << 9 | time.getMonthValue() << 5 | time.getDayOfMonth();
+    return dosDate << 16 | dosTime;
+  }
+
+  private void writeFully(ByteBuffer buffer) throws IOException {
+    while (buffer.hasRemaining()) {
+      position += jar.write(buffer);
+    }
+  }
+}
@@ -15,10 +15,10 @@ package org.trustedanalytics.h2oscoringengine.publisher.filesystem;
 
 import com.google.common.io.ByteStreams;
 import java.io.Closeable;
-import java.io.File;
 import java.io.FileOutputStream;
 import java.io.IOException;
 import java.io.InputStream;
+import java.io.OutputStream;
 import java.nio.file.Files;
 import java.nio.file.Path;
 import java.nio.file.Paths;
@@ -27,6 +27,7 @@ import java.util.jar.JarEntry;
 import java.util.jar.JarFile;
 import java.util.jar.JarOutputStream;
 import java.util.zip.CRC32;
+import org.apache.commons.io.output.CloseShieldOutputStream;
 
 public class UpdatableJar implements Closeable {
 
@@ -49,12 +50,22 @@ public class UpdatableJar implements Closeable {
     this.jar = new JarOutputStream(new FileOutputStream(jarPath.toFile()));
   }
 
+  /**
+   * Creates JAR written to a given stream, e.g. HTTP response. The stream is not closed when the JAR
+   * is closed.
+   */
+  public UpdatableJar(OutputStream output) throws IOException {
+    this.jarPath = null;
+    this.jar = new JarOutputStream(new CloseShieldOutputStream(output));
+  }
+
 
   public UpdatableJar addUncompressedLibJar(Path libJarPath) throws IOException {
-    JarEntry libEntry = createUncompressedJarEntry(libJarPath);
+    byte[] libJar = Files.readAllBytes(libJarPath);
+    JarEntry libEntry = createUncompressedJarEntry(libJarPath, libJar);
 
     jar.putNextEntry(libEntry);
-    jar.write(Files.readAllBytes(libJarPath));
+    jar.write(libJar);
     jar.closeEntry();
     jar.flush();
     jar.close();
@@ -69,8 +80,9 @@ public class UpdatableJar implements Closeable {
       JarEntry jarEntry = entries.nextElement();
       jar.putNextEntry(jarEntry);
 
-      InputStream inputStream = jarFile.getInputStream(jarEntry);
-      jar.write(ByteStreams.toByteArray(inputStream));
+      try (InputStream inputStream = jarFile.getInputStream(jarEntry)) {
+        ByteStreams.copy(inputStream, jar);
+      }
       jar.closeEntry();
     }
     jarFile.close();
@@ -93,21 +105,19 @@ public class UpdatableJar implements Closeable {
     jar.close();
   }
 
-  private JarEntry createUncompressedJarEntry(Path jarPath) throws IOException {
-    File jarFile = jarPath.toFile();
-
-    JarEntry uncompressedEntry = new JarEntry(LIB_DIR + jarFile.getName());
+  private JarEntry createUncompressedJarEntry(Path jarPath, byte[] jarContent) {
+    JarEntry uncompressedEntry = new JarEntry(LIB_DIR + jarPath.getFileName().toString());
     uncompressedEntry.setMethod(JarOutputStream.STORED);
-    uncompressedEntry.setSize(jarFile.length());
-    uncompressedEntry.setCrc(computeCrc32Checksum(jarFile));
+    uncompressedEntry.setSize(jarContent.length);
+    uncompressedEntry.setCrc(computeCrc32Checksum(jarContent));
 
     return uncompressedEntry;
   }
 
-  private long computeCrc32Checksum(File file) throws IOException {
+  private long computeCrc32Checksum(byte[] content) {
     CRC32 checksum = new CRC32();
     checksum.reset();
-    checksum.update(Files.readAllBytes(file.toPath()));
+    checksum.update(content);
 
     return checksum.getValue();
   }
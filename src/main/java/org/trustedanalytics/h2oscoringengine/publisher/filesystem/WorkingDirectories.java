@@ -0,0 +1,365 @@
+/**
+ * Copyright (c) 2016 Intel Corporation
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file except
+ * in compliance with the License. You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software distributed under the License
+ * is distributed on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express
+ * or implied. See the License for the specific language governing permissions and limitations under
+ * the License.
+ */
+package org.trustedanalytics.h2oscoringengine.publisher.filesystem;
+
+import java.io.IOException;
+import java.nio.file.DirectoryStream;
+import java.nio.file.FileVisitResult;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.SimpleFileVisitor;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Hands out a separate working directory to every build and reclaims it in background once the
+ * build's result is no longer needed, so that no request waits for a recursive delete.
+ *
+ * <p>A directory is referenced by its build until the build finishes and then by every request
+ * served with the scoring engine JAR it contains. Janitor deletes directories with no references,
+ * directories left by previous runs of the publisher and directories still referenced max age after
+ * their build finished, e.g. of responses never written. Directories of builds in progress are
+ * never deleted, however long the builds take. When directories take more disk space than the
+ * quota, the oldest finished directories are trimmed to the scoring engine JAR they serve, i.e.
+ * H2O resources, compiled classes and model JAR are deleted while the JAR stays available to the
+ * requests referencing it. Directories held for results kept for a long time (e.g. builds in
+ * {@link org.trustedanalytics.h2oscoringengine.publisher.builds.EngineBuildRegistry}) are exempt
+ * from max age and quota until their holds are released.
+ */
+public class WorkingDirectories {
+
+  private static final Logger LOGGER = LoggerFactory.getLogger(WorkingDirectories.class);
+
+  private final Path rootDir;
+  private final DirectoryOperations directoryOperations;
+  private final long maxAgeMillis;
+  private final long quotaBytes;
+  private final Map<Path, Workspace> workspaces = new ConcurrentHashMap<>();
+  private final AtomicLong createdCount = new AtomicLong();
+
+  public WorkingDirectories(Path rootDir, DirectoryOperations directoryOperations,
+      long maxAgeMillis, long quotaBytes) {
+    this.rootDir = rootDir;
+    this.directoryOperations = directoryOperations;
+    this.maxAgeMillis = maxAgeMillis;
+    this.quotaBytes = quotaBytes;
+  }
+
+  /**
+   * Working directories named after models, reused and cleared by subsequent builds of the same
+   * model and never reclaimed.
+   */
+  public static WorkingDirectories unmanaged() {
+    return new WorkingDirectories(null, new FsDirectoryOperations(), Long.MAX_VALUE,
+        Long.MAX_VALUE);
+  }
+
+  public boolean isManaged() {
+    return rootDir != null;
+  }
+
+  /**
+   * Runs janitor periodically on a given scheduler.
+   * 
+   * @param scheduler scheduler running the janitor
+   * @param periodSeconds time between janitor runs
+   */
+  public void startJanitor(ScheduledExecutorService scheduler, long periodSeconds) {
+    scheduler.scheduleWithFixedDelay(this::reclaim, 0, periodSeconds, TimeUnit.SECONDS);
+  }
+
+  /**
+   * Creates new working directory referenced by the build it's created for.
+   * 
+   * @param modelName name of the built model
+   * @return working directory
+   * @throws IOException if directory could not be created
+   * @throws IllegalArgumentException if model name would place directory outside root directory
+   */
+  public PublisherWorkingDirectory create(String modelName) throws IOException {
+    if (!isManaged()) {
+      return new PublisherWorkingDirectory(modelName, directoryOperations);
+    }
+
+    String directoryName = modelName + "-" + UUID.randomUUID();
+    Path dir = rootDir.resolve(directoryName);
+    if (!rootDir.equals(dir.getParent())) {
+      throw new IllegalArgumentException(
+          "Model name '" + modelName + "' would place working directory outside " + rootDir);
+    }
+    workspaces.put(dir, new Workspace(createdCount.incrementAndGet()));
+    try {
+      return new PublisherWorkingDirectory(rootDir, directoryName, directoryOperations);
+    } catch (IOException e) {
+      release(dir);
+      throw e;
+    }
+  }
+
+  /**
+   * Adds references to working directory containing a given file. Does nothing if the file is not
+   * in any working directory.
+   * 
+   * @param file file in working directory
+   * @param references number of requests going to use the file
+   */
+  public void retain(Path file, int references) {
+    findWorkspace(file).ifPresent(workspace -> workspace.retain(file, references));
+  }
+
+  /**
+   * Drops single reference to working directory containing a given file. Directory is deleted by
+   * janitor once it's not referenced anymore. Does nothing if the file is not in any working
+   * directory.
+   * 
+   * @param file file in working directory
+   */
+  public void release(Path file) {
+    findWorkspace(file).ifPresent(Workspace::release);
+  }
+
+  /**
+   * Holds working directory containing a given file, so that it's not deleted because of its age or
+   * disk quota until the hold is released. Hold doesn't count as reference. Does nothing if the
+   * file is not in any working directory.
+   * 
+   * @param file file in working directory
+   */
+  public void hold(Path file) {
+    findWorkspace(file).ifPresent(Workspace::hold);
+  }
+
+  /**
+   * Releases hold of working directory containing a given file, taken with {@link #hold(Path)}.
+   * Does nothing if the file is not in any working directory.
+   * 
+   * @param file file in working directory
+   */
+  public void releaseHold(Path file) {
+    findWorkspace(file).ifPresent(Workspace::releaseHold);
+  }
+
+  /**
+   * Single janitor run. Deletes working directories which are not needed anymore.
+   */
+  public void reclaim() {
+    if (!isManaged() || !Files.isDirectory(rootDir)) {
+      return;
+    }
+
+    try {
+      long now = System.currentTimeMillis();
+      List<Path> keptDirs = new ArrayList<>();
+      for (Path dir : listWorkingDirectories()) {
+        Workspace workspace = workspaces.get(dir);
+        if (workspace == null) {
+          delete(dir, "left by previous run");
+        } else if (workspace.isReleased()) {
+          delete(dir, "released");
+        } else if (!workspace.isHeld() && workspace.finishedLongerThan(now, maxAgeMillis)) {
+          delete(dir, "finished more than " + maxAgeMillis + " ms ago");
+        } else {
+          keptDirs.add(dir);
+        }
+      }
+      enforceQuota(keptDirs);
+    } catch (IOException | RuntimeException e) {
+      LOGGER.warn("Unable to reclaim working directories in " + rootDir + ": ", e);
+    }
+  }
+
+  int getWorkspaceCount() {
+    return workspaces.size();
+  }
+
+  private void enforceQuota(List<Path> dirs) throws IOException {
+    Map<Path, Long> finishedDirSizes = new HashMap<>();
+    long totalSize = 0;
+    for (Path dir : dirs) {
+      long dirSize = sizeOf(dir);
+      totalSize += dirSize;
+      Workspace workspace = workspaces.get(dir);
+      if (workspace.isFinished() && !workspace.isHeld()) {
+        finishedDirSizes.put(dir, dirSize);
+      }
+    }
+
+    List<Path> oldestFirst = new ArrayList<>(finishedDirSizes.keySet());
+    oldestFirst.sort(Comparator.comparingLong(dir -> workspaces.get(dir).sequenceNumber));
+    for (Path dir : oldestFirst) {
+      if (totalSize <= quotaBytes) {
+        return;
+      }
+      Workspace workspace = workspaces.get(dir);
+      if (workspace == null || !workspace.isReferenced()) {
+        delete(dir, "working directories exceed quota of " + quotaBytes + " bytes");
+        totalSize -= finishedDirSizes.get(dir);
+      } else if (null != workspace.getServedFile()) {
+        // requests are still served with the scoring engine JAR, only files used to build it go
+        totalSize -= trim(dir, workspace.getServedFile());
+      }
+    }
+  }
+
+  private long trim(Path dir, Path servedFile) throws IOException {
+    List<Path> buildFiles = new ArrayList<>();
+    try (DirectoryStream<Path> entries =
+        Files.newDirectoryStream(dir, entry -> !entry.equals(servedFile))) {
+      entries.forEach(buildFiles::add);
+    }
+    if (buildFiles.isEmpty()) {
+      return 0;
+    }
+
+    LOGGER.info("Trimming working directory " + dir + " to " + servedFile
+        + " (working directories exceed quota of " + quotaBytes + " bytes)");
+    long trimmedSize = 0;
+    for (Path file : buildFiles) {
+      long fileSize = sizeOf(file);
+      try {
+        if (Files.isDirectory(file)) {
+          directoryOperations.deleteDirectoryTree(file);
+        } else {
+          Files.deleteIfExists(file);
+        }
+        trimmedSize += fileSize;
+      } catch (IOException e) {
+        LOGGER.warn("Unable to delete " + file + " from working directory: ", e);
+      }
+    }
+    return trimmedSize;
+  }
+
+  private List<Path> listWorkingDirectories() throws IOException {
+    List<Path> dirs = new ArrayList<>();
+    try (DirectoryStream<Path> entries = Files.newDirectoryStream(rootDir,
+        entry -> Files.isDirectory(entry) && !entry.getFileName().toString().startsWith("."))) {
+      entries.forEach(dirs::add);
+    }
+    return dirs;
+  }
+
+  private void delete(Path dir, String reason) {
+    LOGGER.info("Reclaiming working directory " + dir + " (" + reason + ")");
+    workspaces.remove(dir);
+    try {
+      directoryOperations.deleteDirectoryTree(dir);
+    } catch (IOException e) {
+      LOGGER.warn("Unable to delete working directory " + dir + ": ", e);
+    }
+  }
+
+  private Optional<Workspace> findWorkspace(Path file) {
+    if (!isManaged() || !file.startsWith(rootDir) || file.equals(rootDir)) {
+      return Optional.empty();
+    }
+    Path dir = rootDir.resolve(rootDir.relativize(file).getName(0));
+    return Optional.ofNullable(workspaces.get(dir));
+  }
+
+  private static long sizeOf(Path dir) throws IOException {
+    long[] size = {0};
+    Files.walkFileTree(dir, new SimpleFileVisitor<Path>() {
+
+      @Override
+      public FileVisitResult visitFile(Path file, BasicFileAttributes attrs) {
+        size[0] += attrs.size();
+        return FileVisitResult.CONTINUE;
+      }
+
+      @Override
+      public FileVisitResult visitFileFailed(Path file, IOException exc) {
+        return FileVisitResult.CONTINUE;
+      }
+    });
+    return size[0];
+  }
+
+  private static class Workspace {
+
+    private final long sequenceNumber;
+    private Path servedFile;
+    private int references = 1;
+    private int holds;
+    private boolean finished;
+    private long finishedAtMillis;
+
+    Workspace(long sequenceNumber) {
+      this.sequenceNumber = sequenceNumber;
+    }
+
+    synchronized void retain(Path file, int count) {
+      servedFile = file;
+      references += count;
+      finish();
+    }
+
+    synchronized void release() {
+      references--;
+      finish();
+    }
+
+    synchronized void hold() {
+      holds++;
+      finish();
+    }
+
+    synchronized void releaseHold() {
+      holds--;
+    }
+
+    synchronized boolean isHeld() {
+      return holds > 0;
+    }
+
+    synchronized boolean isReleased() {
+      return references <= 0;
+    }
+
+    synchronized boolean isReferenced() {
+      return references > 0;
+    }
+
+    synchronized Path getServedFile() {
+      return servedFile;
+    }
+
+    synchronized boolean isFinished() {
+      return finished;
+    }
+
+    synchronized boolean finishedLongerThan(long now, long maxAgeMillis) {
+      return finished && now - finishedAtMillis > maxAgeMillis;
+    }
+
+    private void finish() {
+      if (!finished) {
+        finished = true;
+        finishedAtMillis = System.currentTimeMillis();
+      }
+    }
+  }
+}
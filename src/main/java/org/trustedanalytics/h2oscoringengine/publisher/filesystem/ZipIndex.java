@@ -0,0 +1,208 @@
+/**
+ * Copyright (c) 2016 Intel Corporation
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file except
+ * in compliance with the License. You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software distributed under the License
+ * is distributed on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express
+ * or implied. See the License for the specific language governing permissions and limitations under
+ * the License.
+ */
+package org.trustedanalytics.h2oscoringengine.publisher.filesystem;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.List;
+import java.util.zip.ZipException;
+
+/**
+ * Central directory index of a ZIP (JAR) file read from memory mapped file content. Allows copying
+ * entries to another archive as they are - with local headers and compressed data - without
+ * decompressing them. ZIP64 archives are indexed but can not be copied this way.
+ */
+public class ZipIndex {
+
+  static final int LOCAL_HEADER_SIGNATURE = 0x04034b50;
+  static final int CENTRAL_DIRECTORY_SIGNATURE = 0x02014b50;
+  static final int END_OF_CENTRAL_DIRECTORY_SIGNATURE = 0x06054b50;
+  static final int CENTRAL_DIRECTORY_LOCAL_HEADER_OFFSET = 42;
+  static final long MAX_ZIP_OFFSET = 0xFFFFFFFFL;
+  static final int MAX_ZIP_ENTRIES = 0xFFFF;
+
+  private static final int ZIP64_END_OF_CENTRAL_DIRECTORY_LOCATOR_SIGNATURE = 0x07064b50;
+  private static final int END_OF_CENTRAL_DIRECTORY_LENGTH = 22;
+  private static final int CENTRAL_DIRECTORY_RECORD_LENGTH = 46;
+  private static final int MAX_COMMENT_LENGTH = 0xFFFF;
+
+  private final ByteBuffer content;
+  private final List<Entry> entries;
+  private final boolean zip64;
+
+  private ZipIndex(ByteBuffer content, List<Entry> entries, boolean zip64) {
+    this.content = content;
+    this.entries = entries;
+    this.zip64 = zip64;
+  }
+
+  /**
+   * Maps given file to memory read-only and reads its central directory.
+   */
+  public static ZipIndex map(Path zipPath) throws IOException {
+    try (FileChannel zip = FileChannel.open(zipPath, StandardOpenOption.READ)) {
+      if (zip.size() > Integer.MAX_VALUE) {
+        throw new ZipException("File " + zipPath + " is too big to be mapped to memory");
+      }
+      return read(zip.map(FileChannel.MapMode.READ_ONLY, 0, zip.size()));
+    }
+  }
+
+  public static ZipIndex read(ByteBuffer zipContent) throws ZipException {
+    ByteBuffer content = zipContent.duplicate().order(ByteOrder.LITTLE_ENDIAN);
+    int endOfCentralDirectory = findEndOfCentralDirectory(content);
+
+    int entriesCount = unsignedShort(content, endOfCentralDirectory + 10);
+    long centralDirectoryOffset = unsignedInt(content, endOfCentralDirectory + 16);
+    boolean zip64 = entriesCount == MAX_ZIP_ENTRIES || centralDirectoryOffset == MAX_ZIP_OFFSET
+        || (endOfCentralDirectory >= 20 && content.getInt(endOfCentralDirectory - 20)
+            == ZIP64_END_OF_CENTRAL_DIRECTORY_LOCATOR_SIGNATURE);
+    if (zip64) {
+      return new ZipIndex(content, Collections.emptyList(), true);
+    }
+
+    List<Entry> entries = new ArrayList<>(entriesCount);
+    int position = (int) centralDirectoryOffset;
+    for (int i = 0; i < entriesCount; i++) {
+      if (position + CENTRAL_DIRECTORY_RECORD_LENGTH > content.limit()
+          || content.getInt(position) != CENTRAL_DIRECTORY_SIGNATURE) {
+        throw new ZipException("Invalid central directory record at " + position);
+      }
+      long compressedSize = unsignedInt(content, position + 20);
+      long uncompressedSize = unsignedInt(content, position + 24);
+      long localHeaderOffset =
+          unsignedInt(content, position + CENTRAL_DIRECTORY_LOCAL_HEADER_OFFSET);
+      if (compressedSize == MAX_ZIP_OFFSET || uncompressedSize == MAX_ZIP_OFFSET
+          || localHeaderOffset == MAX_ZIP_OFFSET) {
+        return new ZipIndex(content, Collections.emptyList(), true);
+      }
+      int nameLength = unsignedShort(content, position + 28);
+      int recordLength = CENTRAL_DIRECTORY_RECORD_LENGTH + nameLength
+          + unsignedShort(content, position + 30) + unsignedShort(content, position + 32);
+
+      byte[] record = new byte[recordLength];
+      ((ByteBuffer) content.duplicate().position(position)).get(record);
+      String name = new String(record, CENTRAL_DIRECTORY_RECORD_LENGTH, nameLength,
+          StandardCharsets.UTF_8);
+      entries.add(new Entry(name, localHeaderOffset, record));
+      position += recordLength;
+    }
+
+    return new ZipIndex(content, withLocalEntryLengths(content, entries, centralDirectoryOffset),
+        false);
+  }
+
+  /**
+   * Local entry spans from its local header to local header of the next entry (or central
+   * directory), which covers compressed data and optional data descriptor.
+   */
+  private static List<Entry> withLocalEntryLengths(ByteBuffer content, List<Entry> entries,
+      long centralDirectoryOffset) throws ZipException {
+    List<Entry> sortedEntries = new ArrayList<>(entries);
+    sortedEntries.sort(Comparator.comparingLong(Entry::getLocalHeaderOffset));
+    for (int i = 0; i < sortedEntries.size(); i++) {
+      Entry entry = sortedEntries.get(i);
+      if (content.getInt((int) entry.localHeaderOffset) != LOCAL_HEADER_SIGNATURE) {
+        throw new ZipException("Invalid local header of entry " + entry.name);
+      }
+      long end = i + 1 < sortedEntries.size() ? sortedEntries.get(i + 1).localHeaderOffset
+          : centralDirectoryOffset;
+      entry.localEntryLength = end - entry.localHeaderOffset;
+    }
+    return Collections.unmodifiableList(sortedEntries);
+  }
+
+  private static int findEndOfCentralDirectory(ByteBuffer content) throws ZipException {
+    int lastPossible = content.limit() - END_OF_CENTRAL_DIRECTORY_LENGTH;
+    int firstPossible = Math.max(0, lastPossible - MAX_COMMENT_LENGTH);
+    for (int position = lastPossible; position >= firstPossible; position--) {
+      if (content.getInt(position) == END_OF_CENTRAL_DIRECTORY_SIGNATURE) {
+        return position;
+      }
+    }
+    throw new ZipException("End of central directory not found");
+  }
+
+  private static int unsignedShort(ByteBuffer content, int position) {
+    return content.getShort(position) & 0xFFFF;
+  }
+
+  private static long unsignedInt(ByteBuffer content, int position) {
+    return content.getInt(position) & 0xFFFFFFFFL;
+  }
+
+  /**
+   * @return whether entries can be copied raw to an archive which also gets additional entry of
+   *         given size without need of ZIP64 extensions
+   */
+  public boolean isRawCopyable(long additionalEntrySize) {
+    return !zip64 && entries.size() < MAX_ZIP_ENTRIES
+        && content.limit() + additionalEntrySize < MAX_ZIP_OFFSET;
+  }
+
+  /**
+   * @return entries in order of their local headers in the archive
+   */
+  public List<Entry> getEntries() {
+    return entries;
+  }
+
+  /**
+   * @return read-only view of local header and data of the entry
+   */
+  ByteBuffer localEntryContent(Entry entry) {
+    ByteBuffer localEntry = content.asReadOnlyBuffer();
+    localEntry.position((int) entry.localHeaderOffset);
+    localEntry.limit((int) (entry.localHeaderOffset + entry.localEntryLength));
+    return localEntry;
+  }
+
+  public static class Entry {
+
+    private final String name;
+    private final long localHeaderOffset;
+    private final byte[] centralDirectoryRecord;
+    private long localEntryLength;
+
+    Entry(String name, long localHeaderOffset, byte[] centralDirectoryRecord) {
+      this.name = name;
+      this.localHeaderOffset = localHeaderOffset;
+      this.centralDirectoryRecord = centralDirectoryRecord;
+    }
+
+    public String getName() {
+      return name;
+    }
+
+    public long getLocalHeaderOffset() {
+      return localHeaderOffset;
+    }
+
+    public long getLocalEntryLength() {
+      return localEntryLength;
+    }
+
+    byte[] getCentralDirectoryRecord() {
+      return centralDirectoryRecord.clone();
+    }
+  }
+}
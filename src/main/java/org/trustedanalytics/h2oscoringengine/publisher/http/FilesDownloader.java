@@ -13,29 +13,43 @@
  */
 package org.trustedanalytics.h2oscoringengine.publisher.http;
 
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
 import java.io.IOException;
+import java.io.InputStream;
+import java.nio.ByteBuffer;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.channels.ReadableByteChannel;
 import java.nio.file.Files;
 import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.concurrent.atomic.AtomicLong;
 import org.apache.commons.codec.binary.Base64;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import org.springframework.http.HttpMethod;
 import org.springframework.http.HttpStatus;
-import org.springframework.http.ResponseEntity;
-import org.springframework.http.converter.ByteArrayHttpMessageConverter;
-import org.springframework.web.client.HttpClientErrorException;
+import org.springframework.web.client.HttpStatusCodeException;
+import org.springframework.web.client.RestClientException;
 import org.springframework.web.client.RestTemplate;
 
 /**
- * Downloads files from BasicAuth secured REST server.
+ * Downloads files from BasicAuth secured REST server. Response bodies are streamed to disk through
+ * a fixed-size buffer, so memory used by a download does not depend on size of the file.
  */
 public class FilesDownloader {
 
   private static final Logger LOGGER = LoggerFactory.getLogger(FilesDownloader.class);
 
+  static final int TRANSFER_BUFFER_SIZE = 16 * 1024;
+  private static final long PROGRESS_LOG_INTERVAL_BYTES = 16 * 1024 * 1024;
+
   private final String basicAuthToken;
   private final String serverUrl;
   private final RestTemplate basicAuthRestTemplate;
+  private final AtomicLong bytesDownloaded = new AtomicLong();
+  private final ObjectMapper jsonMapper = new ObjectMapper();
 
   public FilesDownloader(BasicAuthServerCredentials serverCredentials,
       RestTemplate basicAuthRestTemplate) {
@@ -44,23 +58,114 @@ public class FilesDownloader {
     this.basicAuthRestTemplate = basicAuthRestTemplate;
   }
 
+  /**
+   * Downloads resource to a given file. Nothing is left in the file if the download fails.
+   * 
+   * @param resourcePath path of the resource on the server
+   * @param destinationFilePath file to which the resource is written
+   * @return path to the file
+   * @throws IOException if the server responded with an error or the transfer failed, either
+   *         reading the response or writing the file
+   */
   public Path download(String resourcePath, Path destinationFilePath) throws IOException {
 
-    basicAuthRestTemplate.getMessageConverters().add(new ByteArrayHttpMessageConverter());
-
     String resourceUrl = serverUrl + resourcePath;
 
     LOGGER.info("Downloading " + resourceUrl);
 
+    boolean downloaded = false;
+    try {
+      Long transferredBytes = basicAuthRestTemplate.execute(resourceUrl, HttpMethod.GET,
+          HttpCommunication.basicAuthRequestCallback(basicAuthToken),
+          response -> transferToFile(response.getBody(), destinationFilePath, resourceUrl));
+      LOGGER.info("Downloaded " + transferredBytes + " bytes from " + resourceUrl);
+      downloaded = true;
+      return destinationFilePath;
+
+    } catch (HttpStatusCodeException e) {
+      throw downloadFailure(e, resourceUrl);
+    } catch (RestClientException e) {
+      // I/O errors of the transfer, including writing the file, are wrapped by RestTemplate
+      throw transferFailure(e, resourceUrl);
+    } finally {
+      if (!downloaded) {
+        deletePartialFile(destinationFilePath);
+      }
+    }
+  }
+
+  public JsonNode fetchJson(String resourcePath) throws IOException {
+
+    String resourceUrl = serverUrl + resourcePath;
+
+    LOGGER.debug("Fetching " + resourceUrl);
+
+    try {
+      return basicAuthRestTemplate.execute(resourceUrl, HttpMethod.GET,
+          HttpCommunication.basicAuthRequestCallback(basicAuthToken),
+          response -> jsonMapper.readTree(response.getBody()));
+    } catch (HttpStatusCodeException e) {
+      throw downloadFailure(e, resourceUrl);
+    } catch (RestClientException e) {
+      throw transferFailure(e, resourceUrl);
+    }
+  }
+
+  public String getServerUrl() {
+    return serverUrl;
+  }
+
+  /**
+   * @return total number of bytes downloaded by this downloader
+   */
+  public long getBytesDownloaded() {
+    return bytesDownloaded.get();
+  }
+
+  private long transferToFile(InputStream responseBody, Path destinationFilePath,
+      String resourceUrl) throws IOException {
+    ByteBuffer buffer = ByteBuffer.allocate(TRANSFER_BUFFER_SIZE);
+    long transferredBytes = 0;
+    long nextProgressLogAt = PROGRESS_LOG_INTERVAL_BYTES;
+
+    try (ReadableByteChannel source = Channels.newChannel(responseBody);
+        FileChannel destination = FileChannel.open(destinationFilePath, StandardOpenOption.CREATE,
+            StandardOpenOption.TRUNCATE_EXISTING, StandardOpenOption.WRITE)) {
+      while (source.read(buffer) != -1) {
+        buffer.flip();
+        while (buffer.hasRemaining()) {
+          int written = destination.write(buffer);
+          transferredBytes += written;
+          bytesDownloaded.addAndGet(written);
+        }
+        buffer.clear();
+
+        if (transferredBytes >= nextProgressLogAt) {
+          LOGGER.debug("Downloaded " + transferredBytes + " bytes of " + resourceUrl);
+          nextProgressLogAt += PROGRESS_LOG_INTERVAL_BYTES;
+        }
+      }
+    }
+    return transferredBytes;
+  }
+
+  private IOException downloadFailure(HttpStatusCodeException e, String resourceUrl) {
+    String errorMessage = prepareErrorMessage(e.getStatusCode(), resourceUrl);
+    LOGGER.error(errorMessage);
+    return new IOException(errorMessage, e);
+  }
+
+  private IOException transferFailure(RestClientException e, String resourceUrl) {
+    String errorMessage = "Unable to download resource " + resourceUrl + ": " + e.getMessage();
+    LOGGER.error(errorMessage);
+    return new IOException(errorMessage, e);
+  }
+
+  private static void deletePartialFile(Path destinationFilePath) {
     try {
-      ResponseEntity<byte[]> response = basicAuthRestTemplate.exchange(resourceUrl, HttpMethod.GET,
-          HttpCommunication.basicAuthRequest(basicAuthToken), byte[].class);
-      return Files.write(destinationFilePath, response.getBody());
-
-    } catch (HttpClientErrorException e) {
-      String errorMessage = prepareErrorMessage(e.getStatusCode(), resourceUrl);
-      LOGGER.error(errorMessage);
-      throw new IOException(errorMessage, e);
+      Files.deleteIfExists(destinationFilePath);
+    } catch (IOException e) {
+      LOGGER.warn("Unable to delete partially downloaded file " + destinationFilePath + ": ", e);
     }
   }
 
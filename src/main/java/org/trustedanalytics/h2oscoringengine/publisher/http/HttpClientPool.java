@@ -0,0 +1,80 @@
+/**
+ * Copyright (c) 2016 Intel Corporation
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file except
+ * in compliance with the License. You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software distributed under the License
+ * is distributed on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express
+ * or implied. See the License for the specific language governing permissions and limitations under
+ * the License.
+ */
+package org.trustedanalytics.h2oscoringengine.publisher.http;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.util.concurrent.TimeUnit;
+import org.apache.http.client.config.RequestConfig;
+import org.apache.http.conn.ConnectionKeepAliveStrategy;
+import org.apache.http.impl.client.CloseableHttpClient;
+import org.apache.http.impl.client.DefaultConnectionKeepAliveStrategy;
+import org.apache.http.impl.client.HttpClients;
+import org.apache.http.impl.conn.PoolingHttpClientConnectionManager;
+import org.apache.http.pool.PoolStats;
+import org.springframework.http.client.ClientHttpRequestFactory;
+import org.springframework.http.client.HttpComponentsClientHttpRequestFactory;
+
+/**
+ * HTTP client shared by all outbound REST calls. Connections are pooled and kept alive between
+ * requests, so that calls to the same server don't pay for TCP and TLS handshakes every time.
+ */
+public class HttpClientPool implements Closeable {
+
+  private final PoolingHttpClientConnectionManager connectionManager;
+  private final CloseableHttpClient httpClient;
+  private final HttpComponentsClientHttpRequestFactory requestFactory;
+
+  public HttpClientPool(int maxConnections, int maxConnectionsPerRoute, int connectTimeoutMs,
+      int readTimeoutMs, long keepAliveMs) {
+    this.connectionManager = new PoolingHttpClientConnectionManager();
+    connectionManager.setMaxTotal(maxConnections);
+    connectionManager.setDefaultMaxPerRoute(maxConnectionsPerRoute);
+
+    RequestConfig requestConfig = RequestConfig.custom().setConnectTimeout(connectTimeoutMs)
+        .setConnectionRequestTimeout(connectTimeoutMs).setSocketTimeout(readTimeoutMs).build();
+    this.httpClient = HttpClients.custom().setConnectionManager(connectionManager)
+        .setDefaultRequestConfig(requestConfig)
+        .setKeepAliveStrategy(keepAliveStrategy(keepAliveMs))
+        .evictExpiredConnections()
+        .evictIdleConnections(keepAliveMs, TimeUnit.MILLISECONDS)
+        .build();
+
+    this.requestFactory = new HttpComponentsClientHttpRequestFactory(httpClient);
+    // scoring engines uploaded to tap-api are streamed instead of being buffered in memory
+    requestFactory.setBufferRequestBody(false);
+  }
+
+  public ClientHttpRequestFactory requestFactory() {
+    return requestFactory;
+  }
+
+  public PoolStats getStats() {
+    return connectionManager.getTotalStats();
+  }
+
+  @Override
+  public void close() throws IOException {
+    httpClient.close();
+  }
+
+  private static ConnectionKeepAliveStrategy keepAliveStrategy(long keepAliveMs) {
+    return (response, context) -> {
+      long serverKeepAliveMs =
+          DefaultConnectionKeepAliveStrategy.INSTANCE.getKeepAliveDuration(response, context);
+      // servers not sending Keep-Alive header would otherwise hold connections forever
+      return serverKeepAliveMs > 0 ? Math.min(serverKeepAliveMs, keepAliveMs) : keepAliveMs;
+    };
+  }
+}
@@ -0,0 +1,43 @@
+/**
+ * Copyright (c) 2016 Intel Corporation
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file except
+ * in compliance with the License. You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software distributed under the License
+ * is distributed on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express
+ * or implied. See the License for the specific language governing permissions and limitations under
+ * the License.
+ */
+package org.trustedanalytics.h2oscoringengine.publisher.http;
+
+import java.util.Arrays;
+import java.util.Collection;
+import org.apache.http.pool.PoolStats;
+import org.springframework.boot.actuate.endpoint.PublicMetrics;
+import org.springframework.boot.actuate.metrics.Metric;
+
+/**
+ * Exposes usage of {@link HttpClientPool} connections in actuator's metrics endpoint.
+ */
+public class HttpClientPoolMetrics implements PublicMetrics {
+
+  static final String PREFIX = "httpclient.pool.";
+
+  private final HttpClientPool httpClientPool;
+
+  public HttpClientPoolMetrics(HttpClientPool httpClientPool) {
+    this.httpClientPool = httpClientPool;
+  }
+
+  @Override
+  public Collection<Metric<?>> metrics() {
+    PoolStats stats = httpClientPool.getStats();
+    return Arrays.asList(new Metric<>(PREFIX + "leased", stats.getLeased()),
+        new Metric<>(PREFIX + "available", stats.getAvailable()),
+        new Metric<>(PREFIX + "pending", stats.getPending()),
+        new Metric<>(PREFIX + "max", stats.getMax()));
+  }
+}
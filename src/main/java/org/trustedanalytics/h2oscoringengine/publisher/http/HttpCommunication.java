@@ -15,6 +15,7 @@ package org.trustedanalytics.h2oscoringengine.publisher.http;
 
 import org.springframework.http.HttpEntity;
 import org.springframework.http.HttpHeaders;
+import org.springframework.web.client.RequestCallback;
 
 public final class HttpCommunication {
 
@@ -30,6 +31,10 @@ public final class HttpCommunication {
     return new HttpEntity<>(headers);
   }
 
+  public static RequestCallback basicAuthRequestCallback(String basicAuthToken) {
+    return request -> request.getHeaders().add("Authorization", "Basic " + basicAuthToken);
+  }
+
   public static HttpHeaders basicAuthJsonHeaders(String basicAuthToken) {
     HttpHeaders headers = new HttpHeaders();
     headers.add(CONTENT_TYPE_HEADER_NAME, JSON_ACCEPT_HEADER_VALUE);
@@ -0,0 +1,162 @@
+/**
+ * Copyright (c) 2016 Intel Corporation
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file except
+ * in compliance with the License. You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software distributed under the License
+ * is distributed on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express
+ * or implied. See the License for the specific language governing permissions and limitations under
+ * the License.
+ */
+package org.trustedanalytics.h2oscoringengine.publisher.metrics;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.boot.actuate.metrics.GaugeService;
+
+/**
+ * Records duration of scoring engine build and publishing steps, amount of data they download and
+ * write, and number of builds in progress. Metrics are submitted with actuator's
+ * {@link GaugeService}; with Dropwizard metrics on classpath, {@code timer.} and
+ * {@code histogram.} metrics are kept as histograms with percentiles in {@code /metrics} endpoint.
+ * Duration of a failed step is recorded under step name with {@value #FAILED_SUFFIX} suffix.
+ */
+public class BuildMetrics {
+
+  private static final Logger LOGGER = LoggerFactory.getLogger(BuildMetrics.class);
+
+  public static final String DOWNLOAD = "build.download";
+  public static final String COMPILE = "build.compile";
+  public static final String PACKAGE = "build.package";
+  public static final String ASSEMBLE = "build.assemble";
+  public static final String ASSURE_OFFERING = "publish.assureOffering";
+  public static final String CREATE_INSTANCE = "publish.createInstance";
+
+  static final String TIMER_PREFIX = "timer.publisher.";
+  static final String HISTOGRAM_PREFIX = "histogram.publisher.";
+  static final String FAILED_SUFFIX = ".failed";
+  static final String BYTES_DOWNLOADED = HISTOGRAM_PREFIX + "build.bytesDownloaded";
+  static final String BYTES_WRITTEN = HISTOGRAM_PREFIX + "build.bytesWritten";
+  static final String COMPILER_DIAGNOSTICS = HISTOGRAM_PREFIX + "build.compilerDiagnostics";
+  static final String IN_FLIGHT_BUILDS = "gauge.publisher.build.inFlight";
+
+  private final GaugeService gaugeService;
+  private final AtomicInteger inFlightBuilds = new AtomicInteger();
+
+  public BuildMetrics(GaugeService gaugeService) {
+    this.gaugeService = gaugeService;
+  }
+
+  public static BuildMetrics disabled() {
+    return new BuildMetrics((metricName, value) -> {
+    });
+  }
+
+  @FunctionalInterface
+  public interface Step<T, E extends Exception> {
+    T run() throws E;
+  }
+
+  @FunctionalInterface
+  public interface Action<E extends Exception> {
+    void run() throws E;
+  }
+
+  public <T, E extends Exception> T time(String stepName, Step<T, E> step) throws E {
+    long startNanos = System.nanoTime();
+    boolean succeeded = false;
+    try {
+      T result = step.run();
+      succeeded = true;
+      return result;
+    } finally {
+      submitDuration(stepName, startNanos, succeeded);
+    }
+  }
+
+  public <E extends Exception> void timeAction(String stepName, Action<E> action) throws E {
+    time(stepName, () -> {
+      action.run();
+      return null;
+    });
+  }
+
+  /**
+   * Times a step finished asynchronously, from its start until completion of returned future.
+   */
+  public <T, E extends Exception> CompletableFuture<T> timeAsync(String stepName,
+      Step<CompletableFuture<T>, E> step) throws E {
+    long startNanos = System.nanoTime();
+    boolean started = false;
+    try {
+      CompletableFuture<T> result = step.run().whenComplete(
+          (value, failure) -> submitDuration(stepName, startNanos, failure == null));
+      started = true;
+      return result;
+    } finally {
+      if (!started) {
+        submitDuration(stepName, startNanos, false);
+      }
+    }
+  }
+
+  public void buildStarted() {
+    gaugeService.submit(IN_FLIGHT_BUILDS, inFlightBuilds.incrementAndGet());
+  }
+
+  public void buildFinished() {
+    gaugeService.submit(IN_FLIGHT_BUILDS, inFlightBuilds.decrementAndGet());
+  }
+
+  public void recordBytesDownloaded(long bytes) {
+    gaugeService.submit(BYTES_DOWNLOADED, bytes);
+  }
+
+  public void recordBytesWritten(Path... files) {
+    recordBytesWritten(0, files);
+  }
+
+  /**
+   * Records bytes written by a build that streamed part of its output instead of writing files.
+   * 
+   * @param streamedBytes number of bytes written to the stream
+   * @param files files written by the build
+   */
+  public void recordBytesWritten(long streamedBytes, Path... files) {
+    long bytes = streamedBytes;
+    for (Path file : files) {
+      try {
+        bytes += Files.size(file);
+      } catch (IOException e) {
+        LOGGER.debug("Unable to read size of " + file + ": ", e);
+      }
+    }
+    gaugeService.submit(BYTES_WRITTEN, bytes);
+  }
+
+  public void recordCompilerDiagnostics(int diagnosticsCount) {
+    gaugeService.submit(COMPILER_DIAGNOSTICS, diagnosticsCount);
+  }
+
+  /**
+   * Records duration of a step measured by the caller, e.g. one interleaved with waiting for other
+   * steps, which is not a part of it.
+   */
+  public void recordDuration(String stepName, long durationNanos, boolean succeeded) {
+    gaugeService.submit(TIMER_PREFIX + stepName + (succeeded ? "" : FAILED_SUFFIX),
+        TimeUnit.NANOSECONDS.toMillis(durationNanos));
+  }
+
+  private void submitDuration(String stepName, long startNanos, boolean succeeded) {
+    recordDuration(stepName, System.nanoTime() - startNanos, succeeded);
+  }
+}
@@ -13,8 +13,10 @@
  */
 package org.trustedanalytics.h2oscoringengine.publisher.modelcatalog;
 
+import org.springframework.http.client.ClientHttpRequestFactory;
 import org.springframework.security.oauth2.client.OAuth2RestTemplate;
 import org.springframework.security.oauth2.client.resource.OAuth2ProtectedResourceDetails;
+import org.springframework.security.oauth2.client.token.grant.client.ClientCredentialsAccessTokenProvider;
 import org.trustedanalytics.modelcatalog.rest.client.http.OAuthTokenProvider;
 
 public class OAuth2TokenProvider implements OAuthTokenProvider {
@@ -25,6 +27,14 @@ public class OAuth2TokenProvider implements OAuthTokenProvider {
     this.oAuth2RestTemplate = new OAuth2RestTemplate(clientCredentials);
   }
 
+  public OAuth2TokenProvider(OAuth2ProtectedResourceDetails clientCredentials,
+      ClientHttpRequestFactory requestFactory) {
+    this(clientCredentials);
+    ClientCredentialsAccessTokenProvider tokenProvider = new ClientCredentialsAccessTokenProvider();
+    tokenProvider.setRequestFactory(requestFactory);
+    oAuth2RestTemplate.setAccessTokenProvider(tokenProvider);
+  }
+
   @Override
   public String provideToken() {
     return oAuth2RestTemplate.getAccessToken().getValue();
@@ -0,0 +1,63 @@
+/**
+ * Copyright (c) 2016 Intel Corporation
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file except
+ * in compliance with the License. You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software distributed under the License
+ * is distributed on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express
+ * or implied. See the License for the specific language governing permissions and limitations under
+ * the License.
+ */
+package org.trustedanalytics.h2oscoringengine.publisher.restapi;
+
+import io.swagger.annotations.Api;
+import io.swagger.annotations.ApiOperation;
+import io.swagger.annotations.ApiResponse;
+import io.swagger.annotations.ApiResponses;
+import java.util.List;
+import javax.validation.Valid;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.web.bind.annotation.RequestBody;
+import org.springframework.web.bind.annotation.RequestMapping;
+import org.springframework.web.bind.annotation.RequestMethod;
+import org.springframework.web.bind.annotation.RestController;
+import org.springframework.web.context.request.async.DeferredResult;
+import org.trustedanalytics.h2oscoringengine.publisher.batch.BatchPublisher;
+
+@Api
+@RestController
+public class BatchController {
+
+  private static final Logger LOGGER = LoggerFactory.getLogger(BatchController.class);
+  public static final String PUBLISH_ENGINES_URL =
+      PublisherController.PUBLISH_ENGINE_URL + "/batch";
+
+  private final BatchPublisher batchPublisher;
+
+  @Autowired
+  public BatchController(BatchPublisher batchPublisher) {
+    this.batchPublisher = batchPublisher;
+  }
+
+  @ApiOperation(value = "Publishes given h2o artifact files as scoring-engine instances.",
+      notes = "Scoring engines are published in parallel. Result of every one of them is returned "
+          + "in order of the request.")
+  @ApiResponses(value = {
+      @ApiResponse(code = 200, message = "OK", response = PublishingResult.class,
+          responseContainer = "List"),
+      @ApiResponse(code = 400, message = "Request was malformed")})
+  @RequestMapping(method = RequestMethod.POST, consumes = "application/json",
+      produces = "application/json", value = PUBLISH_ENGINES_URL)
+  public DeferredResult<List<PublishingResult>> publishEngines(
+      @Valid @RequestBody BatchPublishRequest request) {
+    LOGGER.info("Got batch publish request of " + request.getEngines().size() + " engines");
+    DeferredResult<List<PublishingResult>> result = new DeferredResult<>();
+    batchPublisher.publish(request.getEngines()).thenAccept(result::setResult);
+    return result;
+  }
+}
@@ -0,0 +1,43 @@
+/**
+ * Copyright (c) 2016 Intel Corporation
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file except
+ * in compliance with the License. You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software distributed under the License
+ * is distributed on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express
+ * or implied. See the License for the specific language governing permissions and limitations under
+ * the License.
+ */
+package org.trustedanalytics.h2oscoringengine.publisher.restapi;
+
+import lombok.AllArgsConstructor;
+import lombok.Getter;
+import lombok.NoArgsConstructor;
+import lombok.Setter;
+import lombok.ToString;
+import org.trustedanalytics.h2oscoringengine.publisher.builds.EngineBuild;
+import org.trustedanalytics.h2oscoringengine.publisher.builds.EngineBuildStatus;
+
+@Getter
+@Setter
+@ToString
+@AllArgsConstructor
+@NoArgsConstructor
+public class EngineBuildInfo {
+
+  private String buildId;
+
+  private String modelName;
+
+  private EngineBuildStatus status;
+
+  private String message;
+
+  public static EngineBuildInfo of(EngineBuild build) {
+    return new EngineBuildInfo(build.getId(), build.getModelName(), build.getStatus(),
+        build.getFailureMessage());
+  }
+}
@@ -0,0 +1,197 @@
+/**
+ * Copyright (c) 2016 Intel Corporation
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file except
+ * in compliance with the License. You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software distributed under the License
+ * is distributed on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express
+ * or implied. See the License for the specific language governing permissions and limitations under
+ * the License.
+ */
+package org.trustedanalytics.h2oscoringengine.publisher.restapi;
+
+import io.swagger.annotations.Api;
+import io.swagger.annotations.ApiOperation;
+import io.swagger.annotations.ApiResponse;
+import io.swagger.annotations.ApiResponses;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.Optional;
+import java.util.stream.Collectors;
+import javax.servlet.http.HttpServletResponse;
+import javax.validation.Valid;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.core.io.FileSystemResource;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.ResponseEntity;
+import org.springframework.util.MultiValueMap;
+import org.springframework.web.bind.annotation.ExceptionHandler;
+import org.springframework.web.bind.annotation.PathVariable;
+import org.springframework.web.bind.annotation.RequestBody;
+import org.springframework.web.bind.annotation.RequestMapping;
+import org.springframework.web.bind.annotation.RequestMethod;
+import org.springframework.web.bind.annotation.ResponseBody;
+import org.springframework.web.bind.annotation.ResponseStatus;
+import org.springframework.web.bind.annotation.RestController;
+import org.springframework.web.util.UriComponentsBuilder;
+import org.trustedanalytics.h2oscoringengine.publisher.EngineBuildingException;
+import org.trustedanalytics.h2oscoringengine.publisher.builds.BuildNotFinishedException;
+import org.trustedanalytics.h2oscoringengine.publisher.builds.EngineBuild;
+import org.trustedanalytics.h2oscoringengine.publisher.builds.EngineBuildRegistry;
+import org.trustedanalytics.h2oscoringengine.publisher.builds.UnknownBuildException;
+import org.trustedanalytics.h2oscoringengine.publisher.restapi.validation.DownloadRequestValidationRule;
+import org.trustedanalytics.h2oscoringengine.publisher.restapi.validation.DownloadRequestValidationRules;
+import org.trustedanalytics.h2oscoringengine.publisher.restapi.validation.ModelNameValidator;
+import org.trustedanalytics.h2oscoringengine.publisher.restapi.validation.ValidationException;
+
+@Api
+@RestController
+public class EngineBuildsController {
+
+  private static final Logger LOGGER = LoggerFactory.getLogger(EngineBuildsController.class);
+  public static final String SUBMIT_BUILD_URL =
+      PublisherController.DOWNLOAD_ENGINE_PREFIX + "{modelName}/builds";
+  public static final String SUBMIT_BUILDS_URL =
+      PublisherController.DOWNLOAD_ENGINE_PREFIX + "builds";
+  public static final String BUILD_URL =
+      PublisherController.DOWNLOAD_ENGINE_PREFIX + "builds/{buildId}";
+  public static final String BUILD_JAR_URL = BUILD_URL + "/jar";
+  static final String MODEL_NAMES_FIELD = "modelNames";
+
+  private final EngineBuildRegistry buildRegistry;
+  private final List<DownloadRequestValidationRule> validationRules;
+
+  @Autowired
+  public EngineBuildsController(EngineBuildRegistry buildRegistry,
+      DownloadRequestValidationRules downloadRequestValidationRules) {
+    this.buildRegistry = buildRegistry;
+    this.validationRules = downloadRequestValidationRules.get();
+  }
+
+  @ApiOperation(value = "Schedules build of H2O scoring engine in background",
+      notes = "Privilege level: Any consumer of this endpoint must have a valid access token")
+  @ApiResponses(value = {
+      @ApiResponse(code = 202, message = "Accepted", response = EngineBuildInfo.class),
+      @ApiResponse(code = 400, message = "Request was malformed"),
+      @ApiResponse(code = 500,
+          message = "Internal server error, e.g. too many builds in progress")})
+  @RequestMapping(method = RequestMethod.POST, consumes = "application/x-www-form-urlencoded",
+      value = SUBMIT_BUILD_URL, produces = "application/json")
+  public ResponseEntity<EngineBuildInfo> submitBuild(
+      @Valid @RequestBody MultiValueMap<String, String> request, @PathVariable String modelName)
+      throws EngineBuildingException {
+
+    LOGGER.info("Got build request for modelName:" + modelName);
+    validationRules.forEach(rule -> rule.validate(request));
+    ModelNameValidator.validate(modelName);
+
+    EngineBuild build =
+        buildRegistry.submit(PublisherController.h2oServerCredentials(request), modelName);
+
+    HttpHeaders headers = new HttpHeaders();
+    headers.setLocation(
+        UriComponentsBuilder.fromPath(BUILD_URL).buildAndExpand(build.getId()).toUri());
+    return new ResponseEntity<>(EngineBuildInfo.of(build), headers, HttpStatus.ACCEPTED);
+  }
+
+  @ApiOperation(
+      value = "Schedules builds of H2O scoring engines for several models of one H2O server",
+      notes = "Privilege level: Any consumer of this endpoint must have a valid access token")
+  @ApiResponses(value = {
+      @ApiResponse(code = 202, message = "Accepted", response = EngineBuildInfo.class,
+          responseContainer = "List"),
+      @ApiResponse(code = 400, message = "Request was malformed")})
+  @RequestMapping(method = RequestMethod.POST, consumes = "application/x-www-form-urlencoded",
+      value = SUBMIT_BUILDS_URL, produces = "application/json")
+  public ResponseEntity<List<EngineBuildInfo>> submitBuilds(
+      @Valid @RequestBody MultiValueMap<String, String> request) {
+
+    validationRules.forEach(rule -> rule.validate(request));
+    List<String> modelNames = modelNames(request);
+    LOGGER.info("Got build request for modelNames:" + modelNames);
+
+    List<EngineBuildInfo> builds = buildRegistry
+        .submitAll(PublisherController.h2oServerCredentials(request), modelNames).stream()
+        .map(EngineBuildInfo::of).collect(Collectors.toList());
+    return new ResponseEntity<>(builds, HttpStatus.ACCEPTED);
+  }
+
+  @ApiOperation(value = "Returns status of H2O scoring engine build")
+  @ApiResponses(value = {
+      @ApiResponse(code = 200, message = "OK", response = EngineBuildInfo.class),
+      @ApiResponse(code = 404, message = "Build not found")})
+  @RequestMapping(method = RequestMethod.GET, value = BUILD_URL, produces = "application/json")
+  public EngineBuildInfo getBuild(@PathVariable String buildId) throws UnknownBuildException {
+    return EngineBuildInfo.of(buildRegistry.find(buildId));
+  }
+
+  @ApiOperation(value = "Exposes JAR file built by H2O scoring engine build for download")
+  @ApiResponses(value = {
+      @ApiResponse(code = 200, message = "OK", response = FileSystemResource.class),
+      @ApiResponse(code = 404, message = "Build not found"),
+      @ApiResponse(code = 409, message = "Build not finished yet"),
+      @ApiResponse(code = 500, message = "Build failed")})
+  @RequestMapping(method = RequestMethod.GET, value = BUILD_JAR_URL,
+      produces = "application/java-archive")
+  @ResponseBody
+  public FileSystemResource downloadBuiltEngine(HttpServletResponse response,
+      @PathVariable String buildId)
+      throws UnknownBuildException, BuildNotFinishedException, EngineBuildingException {
+    EngineBuild build = buildRegistry.find(buildId);
+    FileSystemResource scoringEngineJar =
+        new FileSystemResource(build.getScoringEngineJar().toFile());
+
+    response.setHeader("Content-Disposition",
+        String.format("attachment; filename=%s.jar", build.getModelName()));
+    return scoringEngineJar;
+  }
+
+  private static List<String> modelNames(MultiValueMap<String, String> request) {
+    List<String> modelNames = Optional.ofNullable(request.get(MODEL_NAMES_FIELD))
+        .orElse(Collections.emptyList()).stream()
+        .flatMap(value -> Arrays.stream(value.split(","))).map(String::trim)
+        .filter(modelName -> !modelName.isEmpty()).collect(Collectors.toList());
+    if (modelNames.isEmpty()) {
+      throw new ValidationException("No " + MODEL_NAMES_FIELD + " given");
+    }
+    modelNames.forEach(ModelNameValidator::validate);
+    return modelNames;
+  }
+
+  @ExceptionHandler(ValidationException.class)
+  @ResponseStatus(value = HttpStatus.BAD_REQUEST)
+  @ResponseBody
+  public String handleValidationException(ValidationException e) {
+    LOGGER.error("Invalid request - returning HTTP 400 response. Reason: ", e);
+    return e.getMessage();
+  }
+
+  @ExceptionHandler(UnknownBuildException.class)
+  @ResponseStatus(value = HttpStatus.NOT_FOUND)
+  @ResponseBody
+  public String handleUnknownBuildException(UnknownBuildException e) {
+    return e.getMessage();
+  }
+
+  @ExceptionHandler(BuildNotFinishedException.class)
+  @ResponseStatus(value = HttpStatus.CONFLICT)
+  @ResponseBody
+  public String handleBuildNotFinishedException(BuildNotFinishedException e) {
+    return e.getMessage();
+  }
+
+  @ExceptionHandler(EngineBuildingException.class)
+  @ResponseStatus(value = HttpStatus.INTERNAL_SERVER_ERROR)
+  @ResponseBody
+  public String handleEngineBuildingException(EngineBuildingException e) {
+    LOGGER.error("Problem while building scoring engine: ", e);
+    return e.getMessage();
+  }
+}
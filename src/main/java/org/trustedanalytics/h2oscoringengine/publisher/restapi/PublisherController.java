@@ -17,14 +17,19 @@ import io.swagger.annotations.Api;
 import io.swagger.annotations.ApiOperation;
 import io.swagger.annotations.ApiResponse;
 import io.swagger.annotations.ApiResponses;
+import java.io.IOException;
+import java.nio.file.Path;
 import java.util.List;
+import java.util.concurrent.CompletionException;
 import javax.servlet.http.HttpServletResponse;
 import javax.validation.Valid;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.core.io.FileSystemResource;
+import org.springframework.http.HttpHeaders;
 import org.springframework.http.HttpStatus;
+import org.springframework.http.ResponseEntity;
 import org.springframework.util.MultiValueMap;
 import org.springframework.web.bind.annotation.ExceptionHandler;
 import org.springframework.web.bind.annotation.PathVariable;
@@ -34,13 +39,18 @@ import org.springframework.web.bind.annotation.RequestMethod;
 import org.springframework.web.bind.annotation.ResponseBody;
 import org.springframework.web.bind.annotation.ResponseStatus;
 import org.springframework.web.bind.annotation.RestController;
+import org.springframework.web.context.request.async.DeferredResult;
+import org.springframework.web.servlet.mvc.method.annotation.StreamingResponseBody;
 import org.trustedanalytics.h2oscoringengine.publisher.EngineBuildingException;
 import org.trustedanalytics.h2oscoringengine.publisher.EnginePublishingException;
 import org.trustedanalytics.h2oscoringengine.publisher.Publisher;
+import org.trustedanalytics.h2oscoringengine.publisher.builds.BuildRejectedException;
 import org.trustedanalytics.h2oscoringengine.publisher.http.BasicAuthServerCredentials;
 import org.trustedanalytics.h2oscoringengine.publisher.restapi.validation.DownloadRequestValidationRule;
 import org.trustedanalytics.h2oscoringengine.publisher.restapi.validation.DownloadRequestValidationRules;
+import org.trustedanalytics.h2oscoringengine.publisher.restapi.validation.ModelNameValidator;
 import org.trustedanalytics.h2oscoringengine.publisher.restapi.validation.ValidationException;
+import org.trustedanalytics.h2oscoringengine.publisher.steps.ScoringEngineStreamingStep;
 
 @Api
 @RestController
@@ -50,6 +60,7 @@ public class PublisherController {
   public static final String API_VERSION = "v1";
   public static final String DOWNLOAD_ENGINE_PREFIX = "/api/v1/engines/";
   public static final String DOWNLOAD_ENGINE_URL = DOWNLOAD_ENGINE_PREFIX + "{modelName}/downloads";
+  public static final String STREAM_ENGINE_URL = DOWNLOAD_ENGINE_URL + "/stream";
   public static final String PUBLISH_ENGINE_URL = "/api/v1/scoring-engine/jar-scoring-engine";
 
   private final Publisher publisher;
@@ -66,7 +77,10 @@ public class PublisherController {
       notes = "Privilege level: Any consumer of this endpoint must have a valid access token")
   @ApiResponses(
       value = {@ApiResponse(code = 200, message = "OK", response = FileSystemResource.class),
-          @ApiResponse(code = 400, message = "Request was malformed"), @ApiResponse(code = 500,
+          @ApiResponse(code = 400, message = "Request was malformed"),
+          @ApiResponse(code = 429, message = "Too many builds in progress, retry after time "
+              + "given in Retry-After header"),
+          @ApiResponse(code = 500,
               message = "Internal server error, e.g. error building or publishing model")})
   @RequestMapping(method = RequestMethod.POST, consumes = "application/x-www-form-urlencoded",
       value = DOWNLOAD_ENGINE_URL, produces = "application/java-archive")
@@ -77,25 +91,73 @@ public class PublisherController {
 
     LOGGER.info("Got download request: " + request + " modelName:" + modelName);
     validationRules.forEach(rule -> rule.validate(request));
+    ModelNameValidator.validate(modelName);
 
-    BasicAuthServerCredentials h2oServerCredentials =
-        new BasicAuthServerCredentials(request.get("hostname").get(0), request.get("login").get(0),
-            request.get("password").get(0));
+    BasicAuthServerCredentials h2oServerCredentials = h2oServerCredentials(request);
 
     response.setHeader("Content-Disposition",
         String.format("attachment; filename=%s.jar", modelName));
 
-    return new FileSystemResource(
-        publisher.getScoringEngineJar(h2oServerCredentials, modelName).toFile());
+    Path scoringEngineJar = publisher.getScoringEngineJar(h2oServerCredentials, modelName);
+    return new ReleasingFileSystemResource(scoringEngineJar,
+        () -> publisher.releaseScoringEngineJar(scoringEngineJar));
+  }
+
+  @ApiOperation(
+      value = "Streams H2O scoring engine model as JAR file while the model is being compiled",
+      notes = "Privilege level: Any consumer of this endpoint must have a valid access token. "
+          + "Errors of compilation are reported by truncating the JAR, as the response status "
+          + "is sent before the model is compiled.")
+  @ApiResponses(value = {@ApiResponse(code = 200, message = "OK"),
+      @ApiResponse(code = 400, message = "Request was malformed"),
+      @ApiResponse(code = 429, message = "Too many builds in progress, retry after time given "
+          + "in Retry-After header"),
+      @ApiResponse(code = 500,
+          message = "Internal server error, e.g. error downloading model from H2O server")})
+  @RequestMapping(method = RequestMethod.POST, consumes = "application/x-www-form-urlencoded",
+      value = STREAM_ENGINE_URL, produces = "application/java-archive")
+  public StreamingResponseBody streamEngine(HttpServletResponse response,
+      @Valid @RequestBody MultiValueMap<String, String> request, @PathVariable String modelName)
+      throws EngineBuildingException {
+
+    LOGGER.info("Got stream request for modelName:" + modelName);
+    validationRules.forEach(rule -> rule.validate(request));
+    ModelNameValidator.validate(modelName);
+
+    ScoringEngineStreamingStep scoringEngine =
+        publisher.streamScoringEngineJar(h2oServerCredentials(request), modelName);
+
+    response.setHeader("Content-Disposition",
+        String.format("attachment; filename=%s.jar", modelName));
+    return output -> {
+      try {
+        scoringEngine.streamScoringEngine(output);
+      } catch (EngineBuildingException e) {
+        throw new IOException(e.getMessage(), e);
+      }
+    };
   }
 
   @ApiOperation(value = "Publishes given h2o artifact file as a scoring-engine instance.")
   @RequestMapping(method = RequestMethod.POST, consumes = "application/json",
       value = PUBLISH_ENGINE_URL)
-  public void publishEngine(@Valid @RequestBody ScoringEngineData scoringEngineData)
-      throws EnginePublishingException {
+  public DeferredResult<ResponseEntity<Void>> publishEngine(
+      @Valid @RequestBody ScoringEngineData scoringEngineData) throws EnginePublishingException {
     LOGGER.info("Got publish request: " + scoringEngineData);
-    publisher.publishScoringEngine(scoringEngineData);
+    DeferredResult<ResponseEntity<Void>> result = new DeferredResult<>();
+    publisher.publishScoringEngine(scoringEngineData).whenComplete((published, e) -> {
+      if (e == null) {
+        result.setResult(ResponseEntity.ok().build());
+      } else {
+        result.setErrorResult(e instanceof CompletionException ? e.getCause() : e);
+      }
+    });
+    return result;
+  }
+
+  static BasicAuthServerCredentials h2oServerCredentials(MultiValueMap<String, String> request) {
+    return new BasicAuthServerCredentials(request.get("hostname").get(0),
+        request.get("login").get(0), request.get("password").get(0));
   }
 
   @ExceptionHandler(ValidationException.class)
@@ -106,6 +168,14 @@ public class PublisherController {
     return e.getMessage();
   }
 
+  @ExceptionHandler(BuildRejectedException.class)
+  public ResponseEntity<String> handleBuildRejectedException(BuildRejectedException e) {
+    LOGGER.warn("Build rejected - returning HTTP 429 response. Reason: " + e.getMessage());
+    return ResponseEntity.status(HttpStatus.TOO_MANY_REQUESTS)
+        .header(HttpHeaders.RETRY_AFTER, String.valueOf(e.getRetryAfterSeconds()))
+        .body(e.getMessage());
+  }
+
   @ExceptionHandler({EngineBuildingException.class})
   @ResponseStatus(value = HttpStatus.INTERNAL_SERVER_ERROR)
   @ResponseBody
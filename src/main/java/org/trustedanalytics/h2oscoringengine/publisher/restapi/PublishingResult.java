@@ -0,0 +1,47 @@
+/**
+ * Copyright (c) 2016 Intel Corporation
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file except
+ * in compliance with the License. You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software distributed under the License
+ * is distributed on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express
+ * or implied. See the License for the specific language governing permissions and limitations under
+ * the License.
+ */
+package org.trustedanalytics.h2oscoringengine.publisher.restapi;
+
+import java.util.UUID;
+import lombok.AllArgsConstructor;
+import lombok.Getter;
+import lombok.NoArgsConstructor;
+import lombok.Setter;
+import lombok.ToString;
+
+@Getter
+@Setter
+@ToString
+@AllArgsConstructor
+@NoArgsConstructor
+public class PublishingResult {
+
+  private UUID modelId;
+
+  private UUID artifactId;
+
+  private boolean published;
+
+  private String message;
+
+  public static PublishingResult published(ScoringEngineData scoringEngineData) {
+    return new PublishingResult(scoringEngineData.getModelId(), scoringEngineData.getArtifactId(),
+        true, null);
+  }
+
+  public static PublishingResult failed(ScoringEngineData scoringEngineData, Throwable failure) {
+    return new PublishingResult(scoringEngineData.getModelId(), scoringEngineData.getArtifactId(),
+        false, failure.getMessage());
+  }
+}
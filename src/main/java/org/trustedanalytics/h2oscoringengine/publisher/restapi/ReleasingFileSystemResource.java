@@ -0,0 +1,53 @@
+/**
+ * Copyright (c) 2016 Intel Corporation
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file except
+ * in compliance with the License. You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software distributed under the License
+ * is distributed on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express
+ * or implied. See the License for the specific language governing permissions and limitations under
+ * the License.
+ */
+package org.trustedanalytics.h2oscoringengine.publisher.restapi;
+
+import java.io.FilterInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.file.Path;
+import java.util.concurrent.atomic.AtomicBoolean;
+import org.springframework.core.io.FileSystemResource;
+
+/**
+ * File resource calling a given action when the response body has been written, i.e. when the
+ * stream opened by the message converter is closed.
+ */
+class ReleasingFileSystemResource extends FileSystemResource {
+
+  private final Runnable releaseAction;
+  private final AtomicBoolean released = new AtomicBoolean();
+
+  ReleasingFileSystemResource(Path file, Runnable releaseAction) {
+    super(file.toFile());
+    this.releaseAction = releaseAction;
+  }
+
+  @Override
+  public InputStream getInputStream() throws IOException {
+    return new FilterInputStream(super.getInputStream()) {
+
+      @Override
+      public void close() throws IOException {
+        try {
+          super.close();
+        } finally {
+          if (released.compareAndSet(false, true)) {
+            releaseAction.run();
+          }
+        }
+      }
+    };
+  }
+}
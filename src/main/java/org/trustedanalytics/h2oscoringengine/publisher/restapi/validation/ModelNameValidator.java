@@ -0,0 +1,36 @@
+/**
+ * Copyright (c) 2016 Intel Corporation
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file except
+ * in compliance with the License. You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software distributed under the License
+ * is distributed on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express
+ * or implied. See the License for the specific language governing permissions and limitations under
+ * the License.
+ */
+package org.trustedanalytics.h2oscoringengine.publisher.restapi.validation;
+
+/**
+ * Checks model names given by clients. Model names name working directories and JAR files, so
+ * they may not contain path separators. They may not start with a dot either, which rules out
+ * current and parent directory references as well as hidden directories, skipped by the janitor of
+ * working directories.
+ */
+public final class ModelNameValidator {
+
+  private ModelNameValidator() {}
+
+  public static void validate(String modelName) {
+    if (modelName == null || modelName.isEmpty()) {
+      throw new ValidationException("Model name is empty");
+    }
+    if (modelName.startsWith(".") || modelName.contains("/") || modelName.contains("\\")
+        || modelName.indexOf('\0') >= 0) {
+      throw new ValidationException("Model name '" + modelName + "' is invalid. It may not "
+          + "start with '.' or contain path separators");
+    }
+  }
+}
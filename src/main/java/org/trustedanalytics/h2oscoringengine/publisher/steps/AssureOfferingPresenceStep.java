@@ -13,10 +13,10 @@
  */
 package org.trustedanalytics.h2oscoringengine.publisher.steps;
 
-import com.fasterxml.jackson.databind.JsonNode;
 import java.io.IOException;
 import java.io.InputStream;
 import java.util.List;
+import java.util.concurrent.CompletableFuture;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import org.trustedanalytics.h2oscoringengine.publisher.EnginePublishingException;
@@ -24,7 +24,7 @@ import org.trustedanalytics.h2oscoringengine.publisher.restapi.ScoringEngineData
 import org.trustedanalytics.h2oscoringengine.publisher.tapapi.OfferingCreationException;
 import org.trustedanalytics.h2oscoringengine.publisher.tapapi.OfferingCreator;
 import org.trustedanalytics.h2oscoringengine.publisher.tapapi.OfferingData;
-import org.trustedanalytics.h2oscoringengine.publisher.tapapi.OfferingsFetcher;
+import org.trustedanalytics.h2oscoringengine.publisher.tapapi.OfferingsIndex;
 import org.trustedanalytics.modelcatalog.rest.client.ModelCatalogReaderClient;
 import org.trustedanalytics.modelcatalog.rest.client.http.HttpFileResource;
 
@@ -32,44 +32,47 @@ public class AssureOfferingPresenceStep {
 
   private static final Logger LOGGER = LoggerFactory.getLogger(AssureOfferingPresenceStep.class);
 
-  private final AssureOfferingPresenceStepConfig config;
+  private final OfferingReadinessTracker readinessTracker;
   private final OfferingCreator offeringCreator;
-  private final OfferingsFetcher offeringsFetcher;
+  private final OfferingsIndex offeringsIndex;
   private ModelCatalogReaderClient modelCatalogClient;
 
-  public AssureOfferingPresenceStep(OfferingsFetcher offeringsFetcher,
-      OfferingCreator offeringCreator, ModelCatalogReaderClient modelCatalogClient) {
-    this(AssureOfferingPresenceStepConfig.defaultConfig(), offeringsFetcher, offeringCreator,
-        modelCatalogClient);
-  }
-
-  public AssureOfferingPresenceStep(AssureOfferingPresenceStepConfig config,
-      OfferingsFetcher offeringsFetcher, OfferingCreator offeringCreator,
+  public AssureOfferingPresenceStep(OfferingReadinessTracker readinessTracker,
+      OfferingsIndex offeringsIndex, OfferingCreator offeringCreator,
       ModelCatalogReaderClient modelCatalogClient) {
-    this.config = config;
-    this.offeringsFetcher = offeringsFetcher;
+    this.readinessTracker = readinessTracker;
+    this.offeringsIndex = offeringsIndex;
     this.offeringCreator = offeringCreator;
     this.modelCatalogClient = modelCatalogClient;
   }
 
-  public OfferingInstanceCreationStep ensureOfferingExists(ScoringEngineData scoringEngineData)
-      throws EnginePublishingException {
-
-    List<JsonNode> modelOfferings = fetchModelOfferings(scoringEngineData);
+  /**
+   * Finds offering of the model or creates it. Newly created offering is waited for without
+   * blocking the calling thread.
+   * 
+   * @param scoringEngineData model to find offering for
+   * @return next step, completed when the offering is ready; completed exceptionally with
+   *         {@link EnginePublishingException} when created offering doesn't get ready
+   * @throws EnginePublishingException if offering could not be found nor created
+   */
+  public CompletableFuture<OfferingInstanceCreationStep> ensureOfferingExists(
+      ScoringEngineData scoringEngineData) throws EnginePublishingException {
+
+    List<OfferingData> modelOfferings = fetchModelOfferings(scoringEngineData);
     OfferingData modelOffering;
     if (modelOfferings.isEmpty()) {
       InputStream scoringEngineJar = fetchScoringEngineFromModelCatalog(scoringEngineData);
       try {
         modelOffering =
             offeringCreator.createJavaScoringEngineOffering(scoringEngineData, scoringEngineJar);
-        waitUntilOfferingIsReady(modelOffering.getOfferingId());
-
-        LOGGER.info("Created offering: " + modelOffering);
       } catch (OfferingCreationException e) {
         throw new EnginePublishingException("Unable to create scoring engine offering: ", e);
       }
+      offeringsIndex.offeringCreated(scoringEngineData.getModelId().toString(),
+          scoringEngineData.getArtifactId().toString(), modelOffering);
+      return waitUntilOfferingIsReady(modelOffering);
     } else if (modelOfferings.size() == 1) {
-      modelOffering = getOfferingDataFromJson(modelOfferings.get(0));
+      modelOffering = modelOfferings.get(0);
     } else {
       throw new EnginePublishingException("Unable to return model offering. Found "
           + modelOfferings.size() + "offerings for model " + scoringEngineData.getModelId());
@@ -77,14 +80,13 @@ public class AssureOfferingPresenceStep {
 
     LOGGER.debug("Model offering " + modelOffering);
 
-    return new OfferingInstanceCreationStep(modelOffering.getOfferingId(),
-        modelOffering.getPlanId());
+    return CompletableFuture.completedFuture(instanceCreationStep(modelOffering));
   }
 
-  private List<JsonNode> fetchModelOfferings(ScoringEngineData scoringEngineData)
+  private List<OfferingData> fetchModelOfferings(ScoringEngineData scoringEngineData)
       throws EnginePublishingException {
     try {
-      return offeringsFetcher.fetchModelOfferings(scoringEngineData.getModelId().toString(),
+      return offeringsIndex.find(scoringEngineData.getModelId().toString(),
           scoringEngineData.getArtifactId().toString());
     } catch (IOException e) {
       throw new EnginePublishingException("Unable to fetch model offerings from tap-api-service: ",
@@ -106,30 +108,23 @@ public class AssureOfferingPresenceStep {
     }
   }
 
-  private OfferingData getOfferingDataFromJson(JsonNode modelOffering) {
-    String offeringId = modelOffering.at("/id").textValue();
-    String planId = modelOffering.at("/offeringPlans/0/id").textValue();
-
-    return new OfferingData(offeringId, planId);
+  private OfferingInstanceCreationStep instanceCreationStep(OfferingData modelOffering) {
+    return new OfferingInstanceCreationStep(modelOffering.getOfferingId(),
+        modelOffering.getPlanId());
   }
 
-  private void waitUntilOfferingIsReady(String offeringId) throws OfferingCreationException {
-    for (int i = 0; i < config.getRetryCount(); i++) {
-      try {
-        JsonNode offeringJson = offeringsFetcher.fetchModelOffering(offeringId);
-        String offeringState = offeringJson.at("/state").textValue();
-        LOGGER.info("Offering {} state: {}", offeringId, offeringState);
-        if (offeringState.equalsIgnoreCase(config.getDesiredState())) {
-          LOGGER.info("Check OK!");
-          return;
-        }
-        LOGGER.info("Check failed.");
-        Thread.sleep(config.getRetryIntervalMs());
-      } catch (Exception e) {
-        LOGGER.error("Error when checking offering state, will retry in a while.", e);
+  private CompletableFuture<OfferingInstanceCreationStep> waitUntilOfferingIsReady(
+      OfferingData modelOffering) {
+    CompletableFuture<OfferingInstanceCreationStep> nextStep = new CompletableFuture<>();
+    readinessTracker.awaitReady(modelOffering.getOfferingId()).whenComplete((ready, e) -> {
+      if (e == null) {
+        LOGGER.info("Created offering: " + modelOffering);
+        nextStep.complete(instanceCreationStep(modelOffering));
+      } else {
+        nextStep.completeExceptionally(
+            new EnginePublishingException("Unable to create scoring engine offering: ", e));
       }
-    }
-
-    throw new OfferingCreationException("Problem with creating offering (not running)");
+    });
+    return nextStep;
   }
 }
@@ -17,8 +17,9 @@ import lombok.Getter;
 
 public class AssureOfferingPresenceStepConfig {
 
-  private static final int OFFERING_CHECK_RETRY_COUNT = 24;
-  private static final long OFFERING_CHECK_RETRY_DELAY_MS = 5000;
+  private static final int OFFERING_CHECK_RETRY_COUNT = 18;
+  private static final long OFFERING_CHECK_RETRY_DELAY_MS = 1000;
+  private static final long OFFERING_CHECK_MAX_RETRY_DELAY_MS = 8000;
   private static final String OFFERING_CHECK_DESIRED_STATE = "READY";
 
   @Getter
@@ -27,13 +28,28 @@ public class AssureOfferingPresenceStepConfig {
   @Getter
   private final long retryIntervalMs;
 
+  @Getter
+  private final long maxRetryIntervalMs;
+
   @Getter
   private final String desiredState;
 
   public AssureOfferingPresenceStepConfig(
       int retryCount, long retryIntervalMs, String desiredState) {
+    this(retryCount, retryIntervalMs, retryIntervalMs, desiredState);
+  }
+
+  /**
+   * @param retryCount how many times offering state is checked before giving up
+   * @param retryIntervalMs delay before the first check, doubled after every failed check
+   * @param maxRetryIntervalMs upper limit of the delay between checks
+   * @param desiredState state of a ready offering
+   */
+  public AssureOfferingPresenceStepConfig(int retryCount, long retryIntervalMs,
+      long maxRetryIntervalMs, String desiredState) {
     this.retryCount = retryCount;
     this.retryIntervalMs = retryIntervalMs;
+    this.maxRetryIntervalMs = Math.max(retryIntervalMs, maxRetryIntervalMs);
     this.desiredState = desiredState;
   }
 
@@ -41,6 +57,15 @@ public class AssureOfferingPresenceStepConfig {
     return new AssureOfferingPresenceStepConfig(
         OFFERING_CHECK_RETRY_COUNT,
         OFFERING_CHECK_RETRY_DELAY_MS,
+        OFFERING_CHECK_MAX_RETRY_DELAY_MS,
         OFFERING_CHECK_DESIRED_STATE);
   }
+
+  long retryIntervalAfter(int failedChecks) {
+    long interval = retryIntervalMs;
+    for (int i = 0; i < failedChecks && interval < maxRetryIntervalMs; i++) {
+      interval *= 2;
+    }
+    return Math.min(interval, maxRetryIntervalMs);
+  }
 }
@@ -14,8 +14,13 @@
 package org.trustedanalytics.h2oscoringengine.publisher.steps;
 
 import java.io.IOException;
+import java.io.UncheckedIOException;
 import java.nio.file.Path;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.Executor;
 import org.trustedanalytics.h2oscoringengine.publisher.EngineBuildingException;
+import org.trustedanalytics.h2oscoringengine.publisher.cache.GenModelCache;
 import org.trustedanalytics.h2oscoringengine.publisher.http.FilesDownloader;
 
 public class H2oResourcesDownloadingStep {
@@ -24,16 +29,38 @@ public class H2oResourcesDownloadingStep {
   public static final String H2O_SERVER_LIB_PATH = "/3/h2o-genmodel.jar";
   public static final String H2O_LIB_FILE_NAME = "genmodel.jar";
 
+  private final GenModelCache genModelCache;
+  private final Executor downloadExecutor;
+
+  public H2oResourcesDownloadingStep() {
+    this(GenModelCache.disabled(), Runnable::run);
+  }
+
+  /**
+   * @param genModelCache cache of h2o-genmodel library
+   * @param downloadExecutor executor on which model and library are downloaded concurrently
+   */
+  public H2oResourcesDownloadingStep(GenModelCache genModelCache, Executor downloadExecutor) {
+    this.genModelCache = genModelCache;
+    this.downloadExecutor = downloadExecutor;
+  }
+
   public ModelCompilationStep downloadResources(FilesDownloader h2oFilesDownloader,
       String modelName, Path targetDirectory) throws EngineBuildingException {
     Path fileForModelPojo = targetDirectory.resolve(getModelPojoFileName(modelName));
     Path fileForLib = targetDirectory.resolve(H2O_LIB_FILE_NAME);
 
+    CompletableFuture<Path> modelDownload = downloadAsync(() -> h2oFilesDownloader
+        .download(H2O_SERVER_MODEL_PATH_PREFIX + modelName, fileForModelPojo));
+    CompletableFuture<Path> libDownload = downloadAsync(
+        () -> genModelCache.fetch(h2oFilesDownloader, H2O_SERVER_LIB_PATH, fileForLib));
+
+    // Both transfers are allowed to finish even if one of them fails, so nothing writes to
+    // target directory after this step returns.
+    CompletableFuture.allOf(modelDownload, libDownload).handle((result, e) -> result).join();
+
     try {
-      Path downloadedModelPath =
-          h2oFilesDownloader.download(H2O_SERVER_MODEL_PATH_PREFIX + modelName, fileForModelPojo);
-      Path downloadedLibPath = h2oFilesDownloader.download(H2O_SERVER_LIB_PATH, fileForLib);
-      return new ModelCompilationStep(downloadedModelPath, downloadedLibPath);
+      return new ModelCompilationStep(downloadResult(modelDownload), downloadResult(libDownload));
 
     } catch (IOException e) {
       throw new EngineBuildingException(
@@ -41,6 +68,32 @@ public class H2oResourcesDownloadingStep {
     }
   }
 
+  private CompletableFuture<Path> downloadAsync(ResourceDownload download) {
+    return CompletableFuture.supplyAsync(() -> {
+      try {
+        return download.run();
+      } catch (IOException e) {
+        throw new UncheckedIOException(e);
+      }
+    }, downloadExecutor);
+  }
+
+  private Path downloadResult(CompletableFuture<Path> download) throws IOException {
+    try {
+      return download.join();
+    } catch (CompletionException e) {
+      if (e.getCause() instanceof UncheckedIOException) {
+        throw ((UncheckedIOException) e.getCause()).getCause();
+      }
+      throw new IOException(e.getCause().getMessage(), e.getCause());
+    }
+  }
+
+  @FunctionalInterface
+  private interface ResourceDownload {
+    Path run() throws IOException;
+  }
+
   /**
    * *.java file name has to be equal to class name it contains. For models with dash in name H2O
    * generates class name with dash replaced by underscore. For others - class name is the same as
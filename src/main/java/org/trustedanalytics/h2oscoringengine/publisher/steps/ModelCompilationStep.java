@@ -14,25 +14,39 @@
 package org.trustedanalytics.h2oscoringengine.publisher.steps;
 
 import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
 import java.nio.file.Path;
 import java.util.Arrays;
+import java.util.Collections;
 import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.atomic.AtomicInteger;
 import java.util.stream.Collectors;
 import javax.tools.DiagnosticCollector;
 import javax.tools.JavaCompiler;
+import javax.tools.JavaFileManager;
 import javax.tools.JavaFileObject;
 import javax.tools.StandardJavaFileManager;
-import javax.tools.ToolProvider;
+import javax.tools.StandardLocation;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import org.trustedanalytics.h2oscoringengine.publisher.EngineBuildingException;
+import org.trustedanalytics.h2oscoringengine.publisher.compilation.InMemoryJavaFileManager;
+import org.trustedanalytics.h2oscoringengine.publisher.compilation.InMemorySourceFile;
+import org.trustedanalytics.h2oscoringengine.publisher.compilation.JavaCompilerPool;
+import org.trustedanalytics.h2oscoringengine.publisher.compilation.SplitCompilation;
 
 public class ModelCompilationStep {
 
   private static final Logger LOGGER = LoggerFactory.getLogger(ModelCompilationStep.class);
+  private static final List<String> SPLIT_COMPILER_OPTIONS = Arrays.asList("-proc:none");
   private final Path modelPojoPath;
   private final Path libPath;
-
+  private final AtomicInteger diagnosticsCount = new AtomicInteger();
 
   public ModelCompilationStep(Path modelPojoPath, Path libPath) {
     this.modelPojoPath = modelPojoPath;
@@ -40,44 +54,164 @@ public class ModelCompilationStep {
   }
 
   public ModelPackagingStep compileModel(Path targetDir) throws EngineBuildingException {
-    Path classesDir = compile(targetDir);
+    return compileModel(targetDir, JavaCompilerPool.unpooled());
+  }
+
+  public ModelPackagingStep compileModel(Path targetDir, JavaCompilerPool compilerPool)
+      throws EngineBuildingException {
+    Path classesDir = compile(targetDir, compilerPool);
     return new ModelPackagingStep(classesDir);
   }
 
-  private Path compile(Path targetDir) throws EngineBuildingException {
+  public ModelPackagingStep compileModelInMemory() throws EngineBuildingException {
+    return compileModelInMemory(JavaCompilerPool.unpooled(), SplitCompilation.disabled());
+  }
 
-    JavaCompiler compiler = ToolProvider.getSystemJavaCompiler();
-    DiagnosticCollector<JavaFileObject> diagnosticListener = new DiagnosticCollector<>();
-    StandardJavaFileManager fileManager =
-        compiler.getStandardFileManager(diagnosticListener, null, null);
-    Iterable<? extends JavaFileObject> compilationUnit =
-        fileManager.getJavaFileObjects(modelPojoPath.toFile());
-    List<String> compilerOptions =
-        Arrays.asList("-classpath", libPath.toString(), "-d", targetDir.toString());
+  /**
+   * Compiles model without writing class files to disk. Compiled classes are passed to
+   * {@link ModelPackagingStep} in memory. Big models are split into compilation units according to
+   * given {@link SplitCompilation}: independent units are compiled in parallel groups, then the
+   * remaining units are compiled against their class files.
+   */
+  public ModelPackagingStep compileModelInMemory(JavaCompilerPool compilerPool,
+      SplitCompilation splitCompilation) throws EngineBuildingException {
 
-    LOGGER.info("Compiling file " + modelPojoPath.toString() + " with options " + compilerOptions);
+    String sourceCode;
+    try {
+      sourceCode = new String(Files.readAllBytes(modelPojoPath), StandardCharsets.UTF_8);
+    } catch (IOException e) {
+      throw new EngineBuildingException("Unable to read model source file: ", e);
+    }
+    SplitCompilation.Plan plan = splitCompilation.planCompilation(getModelClassName(), sourceCode);
 
-    compiler.getTask(null, fileManager, diagnosticListener, compilerOptions, null, compilationUnit)
-        .call();
+    if (!plan.isSplit()) {
+      LOGGER.info("Compiling file " + modelPojoPath.toString() + " in memory with classpath "
+          + libPath.toString());
+      return new ModelPackagingStep(
+          compileInMemory(compilerPool, plan.getDependentUnits(), Collections.emptyMap(), null));
+    }
 
-    if (!diagnosticListener.getDiagnostics().isEmpty()) {
-      throw new EngineBuildingException(
-          "Model compilation failed: " + compilationFailureMessage(diagnosticListener));
+    LOGGER.info("Compiling file " + modelPojoPath.toString() + " in memory with classpath "
+        + libPath.toString() + " as " + plan.getUnitsCount() + " compilation units in "
+        + plan.getIndependentGroups().size() + " parallel groups");
+
+    List<CompletableFuture<Map<String, byte[]>>> groupCompilations =
+        plan.getIndependentGroups().stream()
+            .map(group -> CompletableFuture.supplyAsync(() -> compileGroup(compilerPool, group),
+                splitCompilation.getExecutor()))
+            .collect(Collectors.toList());
+
+    Map<String, byte[]> compiledClasses = new TreeMap<>();
+    for (CompletableFuture<Map<String, byte[]>> groupCompilation : groupCompilations) {
+      compiledClasses.putAll(groupCompilationResult(groupCompilation));
     }
+    if (!plan.getDependentUnits().isEmpty()) {
+      compiledClasses.putAll(compileInMemory(compilerPool, plan.getDependentUnits(),
+          compiledClasses, SPLIT_COMPILER_OPTIONS));
+    }
+    return new ModelPackagingStep(compiledClasses);
+  }
 
+  private Map<String, byte[]> compileGroup(JavaCompilerPool compilerPool,
+      List<InMemorySourceFile> group) {
     try {
-      fileManager.close();
+      return compileInMemory(compilerPool, group, Collections.emptyMap(), SPLIT_COMPILER_OPTIONS);
+    } catch (EngineBuildingException e) {
+      throw new CompletionException(e);
+    }
+  }
+
+  private Map<String, byte[]> groupCompilationResult(
+      CompletableFuture<Map<String, byte[]>> groupCompilation) throws EngineBuildingException {
+    try {
+      return groupCompilation.join();
+    } catch (CompletionException e) {
+      if (e.getCause() instanceof EngineBuildingException) {
+        throw (EngineBuildingException) e.getCause();
+      }
+      throw new EngineBuildingException("Model compilation failed: ", e.getCause());
+    }
+  }
+
+  /**
+   * Classes compiled earlier are added to classpath to resolve references from compiled units,
+   * their sources are not parsed again.
+   */
+  private Map<String, byte[]> compileInMemory(JavaCompilerPool compilerPool,
+      List<InMemorySourceFile> compilationUnits, Map<String, byte[]> compiledClassPath,
+      List<String> compilerOptions) throws EngineBuildingException {
+
+    try (JavaCompilerPool.Lease compiler = borrowCompiler(compilerPool)) {
+      // wrapper is not closed - it would close pooled file manager
+      InMemoryJavaFileManager fileManager =
+          new InMemoryJavaFileManager(compiler.getFileManager(), compiledClassPath);
+
+      runCompiler(compiler.getCompiler(), fileManager, compilerOptions, compilationUnits);
+
+      return fileManager.getCompiledClasses();
+    }
+  }
+
+  private Path compile(Path targetDir, JavaCompilerPool compilerPool)
+      throws EngineBuildingException {
+
+    try (JavaCompilerPool.Lease compiler = borrowCompiler(compilerPool)) {
+      StandardJavaFileManager fileManager = compiler.getFileManager();
+      fileManager.setLocation(StandardLocation.CLASS_OUTPUT,
+          Collections.singletonList(targetDir.toFile()));
+      Iterable<? extends JavaFileObject> compilationUnit =
+          fileManager.getJavaFileObjects(modelPojoPath.toFile());
+
+      LOGGER.info("Compiling file " + modelPojoPath.toString() + " with classpath "
+          + libPath.toString() + " to directory " + targetDir.toString());
+      runCompiler(compiler.getCompiler(), fileManager, null, compilationUnit);
+
     } catch (IOException e) {
-      LOGGER.warn("Problem while closing files after compilation: ", e);
+      throw new EngineBuildingException("Unable to set compilation output directory: ", e);
     }
     return targetDir;
   }
 
+  private JavaCompilerPool.Lease borrowCompiler(JavaCompilerPool compilerPool)
+      throws EngineBuildingException {
+    try {
+      return compilerPool.borrow(libPath);
+    } catch (IOException e) {
+      throw new EngineBuildingException("Unable to prepare compiler for model: ", e);
+    } catch (InterruptedException e) {
+      Thread.currentThread().interrupt();
+      throw new EngineBuildingException("Interrupted while waiting for compiler: ", e);
+    }
+  }
+
+  private void runCompiler(JavaCompiler compiler, JavaFileManager fileManager,
+      List<String> compilerOptions, Iterable<? extends JavaFileObject> compilationUnit)
+      throws EngineBuildingException {
+
+    DiagnosticCollector<JavaFileObject> diagnosticListener = new DiagnosticCollector<>();
+    compiler.getTask(null, fileManager, diagnosticListener, compilerOptions, null, compilationUnit)
+        .call();
+
+    diagnosticsCount.addAndGet(diagnosticListener.getDiagnostics().size());
+    if (!diagnosticListener.getDiagnostics().isEmpty()) {
+      throw new EngineBuildingException(
+          "Model compilation failed: " + compilationFailureMessage(diagnosticListener));
+    }
+  }
+
   private String compilationFailureMessage(DiagnosticCollector<JavaFileObject> diagnostics) {
     return diagnostics.getDiagnostics().stream().map(d -> d.getMessage(null))
         .collect(Collectors.joining());
   }
 
+  /**
+   * Model POJO file is named after the model class, see {@link H2oResourcesDownloadingStep}.
+   */
+  private String getModelClassName() {
+    String fileName = modelPojoPath.getFileName().toString();
+    return fileName.endsWith(".java") ? fileName.substring(0, fileName.length() - 5) : fileName;
+  }
+
   public Path getModelPojoPath() {
     return modelPojoPath;
   }
@@ -85,5 +219,12 @@ public class ModelCompilationStep {
   public Path getLibPath() {
     return libPath;
   }
+
+  /**
+   * @return number of diagnostics reported by compiler in all compilations of this model
+   */
+  public int getDiagnosticsCount() {
+    return diagnosticsCount.get();
+  }
   
 }
@@ -17,6 +17,7 @@ import java.io.FileOutputStream;
 import java.io.IOException;
 import java.nio.file.Files;
 import java.nio.file.Path;
+import java.util.Map;
 import java.util.jar.JarEntry;
 import java.util.jar.JarOutputStream;
 import org.slf4j.Logger;
@@ -29,18 +30,48 @@ public class ModelPackagingStep {
   private static final String MODEL_JAR_FILE_NAME = "model.jar";
 
   private final Path classesDir;
+  private final Map<String, byte[]> compiledClasses;
 
 
   public ModelPackagingStep(Path classesDir) {
     this.classesDir = classesDir;
+    this.compiledClasses = null;
+  }
+
+  /**
+   * @param compiledClasses content of compiled classes by JAR entry name
+   */
+  public ModelPackagingStep(Map<String, byte[]> compiledClasses) {
+    this.classesDir = null;
+    this.compiledClasses = compiledClasses;
   }
 
   public ScoringEngineBuildingStep packageModel(Path targetDir) throws EngineBuildingException {
     Path fileForJar = targetDir.resolve(MODEL_JAR_FILE_NAME);
-    Path jar = createJar(classesDir, fileForJar);
+    Path jar = null == compiledClasses ? createJar(classesDir, fileForJar)
+        : createJar(compiledClasses, fileForJar);
     return new ScoringEngineBuildingStep(jar);
   }
 
+  private Path createJar(Map<String, byte[]> compiledClasses, Path fileForJar)
+      throws EngineBuildingException {
+
+    try (JarOutputStream jar = new JarOutputStream(new FileOutputStream(fileForJar.toString()))) {
+      for (Map.Entry<String, byte[]> compiledClass : compiledClasses.entrySet()) {
+        LOGGER.debug("Adding class " + compiledClass.getKey() + " to JAR archive.");
+        jar.putNextEntry(new JarEntry(compiledClass.getKey()));
+        jar.write(compiledClass.getValue());
+        jar.closeEntry();
+      }
+      jar.flush();
+    } catch (IOException e) {
+      LOGGER.error("Error while creating model jar file: ", e);
+      throw new EngineBuildingException("Error while creating model jar file ", e);
+    }
+
+    return fileForJar;
+  }
+
   private Path createJar(Path classesDir, Path fileForJar) throws EngineBuildingException {
 
     try (JarOutputStream jar = new JarOutputStream(new FileOutputStream(fileForJar.toString()))) {
@@ -0,0 +1,140 @@
+/**
+ * Copyright (c) 2016 Intel Corporation
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file except
+ * in compliance with the License. You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software distributed under the License
+ * is distributed on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express
+ * or implied. See the License for the specific language governing permissions and limitations under
+ * the License.
+ */
+package org.trustedanalytics.h2oscoringengine.publisher.steps;
+
+import java.io.IOException;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Collectors;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.trustedanalytics.h2oscoringengine.publisher.tapapi.OfferingCreationException;
+import org.trustedanalytics.h2oscoringengine.publisher.tapapi.OfferingSummary;
+import org.trustedanalytics.h2oscoringengine.publisher.tapapi.OfferingsFetcher;
+
+/**
+ * Waits for newly created offerings to become ready without blocking threads. States of all
+ * offerings being waited for are checked with a single tap-api-service request per tick. Each
+ * offering is checked with exponential backoff, as configured by
+ * {@link AssureOfferingPresenceStepConfig}.
+ */
+public class OfferingReadinessTracker {
+
+  private static final Logger LOGGER = LoggerFactory.getLogger(OfferingReadinessTracker.class);
+
+  private final OfferingsFetcher offeringsFetcher;
+  private final AssureOfferingPresenceStepConfig config;
+  private final ConcurrentMap<String, PendingOffering> pendingOfferings =
+      new ConcurrentHashMap<>();
+
+  public OfferingReadinessTracker(OfferingsFetcher offeringsFetcher,
+      AssureOfferingPresenceStepConfig config) {
+    this.offeringsFetcher = offeringsFetcher;
+    this.config = config;
+  }
+
+  /**
+   * Starts checking states of pending offerings. Dependent stages of futures returned by
+   * {@link #awaitReady(String)} are run by the scheduler, so they shouldn't take long.
+   * 
+   * @param scheduler scheduler running the checks
+   */
+  public void start(ScheduledExecutorService scheduler) {
+    long tickMs = Math.max(1, config.getRetryIntervalMs());
+    scheduler.scheduleWithFixedDelay(this::checkOfferings, tickMs, tickMs, TimeUnit.MILLISECONDS);
+  }
+
+  /**
+   * @param offeringId id of the offering
+   * @return future completed when the offering gets ready or completed exceptionally with
+   *         {@link OfferingCreationException} when it doesn't get ready in configured time
+   */
+  public CompletableFuture<Void> awaitReady(String offeringId) {
+    return pendingOfferings.computeIfAbsent(offeringId,
+        id -> new PendingOffering(id, System.currentTimeMillis() + config.getRetryIntervalMs()))
+        .ready;
+  }
+
+  int getPendingCount() {
+    return pendingOfferings.size();
+  }
+
+  void checkOfferings() {
+    long now = System.currentTimeMillis();
+    List<PendingOffering> dueOfferings = pendingOfferings.values().stream()
+        .filter(offering -> offering.nextCheckAtMillis <= now).collect(Collectors.toList());
+    if (dueOfferings.isEmpty()) {
+      return;
+    }
+
+    Map<String, String> offeringStates;
+    try {
+      offeringStates = fetchOfferingStates();
+    } catch (IOException | RuntimeException e) {
+      LOGGER.error("Error when checking offering states, will retry in a while.", e);
+      offeringStates = new HashMap<>();
+    }
+
+    for (PendingOffering offering : dueOfferings) {
+      check(offering, offeringStates.get(offering.offeringId), now);
+    }
+  }
+
+  private Map<String, String> fetchOfferingStates() throws IOException {
+    Map<String, String> offeringStates = new HashMap<>();
+    for (OfferingSummary offering : offeringsFetcher.fetchOfferingSummaries()) {
+      if (offering.getOfferingId() != null) {
+        offeringStates.put(offering.getOfferingId(), offering.getState());
+      }
+    }
+    return offeringStates;
+  }
+
+  private void check(PendingOffering offering, String offeringState, long now) {
+    LOGGER.info("Offering {} state: {}", offering.offeringId, offeringState);
+    if (config.getDesiredState().equalsIgnoreCase(offeringState)) {
+      pendingOfferings.remove(offering.offeringId);
+      offering.ready.complete(null);
+      return;
+    }
+
+    offering.failedChecks++;
+    if (offering.failedChecks >= config.getRetryCount()) {
+      pendingOfferings.remove(offering.offeringId);
+      offering.ready.completeExceptionally(
+          new OfferingCreationException("Problem with creating offering (not running)"));
+      return;
+    }
+    offering.nextCheckAtMillis = now + config.retryIntervalAfter(offering.failedChecks);
+  }
+
+  private static class PendingOffering {
+    private final String offeringId;
+    private final CompletableFuture<Void> ready = new CompletableFuture<>();
+    // written by checks only, which never run concurrently
+    private volatile long nextCheckAtMillis;
+    private volatile int failedChecks;
+
+    PendingOffering(String offeringId, long nextCheckAtMillis) {
+      this.offeringId = offeringId;
+      this.nextCheckAtMillis = nextCheckAtMillis;
+    }
+  }
+}
@@ -14,21 +14,22 @@
 package org.trustedanalytics.h2oscoringengine.publisher.steps;
 
 import java.io.IOException;
-import java.io.InputStream;
-import java.net.URL;
 import java.nio.file.Files;
 import java.nio.file.Path;
+import java.util.Optional;
 import java.util.jar.JarFile;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import org.trustedanalytics.h2oscoringengine.publisher.EngineBuildingException;
+import org.trustedanalytics.h2oscoringengine.publisher.filesystem.EngineBaseJarTemplate;
+import org.trustedanalytics.h2oscoringengine.publisher.filesystem.RawCopyingJar;
 import org.trustedanalytics.h2oscoringengine.publisher.filesystem.UpdatableJar;
+import org.trustedanalytics.h2oscoringengine.publisher.filesystem.ZipIndex;
 
 public class ScoringEngineBuildingStep {
 
   private static final Logger LOGGER = LoggerFactory.getLogger(ScoringEngineBuildingStep.class);
   private static final String SCORING_ENGINE_FILE_NAME = "scoring-engine.jar";
-  private static final String ENGINE_BASE_JAR_NAME = "scoring-engine-base.jar";
 
   private final Path modelJarPath;
 
@@ -36,10 +37,21 @@ public class ScoringEngineBuildingStep {
     this.modelJarPath = modelJarPath;
   }
 
+  public Path getModelJarPath() {
+    return modelJarPath;
+  }
+
   public Path buildScoringEngine(Path scoringEngineDir, String engineBaseJarResourcePath) throws EngineBuildingException {
+    return buildScoringEngine(scoringEngineDir,
+        EngineBaseJarTemplate.notLoaded(engineBaseJarResourcePath));
+  }
+
+  public Path buildScoringEngine(Path scoringEngineDir, EngineBaseJarTemplate engineBaseJar)
+      throws EngineBuildingException {
     try {
       LOGGER.info("Creating scoring engine JAR for model: " + modelJarPath);
-      Path scoringEngineJar = buildScoringEngine(modelJarPath, engineBaseJarResourcePath, scoringEngineDir);
+      Path scoringEngineJar = buildScoringEngine(modelJarPath,
+          engineBaseJar.loadedOrExtractedTo(scoringEngineDir), scoringEngineDir);
       LOGGER.info("Generated JAR: " + scoringEngineJar);
       return scoringEngineJar;
     } catch (IOException e) {
@@ -48,28 +60,28 @@ public class ScoringEngineBuildingStep {
     }
   }
 
-  private Path buildScoringEngine(Path modelJarPath, String engineBaseResourcePath, Path targetDir) throws IOException {
+  /**
+   * Entries of base JAR are copied without recompression, unless the JAR uses ZIP64 extensions or
+   * can not be indexed.
+   */
+  private Path buildScoringEngine(Path modelJarPath, EngineBaseJarTemplate engineBaseJar,
+      Path targetDir) throws IOException {
+    long modelJarSize = Files.size(modelJarPath);
+    Optional<ZipIndex> engineBaseIndex =
+        engineBaseJar.getIndex().filter(index -> index.isRawCopyable(modelJarSize));
+    if (engineBaseIndex.isPresent()) {
+      try (RawCopyingJar engineJar = new RawCopyingJar(SCORING_ENGINE_FILE_NAME, targetDir)) {
+        return engineJar.addJarContent(engineBaseIndex.get()).addUncompressedLibJar(modelJarPath)
+            .getJarPath();
+      }
+    }
+
     UpdatableJar engineJar = new UpdatableJar(SCORING_ENGINE_FILE_NAME, targetDir);
     Path engineJarPath =
-        engineJar.addJarContent(createTemplateJar(engineBaseResourcePath, targetDir))
+        engineJar.addJarContent(new JarFile(engineBaseJar.getJarPath().toFile()))
             .addUncompressedLibJar(modelJarPath).getJarPath();
     engineJar.close();
     return engineJarPath;
   }
 
-  private JarFile createTemplateJar(String baseJarResourcePath, Path targetDir)
-      throws IOException {
-    URL resource = this.getClass().getResource(baseJarResourcePath);
-    if (null == resource) {
-      throw new IOException("JAR resource " + baseJarResourcePath + " not found");
-    }
-
-    Path templateJar = targetDir.resolve(ENGINE_BASE_JAR_NAME);
-    InputStream templateResource = this.getClass().getResourceAsStream(baseJarResourcePath);
-    Files.copy(templateResource, templateJar);
-    templateResource.close();
-    
-    return new JarFile(templateJar.toFile());
-  }
-
 }
@@ -0,0 +1,167 @@
+/**
+ * Copyright (c) 2016 Intel Corporation
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file except
+ * in compliance with the License. You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software distributed under the License
+ * is distributed on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express
+ * or implied. See the License for the specific language governing permissions and limitations under
+ * the License.
+ */
+package org.trustedanalytics.h2oscoringengine.publisher.steps;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Optional;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.jar.JarFile;
+import org.apache.commons.io.output.CountingOutputStream;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.trustedanalytics.h2oscoringengine.publisher.EngineBuildingException;
+import org.trustedanalytics.h2oscoringengine.publisher.filesystem.EngineBaseJarTemplate;
+import org.trustedanalytics.h2oscoringengine.publisher.filesystem.RawCopyingJar;
+import org.trustedanalytics.h2oscoringengine.publisher.filesystem.UpdatableJar;
+import org.trustedanalytics.h2oscoringengine.publisher.filesystem.ZipIndex;
+import org.trustedanalytics.h2oscoringengine.publisher.metrics.BuildMetrics;
+
+/**
+ * Writes scoring engine JAR to a stream while the model is still being compiled and packaged.
+ * Entries of base JAR are written first, then the step waits for the model JAR and appends it.
+ * If the model can not be built, the stream is left without central directory, so that clients
+ * don't mistake it for a complete JAR. Writing the JAR is recorded as the assembly step of the
+ * build, without the time spent waiting for the model JAR.
+ */
+public class ScoringEngineStreamingStep {
+
+  private static final Logger LOGGER = LoggerFactory.getLogger(ScoringEngineStreamingStep.class);
+
+  private final CompletableFuture<Path> modelJar;
+  private final EngineBaseJarTemplate engineBaseJar;
+  private final Path scoringEngineDir;
+  private final CompletableFuture<Path> builtScoringEngineJar;
+  private final BuildMetrics buildMetrics;
+  private final Runnable onFinished;
+  private long modelJarAwaitNanos;
+
+  /**
+   * @param modelJar model JAR being built
+   * @param engineBaseJar base of scoring engine
+   * @param scoringEngineDir directory to which base JAR is extracted if it's not loaded
+   * @param buildMetrics metrics to which assembly of the JAR is recorded
+   * @param onFinished called when both streaming and building of model JAR are finished
+   */
+  public ScoringEngineStreamingStep(CompletableFuture<Path> modelJar,
+      EngineBaseJarTemplate engineBaseJar, Path scoringEngineDir, BuildMetrics buildMetrics,
+      Runnable onFinished) {
+    this(modelJar, engineBaseJar, scoringEngineDir, null, buildMetrics, onFinished);
+  }
+
+  private ScoringEngineStreamingStep(CompletableFuture<Path> modelJar,
+      EngineBaseJarTemplate engineBaseJar, Path scoringEngineDir,
+      CompletableFuture<Path> builtScoringEngineJar, BuildMetrics buildMetrics,
+      Runnable onFinished) {
+    this.modelJar = modelJar;
+    this.engineBaseJar = engineBaseJar;
+    this.scoringEngineDir = scoringEngineDir;
+    this.builtScoringEngineJar = builtScoringEngineJar;
+    this.buildMetrics = buildMetrics;
+    this.onFinished = onFinished;
+  }
+
+  /**
+   * Streams already built scoring engine, e.g. one found in cache.
+   */
+  public static ScoringEngineStreamingStep builtEngine(Path scoringEngineJar,
+      Runnable onFinished) {
+    return builtEngine(CompletableFuture.completedFuture(scoringEngineJar), onFinished);
+  }
+
+  /**
+   * Streams scoring engine built by another request once it's built.
+   * 
+   * @param scoringEngineJar scoring engine being built
+   * @param onFinished called when streaming is finished and the engine is built or its build failed
+   */
+  public static ScoringEngineStreamingStep builtEngine(CompletableFuture<Path> scoringEngineJar,
+      Runnable onFinished) {
+    return new ScoringEngineStreamingStep(scoringEngineJar, null, null, scoringEngineJar,
+        BuildMetrics.disabled(), onFinished);
+  }
+
+  public void streamScoringEngine(OutputStream output) throws EngineBuildingException {
+    long startNanos = System.nanoTime();
+    boolean assembled = false;
+    try {
+      if (builtScoringEngineJar != null) {
+        Files.copy(await(builtScoringEngineJar, "scoring engine"), output);
+        output.flush();
+        return;
+      }
+
+      LOGGER.info("Streaming scoring engine JAR");
+      CountingOutputStream countingOutput = new CountingOutputStream(output);
+      EngineBaseJarTemplate template = engineBaseJar.loadedOrExtractedTo(scoringEngineDir);
+      Optional<ZipIndex> engineBaseIndex =
+          template.getIndex().filter(index -> index.isRawCopyable(0));
+      Path builtModelJar;
+      if (engineBaseIndex.isPresent()) {
+        RawCopyingJar engineJar = new RawCopyingJar(countingOutput);
+        engineJar.addJarContent(engineBaseIndex.get());
+        countingOutput.flush();
+        builtModelJar = awaitModelJar();
+        engineJar.addUncompressedLibJar(builtModelJar).close();
+      } else {
+        UpdatableJar engineJar = new UpdatableJar(countingOutput);
+        engineJar.addJarContent(new JarFile(template.getJarPath().toFile()));
+        countingOutput.flush();
+        builtModelJar = awaitModelJar();
+        engineJar.addUncompressedLibJar(builtModelJar);
+        engineJar.close();
+      }
+      countingOutput.flush();
+      assembled = true;
+      buildMetrics.recordBytesWritten(countingOutput.getByteCount(), builtModelJar);
+    } catch (IOException e) {
+      LOGGER.error("Error while streaming scoring engine JAR: ", e);
+      throw new EngineBuildingException("Error while streaming scoring engine JAR: ", e);
+    } finally {
+      if (builtScoringEngineJar == null) {
+        buildMetrics.recordDuration(BuildMetrics.ASSEMBLE,
+            System.nanoTime() - startNanos - modelJarAwaitNanos, assembled);
+      }
+      modelJar.whenComplete((jar, e) -> onFinished.run());
+    }
+  }
+
+  private Path awaitModelJar() throws EngineBuildingException {
+    long startNanos = System.nanoTime();
+    try {
+      return await(modelJar, "model JAR");
+    } finally {
+      modelJarAwaitNanos = System.nanoTime() - startNanos;
+    }
+  }
+
+  private static Path await(CompletableFuture<Path> jar, String jarName)
+      throws EngineBuildingException {
+    try {
+      return jar.get();
+    } catch (InterruptedException e) {
+      Thread.currentThread().interrupt();
+      throw new EngineBuildingException("Interrupted while waiting for " + jarName, e);
+    } catch (ExecutionException e) {
+      if (e.getCause() instanceof EngineBuildingException) {
+        throw (EngineBuildingException) e.getCause();
+      }
+      throw new EngineBuildingException(
+          "Unable to build " + jarName + ": " + e.getCause().getMessage(), e.getCause());
+    }
+  }
+}
@@ -18,9 +18,6 @@ import com.fasterxml.jackson.databind.JsonNode;
 import com.fasterxml.jackson.databind.ObjectMapper;
 import java.io.IOException;
 import java.io.InputStream;
-import java.util.ArrayList;
-import java.util.Arrays;
-import java.util.List;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import org.springframework.core.io.ByteArrayResource;
@@ -31,10 +28,6 @@ import org.springframework.http.HttpHeaders;
 import org.springframework.http.HttpMethod;
 import org.springframework.http.MediaType;
 import org.springframework.http.ResponseEntity;
-import org.springframework.http.converter.FormHttpMessageConverter;
-import org.springframework.http.converter.HttpMessageConverter;
-import org.springframework.http.converter.ResourceHttpMessageConverter;
-import org.springframework.http.converter.json.MappingJackson2HttpMessageConverter;
 import org.springframework.util.LinkedMultiValueMap;
 import org.springframework.util.MultiValueMap;
 import org.springframework.web.client.HttpStatusCodeException;
@@ -62,8 +55,8 @@ public class OfferingCreator {
       InputStream scoringEngineJar) throws OfferingCreationException {
     HttpEntity<MultiValueMap<String, Object>> request;
     try {
+      // default converters of RestTemplate write multipart requests, streaming resource parts
       request = prepareMultiPartRequest(scoringEngineData, scoringEngineJar);
-      prepareRestTemplateForInpuStreamResource(tapApiRestTemplate);
       ResponseEntity<String> response = tapApiRestTemplate.exchange(
           tapApiUrl + TAP_API_SERVICE_CREATE_OFFERING_PATH, HttpMethod.POST, request, String.class);
       return fetchOfferingId(response.getBody());
@@ -84,13 +77,6 @@ public class OfferingCreator {
     }
   }
 
-  private void prepareRestTemplateForInpuStreamResource(RestTemplate tapApiRestTemplate) {
-    List<HttpMessageConverter<?>> converters =
-        new ArrayList<>(Arrays.asList(new ResourceHttpMessageConverter(),
-            new FormHttpMessageConverter(), new MappingJackson2HttpMessageConverter()));
-    tapApiRestTemplate.getMessageConverters().addAll(converters);
-  }
-
   private HttpEntity<MultiValueMap<String, Object>> prepareMultiPartRequest(
       ScoringEngineData scoringEngineData, InputStream blobBytes) throws JsonProcessingException {
     MultiValueMap<String, Object> multiPartRequest = new LinkedMultiValueMap<>();
@@ -153,6 +139,7 @@ public class OfferingCreator {
 
       // dealing with Spring's ResourceHttpMessageConverter bug:
       // https://jira.spring.io/browse/SPR-13571
+      // length of the stream is not known up front, so the request is sent in chunks
       @Override
       public long contentLength() throws IOException {
         return -1;
@@ -0,0 +1,41 @@
+/**
+ * Copyright (c) 2016 Intel Corporation
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file except
+ * in compliance with the License. You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software distributed under the License
+ * is distributed on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express
+ * or implied. See the License for the specific language governing permissions and limitations under
+ * the License.
+ */
+package org.trustedanalytics.h2oscoringengine.publisher.tapapi;
+
+import lombok.Getter;
+import lombok.ToString;
+
+/**
+ * Fields of an offering from tap-api-service offerings list, which the publisher is interested in.
+ * Any of them is {@code null} when missing in the list.
+ */
+@Getter
+@ToString
+public class OfferingSummary {
+
+  private final String offeringId;
+  private final String planId;
+  private final String state;
+  private final String modelId;
+  private final String artifactId;
+
+  public OfferingSummary(String offeringId, String planId, String state, String modelId,
+      String artifactId) {
+    this.offeringId = offeringId;
+    this.planId = planId;
+    this.state = state;
+    this.modelId = modelId;
+    this.artifactId = artifactId;
+  }
+}
@@ -0,0 +1,196 @@
+/**
+ * Copyright (c) 2016 Intel Corporation
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file except
+ * in compliance with the License. You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software distributed under the License
+ * is distributed on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express
+ * or implied. See the License for the specific language governing permissions and limitations under
+ * the License.
+ */
+package org.trustedanalytics.h2oscoringengine.publisher.tapapi;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Local index of tap-api-service offerings by model and artifact they were created for. Index is
+ * refreshed in background, so that looking up offerings of a model doesn't fetch all of them.
+ * Lookups refresh the index themselves only when it's older than the allowed age, e.g. when
+ * background refreshing fails, or when the artifact has no offerings in the index, so that offering
+ * created meanwhile (e.g. by other publisher instance) is not created again.
+ */
+public class OfferingsIndex {
+
+  private static final Logger LOGGER = LoggerFactory.getLogger(OfferingsIndex.class);
+
+  private final OfferingsFetcher offeringsFetcher;
+  private final long maxAgeMillis;
+  private final Object refreshLock = new Object();
+  private final AtomicLong startedRefreshes = new AtomicLong();
+
+  // guarded by this
+  private Map<String, List<OfferingData>> offerings = Collections.emptyMap();
+  private long refreshedAtMillis;
+  private long appliedRefresh;
+  private boolean loaded;
+  private final List<CreatedOffering> createdOfferings = new ArrayList<>();
+
+  /**
+   * @param offeringsFetcher fetcher of all offerings
+   * @param maxAgeMillis age of the index above which lookups refresh it; {@code 0} makes every
+   *        lookup fetch all offerings
+   */
+  public OfferingsIndex(OfferingsFetcher offeringsFetcher, long maxAgeMillis) {
+    this.offeringsFetcher = offeringsFetcher;
+    this.maxAgeMillis = maxAgeMillis;
+  }
+
+  public void startRefreshing(ScheduledExecutorService scheduler, long periodSeconds) {
+    scheduler.scheduleWithFixedDelay(() -> {
+      try {
+        refresh();
+      } catch (IOException | RuntimeException e) {
+        LOGGER.error("Unable to refresh index of offerings, will retry in a while.", e);
+      }
+    }, 0, periodSeconds, TimeUnit.SECONDS);
+  }
+
+  /**
+   * @param modelId id of the model in model-catalog
+   * @param artifactId id of the artifact in model-catalog
+   * @return offerings created for the artifact, empty if there are none according to offerings
+   *         fetched after the lookup started
+   * @throws IOException if the index could not be refreshed
+   */
+  public List<OfferingData> find(String modelId, String artifactId) throws IOException {
+    long lookupStartedAfter = startedRefreshes.get();
+    refreshIfStale();
+    List<OfferingData> found = lookup(modelId, artifactId);
+    if (!found.isEmpty()) {
+      return found;
+    }
+
+    // concurrent misses, e.g. of a batch publish, wait for a single refresh
+    synchronized (refreshLock) {
+      if (!isRefreshedAfter(lookupStartedAfter)) {
+        refresh();
+      }
+    }
+    return lookup(modelId, artifactId);
+  }
+
+  /**
+   * Adds an offering which has just been created, so that it's found before the next refresh.
+   * 
+   * @param modelId id of the model in model-catalog
+   * @param artifactId id of the artifact in model-catalog
+   * @param offering created offering
+   */
+  public synchronized void offeringCreated(String modelId, String artifactId,
+      OfferingData offering) {
+    CreatedOffering createdOffering =
+        new CreatedOffering(key(modelId, artifactId), offering, System.currentTimeMillis());
+    createdOfferings.add(createdOffering);
+    offerings = new HashMap<>(offerings);
+    add(offerings, createdOffering.key, offering);
+  }
+
+  public void refresh() throws IOException {
+    long refreshNumber = startedRefreshes.incrementAndGet();
+    long startedAtMillis = System.currentTimeMillis();
+    Map<String, List<OfferingData>> freshOfferings =
+        index(offeringsFetcher.fetchOfferingSummaries());
+
+    synchronized (this) {
+      if (loaded && startedAtMillis < refreshedAtMillis) {
+        // a refresh started later has already been applied
+        return;
+      }
+      // offerings created while fetching may be missing in the response
+      createdOfferings.removeIf(created -> created.createdAtMillis < startedAtMillis);
+      createdOfferings.forEach(created -> add(freshOfferings, created.key, created.offering));
+
+      offerings = freshOfferings;
+      refreshedAtMillis = startedAtMillis;
+      appliedRefresh = Math.max(appliedRefresh, refreshNumber);
+      loaded = true;
+    }
+    LOGGER.debug("Index of offerings refreshed, {} artifacts have offerings.",
+        freshOfferings.size());
+  }
+
+  private void refreshIfStale() throws IOException {
+    if (isStale()) {
+      // concurrent lookups, e.g. of a batch publish, wait for a single refresh
+      synchronized (refreshLock) {
+        if (isStale()) {
+          refresh();
+        }
+      }
+    }
+  }
+
+  private synchronized List<OfferingData> lookup(String modelId, String artifactId) {
+    return offerings.getOrDefault(key(modelId, artifactId), Collections.emptyList());
+  }
+
+  private synchronized boolean isRefreshedAfter(long refreshNumber) {
+    return appliedRefresh > refreshNumber;
+  }
+
+  private synchronized boolean isStale() {
+    return !loaded || System.currentTimeMillis() - refreshedAtMillis >= maxAgeMillis;
+  }
+
+  private static Map<String, List<OfferingData>> index(List<OfferingSummary> allOfferings) {
+    Map<String, List<OfferingData>> index = new HashMap<>();
+    for (OfferingSummary offering : allOfferings) {
+      if (offering.getOfferingId() != null && offering.getModelId() != null
+          && offering.getArtifactId() != null) {
+        add(index, key(offering.getModelId(), offering.getArtifactId()),
+            new OfferingData(offering.getOfferingId(), offering.getPlanId()));
+      }
+    }
+    return index;
+  }
+
+  private static void add(Map<String, List<OfferingData>> index, String key,
+      OfferingData offering) {
+    List<OfferingData> artifactOfferings =
+        new ArrayList<>(index.getOrDefault(key, Collections.emptyList()));
+    if (artifactOfferings.stream()
+        .noneMatch(indexed -> indexed.getOfferingId().equals(offering.getOfferingId()))) {
+      artifactOfferings.add(offering);
+    }
+    index.put(key, Collections.unmodifiableList(artifactOfferings));
+  }
+
+  private static String key(String modelId, String artifactId) {
+    return modelId + "/" + artifactId;
+  }
+
+  private static class CreatedOffering {
+    private final String key;
+    private final OfferingData offering;
+    private final long createdAtMillis;
+
+    CreatedOffering(String key, OfferingData offering, long createdAtMillis) {
+      this.key = key;
+      this.offering = offering;
+      this.createdAtMillis = createdAtMillis;
+    }
+  }
+}
@@ -0,0 +1,156 @@
+/**
+ * Copyright (c) 2016 Intel Corporation
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file except
+ * in compliance with the License. You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software distributed under the License
+ * is distributed on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express
+ * or implied. See the License for the specific language governing permissions and limitations under
+ * the License.
+ */
+package org.trustedanalytics.h2oscoringengine.publisher.tapapi;
+
+import com.fasterxml.jackson.core.JsonFactory;
+import com.fasterxml.jackson.core.JsonParser;
+import com.fasterxml.jackson.core.JsonToken;
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Reads tap-api-service offerings list one offering at a time. Only id, state, id of the first
+ * plan and model metadata of offerings are read; everything else is skipped without being
+ * materialized, so memory used doesn't depend on how big offerings are.
+ */
+class OfferingsListParser {
+
+  private final JsonFactory jsonFactory;
+
+  OfferingsListParser(JsonFactory jsonFactory) {
+    this.jsonFactory = jsonFactory;
+  }
+
+  List<OfferingSummary> parse(InputStream offeringsList) throws IOException {
+    try (JsonParser parser = jsonFactory.createParser(offeringsList)) {
+      if (parser.nextToken() != JsonToken.START_ARRAY) {
+        throw new IOException("JSON fetched from tap-api-service is not an array.");
+      }
+
+      List<OfferingSummary> offerings = new ArrayList<>();
+      JsonToken token;
+      while ((token = parser.nextToken()) != JsonToken.END_ARRAY) {
+        if (token == null) {
+          throw new IOException("JSON fetched from tap-api-service is truncated.");
+        } else if (token == JsonToken.START_OBJECT) {
+          offerings.add(parseOffering(parser));
+        } else {
+          parser.skipChildren();
+        }
+      }
+      return offerings;
+    }
+  }
+
+  private OfferingSummary parseOffering(JsonParser parser) throws IOException {
+    String offeringId = null;
+    String planId = null;
+    String state = null;
+    String[] modelAndArtifactId = new String[2];
+
+    while (parser.nextToken() == JsonToken.FIELD_NAME) {
+      String field = parser.getCurrentName();
+      parser.nextToken();
+      switch (field) {
+        case "id":
+          offeringId = textValue(parser);
+          break;
+        case "state":
+          state = textValue(parser);
+          break;
+        case "offeringPlans":
+          planId = parseFirstPlanId(parser);
+          break;
+        case "metadata":
+          parseMetadata(parser, modelAndArtifactId);
+          break;
+        default:
+          parser.skipChildren();
+      }
+    }
+    return new OfferingSummary(offeringId, planId, state, modelAndArtifactId[0],
+        modelAndArtifactId[1]);
+  }
+
+  private String parseFirstPlanId(JsonParser parser) throws IOException {
+    if (parser.getCurrentToken() != JsonToken.START_ARRAY) {
+      parser.skipChildren();
+      return null;
+    }
+
+    String planId = null;
+    boolean firstPlan = true;
+    while (parser.nextToken() != JsonToken.END_ARRAY) {
+      if (firstPlan && parser.getCurrentToken() == JsonToken.START_OBJECT) {
+        while (parser.nextToken() == JsonToken.FIELD_NAME) {
+          String field = parser.getCurrentName();
+          parser.nextToken();
+          if ("id".equals(field)) {
+            planId = textValue(parser);
+          } else {
+            parser.skipChildren();
+          }
+        }
+      } else {
+        parser.skipChildren();
+      }
+      firstPlan = false;
+    }
+    return planId;
+  }
+
+  private void parseMetadata(JsonParser parser, String[] modelAndArtifactId) throws IOException {
+    if (parser.getCurrentToken() != JsonToken.START_ARRAY) {
+      parser.skipChildren();
+      return;
+    }
+
+    while (parser.nextToken() != JsonToken.END_ARRAY) {
+      if (parser.getCurrentToken() != JsonToken.START_OBJECT) {
+        parser.skipChildren();
+        continue;
+      }
+
+      String key = null;
+      String value = null;
+      while (parser.nextToken() == JsonToken.FIELD_NAME) {
+        String field = parser.getCurrentName();
+        parser.nextToken();
+        if ("key".equals(field)) {
+          key = textValue(parser);
+        } else if ("value".equals(field)) {
+          value = textValue(parser);
+        } else {
+          parser.skipChildren();
+        }
+      }
+
+      if ("MODEL_ID".equals(key)) {
+        modelAndArtifactId[0] = value;
+      } else if ("ARTIFACT_ID".equals(key)) {
+        modelAndArtifactId[1] = value;
+      }
+    }
+  }
+
+  private static String textValue(JsonParser parser) throws IOException {
+    if (parser.getCurrentToken() == JsonToken.VALUE_STRING) {
+      return parser.getText();
+    }
+    parser.skipChildren();
+    return null;
+  }
+}
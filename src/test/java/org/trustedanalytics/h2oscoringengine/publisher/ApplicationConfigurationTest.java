@@ -15,6 +15,7 @@ package org.trustedanalytics.h2oscoringengine.publisher;
 
 import static org.junit.Assert.assertEquals;
 
+import java.util.Map;
 import org.junit.Test;
 
 public class ApplicationConfigurationTest {
@@ -46,4 +47,31 @@ public class ApplicationConfigurationTest {
     // then
     assertEquals(expectedUrl, url);
   }
+
+  @Test
+  public void parseTenantWeights_hostnamesWithPortsGiven_weightsParsed() {
+    // given
+    ApplicationConfiguration sut = new ApplicationConfiguration();
+    String testWeights = "h2o-a:54321=3, h2o-b=1,";
+
+    // when
+    Map<String, Integer> weights = sut.parseTenantWeights(testWeights);
+
+    // then
+    assertEquals(2, weights.size());
+    assertEquals(Integer.valueOf(3), weights.get("h2o-a:54321"));
+    assertEquals(Integer.valueOf(1), weights.get("h2o-b"));
+  }
+
+  @Test
+  public void parseTenantWeights_emptyStringGiven_noWeights() {
+    // given
+    ApplicationConfiguration sut = new ApplicationConfiguration();
+
+    // when
+    Map<String, Integer> weights = sut.parseTenantWeights("");
+
+    // then
+    assertEquals(0, weights.size());
+  }
 }
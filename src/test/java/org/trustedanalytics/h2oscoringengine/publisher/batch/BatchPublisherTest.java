@@ -0,0 +1,112 @@
+/**
+ * Copyright (c) 2016 Intel Corporation
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file except
+ * in compliance with the License. You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software distributed under the License
+ * is distributed on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express
+ * or implied. See the License for the specific language governing permissions and limitations under
+ * the License.
+ */
+package org.trustedanalytics.h2oscoringengine.publisher.batch;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+import static org.mockito.Matchers.any;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+import java.util.Arrays;
+import java.util.List;
+import java.util.UUID;
+import java.util.concurrent.CompletableFuture;
+import org.junit.Test;
+import org.trustedanalytics.h2oscoringengine.publisher.EnginePublishingException;
+import org.trustedanalytics.h2oscoringengine.publisher.Publisher;
+import org.trustedanalytics.h2oscoringengine.publisher.restapi.PublishingResult;
+import org.trustedanalytics.h2oscoringengine.publisher.restapi.ScoringEngineData;
+
+public class BatchPublisherTest {
+
+  private final Publisher publisherMock = mock(Publisher.class);
+  private final ScoringEngineData firstEngine =
+      new ScoringEngineData(UUID.randomUUID(), UUID.randomUUID(), "first-model");
+  private final ScoringEngineData secondEngine =
+      new ScoringEngineData(UUID.randomUUID(), UUID.randomUUID(), "second-model");
+  private final ScoringEngineData thirdEngine =
+      new ScoringEngineData(UUID.randomUUID(), UUID.randomUUID(), "third-model");
+
+  @Test
+  public void publish_someEnginesFailed_resultOfEveryEngineReturnedInOrder() throws Exception {
+    // given
+    BatchPublisher sut = new BatchPublisher(publisherMock, Runnable::run);
+    CompletableFuture<Void> notReadyOffering = new CompletableFuture<>();
+    notReadyOffering.completeExceptionally(new EnginePublishingException("not ready"));
+    when(publisherMock.publishScoringEngine(firstEngine))
+        .thenReturn(CompletableFuture.completedFuture(null));
+    when(publisherMock.publishScoringEngine(secondEngine))
+        .thenThrow(new EnginePublishingException("no offering"));
+    when(publisherMock.publishScoringEngine(thirdEngine)).thenReturn(notReadyOffering);
+
+    // when
+    List<PublishingResult> results =
+        sut.publish(Arrays.asList(firstEngine, secondEngine, thirdEngine)).get();
+
+    // then
+    assertEquals(3, results.size());
+    assertTrue(results.get(0).isPublished());
+    assertEquals(firstEngine.getModelId(), results.get(0).getModelId());
+    assertFalse(results.get(1).isPublished());
+    assertEquals("no offering", results.get(1).getMessage());
+    assertFalse(results.get(2).isPublished());
+    assertEquals("not ready", results.get(2).getMessage());
+  }
+
+  @Test
+  public void publish_engineNotPublishedYet_resultsNotCompleted() throws Exception {
+    // given
+    BatchPublisher sut = new BatchPublisher(publisherMock, Runnable::run);
+    CompletableFuture<Void> publishing = new CompletableFuture<>();
+    when(publisherMock.publishScoringEngine(firstEngine))
+        .thenReturn(CompletableFuture.completedFuture(null));
+    when(publisherMock.publishScoringEngine(secondEngine)).thenReturn(publishing);
+
+    // when
+    CompletableFuture<List<PublishingResult>> results =
+        sut.publish(Arrays.asList(firstEngine, secondEngine));
+
+    // then
+    assertFalse(results.isDone());
+    publishing.complete(null);
+    assertTrue(results.get().get(1).isPublished());
+  }
+
+  @Test
+  public void publish_sameEngineRequestedTwice_publishedOnceAndResultReturnedForBoth()
+      throws Exception {
+    // given
+    BatchPublisher sut = new BatchPublisher(publisherMock, Runnable::run);
+    ScoringEngineData sameEngine = new ScoringEngineData(firstEngine.getModelId(),
+        firstEngine.getArtifactId(), firstEngine.getModelName());
+    when(publisherMock.publishScoringEngine(firstEngine))
+        .thenReturn(CompletableFuture.completedFuture(null));
+    when(publisherMock.publishScoringEngine(secondEngine))
+        .thenReturn(CompletableFuture.completedFuture(null));
+
+    // when
+    List<PublishingResult> results =
+        sut.publish(Arrays.asList(firstEngine, secondEngine, sameEngine)).get();
+
+    // then
+    assertEquals(3, results.size());
+    assertTrue(results.get(2).isPublished());
+    assertEquals(firstEngine.getModelId(), results.get(2).getModelId());
+    verify(publisherMock, times(2)).publishScoringEngine(any(ScoringEngineData.class));
+  }
+}
@@ -0,0 +1,47 @@
+/**
+ * Copyright (c) 2016 Intel Corporation
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file except
+ * in compliance with the License. You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software distributed under the License
+ * is distributed on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express
+ * or implied. See the License for the specific language governing permissions and limitations under
+ * the License.
+ */
+package org.trustedanalytics.h2oscoringengine.publisher.builds;
+
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.equalTo;
+
+import java.util.Collections;
+import java.util.Map;
+import java.util.stream.Collectors;
+import org.junit.Test;
+import org.springframework.boot.actuate.metrics.Metric;
+
+public class BuildSchedulerMetricsTest {
+
+  @Test
+  public void metrics_buildRunning_schedulerAndTenantMetricsReported() throws Exception {
+    // given
+    BuildScheduler scheduler = new BuildScheduler(2, 1, 1, 1000, 30, Collections.emptyMap());
+    BuildSchedulerMetrics sut = new BuildSchedulerMetrics(scheduler);
+    scheduler.admit("http://h2o-a.example.com:54321", BuildPriority.INTERACTIVE);
+
+    // when
+    Map<String, Number> metrics = sut.metrics().stream()
+        .collect(Collectors.toMap(Metric::getName, Metric::getValue));
+
+    // then
+    String tenantPrefix = BuildSchedulerMetrics.TENANT_PREFIX + "http___h2o-a_example_com_54321.";
+    assertThat(metrics.get(BuildSchedulerMetrics.PREFIX + "running"), equalTo(1));
+    assertThat(metrics.get(BuildSchedulerMetrics.PREFIX + "waiting"), equalTo(0));
+    assertThat(metrics.get(tenantPrefix + "admitted"), equalTo(1L));
+    assertThat(metrics.get(tenantPrefix + "waiting.interactive"), equalTo(0));
+    assertThat(metrics.get(tenantPrefix + "waiting.batch"), equalTo(0));
+    assertThat(metrics.get(tenantPrefix + "meanWaitMs"), equalTo(0L));
+  }
+}
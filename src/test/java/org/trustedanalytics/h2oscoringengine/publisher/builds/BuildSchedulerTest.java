@@ -0,0 +1,335 @@
+/**
+ * Copyright (c) 2016 Intel Corporation
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file except
+ * in compliance with the License. You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software distributed under the License
+ * is distributed on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express
+ * or implied. See the License for the specific language governing permissions and limitations under
+ * the License.
+ */
+package org.trustedanalytics.h2oscoringengine.publisher.builds;
+
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.contains;
+import static org.hamcrest.Matchers.containsString;
+import static org.hamcrest.Matchers.equalTo;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import org.junit.After;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.ExpectedException;
+import org.trustedanalytics.h2oscoringengine.publisher.EngineBuildingException;
+
+public class BuildSchedulerTest {
+
+  private final String testTenant = "h2o-a:54321";
+  private final String otherTenant = "h2o-b:54321";
+  private final long testRetryAfterSeconds = 30;
+  private final long testWaitTimeoutMs = TimeUnit.MINUTES.toMillis(1);
+  private final ExecutorService waitingBuilds = Executors.newCachedThreadPool();
+  private final List<String> admissionOrder = Collections.synchronizedList(new ArrayList<>());
+
+  @Rule
+  public final ExpectedException thrown = ExpectedException.none();
+
+  @After
+  public void tearDown() {
+    waitingBuilds.shutdownNow();
+  }
+
+  @Test
+  public void run_freeSlot_buildRunAndSlotReleased() throws Exception {
+    // given
+    BuildScheduler sut = scheduler(1, 0, Collections.emptyMap());
+
+    // when
+    String result = sut.run(testTenant, BuildPriority.INTERACTIVE, () -> {
+      assertThat(sut.getRunningCount(), equalTo(1));
+      return "built";
+    });
+
+    // then
+    assertThat(result, equalTo("built"));
+    assertThat(sut.getRunningCount(), equalTo(0));
+  }
+
+  @Test
+  public void run_buildFailed_slotReleased() throws Exception {
+    // given
+    BuildScheduler sut = scheduler(1, 0, Collections.emptyMap());
+
+    // when
+    try {
+      sut.run(testTenant, BuildPriority.INTERACTIVE, () -> {
+        throw new EngineBuildingException("Some build error");
+      });
+    } catch (EngineBuildingException e) {
+      // expected
+    }
+
+    // then
+    assertThat(sut.getRunningCount(), equalTo(0));
+    sut.admit(testTenant, BuildPriority.INTERACTIVE).release();
+  }
+
+  @Test
+  public void admit_noFreeSlotAndWaitQueueFull_interactiveBuildRejectedAtOnce() throws Exception {
+    // given
+    BuildScheduler sut = scheduler(1, 0, Collections.emptyMap());
+    sut.admit(testTenant, BuildPriority.INTERACTIVE);
+
+    // when
+    BuildRejectedException rejection = null;
+    try {
+      sut.admit(testTenant, BuildPriority.INTERACTIVE);
+    } catch (BuildRejectedException e) {
+      rejection = e;
+    }
+
+    // then
+    assertThat(rejection.getRetryAfterSeconds(), equalTo(testRetryAfterSeconds));
+    assertThat(sut.getRejectedCount(), equalTo(1));
+    assertThat(sut.getWaitingCount(), equalTo(0));
+    assertThat(sut.getTenantStats().get(0).getRejectedCount(), equalTo(1L));
+  }
+
+  @Test
+  public void admit_noFreeSlotWithinTimeout_interactiveBuildRejected() throws Exception {
+    // given
+    BuildScheduler sut = new BuildScheduler(1, 1, 1, 10, testRetryAfterSeconds,
+        Collections.emptyMap());
+    sut.admit(testTenant, BuildPriority.INTERACTIVE);
+
+    // then
+    thrown.expect(BuildRejectedException.class);
+    thrown.expectMessage("Timed out");
+
+    // when
+    sut.admit(testTenant, BuildPriority.INTERACTIVE);
+  }
+
+  @Test
+  public void admit_slotReleasedWhileWaiting_buildAdmitted() throws Exception {
+    // given
+    BuildScheduler sut = scheduler(1, 1, Collections.emptyMap());
+    BuildScheduler.Slot runningBuild = sut.admit(testTenant, BuildPriority.INTERACTIVE);
+
+    // when
+    CompletableFuture<Void> waitingBuild = enqueue(sut, testTenant, BuildPriority.INTERACTIVE,
+        "waiting", 1);
+    runningBuild.release();
+    runningBuild.release();
+
+    // then
+    waitingBuild.get(10, TimeUnit.SECONDS);
+    assertThat(admissionOrder, contains("waiting"));
+    assertThat(sut.getRunningCount(), equalTo(0));
+    assertThat(sut.getTenantStats().get(0).getAdmittedCount(), equalTo(2L));
+  }
+
+  @Test
+  public void admit_batchBuildsOfTwoTenantsWaiting_tenantsAdmittedInTurns() throws Exception {
+    // given
+    BuildScheduler sut = scheduler(1, 0, Collections.emptyMap());
+    BuildScheduler.Slot runningBuild = sut.admit(testTenant, BuildPriority.BATCH);
+    enqueue(sut, testTenant, BuildPriority.BATCH, "a1", 1);
+    enqueue(sut, testTenant, BuildPriority.BATCH, "a2", 2);
+    enqueue(sut, testTenant, BuildPriority.BATCH, "a3", 3);
+    CompletableFuture<Void> lastBuild = enqueue(sut, otherTenant, BuildPriority.BATCH, "b1", 4);
+
+    // when
+    runningBuild.release();
+
+    // then
+    lastBuild.get(10, TimeUnit.SECONDS);
+    waitForAdmissions(4);
+    assertThat(admissionOrder, contains("a1", "b1", "a2", "a3"));
+  }
+
+  @Test
+  public void admit_tenantWithWeightGiven_tenantAdmittedAsManyTimesInRow() throws Exception {
+    // given
+    BuildScheduler sut = scheduler(1, 0, Collections.singletonMap(testTenant, 2));
+    BuildScheduler.Slot runningBuild = sut.admit(testTenant, BuildPriority.BATCH);
+    enqueue(sut, testTenant, BuildPriority.BATCH, "a1", 1);
+    enqueue(sut, testTenant, BuildPriority.BATCH, "a2", 2);
+    enqueue(sut, testTenant, BuildPriority.BATCH, "a3", 3);
+    enqueue(sut, otherTenant, BuildPriority.BATCH, "b1", 4);
+    enqueue(sut, otherTenant, BuildPriority.BATCH, "b2", 5);
+
+    // when
+    runningBuild.release();
+
+    // then
+    waitForAdmissions(5);
+    assertThat(admissionOrder, contains("a1", "a2", "b1", "a3", "b2"));
+  }
+
+  @Test
+  public void admit_interactiveBuildWaitingAfterBatchBuild_interactiveBuildAdmittedFirst()
+      throws Exception {
+    // given
+    BuildScheduler sut = scheduler(1, 1, Collections.emptyMap());
+    BuildScheduler.Slot runningBuild = sut.admit(testTenant, BuildPriority.BATCH);
+    enqueue(sut, testTenant, BuildPriority.BATCH, "batch", 1);
+    enqueue(sut, otherTenant, BuildPriority.INTERACTIVE, "interactive", 2);
+
+    // when
+    assertThat(sut.getTenantStats().get(0).getBatchWaitingCount(), equalTo(1));
+    assertThat(sut.getTenantStats().get(1).getInteractiveWaitingCount(), equalTo(1));
+    runningBuild.release();
+
+    // then
+    waitForAdmissions(2);
+    assertThat(admissionOrder, contains("interactive", "batch"));
+  }
+
+  @Test
+  public void admit_interactiveBuildsKeepWaiting_batchBuildAdmittedAfterSeveralInteractiveOnes()
+      throws Exception {
+    // given
+    BuildScheduler sut = scheduler(1, 10, Collections.emptyMap());
+    BuildScheduler.Slot runningBuild = sut.admit(testTenant, BuildPriority.INTERACTIVE);
+    enqueue(sut, otherTenant, BuildPriority.BATCH, "batch", 1);
+    enqueue(sut, testTenant, BuildPriority.INTERACTIVE, "i1", 2);
+    enqueue(sut, testTenant, BuildPriority.INTERACTIVE, "i2", 3);
+    enqueue(sut, testTenant, BuildPriority.INTERACTIVE, "i3", 4);
+    enqueue(sut, testTenant, BuildPriority.INTERACTIVE, "i4", 5);
+    enqueue(sut, testTenant, BuildPriority.INTERACTIVE, "i5", 6);
+    enqueue(sut, testTenant, BuildPriority.INTERACTIVE, "i6", 7);
+
+    // when
+    runningBuild.release();
+
+    // then
+    waitForAdmissions(7);
+    assertThat(admissionOrder, contains("i1", "i2", "i3", "i4", "batch", "i5", "i6"));
+  }
+
+  @Test
+  public void admit_tenantWaitQueueFull_interactiveBuildOfOtherTenantWaits() throws Exception {
+    // given
+    BuildScheduler sut = new BuildScheduler(1, 2, 1, testWaitTimeoutMs, testRetryAfterSeconds,
+        Collections.emptyMap());
+    BuildScheduler.Slot runningBuild = sut.admit(testTenant, BuildPriority.INTERACTIVE);
+    enqueue(sut, testTenant, BuildPriority.INTERACTIVE, "a1", 1);
+
+    // when
+    BuildRejectedException rejection = null;
+    try {
+      sut.admit(testTenant, BuildPriority.INTERACTIVE);
+    } catch (BuildRejectedException e) {
+      rejection = e;
+    }
+    enqueue(sut, otherTenant, BuildPriority.INTERACTIVE, "b1", 2);
+    runningBuild.release();
+
+    // then
+    waitForAdmissions(2);
+    assertThat(rejection.getMessage(), containsString("of this H2O server"));
+    assertThat(admissionOrder, contains("a1", "b1"));
+  }
+
+  @Test
+  public void promote_batchBuildWaitingBehindOtherBatchBuild_promotedBuildAdmittedFirst()
+      throws Exception {
+    // given
+    BuildScheduler sut = scheduler(1, 1, Collections.emptyMap());
+    BuildScheduler.Slot runningBuild = sut.admit(testTenant, BuildPriority.BATCH);
+    enqueue(sut, otherTenant, BuildPriority.BATCH, "other", 1);
+    BuildScheduler.Ticket ticket = sut.ticket(testTenant, BuildPriority.BATCH);
+    CompletableFuture<Void> promotedBuild = CompletableFuture.runAsync(() -> {
+      try {
+        sut.run(ticket, () -> admissionOrder.add("promoted"));
+      } catch (EngineBuildingException e) {
+        throw new IllegalStateException(e);
+      }
+    }, waitingBuilds);
+    while (sut.getWaitingCount() < 2) {
+      Thread.sleep(1);
+    }
+
+    // when
+    ticket.promote();
+    runningBuild.release();
+
+    // then
+    promotedBuild.get(10, TimeUnit.SECONDS);
+    waitForAdmissions(2);
+    assertThat(admissionOrder, contains("promoted", "other"));
+  }
+
+  @Test
+  public void admit_sameServerUrlSpelledDifferently_sameTenant() throws Exception {
+    // given
+    BuildScheduler sut = scheduler(2, 0, Collections.singletonMap("H2O-A:54321/", 3));
+
+    // when
+    sut.admit("h2o-a:54321", BuildPriority.INTERACTIVE);
+    sut.admit("http://h2o-a:54321/", BuildPriority.INTERACTIVE);
+
+    // then
+    assertThat(sut.getTenantStats().size(), equalTo(1));
+    assertThat(sut.getTenantStats().get(0).getTenant(), equalTo("http://h2o-a:54321"));
+    assertThat(sut.getTenantStats().get(0).getAdmittedCount(), equalTo(2L));
+    assertThat(BuildScheduler.tenantName("HTTPS://H2O-A:443/h2o/"),
+        equalTo("https://h2o-a/h2o"));
+  }
+
+  @Test
+  public void getTenantStats_tenantIdleLongerThanIdleTime_tenantForgotten() throws Exception {
+    // given
+    BuildScheduler sut = new BuildScheduler(1, 0, 0, testWaitTimeoutMs, testRetryAfterSeconds,
+        Collections.emptyMap(), 0);
+    BuildScheduler.Slot runningBuild = sut.admit(testTenant, BuildPriority.INTERACTIVE);
+
+    // when
+    int tenantsWhileRunning = sut.getTenantStats().size();
+    runningBuild.release();
+
+    // then
+    assertThat(tenantsWhileRunning, equalTo(1));
+    assertThat(sut.getTenantStats().size(), equalTo(0));
+  }
+
+  private BuildScheduler scheduler(int concurrency, int maxWaiting,
+      Map<String, Integer> tenantWeights) {
+    return new BuildScheduler(concurrency, maxWaiting, maxWaiting, testWaitTimeoutMs,
+        testRetryAfterSeconds, tenantWeights);
+  }
+
+  // starts a build on another thread and returns once it waits for a slot
+  private CompletableFuture<Void> enqueue(BuildScheduler sut, String tenant,
+      BuildPriority priority, String name, int expectedWaitingCount) throws InterruptedException {
+    CompletableFuture<Void> build = CompletableFuture.runAsync(() -> {
+      try {
+        sut.run(tenant, priority, () -> admissionOrder.add(name));
+      } catch (EngineBuildingException e) {
+        throw new IllegalStateException(e);
+      }
+    }, waitingBuilds);
+    while (sut.getWaitingCount() < expectedWaitingCount && !build.isDone()) {
+      Thread.sleep(1);
+    }
+    return build;
+  }
+
+  private void waitForAdmissions(int count) throws InterruptedException {
+    long deadline = System.currentTimeMillis() + TimeUnit.SECONDS.toMillis(10);
+    while (admissionOrder.size() < count && System.currentTimeMillis() < deadline) {
+      Thread.sleep(1);
+    }
+  }
+}
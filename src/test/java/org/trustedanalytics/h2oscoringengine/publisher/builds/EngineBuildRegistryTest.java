@@ -0,0 +1,258 @@
+/**
+ * Copyright (c) 2016 Intel Corporation
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file except
+ * in compliance with the License. You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software distributed under the License
+ * is distributed on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express
+ * or implied. See the License for the specific language governing permissions and limitations under
+ * the License.
+ */
+package org.trustedanalytics.h2oscoringengine.publisher.builds;
+
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.equalTo;
+import static org.hamcrest.Matchers.not;
+import static org.mockito.Matchers.any;
+import static org.mockito.Matchers.eq;
+import static org.mockito.Mockito.inOrder;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.Executor;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.ExpectedException;
+import org.mockito.ArgumentCaptor;
+import org.mockito.InOrder;
+import org.trustedanalytics.h2oscoringengine.publisher.EngineBuildingException;
+import org.trustedanalytics.h2oscoringengine.publisher.Publisher;
+import org.trustedanalytics.h2oscoringengine.publisher.http.BasicAuthServerCredentials;
+
+public class EngineBuildRegistryTest {
+
+  private final Publisher publisherMock = mock(Publisher.class);
+  private final BasicAuthServerCredentials testCredentials =
+      new BasicAuthServerCredentials("http://example.com", "username", "password");
+  private final String testModelName = "some-model";
+  private final Path testScoringEngineJar = Paths.get("/tmp/some-model.jar");
+  private final long testRetentionMillis = 60_000;
+
+  @Rule
+  public final ExpectedException thrown = ExpectedException.none();
+
+  @Test
+  public void submit_buildNotRunYet_buildQueued() throws Exception {
+    // given
+    List<Runnable> pendingBuilds = new ArrayList<>();
+    EngineBuildRegistry sut =
+        new EngineBuildRegistry(publisherMock, pendingBuilds::add, testRetentionMillis);
+
+    // when
+    EngineBuild build = sut.submit(testCredentials, testModelName);
+
+    // then
+    assertThat(build.getStatus(), equalTo(EngineBuildStatus.QUEUED));
+    assertThat(sut.find(build.getId()), equalTo(build));
+    assertThat(pendingBuilds.size(), equalTo(1));
+  }
+
+  @Test
+  public void submit_buildSucceeded_scoringEngineJarAvailable() throws Exception {
+    // given
+    EngineBuildRegistry sut =
+        new EngineBuildRegistry(publisherMock, Runnable::run, testRetentionMillis);
+    when(publisherMock.getScoringEngineJar(any(), eq(testModelName), eq(BuildPriority.BATCH)))
+        .thenReturn(testScoringEngineJar);
+
+    // when
+    EngineBuild build = sut.submit(testCredentials, testModelName);
+
+    // then
+    assertThat(sut.find(build.getId()).getStatus(), equalTo(EngineBuildStatus.SUCCEEDED));
+    assertThat(build.getScoringEngineJar(), equalTo(testScoringEngineJar));
+  }
+
+  @Test
+  public void submit_buildFailed_failureRethrownOnResultRequest() throws Exception {
+    // given
+    EngineBuildRegistry sut =
+        new EngineBuildRegistry(publisherMock, Runnable::run, testRetentionMillis);
+    EngineBuildingException testException = new EngineBuildingException("Some build failure");
+    when(publisherMock.getScoringEngineJar(any(), eq(testModelName), eq(BuildPriority.BATCH)))
+        .thenThrow(testException);
+
+    // when
+    EngineBuild build = sut.submit(testCredentials, testModelName);
+
+    // then
+    assertThat(build.getStatus(), equalTo(EngineBuildStatus.FAILED));
+    assertThat(build.getFailureMessage(), equalTo(testException.getMessage()));
+    thrown.expect(EngineBuildingException.class);
+    thrown.expectMessage(testException.getMessage());
+    build.getScoringEngineJar();
+  }
+
+  @Test
+  public void getScoringEngineJar_buildNotFinished_exceptionThrown() throws Exception {
+    // given
+    EngineBuildRegistry sut =
+        new EngineBuildRegistry(publisherMock, runnable -> {}, testRetentionMillis);
+    EngineBuild build = sut.submit(testCredentials, testModelName);
+
+    // then
+    thrown.expect(BuildNotFinishedException.class);
+    build.getScoringEngineJar();
+  }
+
+  @Test
+  public void submit_executorQueueFull_exceptionThrownAndBuildForgotten() throws Exception {
+    // given
+    Executor fullExecutor = runnable -> {
+      throw new RejectedExecutionException();
+    };
+    EngineBuildRegistry sut =
+        new EngineBuildRegistry(publisherMock, fullExecutor, testRetentionMillis);
+
+    // then
+    thrown.expect(EngineBuildingException.class);
+    thrown.expectMessage("Too many scoring engine builds in progress");
+    try {
+      sut.submit(testCredentials, testModelName);
+    } finally {
+      assertThat(sut.size(), equalTo(0));
+    }
+  }
+
+  @Test
+  public void submitAll_severalModels_buildPerModelRunInParallel() throws Exception {
+    // given
+    List<Runnable> pendingBuilds = new ArrayList<>();
+    EngineBuildRegistry sut =
+        new EngineBuildRegistry(publisherMock, pendingBuilds::add, testRetentionMillis);
+    when(publisherMock.getScoringEngineJar(any(), eq("model-a"), eq(BuildPriority.BATCH)))
+        .thenReturn(Paths.get("/tmp/model-a.jar"));
+    when(publisherMock.getScoringEngineJar(any(), eq("model-b"), eq(BuildPriority.BATCH)))
+        .thenReturn(Paths.get("/tmp/model-b.jar"));
+
+    // when
+    List<EngineBuild> builds =
+        sut.submitAll(testCredentials, Arrays.asList("model-a", "model-b", "model-a"));
+    pendingBuilds.forEach(Runnable::run);
+
+    // then
+    assertThat(builds.size(), equalTo(2));
+    assertThat(pendingBuilds.size(), equalTo(2));
+    assertThat(builds.get(0).getModelName(), equalTo("model-a"));
+    assertThat(builds.get(0).getScoringEngineJar(), equalTo(Paths.get("/tmp/model-a.jar")));
+    assertThat(builds.get(1).getModelName(), equalTo("model-b"));
+    assertThat(builds.get(1).getScoringEngineJar(), equalTo(Paths.get("/tmp/model-b.jar")));
+  }
+
+  @Test
+  public void submitAll_executorQueueFull_rejectedBuildsFailedOthersScheduled() throws Exception {
+    // given
+    List<Runnable> pendingBuilds = new ArrayList<>();
+    Executor singleSlotExecutor = runnable -> {
+      if (!pendingBuilds.isEmpty()) {
+        throw new RejectedExecutionException();
+      }
+      pendingBuilds.add(runnable);
+    };
+    EngineBuildRegistry sut =
+        new EngineBuildRegistry(publisherMock, singleSlotExecutor, testRetentionMillis);
+
+    // when
+    List<EngineBuild> builds =
+        sut.submitAll(testCredentials, Arrays.asList("model-a", "model-b"));
+
+    // then
+    assertThat(builds.get(0).getStatus(), equalTo(EngineBuildStatus.QUEUED));
+    assertThat(builds.get(1).getStatus(), equalTo(EngineBuildStatus.FAILED));
+    assertThat(sut.find(builds.get(1).getId()).getFailureMessage(),
+        equalTo("Too many scoring engine builds in progress. Try again later."));
+  }
+
+  @Test
+  public void find_finishedBuildAfterRetentionTime_exceptionThrown() throws Exception {
+    // given
+    EngineBuildRegistry sut = new EngineBuildRegistry(publisherMock, Runnable::run, 0);
+    when(publisherMock.getScoringEngineJar(any(), eq(testModelName), eq(BuildPriority.BATCH)))
+        .thenReturn(testScoringEngineJar);
+    EngineBuild build = sut.submit(testCredentials, testModelName);
+
+    // then
+    thrown.expect(UnknownBuildException.class);
+    sut.find(build.getId());
+  }
+
+  @Test
+  public void find_finishedBuildAfterRetentionTime_scoringEngineHeldUntilForgotten()
+      throws Exception {
+    // given
+    EngineBuildRegistry sut = new EngineBuildRegistry(publisherMock, Runnable::run, 0);
+    when(publisherMock.getScoringEngineJar(any(), eq(testModelName), eq(BuildPriority.BATCH)))
+        .thenReturn(testScoringEngineJar);
+    EngineBuild build = sut.submit(testCredentials, testModelName);
+
+    // when
+    try {
+      sut.find(build.getId());
+    } catch (UnknownBuildException e) {
+      // build forgotten
+    }
+
+    // then
+    InOrder inOrder = inOrder(publisherMock);
+    inOrder.verify(publisherMock).holdScoringEngineJar(testScoringEngineJar);
+    inOrder.verify(publisherMock).releaseHeldScoringEngineJar(testScoringEngineJar);
+  }
+
+  @Test
+  public void startEvicting_finishedBuildAfterRetentionTime_scoringEngineReleasedWithoutRequests()
+      throws Exception {
+    // given
+    ScheduledExecutorService schedulerMock = mock(ScheduledExecutorService.class);
+    EngineBuildRegistry sut = new EngineBuildRegistry(publisherMock, Runnable::run, 0);
+    when(publisherMock.getScoringEngineJar(any(), eq(testModelName), eq(BuildPriority.BATCH)))
+        .thenReturn(testScoringEngineJar);
+    sut.submit(testCredentials, testModelName);
+
+    // when
+    sut.startEvicting(schedulerMock, 30);
+    ArgumentCaptor<Runnable> eviction = ArgumentCaptor.forClass(Runnable.class);
+    verify(schedulerMock).scheduleWithFixedDelay(eviction.capture(), eq(30L), eq(30L),
+        eq(TimeUnit.SECONDS));
+    eviction.getValue().run();
+
+    // then
+    assertThat(sut.size(), equalTo(0));
+    verify(publisherMock).releaseHeldScoringEngineJar(testScoringEngineJar);
+  }
+
+  @Test
+  public void submit_twoBuilds_differentIdsAssigned() throws Exception {
+    // given
+    EngineBuildRegistry sut =
+        new EngineBuildRegistry(publisherMock, runnable -> {}, testRetentionMillis);
+
+    // when
+    EngineBuild first = sut.submit(testCredentials, testModelName);
+    EngineBuild second = sut.submit(testCredentials, testModelName);
+
+    // then
+    assertThat(first.getId(), not(equalTo(second.getId())));
+  }
+}
@@ -0,0 +1,139 @@
+/**
+ * Copyright (c) 2016 Intel Corporation
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file except
+ * in compliance with the License. You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software distributed under the License
+ * is distributed on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express
+ * or implied. See the License for the specific language governing permissions and limitations under
+ * the License.
+ */
+package org.trustedanalytics.h2oscoringengine.publisher.cache;
+
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.equalTo;
+import static org.mockito.Matchers.any;
+import static org.mockito.Matchers.eq;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import org.junit.Before;
+import org.junit.Test;
+import org.trustedanalytics.h2oscoringengine.publisher.http.FilesDownloader;
+
+public class GenModelCacheTest {
+
+  private final String testLibResourcePath = "/3/h2o-genmodel.jar";
+  private final byte[] testLibContent = "some library content".getBytes();
+  private final FilesDownloader downloaderMock = mock(FilesDownloader.class);
+  private final ObjectMapper jsonMapper = new ObjectMapper();
+  private Path cacheDir;
+  private Path workingDir;
+
+  @Before
+  public void setUp() throws IOException {
+    this.cacheDir = Files.createTempDirectory("h2o-publisher-test-genmodel-cache");
+    this.workingDir = Files.createTempDirectory("h2o-publisher-test-working-dir");
+
+    when(downloaderMock.download(eq(testLibResourcePath), any())).thenAnswer(
+        invocation -> Files.write((Path) invocation.getArguments()[1], testLibContent));
+    when(downloaderMock.getServerUrl()).thenReturn("http://h2o-a:54321");
+  }
+
+  @Test
+  public void fetch_sameH2oVersionTwice_libraryDownloadedOnce() throws Exception {
+    // given
+    GenModelCache sut = new GenModelCache(cacheDir);
+    when(downloaderMock.fetchJson(GenModelCache.H2O_SERVER_CLOUD_PATH))
+        .thenReturn(jsonMapper.readTree("{\"version\":\"3.10.0.8\"}"));
+
+    // when
+    Path firstLib = sut.fetch(downloaderMock, testLibResourcePath, workingDir.resolve("first.jar"));
+    Path secondLib =
+        sut.fetch(downloaderMock, testLibResourcePath, workingDir.resolve("second.jar"));
+
+    // then
+    verify(downloaderMock, times(1)).download(eq(testLibResourcePath), any());
+    assertThat(Files.readAllBytes(firstLib), equalTo(testLibContent));
+    assertThat(Files.readAllBytes(secondLib), equalTo(testLibContent));
+  }
+
+  @Test
+  public void fetch_differentH2oVersions_libraryDownloadedForEachVersion() throws Exception {
+    // given
+    GenModelCache sut = new GenModelCache(cacheDir);
+    when(downloaderMock.fetchJson(GenModelCache.H2O_SERVER_CLOUD_PATH)).thenReturn(
+        jsonMapper.readTree("{\"version\":\"3.10.0.8\"}"),
+        jsonMapper.readTree("{\"version\":\"3.10.4.2\"}"));
+
+    // when
+    sut.fetch(downloaderMock, testLibResourcePath, workingDir.resolve("first.jar"));
+    sut.fetch(downloaderMock, testLibResourcePath, workingDir.resolve("second.jar"));
+
+    // then
+    verify(downloaderMock, times(2)).download(eq(testLibResourcePath), any());
+  }
+
+  @Test
+  public void fetch_sameH2oVersionOfDifferentServers_libraryDownloadedFromEachServer()
+      throws Exception {
+    // given
+    GenModelCache sut = new GenModelCache(cacheDir);
+    FilesDownloader otherDownloaderMock = mock(FilesDownloader.class);
+    byte[] otherLibContent = "other library content".getBytes();
+    when(otherDownloaderMock.getServerUrl()).thenReturn("http://h2o-b:54321");
+    when(otherDownloaderMock.download(eq(testLibResourcePath), any())).thenAnswer(
+        invocation -> Files.write((Path) invocation.getArguments()[1], otherLibContent));
+    when(downloaderMock.fetchJson(GenModelCache.H2O_SERVER_CLOUD_PATH))
+        .thenReturn(jsonMapper.readTree("{\"version\":\"3.10.0.8\"}"));
+    when(otherDownloaderMock.fetchJson(GenModelCache.H2O_SERVER_CLOUD_PATH))
+        .thenReturn(jsonMapper.readTree("{\"version\":\"3.10.0.8\"}"));
+
+    // when
+    sut.fetch(otherDownloaderMock, testLibResourcePath, workingDir.resolve("first.jar"));
+    Path lib = sut.fetch(downloaderMock, testLibResourcePath, workingDir.resolve("second.jar"));
+
+    // then
+    verify(downloaderMock).download(eq(testLibResourcePath), any());
+    assertThat(Files.readAllBytes(lib), equalTo(testLibContent));
+  }
+
+  @Test
+  public void fetch_h2oVersionUnavailable_libraryDownloadedDirectly() throws Exception {
+    // given
+    GenModelCache sut = new GenModelCache(cacheDir);
+    Path destination = workingDir.resolve("lib.jar");
+    when(downloaderMock.fetchJson(GenModelCache.H2O_SERVER_CLOUD_PATH))
+        .thenThrow(new IOException());
+
+    // when
+    sut.fetch(downloaderMock, testLibResourcePath, destination);
+
+    // then
+    verify(downloaderMock).download(testLibResourcePath, destination);
+    assertThat(Files.readAllBytes(destination), equalTo(testLibContent));
+  }
+
+  @Test
+  public void disabled_libraryDownloadedWithoutCheckingVersion() throws Exception {
+    // given
+    GenModelCache sut = GenModelCache.disabled();
+    Path destination = workingDir.resolve("lib.jar");
+
+    // when
+    sut.fetch(downloaderMock, testLibResourcePath, destination);
+
+    // then
+    verify(downloaderMock).download(testLibResourcePath, destination);
+    verify(downloaderMock, times(0)).fetchJson(any());
+  }
+}
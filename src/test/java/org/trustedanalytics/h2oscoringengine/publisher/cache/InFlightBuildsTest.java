@@ -0,0 +1,240 @@
+/**
+ * Copyright (c) 2016 Intel Corporation
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file except
+ * in compliance with the License. You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software distributed under the License
+ * is distributed on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express
+ * or implied. See the License for the specific language governing permissions and limitations under
+ * the License.
+ */
+package org.trustedanalytics.h2oscoringengine.publisher.cache;
+
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.equalTo;
+import static org.hamcrest.Matchers.is;
+import static org.hamcrest.Matchers.not;
+
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import org.junit.After;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.ExpectedException;
+import org.trustedanalytics.h2oscoringengine.publisher.EngineBuildingException;
+import org.trustedanalytics.h2oscoringengine.publisher.http.BasicAuthServerCredentials;
+
+public class InFlightBuildsTest {
+
+  private final String testKey = "some-key";
+  private final Path testScoringEngineJar = Paths.get("/tmp/some-engine.jar");
+  private final ExecutorService executor = Executors.newSingleThreadExecutor();
+
+  @Rule
+  public final ExpectedException thrown = ExpectedException.none();
+
+  @After
+  public void tearDown() {
+    executor.shutdownNow();
+  }
+
+  @Test
+  public void run_sameBuildAlreadyRunning_buildRunOnceAndResultShared() throws Exception {
+    // given
+    InFlightBuilds sut = new InFlightBuilds();
+    AtomicInteger buildsRun = new AtomicInteger();
+    CountDownLatch buildStarted = new CountDownLatch(1);
+    CountDownLatch buildMayFinish = new CountDownLatch(1);
+    AtomicInteger handedOverTo = new AtomicInteger(-1);
+
+    // when
+    Future<Path> firstResult = executor.submit(() -> sut.run(testKey, () -> {
+      buildsRun.incrementAndGet();
+      buildStarted.countDown();
+      awaitQuietly(buildMayFinish);
+      return testScoringEngineJar;
+    }, (scoringEngineJar, joinedRequests) -> handedOverTo.set(joinedRequests)));
+    buildStarted.await(5, TimeUnit.SECONDS);
+    new Thread(() -> {
+      // let the second request join the running build before it finishes
+      while (sut.getCoalescedCount() == 0) {
+        Thread.yield();
+      }
+      buildMayFinish.countDown();
+    }).start();
+    Path secondResult = sut.run(testKey, () -> {
+      buildsRun.incrementAndGet();
+      return Paths.get("/tmp/other-engine.jar");
+    });
+
+    // then
+    assertThat(firstResult.get(5, TimeUnit.SECONDS), equalTo(testScoringEngineJar));
+    assertThat(secondResult, equalTo(testScoringEngineJar));
+    assertThat(buildsRun.get(), equalTo(1));
+    assertThat(handedOverTo.get(), equalTo(1));
+    assertThat(sut.getInFlightCount(), equalTo(0));
+  }
+
+  @Test
+  public void run_urgentRequestJoinsBuildNotUrgent_buildExpedited() throws Exception {
+    // given
+    InFlightBuilds sut = new InFlightBuilds();
+    AtomicInteger expedited = new AtomicInteger();
+    CountDownLatch buildStarted = new CountDownLatch(1);
+    CountDownLatch buildMayFinish = new CountDownLatch(1);
+    Future<Path> firstResult = executor.submit(() -> sut.run(testKey, false, () -> {
+      expedited.incrementAndGet();
+      buildMayFinish.countDown();
+    }, () -> {
+      buildStarted.countDown();
+      awaitQuietly(buildMayFinish);
+      return testScoringEngineJar;
+    }, (scoringEngineJar, joinedRequests) -> {
+    }));
+    buildStarted.await(5, TimeUnit.SECONDS);
+
+    // when
+    Path urgentResult = sut.run(testKey, true, () -> {
+    }, () -> Paths.get("/tmp/other-engine.jar"), (scoringEngineJar, joinedRequests) -> {
+    });
+
+    // then
+    assertThat(firstResult.get(5, TimeUnit.SECONDS), equalTo(testScoringEngineJar));
+    assertThat(urgentResult, equalTo(testScoringEngineJar));
+    assertThat(expedited.get(), equalTo(1));
+  }
+
+  @Test
+  public void run_previousBuildFinished_buildRunAgain() throws Exception {
+    // given
+    InFlightBuilds sut = new InFlightBuilds();
+    Path otherScoringEngineJar = Paths.get("/tmp/other-engine.jar");
+
+    // when
+    sut.run(testKey, () -> testScoringEngineJar);
+    Path result = sut.run(testKey, () -> otherScoringEngineJar);
+
+    // then
+    assertThat(result, equalTo(otherScoringEngineJar));
+    assertThat(sut.getCoalescedCount(), equalTo(0L));
+  }
+
+  @Test
+  public void run_buildFailed_failureRethrownAndBuildForgotten() throws Exception {
+    // given
+    InFlightBuilds sut = new InFlightBuilds();
+    String testMessage = "Some build failure";
+
+    // then
+    thrown.expect(EngineBuildingException.class);
+    thrown.expectMessage(testMessage);
+    try {
+      sut.run(testKey, () -> {
+        throw new EngineBuildingException(testMessage);
+      });
+    } finally {
+      assertThat(sut.getInFlightCount(), equalTo(0));
+    }
+  }
+
+  @Test
+  public void start_sameBuildRunningInBackground_buildStartedOnceAndResultShared()
+      throws Exception {
+    // given
+    InFlightBuilds sut = new InFlightBuilds();
+    AtomicInteger buildsStarted = new AtomicInteger();
+    CompletableFuture<Path> backgroundBuild = new CompletableFuture<>();
+    AtomicInteger handedOverTo = new AtomicInteger(-1);
+    CompletableFuture<Path> firstResult = sut.start(testKey, true, () -> {
+    }, () -> {
+      buildsStarted.incrementAndGet();
+      return backgroundBuild;
+    }, (scoringEngineJar, joinedRequests) -> handedOverTo.set(joinedRequests));
+
+    // when
+    CompletableFuture<Path> secondResult = sut.start(testKey, true, () -> {
+    }, () -> {
+      buildsStarted.incrementAndGet();
+      return CompletableFuture.completedFuture(Paths.get("/tmp/other-engine.jar"));
+    }, (scoringEngineJar, joinedRequests) -> {
+    });
+    Future<Path> thirdResult = executor.submit(
+        () -> sut.run(testKey, () -> Paths.get("/tmp/other-engine.jar")));
+    while (sut.getCoalescedCount() < 2) {
+      Thread.yield();
+    }
+    boolean completedBeforeBuild = secondResult.isDone();
+    backgroundBuild.complete(testScoringEngineJar);
+
+    // then
+    assertThat(completedBeforeBuild, is(false));
+    assertThat(firstResult.get(5, TimeUnit.SECONDS), equalTo(testScoringEngineJar));
+    assertThat(secondResult.get(5, TimeUnit.SECONDS), equalTo(testScoringEngineJar));
+    assertThat(thirdResult.get(5, TimeUnit.SECONDS), equalTo(testScoringEngineJar));
+    assertThat(buildsStarted.get(), equalTo(1));
+    assertThat(handedOverTo.get(), equalTo(2));
+    assertThat(sut.getInFlightCount(), equalTo(0));
+  }
+
+  @Test
+  public void start_buildRunningInBackgroundFailed_failurePassedToJoinedRequests()
+      throws Exception {
+    // given
+    InFlightBuilds sut = new InFlightBuilds();
+    String testMessage = "Some build failure";
+    CompletableFuture<Path> backgroundBuild = new CompletableFuture<>();
+    sut.start(testKey, true, () -> {
+    }, () -> backgroundBuild, (scoringEngineJar, joinedRequests) -> {
+    });
+    Future<Path> joinedResult = executor.submit(
+        () -> sut.run(testKey, () -> Paths.get("/tmp/other-engine.jar")));
+    while (sut.getCoalescedCount() == 0) {
+      Thread.yield();
+    }
+
+    // when
+    backgroundBuild.completeExceptionally(new EngineBuildingException(testMessage));
+
+    // then
+    thrown.expectMessage(testMessage);
+    try {
+      joinedResult.get(5, TimeUnit.SECONDS);
+    } finally {
+      assertThat(sut.getInFlightCount(), equalTo(0));
+    }
+  }
+
+  @Test
+  public void key_differentCredentials_differentKeys() {
+    // given
+    String host = "http://example.com";
+    String modelName = "some-model";
+
+    // when
+    String key =
+        InFlightBuilds.key(new BasicAuthServerCredentials(host, "user", "pass"), modelName);
+    String otherKey =
+        InFlightBuilds.key(new BasicAuthServerCredentials(host, "user", "other"), modelName);
+
+    // then
+    assertThat(key, not(equalTo(otherKey)));
+  }
+
+  private static void awaitQuietly(CountDownLatch latch) {
+    try {
+      latch.await(5, TimeUnit.SECONDS);
+    } catch (InterruptedException e) {
+      Thread.currentThread().interrupt();
+    }
+  }
+}
@@ -0,0 +1,49 @@
+/**
+ * Copyright (c) 2016 Intel Corporation
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file except
+ * in compliance with the License. You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software distributed under the License
+ * is distributed on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express
+ * or implied. See the License for the specific language governing permissions and limitations under
+ * the License.
+ */
+package org.trustedanalytics.h2oscoringengine.publisher.cache;
+
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.equalTo;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+import java.util.Map;
+import java.util.stream.Collectors;
+import org.junit.Test;
+import org.springframework.boot.actuate.metrics.Metric;
+
+public class ScoringEngineCacheMetricsTest {
+
+  private final ScoringEngineCache cacheMock = mock(ScoringEngineCache.class);
+
+  @Test
+  public void metrics_cacheUsageReported() {
+    // given
+    ScoringEngineCacheMetrics sut = new ScoringEngineCacheMetrics(cacheMock);
+    when(cacheMock.getHitCount()).thenReturn(7L);
+    when(cacheMock.getMissCount()).thenReturn(3L);
+    when(cacheMock.getEntryCount()).thenReturn(2);
+    when(cacheMock.getSizeBytes()).thenReturn(1024L);
+
+    // when
+    Map<String, Number> metrics = sut.metrics().stream()
+        .collect(Collectors.toMap(Metric::getName, Metric::getValue));
+
+    // then
+    assertThat(metrics.get("cache.scoringEngine.hits"), equalTo(7L));
+    assertThat(metrics.get("cache.scoringEngine.misses"), equalTo(3L));
+    assertThat(metrics.get("cache.scoringEngine.entries"), equalTo(2));
+    assertThat(metrics.get("cache.scoringEngine.sizeBytes"), equalTo(1024L));
+  }
+}
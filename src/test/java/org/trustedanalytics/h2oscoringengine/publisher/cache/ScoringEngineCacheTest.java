@@ -0,0 +1,198 @@
+/**
+ * Copyright (c) 2016 Intel Corporation
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file except
+ * in compliance with the License. You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software distributed under the License
+ * is distributed on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express
+ * or implied. See the License for the specific language governing permissions and limitations under
+ * the License.
+ */
+package org.trustedanalytics.h2oscoringengine.publisher.cache;
+
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.equalTo;
+import static org.hamcrest.Matchers.is;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Optional;
+import org.junit.Before;
+import org.junit.Test;
+
+public class ScoringEngineCacheTest {
+
+  private final String testKey = "some-key";
+  private final String otherTestKey = "some-other-key";
+  private final String yetAnotherTestKey = "yet-another-key";
+  private final byte[] testEngineContent = "some engine content".getBytes();
+  private Path cacheDir;
+  private Path testEngineJar;
+
+  @Before
+  public void setUp() throws IOException {
+    this.cacheDir = Files.createTempDirectory("h2o-publisher-test-cache");
+    this.testEngineJar = Files.write(Files.createTempFile("scoring-engine", ".jar"),
+        testEngineContent);
+  }
+
+  @Test
+  public void get_engineNotCached_emptyResultAndMissCounted() throws Exception {
+    // given
+    ScoringEngineCache sut = new ScoringEngineCache(cacheDir, 1024);
+
+    // when
+    Optional<Path> cachedEngine = sut.get(testKey);
+
+    // then
+    assertThat(cachedEngine.isPresent(), is(false));
+    assertThat(sut.getMissCount(), equalTo(1L));
+    assertThat(sut.getHitCount(), equalTo(0L));
+  }
+
+  @Test
+  public void get_engineCached_cachedCopyReturnedAndHitCounted() throws Exception {
+    // given
+    ScoringEngineCache sut = new ScoringEngineCache(cacheDir, 1024);
+    sut.put(testKey, testEngineJar);
+
+    // when
+    Optional<Path> cachedEngine = sut.get(testKey);
+
+    // then
+    assertThat(cachedEngine.isPresent(), is(true));
+    assertThat(cachedEngine.get().startsWith(cacheDir), is(true));
+    assertThat(Files.readAllBytes(cachedEngine.get()), equalTo(testEngineContent));
+    assertThat(sut.getHitCount(), equalTo(1L));
+  }
+
+  @Test
+  public void put_cacheSizeExceeded_leastRecentlyUsedEntryEvicted() throws Exception {
+    // given
+    ScoringEngineCache sut = new ScoringEngineCache(cacheDir, 2 * testEngineContent.length);
+    sut.release(sut.put(testKey, testEngineJar));
+    sut.release(sut.put(otherTestKey, testEngineJar));
+    sut.release(sut.get(testKey).get());
+
+    // when
+    sut.release(sut.put(yetAnotherTestKey, testEngineJar));
+
+    // then
+    assertThat(sut.get(otherTestKey).isPresent(), is(false));
+    assertThat(sut.get(testKey).isPresent(), is(true));
+    assertThat(sut.get(yetAnotherTestKey).isPresent(), is(true));
+    assertThat(sut.getSizeBytes(), equalTo(2L * testEngineContent.length));
+  }
+
+  @Test
+  public void put_engineBiggerThanCache_originalPathReturned() throws Exception {
+    // given
+    ScoringEngineCache sut = new ScoringEngineCache(cacheDir, testEngineContent.length - 1);
+
+    // when
+    Path result = sut.put(testKey, testEngineJar);
+
+    // then
+    assertThat(result, equalTo(testEngineJar));
+    assertThat(sut.getEntryCount(), equalTo(0));
+  }
+
+  @Test
+  public void scoringEngineCache_directoryWithCachedEngines_enginesAvailableAfterRestart()
+      throws Exception {
+    // given
+    new ScoringEngineCache(cacheDir, 1024).put(testKey, testEngineJar);
+
+    // when
+    ScoringEngineCache sut = new ScoringEngineCache(cacheDir, 1024);
+
+    // then
+    assertThat(sut.get(testKey).isPresent(), is(true));
+    assertThat(sut.getSizeBytes(), equalTo((long) testEngineContent.length));
+  }
+
+  @Test
+  public void disabled_engineNotCached() throws Exception {
+    // given
+    ScoringEngineCache sut = ScoringEngineCache.disabled();
+
+    // when
+    Path result = sut.put(testKey, testEngineJar);
+
+    // then
+    assertThat(result, equalTo(testEngineJar));
+    assertThat(sut.get(testKey).isPresent(), is(false));
+  }
+
+  @Test
+  public void put_cacheSizeExceededWhileEntryServed_servedEntryEvictedOnlyAfterRelease()
+      throws Exception {
+    // given
+    ScoringEngineCache sut = new ScoringEngineCache(cacheDir, testEngineContent.length);
+    sut.release(sut.put(testKey, testEngineJar));
+    Path servedEngine = sut.get(testKey).get();
+
+    // when
+    Path otherServedEngine = sut.put(otherTestKey, testEngineJar);
+
+    // then
+    assertThat(Files.exists(servedEngine), is(true));
+    sut.release(servedEngine);
+    assertThat(Files.exists(servedEngine), is(false));
+    assertThat(Files.exists(otherServedEngine), is(true));
+    assertThat(sut.getEntryCount(), equalTo(1));
+  }
+
+  @Test
+  public void release_engineRetainedForJoinedRequests_engineKeptUntilAllReleased()
+      throws Exception {
+    // given
+    ScoringEngineCache sut = new ScoringEngineCache(cacheDir, testEngineContent.length);
+    Path servedEngine = sut.put(testKey, testEngineJar);
+    sut.retain(servedEngine, 1);
+    sut.put(otherTestKey, testEngineJar);
+
+    // when
+    sut.release(servedEngine);
+
+    // then
+    assertThat(Files.exists(servedEngine), is(true));
+    sut.release(servedEngine);
+    assertThat(Files.exists(servedEngine), is(false));
+  }
+
+  @Test
+  public void get_cachedFileDeletedWhilePinned_pinsDroppedWithEntry() throws Exception {
+    // given
+    ScoringEngineCache sut = new ScoringEngineCache(cacheDir, testEngineContent.length);
+    Files.delete(sut.put(testKey, testEngineJar));
+    sut.get(testKey);
+
+    // when
+    sut.release(sut.put(testKey, testEngineJar));
+    Path otherEngine = sut.put(otherTestKey, testEngineJar);
+
+    // then
+    assertThat(sut.get(testKey).isPresent(), is(false));
+    assertThat(Files.exists(otherEngine), is(true));
+    assertThat(sut.getEntryCount(), equalTo(1));
+  }
+
+  @Test
+  public void release_fileOutsideCache_ignored() throws Exception {
+    // given
+    ScoringEngineCache sut = new ScoringEngineCache(cacheDir, 1024);
+
+    // when
+    sut.release(testEngineJar);
+    sut.retain(testEngineJar, 1);
+
+    // then
+    assertThat(Files.exists(testEngineJar), is(true));
+    assertThat(sut.getEntryCount(), equalTo(0));
+  }
+}
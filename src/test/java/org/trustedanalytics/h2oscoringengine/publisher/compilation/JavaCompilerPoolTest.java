@@ -0,0 +1,208 @@
+/**
+ * Copyright (c) 2016 Intel Corporation
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file except
+ * in compliance with the License. You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software distributed under the License
+ * is distributed on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express
+ * or implied. See the License for the specific language governing permissions and limitations under
+ * the License.
+ */
+package org.trustedanalytics.h2oscoringengine.publisher.compilation;
+
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.equalTo;
+import static org.hamcrest.Matchers.is;
+import static org.hamcrest.Matchers.not;
+import static org.hamcrest.Matchers.sameInstance;
+
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.jar.JarEntry;
+import java.util.jar.JarOutputStream;
+import java.util.stream.Stream;
+import javax.tools.StandardJavaFileManager;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+public class JavaCompilerPoolTest {
+
+  private Path poolDir;
+  private Path firstLib;
+  private Path secondLib;
+  private JavaCompilerPool sut;
+
+  @Before
+  public void setUp() throws IOException {
+    Path tempDir = Files.createTempDirectory("h2o-publisher-test-compiler-pool");
+    this.poolDir = tempDir.resolve("pool");
+    this.firstLib = prepareLibrary(tempDir.resolve("first.jar"), "first.txt");
+    this.secondLib = prepareLibrary(tempDir.resolve("second.jar"), "second.txt");
+  }
+
+  @After
+  public void tearDown() {
+    if (null != sut) {
+      sut.close();
+    }
+  }
+
+  @Test
+  public void borrow_sameLibraryTwice_fileManagerReused() throws Exception {
+    // given
+    sut = new JavaCompilerPool(poolDir, 2);
+
+    // when
+    StandardJavaFileManager first = borrowAndGiveBack(firstLib);
+    StandardJavaFileManager second = borrowAndGiveBack(firstLib);
+
+    // then
+    assertThat(second, sameInstance(first));
+    assertThat(sut.getColdStartCount(), equalTo(1L));
+    assertThat(sut.getWarmHitCount(), equalTo(1L));
+  }
+
+  @Test
+  public void borrow_differentLibraries_separateFileManagers() throws Exception {
+    // given
+    sut = new JavaCompilerPool(poolDir, 2);
+
+    // when
+    StandardJavaFileManager first = borrowAndGiveBack(firstLib);
+    StandardJavaFileManager second = borrowAndGiveBack(secondLib);
+
+    // then
+    assertThat(second, not(sameInstance(first)));
+    assertThat(sut.getColdStartCount(), equalTo(2L));
+    assertThat(sut.getIdleCount(), equalTo(2));
+  }
+
+  @Test
+  public void borrow_moreLibrariesThanPoolSize_leastRecentlyUsedFileManagerEvicted()
+      throws Exception {
+    // given
+    sut = new JavaCompilerPool(poolDir, 1);
+
+    // when
+    borrowAndGiveBack(firstLib);
+    borrowAndGiveBack(secondLib);
+    borrowAndGiveBack(firstLib);
+
+    // then
+    assertThat(sut.getIdleCount(), equalTo(1));
+    assertThat(sut.getColdStartCount(), equalTo(3L));
+  }
+
+  @Test
+  public void borrow_sameUnchangedLibraryTwice_libraryHashedOnce() throws Exception {
+    // given
+    sut = new JavaCompilerPool(poolDir, 2);
+
+    // when
+    borrowAndGiveBack(firstLib);
+    borrowAndGiveBack(firstLib);
+
+    // then
+    assertThat(sut.getHashComputationCount(), equalTo(1L));
+  }
+
+  @Test
+  public void borrow_sameLibraryLinkedToAnotherBuildDirectory_libraryHashedOnce()
+      throws Exception {
+    // given
+    sut = new JavaCompilerPool(poolDir, 2);
+    Path buildDir = Files.createDirectories(firstLib.resolveSibling("model-build").resolve("lib"));
+    Path linkedLib = Files.createLink(buildDir.resolve("genmodel.jar"), firstLib);
+
+    // when
+    borrowAndGiveBack(firstLib);
+    borrowAndGiveBack(linkedLib);
+
+    // then
+    assertThat(sut.getHashComputationCount(), equalTo(1L));
+    assertThat(sut.getWarmHitCount(), equalTo(1L));
+  }
+
+  @Test
+  public void borrow_libraryReplacedUnderSamePath_libraryHashedAgain() throws Exception {
+    // given
+    sut = new JavaCompilerPool(poolDir, 2);
+    borrowAndGiveBack(firstLib);
+
+    // when
+    prepareLibrary(firstLib, "replaced-first-library.txt");
+    StandardJavaFileManager replaced = borrowAndGiveBack(firstLib);
+
+    // then
+    assertThat(sut.getHashComputationCount(), equalTo(2L));
+    assertThat(sut.getColdStartCount(), equalTo(2L));
+    assertThat(replaced, sameInstance(borrowAndGiveBack(firstLib)));
+  }
+
+  @Test
+  public void borrow_fileManagerEvicted_libraryCopyDeleted() throws Exception {
+    // given
+    sut = new JavaCompilerPool(poolDir, 1);
+
+    // when
+    borrowAndGiveBack(firstLib);
+    borrowAndGiveBack(secondLib);
+
+    // then
+    assertThat(countFiles(poolDir), equalTo(1L));
+  }
+
+  @Test
+  public void constructor_copiesLeftByPreviousRun_copiesDeleted() throws Exception {
+    // given
+    Files.createDirectories(poolDir);
+    Path staleCopy = Files.createFile(poolDir.resolve("stale.jar"));
+
+    // when
+    sut = new JavaCompilerPool(poolDir, 1);
+
+    // then
+    assertThat(Files.exists(staleCopy), is(false));
+  }
+
+  @Test
+  public void borrow_unpooled_fileManagerNotKept() throws Exception {
+    // given
+    sut = JavaCompilerPool.unpooled();
+
+    // when
+    StandardJavaFileManager first = borrowAndGiveBack(firstLib);
+    StandardJavaFileManager second = borrowAndGiveBack(firstLib);
+
+    // then
+    assertThat(second, not(sameInstance(first)));
+    assertThat(sut.getIdleCount(), equalTo(0));
+  }
+
+  private StandardJavaFileManager borrowAndGiveBack(Path lib) throws Exception {
+    try (JavaCompilerPool.Lease lease = sut.borrow(lib)) {
+      return lease.getFileManager();
+    }
+  }
+
+  private long countFiles(Path dir) throws IOException {
+    try (Stream<Path> files = Files.list(dir)) {
+      return files.count();
+    }
+  }
+
+  private Path prepareLibrary(Path jarPath, String entryName) throws IOException {
+    try (JarOutputStream jar = new JarOutputStream(new FileOutputStream(jarPath.toFile()))) {
+      jar.putNextEntry(new JarEntry(entryName));
+      jar.write(entryName.getBytes());
+      jar.closeEntry();
+    }
+    return jarPath;
+  }
+}
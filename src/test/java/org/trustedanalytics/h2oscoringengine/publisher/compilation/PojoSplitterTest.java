@@ -0,0 +1,105 @@
+/**
+ * Copyright (c) 2016 Intel Corporation
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file except
+ * in compliance with the License. You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software distributed under the License
+ * is distributed on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express
+ * or implied. See the License for the specific language governing permissions and limitations under
+ * the License.
+ */
+package org.trustedanalytics.h2oscoringengine.publisher.compilation;
+
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.containsString;
+import static org.hamcrest.Matchers.equalTo;
+import static org.hamcrest.Matchers.not;
+
+import java.util.Arrays;
+import java.util.List;
+import java.util.stream.Collectors;
+import org.junit.Test;
+
+public class PojoSplitterTest {
+
+  private final PojoSplitter sut = new PojoSplitter();
+
+  private final String testModelSource = "/* model { header */\n"
+      + "import hex.genmodel.GenModel;\n"
+      + "@ModelPojo(name=\"model\", algorithm=\"gbm\")\n"
+      + "public class model extends GenModel {\n"
+      + "  static class Inner { char brace = '}'; String s = \"\\\"}\"; }\n"
+      + "  double score() { return model_Tree_0.score0(); } // }\n"
+      + "}\n"
+      + "class model_Tree_0 { static double score0() { return 0; } }\n"
+      + "interface model_Holder { String NAME = \"{\"; }\n";
+
+  @Test
+  public void split_topLevelClasses_unitForEachClass() {
+    // given
+
+    // when
+    List<InMemorySourceFile> units = sut.split("model", testModelSource);
+
+    // then
+    assertThat(units.stream().map(InMemorySourceFile::getClassName).collect(Collectors.toList()),
+        equalTo(Arrays.asList("model", "model_Tree_0", "model_Holder")));
+  }
+
+  @Test
+  public void split_topLevelClasses_importsRepeatedAndOtherClassesSkippedInEachUnit() {
+    // given
+
+    // when
+    List<InMemorySourceFile> units = sut.split("model", testModelSource);
+
+    // then
+    String treeUnit = units.get(1).getCharContent(false).toString();
+    assertThat(treeUnit, containsString("import hex.genmodel.GenModel;"));
+    assertThat(treeUnit, containsString("class model_Tree_0"));
+    assertThat(treeUnit, not(containsString("public class model ")));
+    assertThat(units.get(0).getCharContent(false).toString(), containsString("static class Inner"));
+  }
+
+  @Test
+  public void split_packageDeclared_classNamesWithPackage() {
+    // given
+    String source = "package some.models;\nclass a { }\nclass b { }\n";
+
+    // when
+    List<InMemorySourceFile> units = sut.split("a", source);
+
+    // then
+    assertThat(units.stream().map(InMemorySourceFile::getClassName).collect(Collectors.toList()),
+        equalTo(Arrays.asList("some.models.a", "some.models.b")));
+  }
+
+  @Test
+  public void split_singleTopLevelClass_wholeSourceReturned() {
+    // given
+    String source = "public class model { static class Nested { } }";
+
+    // when
+    List<InMemorySourceFile> units = sut.split("model", source);
+
+    // then
+    assertThat(units.size(), equalTo(1));
+    assertThat(units.get(0).getCharContent(false).toString(), equalTo(source));
+  }
+
+  @Test
+  public void split_unbalancedBraces_wholeSourceReturned() {
+    // given
+    String source = "public class model { } class other { ";
+
+    // when
+    List<InMemorySourceFile> units = sut.split("model", source);
+
+    // then
+    assertThat(units.size(), equalTo(1));
+    assertThat(units.get(0).getClassName(), equalTo("model"));
+  }
+}
@@ -0,0 +1,101 @@
+/**
+ * Copyright (c) 2016 Intel Corporation
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file except
+ * in compliance with the License. You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software distributed under the License
+ * is distributed on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express
+ * or implied. See the License for the specific language governing permissions and limitations under
+ * the License.
+ */
+package org.trustedanalytics.h2oscoringengine.publisher.compilation;
+
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.containsInAnyOrder;
+import static org.hamcrest.Matchers.equalTo;
+import static org.hamcrest.Matchers.is;
+
+import java.util.List;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+import org.junit.Test;
+
+public class SplitCompilationTest {
+
+  private final String testModelSource = "/* compile with: javac model.java */\n"
+      + "import hex.genmodel.GenModel;\n"
+      + "public class model extends GenModel {\n"
+      + "  double score() { return model_Forest_0.score0(); }\n"
+      + "}\n"
+      + "class model_Forest_0 {\n"
+      + "  static double score0() { return model_Tree_0.score0() + model_Tree_1.score0(); }\n"
+      + "}\n"
+      + "class model_Tree_0 { static double score0() { return 0; } }\n"
+      + "class model_Tree_1 { static String name = \"model_Tree_0\"; // model\n"
+      + "  static double score0() { return 1; } }\n";
+
+  @Test
+  public void planCompilation_unitsReferringOtherUnits_compiledAfterIndependentGroups() {
+    // given
+    SplitCompilation sut = new SplitCompilation(Runnable::run, 2, 1);
+
+    // when
+    SplitCompilation.Plan plan = sut.planCompilation("model", testModelSource);
+
+    // then
+    assertThat(plan.isSplit(), is(true));
+    assertThat(plan.getIndependentGroups().size(), equalTo(2));
+    assertThat(classNames(plan.getIndependentGroups().stream().flatMap(List::stream)),
+        containsInAnyOrder("model_Tree_0", "model_Tree_1"));
+    assertThat(classNames(plan.getDependentUnits().stream()),
+        containsInAnyOrder("model", "model_Forest_0"));
+    assertThat(plan.getUnitsCount(), equalTo(4));
+  }
+
+  @Test
+  public void planCompilation_sourceSmallerThanThreshold_wholeSourceCompiled() {
+    // given
+    SplitCompilation sut = new SplitCompilation(Runnable::run, 2, testModelSource.length() + 1);
+
+    // when
+    SplitCompilation.Plan plan = sut.planCompilation("model", testModelSource);
+
+    // then
+    assertThat(plan.isSplit(), is(false));
+    assertThat(classNames(plan.getDependentUnits().stream()), containsInAnyOrder("model"));
+  }
+
+  @Test
+  public void planCompilation_everyUnitReferringOtherUnit_wholeSourceCompiled() {
+    // given
+    SplitCompilation sut = new SplitCompilation(Runnable::run, 2, 1);
+    String source = "class model { model_Tree_0 tree; }\nclass model_Tree_0 { model owner; }\n";
+
+    // when
+    SplitCompilation.Plan plan = sut.planCompilation("model", source);
+
+    // then
+    assertThat(plan.isSplit(), is(false));
+    assertThat(plan.getDependentUnits().get(0).getLength(), equalTo(source.length()));
+  }
+
+  @Test
+  public void planCompilation_disabled_wholeSourceCompiled() {
+    // given
+    SplitCompilation sut = SplitCompilation.disabled();
+
+    // when
+    SplitCompilation.Plan plan = sut.planCompilation("model", testModelSource);
+
+    // then
+    assertThat(plan.isSplit(), is(false));
+    assertThat(plan.getUnitsCount(), equalTo(1));
+  }
+
+  private List<String> classNames(Stream<InMemorySourceFile> units) {
+    return units.map(InMemorySourceFile::getClassName).collect(Collectors.toList());
+  }
+}
@@ -0,0 +1,144 @@
+/**
+ * Copyright (c) 2016 Intel Corporation
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file except
+ * in compliance with the License. You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software distributed under the License
+ * is distributed on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express
+ * or implied. See the License for the specific language governing permissions and limitations under
+ * the License.
+ */
+package org.trustedanalytics.h2oscoringengine.publisher.filesystem;
+
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.equalTo;
+
+import com.google.common.io.ByteStreams;
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.jar.JarEntry;
+import java.util.jar.JarFile;
+import java.util.jar.JarInputStream;
+import java.util.jar.JarOutputStream;
+import java.util.stream.Collectors;
+import java.util.zip.ZipEntry;
+import org.junit.Before;
+import org.junit.Test;
+
+public class RawCopyingJarTest {
+
+  private final byte[] testClassContent = "some class content, some class content".getBytes();
+  private final byte[] testModelJarContent = "some model jar content".getBytes();
+  private Path tempDir;
+  private Path baseJar;
+  private Path modelJar;
+
+  @Before
+  public void setUp() throws IOException {
+    this.tempDir = Files.createTempDirectory("h2o-publisher-test-raw-jar");
+    this.baseJar = tempDir.resolve("base.jar");
+    this.modelJar = Files.write(tempDir.resolve("model.jar"), testModelJarContent);
+
+    try (JarOutputStream jar = new JarOutputStream(new FileOutputStream(baseJar.toFile()))) {
+      jar.putNextEntry(new JarEntry("org/some/SomeClass.class"));
+      jar.write(testClassContent);
+      jar.closeEntry();
+      jar.putNextEntry(new JarEntry("org/some/OtherClass.class"));
+      jar.write(testClassContent);
+      jar.closeEntry();
+    }
+  }
+
+  @Test
+  public void map_jarWithoutZip64_entriesIndexedInOrder() throws Exception {
+    // given
+
+    // when
+    ZipIndex index = ZipIndex.map(baseJar);
+
+    // then
+    assertThat(
+        index.getEntries().stream().map(ZipIndex.Entry::getName).collect(Collectors.toList()),
+        equalTo(Arrays.asList("org/some/SomeClass.class", "org/some/OtherClass.class")));
+    assertThat(index.isRawCopyable(testModelJarContent.length), equalTo(true));
+  }
+
+  @Test
+  public void addJarContent_entriesCopiedAndReadable() throws Exception {
+    // given
+    Path engineJar;
+
+    // when
+    try (RawCopyingJar sut = new RawCopyingJar("engine", tempDir)) {
+      engineJar = sut.addJarContent(ZipIndex.map(baseJar)).getJarPath();
+    }
+
+    // then
+    try (JarFile jar = new JarFile(engineJar.toFile())) {
+      assertThat(readEntry(jar, "org/some/SomeClass.class"), equalTo(testClassContent));
+      assertThat(readEntry(jar, "org/some/OtherClass.class"), equalTo(testClassContent));
+    }
+  }
+
+  @Test
+  public void addUncompressedLibJar_libStoredWithProperCrc() throws Exception {
+    // given
+    Path engineJar;
+
+    // when
+    try (RawCopyingJar sut = new RawCopyingJar("engine.jar", tempDir)) {
+      engineJar =
+          sut.addJarContent(ZipIndex.map(baseJar)).addUncompressedLibJar(modelJar).getJarPath();
+    }
+
+    // then
+    try (JarFile jar = new JarFile(engineJar.toFile())) {
+      List<String> entries = Collections.list(jar.entries()).stream().map(ZipEntry::getName)
+          .collect(Collectors.toList());
+      assertThat(entries, equalTo(Arrays.asList("org/some/SomeClass.class",
+          "org/some/OtherClass.class", "lib/model.jar")));
+      assertThat(jar.getEntry("lib/model.jar").getMethod(), equalTo(ZipEntry.STORED));
+      // reading whole entry verifies its CRC
+      assertThat(readEntry(jar, "lib/model.jar"), equalTo(testModelJarContent));
+    }
+  }
+
+  @Test
+  public void addUncompressedLibJar_writtenToStream_readableAsStream() throws Exception {
+    // given
+    ByteArrayOutputStream output = new ByteArrayOutputStream();
+
+    // when
+    try (RawCopyingJar sut = new RawCopyingJar(output)) {
+      sut.addJarContent(ZipIndex.map(baseJar)).addUncompressedLibJar(modelJar);
+    }
+
+    // then
+    try (JarInputStream jar = new JarInputStream(new ByteArrayInputStream(output.toByteArray()))) {
+      assertThat(jar.getNextJarEntry().getName(), equalTo("org/some/SomeClass.class"));
+      assertThat(ByteStreams.toByteArray(jar), equalTo(testClassContent));
+      assertThat(jar.getNextJarEntry().getName(), equalTo("org/some/OtherClass.class"));
+      JarEntry libEntry = jar.getNextJarEntry();
+      assertThat(libEntry.getName(), equalTo("lib/model.jar"));
+      // stored entries can be streamed only with CRC and size known up front
+      assertThat(ByteStreams.toByteArray(jar), equalTo(testModelJarContent));
+    }
+  }
+
+  private byte[] readEntry(JarFile jar, String name) throws IOException {
+    try (InputStream entry = jar.getInputStream(jar.getEntry(name))) {
+      return ByteStreams.toByteArray(entry);
+    }
+  }
+}
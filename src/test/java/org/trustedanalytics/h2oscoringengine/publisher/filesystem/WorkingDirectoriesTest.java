@@ -0,0 +1,238 @@
+/**
+ * Copyright (c) 2016 Intel Corporation
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file except
+ * in compliance with the License. You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software distributed under the License
+ * is distributed on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express
+ * or implied. See the License for the specific language governing permissions and limitations under
+ * the License.
+ */
+package org.trustedanalytics.h2oscoringengine.publisher.filesystem;
+
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.equalTo;
+import static org.hamcrest.Matchers.is;
+import static org.hamcrest.Matchers.not;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.ExpectedException;
+import org.junit.rules.TemporaryFolder;
+
+public class WorkingDirectoriesTest {
+
+  private static final long NO_MAX_AGE = Long.MAX_VALUE;
+  private static final long NO_QUOTA = Long.MAX_VALUE;
+
+  @Rule
+  public final TemporaryFolder tempFolder = new TemporaryFolder();
+
+  @Rule
+  public final ExpectedException thrown = ExpectedException.none();
+
+  private final String testModelName = "some-model";
+  private Path rootDir;
+
+  @Before
+  public void setUp() throws IOException {
+    rootDir = tempFolder.newFolder("root").toPath();
+  }
+
+  @Test
+  public void create_sameModelTwice_separateDirectoriesCreated() throws IOException {
+    // given
+    WorkingDirectories sut = prepareWorkingDirectories(NO_MAX_AGE, NO_QUOTA);
+
+    // when
+    PublisherWorkingDirectory first = sut.create(testModelName);
+    PublisherWorkingDirectory second = sut.create(testModelName);
+
+    // then
+    assertThat(first.getPath(), not(equalTo(second.getPath())));
+    assertThat(Files.isDirectory(first.getH2oResourcesPath()), is(true));
+    assertThat(Files.isDirectory(second.getH2oResourcesPath()), is(true));
+  }
+
+  @Test
+  public void create_modelNameLeadingOutOfRootDir_exceptionThrown() throws IOException {
+    // given
+    WorkingDirectories sut = prepareWorkingDirectories(NO_MAX_AGE, NO_QUOTA);
+
+    // when
+    // then
+    thrown.expect(IllegalArgumentException.class);
+    sut.create("../" + testModelName);
+  }
+
+  @Test
+  public void reclaim_buildInProgress_directoryKept() throws IOException {
+    // given
+    WorkingDirectories sut = prepareWorkingDirectories(NO_MAX_AGE, 0);
+    PublisherWorkingDirectory workingDir = sut.create(testModelName);
+
+    // when
+    sut.reclaim();
+
+    // then
+    assertThat(Files.exists(workingDir.getPath()), is(true));
+  }
+
+  @Test
+  public void reclaim_jarHandedOverAndReleasedByEveryRequest_directoryDeleted() throws IOException {
+    // given
+    WorkingDirectories sut = prepareWorkingDirectories(NO_MAX_AGE, NO_QUOTA);
+    PublisherWorkingDirectory workingDir = sut.create(testModelName);
+    Path jar = createFile(workingDir.getScoringEngineJarDir().resolve("engine.jar"), 10);
+    sut.retain(jar, 1);
+
+    // when
+    sut.release(jar);
+    sut.reclaim();
+    boolean keptWhileReferenced = Files.exists(workingDir.getPath());
+    sut.release(jar);
+    sut.reclaim();
+
+    // then
+    assertThat(keptWhileReferenced, is(true));
+    assertThat(Files.exists(workingDir.getPath()), is(false));
+    assertThat(sut.getWorkspaceCount(), equalTo(0));
+  }
+
+  @Test
+  public void reclaim_jarNotReleasedWithinMaxAge_directoryDeleted() throws IOException {
+    // given
+    WorkingDirectories sut = prepareWorkingDirectories(-1, NO_QUOTA);
+    PublisherWorkingDirectory workingDir = sut.create(testModelName);
+    Path jar = createFile(workingDir.getScoringEngineJarDir().resolve("engine.jar"), 10);
+    sut.retain(jar, 1);
+
+    // when
+    sut.reclaim();
+
+    // then
+    assertThat(Files.exists(workingDir.getPath()), is(false));
+  }
+
+  @Test
+  public void reclaim_buildInProgressLongerThanMaxAge_directoryKept() throws IOException {
+    // given
+    WorkingDirectories sut = prepareWorkingDirectories(-1, NO_QUOTA);
+    PublisherWorkingDirectory workingDir = sut.create(testModelName);
+
+    // when
+    sut.reclaim();
+
+    // then
+    assertThat(Files.exists(workingDir.getPath()), is(true));
+  }
+
+  @Test
+  public void reclaim_quotaExceeded_oldestFinishedDirectoriesTrimmedToServedJar()
+      throws IOException {
+    // given
+    WorkingDirectories sut = prepareWorkingDirectories(NO_MAX_AGE, 150);
+    PublisherWorkingDirectory oldest = sut.create(testModelName);
+    PublisherWorkingDirectory newest = sut.create(testModelName);
+    Path oldestPojo = createFile(oldest.getH2oResourcesPath().resolve("model.java"), 100);
+    Path newestPojo = createFile(newest.getH2oResourcesPath().resolve("model.java"), 100);
+    Path oldestModelJar = createFile(oldest.getModelJarPath().resolve("model.jar"), 10);
+    Path oldestJar = createFile(oldest.getScoringEngineJarDir().resolve("engine.jar"), 10);
+    Path newestJar = createFile(newest.getScoringEngineJarDir().resolve("engine.jar"), 10);
+    sut.retain(oldestJar, 0);
+    sut.retain(newestJar, 0);
+
+    // when
+    sut.reclaim();
+
+    // then
+    assertThat(Files.exists(oldestJar), is(true));
+    assertThat(Files.exists(oldestPojo), is(false));
+    assertThat(Files.exists(oldestModelJar), is(false));
+    assertThat(Files.exists(oldest.getCompiledModelPath()), is(false));
+    assertThat(Files.exists(newestPojo), is(true));
+    assertThat(Files.exists(newestJar), is(true));
+  }
+
+  @Test
+  public void reclaim_quotaExceededByDirectoryOfBuildInProgress_directoryKept()
+      throws IOException {
+    // given
+    WorkingDirectories sut = prepareWorkingDirectories(NO_MAX_AGE, 0);
+    PublisherWorkingDirectory workingDir = sut.create(testModelName);
+    Path pojo = createFile(workingDir.getH2oResourcesPath().resolve("model.java"), 100);
+
+    // when
+    sut.reclaim();
+
+    // then
+    assertThat(Files.exists(pojo), is(true));
+  }
+
+  @Test
+  public void reclaim_heldDirectoryOlderThanMaxAgeAndOverQuota_directoryKeptUntilHoldReleased()
+      throws IOException {
+    // given
+    WorkingDirectories sut = prepareWorkingDirectories(-1, 0);
+    PublisherWorkingDirectory workingDir = sut.create(testModelName);
+    Path jar = createFile(workingDir.getScoringEngineJarDir().resolve("engine.jar"), 100);
+    sut.hold(jar);
+
+    // when
+    sut.reclaim();
+    boolean keptWhileHeld = Files.exists(workingDir.getPath());
+    sut.releaseHold(jar);
+    sut.reclaim();
+
+    // then
+    assertThat(keptWhileHeld, is(true));
+    assertThat(Files.exists(workingDir.getPath()), is(false));
+  }
+
+  @Test
+  public void reclaim_directoryLeftByPreviousRun_directoryDeletedButHiddenOnesKept()
+      throws IOException {
+    // given
+    WorkingDirectories sut = prepareWorkingDirectories(NO_MAX_AGE, NO_QUOTA);
+    Path leftover = Files.createDirectories(rootDir.resolve(testModelName).resolve("model"));
+    Path hidden = Files.createDirectory(rootDir.resolve(".genmodel-cache"));
+
+    // when
+    sut.reclaim();
+
+    // then
+    assertThat(Files.exists(leftover), is(false));
+    assertThat(Files.exists(hidden), is(true));
+  }
+
+  @Test
+  public void release_fileOutsideWorkingDirectories_nothingHappens() throws IOException {
+    // given
+    WorkingDirectories sut = prepareWorkingDirectories(NO_MAX_AGE, NO_QUOTA);
+    PublisherWorkingDirectory workingDir = sut.create(testModelName);
+    Path cachedJar = createFile(tempFolder.newFolder().toPath().resolve("cached.jar"), 10);
+
+    // when
+    sut.release(cachedJar);
+    sut.reclaim();
+
+    // then
+    assertThat(Files.exists(workingDir.getPath()), is(true));
+    assertThat(Files.exists(cachedJar), is(true));
+  }
+
+  private WorkingDirectories prepareWorkingDirectories(long maxAgeMillis, long quotaBytes) {
+    return new WorkingDirectories(rootDir, new FsDirectoryOperations(), maxAgeMillis, quotaBytes);
+  }
+
+  private static Path createFile(Path file, int size) throws IOException {
+    return Files.write(file, new byte[size]);
+  }
+}
@@ -14,23 +14,39 @@
 package org.trustedanalytics.h2oscoringengine.publisher.http;
 
 import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.containsString;
 import static org.hamcrest.Matchers.equalTo;
+import static org.hamcrest.Matchers.is;
+import static org.mockito.Matchers.any;
+import static org.mockito.Matchers.eq;
+import static org.mockito.Mockito.doThrow;
 import static org.mockito.Mockito.mock;
 import static org.mockito.Mockito.verify;
 import static org.mockito.Mockito.when;
 
+import java.io.ByteArrayInputStream;
 import java.io.IOException;
+import java.io.InputStream;
+import java.io.SequenceInputStream;
+import java.net.URI;
 import java.nio.file.Files;
 import java.nio.file.Path;
+import java.util.Arrays;
 import org.apache.commons.codec.binary.Base64;
 import org.junit.Before;
 import org.junit.Rule;
 import org.junit.Test;
 import org.junit.rules.ExpectedException;
+import org.mockito.ArgumentCaptor;
 import org.springframework.http.HttpMethod;
 import org.springframework.http.HttpStatus;
-import org.springframework.http.ResponseEntity;
+import org.springframework.http.client.ClientHttpResponse;
+import org.springframework.mock.http.client.MockClientHttpRequest;
 import org.springframework.web.client.HttpClientErrorException;
+import org.springframework.web.client.HttpServerErrorException;
+import org.springframework.web.client.RequestCallback;
+import org.springframework.web.client.ResourceAccessException;
+import org.springframework.web.client.ResponseExtractor;
 import org.springframework.web.client.RestTemplate;
 
 public class FilesDownloaderTest {
@@ -41,7 +57,7 @@ public class FilesDownloaderTest {
   private Path testPath;
   private String testServerResponse = "Some server response";
   private final RestTemplate restTemplateMock = mock(RestTemplate.class);
-  private final ResponseEntity<byte[]> responseMock = mock(ResponseEntity.class);
+  private final ClientHttpResponse responseMock = mock(ClientHttpResponse.class);
 
   @Rule
   public final ExpectedException thrown = ExpectedException.none();
@@ -50,9 +66,11 @@ public class FilesDownloaderTest {
   public void setUp() throws IOException {
     this.testPath = Files.createTempFile("some", "file");
 
-    when(restTemplateMock.exchange(testCredentials.getUrl() + testResource, HttpMethod.GET,
-        HttpCommunication.basicAuthRequest(testCredentials.getBasicAuthToken()), byte[].class))
-            .thenReturn(responseMock);
+    when(restTemplateMock.execute(eq(testCredentials.getUrl() + testResource), eq(HttpMethod.GET),
+        any(RequestCallback.class), any(ResponseExtractor.class))).thenAnswer(invocation -> {
+          ResponseExtractor<?> extractor = (ResponseExtractor<?>) invocation.getArguments()[3];
+          return extractor.extractData(responseMock);
+        });
   }
 
   @Test
@@ -61,15 +79,55 @@ public class FilesDownloaderTest {
     FilesDownloader downloader = new FilesDownloader(testCredentials, restTemplateMock);
 
     // when
-    when(responseMock.getBody()).thenReturn(testServerResponse.getBytes());
+    when(responseMock.getBody())
+        .thenReturn(new ByteArrayInputStream(testServerResponse.getBytes()));
     downloader.download(testResource, testPath);
 
     // then
-    verify(restTemplateMock).exchange(testCredentials.getUrl() + testResource, HttpMethod.GET,
-        HttpCommunication.basicAuthRequest(testCredentials.getBasicAuthToken()), byte[].class);
+    verify(restTemplateMock).execute(eq(testCredentials.getUrl() + testResource),
+        eq(HttpMethod.GET), any(RequestCallback.class), any(ResponseExtractor.class));
     assertThat(new String(Files.readAllBytes(testPath)), equalTo(testServerResponse));
   }
 
+  @Test
+  public void download_responseBiggerThanTransferBuffer_wholeResponseWrittenAndCounted()
+      throws Exception {
+    // given
+    FilesDownloader downloader = new FilesDownloader(testCredentials, restTemplateMock);
+    byte[] bigServerResponse = new byte[3 * FilesDownloader.TRANSFER_BUFFER_SIZE + 7];
+    Arrays.fill(bigServerResponse, (byte) 'x');
+
+    // when
+    when(responseMock.getBody()).thenReturn(new ByteArrayInputStream(bigServerResponse));
+    downloader.download(testResource, testPath);
+
+    // then
+    assertThat(Files.readAllBytes(testPath), equalTo(bigServerResponse));
+    assertThat(downloader.getBytesDownloaded(), equalTo((long) bigServerResponse.length));
+  }
+
+  @Test
+  public void download_basicAuthHeaderAddedToRequest() throws Exception {
+    // given
+    FilesDownloader downloader = new FilesDownloader(testCredentials, restTemplateMock);
+    ArgumentCaptor<RequestCallback> requestCallbackCaptor =
+        ArgumentCaptor.forClass(RequestCallback.class);
+    MockClientHttpRequest testRequest =
+        new MockClientHttpRequest(HttpMethod.GET, new URI(testCredentials.getUrl()));
+
+    // when
+    when(responseMock.getBody())
+        .thenReturn(new ByteArrayInputStream(testServerResponse.getBytes()));
+    downloader.download(testResource, testPath);
+
+    // then
+    verify(restTemplateMock).execute(eq(testCredentials.getUrl() + testResource),
+        eq(HttpMethod.GET), requestCallbackCaptor.capture(), any(ResponseExtractor.class));
+    requestCallbackCaptor.getValue().doWithRequest(testRequest);
+    assertThat(testRequest.getHeaders().getFirst("Authorization"),
+        equalTo("Basic " + testCredentials.getBasicAuthToken()));
+  }
+
   @Test
   public void download_serverResponse401_excpetionWithProperMessageThrown() throws IOException {
     // given
@@ -78,9 +136,9 @@ public class FilesDownloaderTest {
         + new String(Base64.decodeBase64(testCredentials.getBasicAuthToken().getBytes())) + " failed";
 
     // when
-    when(restTemplateMock.exchange(testCredentials.getUrl() + testResource, HttpMethod.GET,
-        HttpCommunication.basicAuthRequest(testCredentials.getBasicAuthToken()), byte[].class))
-            .thenThrow(new HttpClientErrorException(HttpStatus.UNAUTHORIZED));
+    doThrow(new HttpClientErrorException(HttpStatus.UNAUTHORIZED)).when(restTemplateMock).execute(
+        eq(testCredentials.getUrl() + testResource), eq(HttpMethod.GET),
+        any(RequestCallback.class), any(ResponseExtractor.class));
 
     // then
     thrown.expect(IOException.class);
@@ -95,9 +153,9 @@ public class FilesDownloaderTest {
     String expectedExceptionMessage = "Resource not found.";
 
     // when
-    when(restTemplateMock.exchange(testCredentials.getUrl() + testResource, HttpMethod.GET,
-        HttpCommunication.basicAuthRequest(testCredentials.getBasicAuthToken()), byte[].class))
-            .thenThrow(new HttpClientErrorException(HttpStatus.NOT_FOUND));
+    doThrow(new HttpClientErrorException(HttpStatus.NOT_FOUND)).when(restTemplateMock).execute(
+        eq(testCredentials.getUrl() + testResource), eq(HttpMethod.GET),
+        any(RequestCallback.class), any(ResponseExtractor.class));
 
     // then
     thrown.expect(IOException.class);
@@ -113,9 +171,9 @@ public class FilesDownloaderTest {
     String expectedExceptionMessage = "Server response status: " + expectedErrorStatus;
 
     // when
-    when(restTemplateMock.exchange(testCredentials.getUrl() + testResource, HttpMethod.GET,
-        HttpCommunication.basicAuthRequest(testCredentials.getBasicAuthToken()), byte[].class))
-            .thenThrow(new HttpClientErrorException(expectedErrorStatus));
+    doThrow(new HttpClientErrorException(expectedErrorStatus)).when(restTemplateMock).execute(
+        eq(testCredentials.getUrl() + testResource), eq(HttpMethod.GET),
+        any(RequestCallback.class), any(ResponseExtractor.class));
 
     // then
     thrown.expect(IOException.class);
@@ -123,4 +181,66 @@ public class FilesDownloaderTest {
     downloader.download(testResource, testPath);
   }
 
+  @Test
+  public void download_writingFileFailed_ioExceptionThrownAndPartialFileDeleted() throws Exception {
+    // given
+    FilesDownloader downloader = new FilesDownloader(testCredentials, restTemplateMock);
+    doThrow(new ResourceAccessException("I/O error", new IOException("No space left on device")))
+        .when(restTemplateMock).execute(eq(testCredentials.getUrl() + testResource),
+            eq(HttpMethod.GET), any(RequestCallback.class), any(ResponseExtractor.class));
+
+    // when
+    IOException failure = null;
+    try {
+      downloader.download(testResource, testPath);
+    } catch (IOException e) {
+      failure = e;
+    }
+
+    // then
+    assertThat(failure.getMessage(), containsString("No space left on device"));
+    assertThat(Files.exists(testPath), is(false));
+  }
+
+  @Test
+  public void download_responseBrokenInTheMiddle_partialFileDeleted() throws Exception {
+    // given
+    FilesDownloader downloader = new FilesDownloader(testCredentials, restTemplateMock);
+    InputStream brokenResponse = new SequenceInputStream(
+        new ByteArrayInputStream(new byte[2 * FilesDownloader.TRANSFER_BUFFER_SIZE]),
+        new InputStream() {
+          @Override
+          public int read() throws IOException {
+            throw new IOException("Connection reset");
+          }
+        });
+
+    // when
+    when(responseMock.getBody()).thenReturn(brokenResponse);
+    try {
+      downloader.download(testResource, testPath);
+    } catch (IOException e) {
+      // expected
+    }
+
+    // then
+    assertThat(Files.exists(testPath), is(false));
+  }
+
+  @Test
+  public void download_serverResponse500_ioExceptionWithStatusThrown() throws Exception {
+    // given
+    FilesDownloader downloader = new FilesDownloader(testCredentials, restTemplateMock);
+    doThrow(new HttpServerErrorException(HttpStatus.INTERNAL_SERVER_ERROR)).when(restTemplateMock)
+        .execute(eq(testCredentials.getUrl() + testResource), eq(HttpMethod.GET),
+            any(RequestCallback.class), any(ResponseExtractor.class));
+
+    // then
+    thrown.expect(IOException.class);
+    thrown.expectMessage("Server response status: " + HttpStatus.INTERNAL_SERVER_ERROR);
+
+    // when
+    downloader.download(testResource, testPath);
+  }
+
 }
@@ -0,0 +1,47 @@
+/**
+ * Copyright (c) 2016 Intel Corporation
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file except
+ * in compliance with the License. You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software distributed under the License
+ * is distributed on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express
+ * or implied. See the License for the specific language governing permissions and limitations under
+ * the License.
+ */
+package org.trustedanalytics.h2oscoringengine.publisher.http;
+
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.equalTo;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+import java.util.Map;
+import java.util.stream.Collectors;
+import org.apache.http.pool.PoolStats;
+import org.junit.Test;
+import org.springframework.boot.actuate.metrics.Metric;
+
+public class HttpClientPoolMetricsTest {
+
+  private final HttpClientPool poolMock = mock(HttpClientPool.class);
+
+  @Test
+  public void metrics_poolUsageReported() {
+    // given
+    HttpClientPoolMetrics sut = new HttpClientPoolMetrics(poolMock);
+    when(poolMock.getStats()).thenReturn(new PoolStats(1, 2, 3, 4));
+
+    // when
+    Map<String, Number> metrics = sut.metrics().stream()
+        .collect(Collectors.toMap(Metric::getName, Metric::getValue));
+
+    // then
+    assertThat(metrics.get("httpclient.pool.leased"), equalTo(1));
+    assertThat(metrics.get("httpclient.pool.pending"), equalTo(2));
+    assertThat(metrics.get("httpclient.pool.available"), equalTo(3));
+    assertThat(metrics.get("httpclient.pool.max"), equalTo(4));
+  }
+}
@@ -0,0 +1,73 @@
+/**
+ * Copyright (c) 2016 Intel Corporation
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file except
+ * in compliance with the License. You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software distributed under the License
+ * is distributed on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express
+ * or implied. See the License for the specific language governing permissions and limitations under
+ * the License.
+ */
+package org.trustedanalytics.h2oscoringengine.publisher.http;
+
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.equalTo;
+
+import com.sun.net.httpserver.HttpServer;
+import java.net.InetSocketAddress;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.springframework.web.client.RestTemplate;
+
+public class HttpClientPoolTest {
+
+  private final String testResponse = "some response";
+  private final Set<InetSocketAddress> clientAddresses = ConcurrentHashMap.newKeySet();
+  private HttpServer testServer;
+  private HttpClientPool sut;
+
+  @Before
+  public void setUp() throws Exception {
+    testServer = HttpServer.create(new InetSocketAddress("localhost", 0), 0);
+    testServer.createContext("/", exchange -> {
+      clientAddresses.add(exchange.getRemoteAddress());
+      byte[] body = testResponse.getBytes();
+      exchange.sendResponseHeaders(200, body.length);
+      exchange.getResponseBody().write(body);
+      exchange.close();
+    });
+    testServer.start();
+    sut = new HttpClientPool(4, 2, 1000, 1000, 30_000);
+  }
+
+  @After
+  public void tearDown() throws Exception {
+    sut.close();
+    testServer.stop(0);
+  }
+
+  @Test
+  public void requestFactory_subsequentRequestsToSameServer_connectionReused() throws Exception {
+    // given
+    RestTemplate restTemplate = new RestTemplate(sut.requestFactory());
+    String testUrl = "http://localhost:" + testServer.getAddress().getPort() + "/some/resource";
+
+    // when
+    String firstResponse = restTemplate.getForObject(testUrl, String.class);
+    String secondResponse = restTemplate.getForObject(testUrl, String.class);
+
+    // then
+    assertThat(firstResponse, equalTo(testResponse));
+    assertThat(secondResponse, equalTo(testResponse));
+    assertThat(clientAddresses.size(), equalTo(1));
+    assertThat(sut.getStats().getLeased(), equalTo(0));
+    assertThat(sut.getStats().getAvailable(), equalTo(1));
+    assertThat(sut.getStats().getMax(), equalTo(4));
+  }
+}
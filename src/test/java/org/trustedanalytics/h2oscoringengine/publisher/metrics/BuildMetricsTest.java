@@ -0,0 +1,135 @@
+/**
+ * Copyright (c) 2016 Intel Corporation
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file except
+ * in compliance with the License. You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software distributed under the License
+ * is distributed on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express
+ * or implied. See the License for the specific language governing permissions and limitations under
+ * the License.
+ */
+package org.trustedanalytics.h2oscoringengine.publisher.metrics;
+
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.equalTo;
+import static org.mockito.Matchers.anyDouble;
+import static org.mockito.Matchers.anyString;
+import static org.mockito.Matchers.eq;
+import static org.mockito.Mockito.inOrder;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.verify;
+
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.concurrent.CompletableFuture;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.ExpectedException;
+import org.mockito.InOrder;
+import org.springframework.boot.actuate.metrics.GaugeService;
+import org.trustedanalytics.h2oscoringengine.publisher.EngineBuildingException;
+
+public class BuildMetricsTest {
+
+  private final GaugeService gaugeServiceMock = mock(GaugeService.class);
+  private final String testStepName = "build.some-step";
+
+  @Rule
+  public final ExpectedException thrown = ExpectedException.none();
+
+  @Test
+  public void time_stepSucceeded_resultReturnedAndDurationRecorded() throws Exception {
+    // given
+    BuildMetrics sut = new BuildMetrics(gaugeServiceMock);
+
+    // when
+    String result = sut.time(testStepName, () -> "some result");
+
+    // then
+    assertThat(result, equalTo("some result"));
+    verify(gaugeServiceMock).submit(eq("timer.publisher." + testStepName), anyDouble());
+  }
+
+  @Test
+  public void time_stepFailed_exceptionRethrownAndFailureDurationRecorded() throws Exception {
+    // given
+    BuildMetrics sut = new BuildMetrics(gaugeServiceMock);
+
+    // then
+    thrown.expect(EngineBuildingException.class);
+    try {
+      sut.time(testStepName, () -> {
+        throw new EngineBuildingException("Some build failure");
+      });
+    } finally {
+      verify(gaugeServiceMock).submit(eq("timer.publisher." + testStepName + ".failed"),
+          anyDouble());
+      verify(gaugeServiceMock, never()).submit(eq("timer.publisher." + testStepName),
+          anyDouble());
+    }
+  }
+
+  @Test
+  public void timeAsync_futureNotCompleted_durationRecordedOnCompletion() throws Exception {
+    // given
+    BuildMetrics sut = new BuildMetrics(gaugeServiceMock);
+    CompletableFuture<String> stepResult = new CompletableFuture<>();
+
+    // when
+    CompletableFuture<String> result = sut.timeAsync(testStepName, () -> stepResult);
+    verify(gaugeServiceMock, never()).submit(anyString(), anyDouble());
+    stepResult.complete("some result");
+
+    // then
+    assertThat(result.get(), equalTo("some result"));
+    verify(gaugeServiceMock).submit(eq("timer.publisher." + testStepName), anyDouble());
+  }
+
+  @Test
+  public void buildStartedAndFinished_inFlightBuildsCounted() {
+    // given
+    BuildMetrics sut = new BuildMetrics(gaugeServiceMock);
+
+    // when
+    sut.buildStarted();
+    sut.buildStarted();
+    sut.buildFinished();
+
+    // then
+    InOrder inOrder = inOrder(gaugeServiceMock);
+    inOrder.verify(gaugeServiceMock).submit(BuildMetrics.IN_FLIGHT_BUILDS, 1);
+    inOrder.verify(gaugeServiceMock).submit(BuildMetrics.IN_FLIGHT_BUILDS, 2);
+    inOrder.verify(gaugeServiceMock).submit(BuildMetrics.IN_FLIGHT_BUILDS, 1);
+  }
+
+  @Test
+  public void recordBytesWritten_sizesOfFilesSummed() throws Exception {
+    // given
+    BuildMetrics sut = new BuildMetrics(gaugeServiceMock);
+    Path firstFile = Files.write(Files.createTempFile("some", "file"), new byte[3]);
+    Path secondFile = Files.write(Files.createTempFile("other", "file"), new byte[4]);
+
+    // when
+    sut.recordBytesWritten(firstFile, secondFile);
+
+    // then
+    verify(gaugeServiceMock).submit(BuildMetrics.BYTES_WRITTEN, 7);
+  }
+
+  @Test
+  public void recordBytesWritten_streamedBytesAddedToSizesOfFiles() throws Exception {
+    // given
+    BuildMetrics sut = new BuildMetrics(gaugeServiceMock);
+    Path file = Files.write(Files.createTempFile("some", "file"), new byte[3]);
+
+    // when
+    sut.recordBytesWritten(10, file);
+
+    // then
+    verify(gaugeServiceMock).submit(BuildMetrics.BYTES_WRITTEN, 13);
+  }
+}
@@ -0,0 +1,53 @@
+/**
+ * Copyright (c) 2016 Intel Corporation
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file except
+ * in compliance with the License. You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software distributed under the License
+ * is distributed on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express
+ * or implied. See the License for the specific language governing permissions and limitations under
+ * the License.
+ */
+package org.trustedanalytics.h2oscoringengine.publisher.restapi;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+import java.util.Arrays;
+import java.util.List;
+import java.util.UUID;
+import java.util.concurrent.CompletableFuture;
+import org.junit.Test;
+import org.springframework.web.context.request.async.DeferredResult;
+import org.trustedanalytics.h2oscoringengine.publisher.batch.BatchPublisher;
+
+public class BatchControllerTest {
+
+  private final BatchPublisher batchPublisherMock = mock(BatchPublisher.class);
+  private final List<ScoringEngineData> testEngines = Arrays.asList(
+      new ScoringEngineData(UUID.randomUUID(), UUID.randomUUID(), "some-model-name"));
+
+  @Test
+  public void publishEngines_enginesPublished_resultsSetWhenPublished() {
+    // given
+    BatchController sut = new BatchController(batchPublisherMock);
+    CompletableFuture<List<PublishingResult>> publishing = new CompletableFuture<>();
+    when(batchPublisherMock.publish(testEngines)).thenReturn(publishing);
+    List<PublishingResult> testResults =
+        Arrays.asList(PublishingResult.published(testEngines.get(0)));
+
+    // when
+    DeferredResult<List<PublishingResult>> result =
+        sut.publishEngines(new BatchPublishRequest(testEngines));
+
+    // then
+    assertFalse(result.hasResult());
+    publishing.complete(testResults);
+    assertEquals(testResults, result.getResult());
+  }
+}
@@ -0,0 +1,174 @@
+/**
+ * Copyright (c) 2016 Intel Corporation
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file except
+ * in compliance with the License. You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software distributed under the License
+ * is distributed on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express
+ * or implied. See the License for the specific language governing permissions and limitations under
+ * the License.
+ */
+package org.trustedanalytics.h2oscoringengine.publisher.restapi;
+
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.equalTo;
+import static org.mockito.Matchers.any;
+import static org.mockito.Matchers.eq;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+import java.nio.file.Paths;
+import java.util.List;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.ExpectedException;
+import org.mockito.ArgumentCaptor;
+import org.springframework.core.io.FileSystemResource;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.ResponseEntity;
+import org.springframework.mock.web.MockHttpServletResponse;
+import org.springframework.util.LinkedMultiValueMap;
+import org.springframework.util.MultiValueMap;
+import org.trustedanalytics.h2oscoringengine.publisher.Publisher;
+import org.trustedanalytics.h2oscoringengine.publisher.builds.BuildPriority;
+import org.trustedanalytics.h2oscoringengine.publisher.builds.EngineBuildRegistry;
+import org.trustedanalytics.h2oscoringengine.publisher.builds.EngineBuildStatus;
+import org.trustedanalytics.h2oscoringengine.publisher.http.BasicAuthServerCredentials;
+import org.trustedanalytics.h2oscoringengine.publisher.restapi.validation.DownloadRequestValidationRules;
+import org.trustedanalytics.h2oscoringengine.publisher.restapi.validation.ValidationException;
+
+public class EngineBuildsControllerTest {
+
+  private final Publisher publisherMock = mock(Publisher.class);
+  private final String testHost = "http://example.com";
+  private final String testUsername = "username";
+  private final String testPassword = "password";
+  private final String testModelName = "some-model-name";
+  private final MultiValueMap<String, String> testPostRequest = new LinkedMultiValueMap<>();
+
+  @Rule
+  public final ExpectedException thrown = ExpectedException.none();
+
+  @Test
+  public void submitBuild_buildAcceptedWithLocationOfBuild() throws Exception {
+    // given
+    EngineBuildsController sut = new EngineBuildsController(
+        new EngineBuildRegistry(publisherMock, runnable -> {}, 60_000),
+        new DownloadRequestValidationRules());
+    prepareTestPostRequest();
+
+    // when
+    ResponseEntity<EngineBuildInfo> response = sut.submitBuild(testPostRequest, testModelName);
+
+    // then
+    assertThat(response.getStatusCode(), equalTo(HttpStatus.ACCEPTED));
+    assertThat(response.getBody().getStatus(), equalTo(EngineBuildStatus.QUEUED));
+    assertThat(response.getBody().getModelName(), equalTo(testModelName));
+    assertThat(response.getHeaders().getLocation().getPath(),
+        equalTo("/api/v1/engines/builds/" + response.getBody().getBuildId()));
+  }
+
+  @Test
+  public void downloadBuiltEngine_buildSucceeded_builtJarReturned() throws Exception {
+    // given
+    EngineBuildsController sut = new EngineBuildsController(
+        new EngineBuildRegistry(publisherMock, Runnable::run, 60_000),
+        new DownloadRequestValidationRules());
+    prepareTestPostRequest();
+    ArgumentCaptor<BasicAuthServerCredentials> credentialsCaptor =
+        ArgumentCaptor.forClass(BasicAuthServerCredentials.class);
+    when(publisherMock.getScoringEngineJar(any(), any(), any())).thenReturn(Paths.get("/tmp/"));
+
+    // when
+    String buildId = sut.submitBuild(testPostRequest, testModelName).getBody().getBuildId();
+    MockHttpServletResponse response = new MockHttpServletResponse();
+    FileSystemResource jar = sut.downloadBuiltEngine(response, buildId);
+
+    // then
+    verify(publisherMock).getScoringEngineJar(credentialsCaptor.capture(), eq(testModelName),
+        eq(BuildPriority.BATCH));
+    assertThat(credentialsCaptor.getValue().getUrl(), equalTo(testHost));
+    assertThat(sut.getBuild(buildId).getStatus(), equalTo(EngineBuildStatus.SUCCEEDED));
+    assertThat(jar.getFile().toPath(), equalTo(Paths.get("/tmp/")));
+    assertThat(response.getHeader("Content-Disposition"),
+        equalTo("attachment; filename=" + testModelName + ".jar"));
+  }
+
+  @Test
+  public void submitBuilds_modelNamesRepeatedAndCommaSeparated_buildPerModelAccepted()
+      throws Exception {
+    // given
+    EngineBuildsController sut = new EngineBuildsController(
+        new EngineBuildRegistry(publisherMock, runnable -> {}, 60_000),
+        new DownloadRequestValidationRules());
+    prepareTestPostRequest();
+    testPostRequest.add("modelNames", "model-a, model-b");
+    testPostRequest.add("modelNames", "model-c");
+
+    // when
+    ResponseEntity<List<EngineBuildInfo>> response = sut.submitBuilds(testPostRequest);
+
+    // then
+    assertThat(response.getStatusCode(), equalTo(HttpStatus.ACCEPTED));
+    assertThat(response.getBody().size(), equalTo(3));
+    assertThat(response.getBody().get(0).getModelName(), equalTo("model-a"));
+    assertThat(response.getBody().get(1).getModelName(), equalTo("model-b"));
+    assertThat(response.getBody().get(2).getModelName(), equalTo("model-c"));
+    assertThat(sut.getBuild(response.getBody().get(2).getBuildId()).getStatus(),
+        equalTo(EngineBuildStatus.QUEUED));
+  }
+
+  @Test
+  public void submitBuilds_noModelNames_exceptionThrown() throws Exception {
+    // given
+    EngineBuildsController sut = new EngineBuildsController(
+        new EngineBuildRegistry(publisherMock, runnable -> {}, 60_000),
+        new DownloadRequestValidationRules());
+    prepareTestPostRequest();
+    testPostRequest.add("modelNames", " , ");
+
+    // then
+    thrown.expect(ValidationException.class);
+    thrown.expectMessage("No modelNames given");
+    sut.submitBuilds(testPostRequest);
+  }
+
+  @Test
+  public void submitBuilds_modelNameWithParentDirectory_exceptionThrown() throws Exception {
+    // given
+    EngineBuildsController sut = new EngineBuildsController(
+        new EngineBuildRegistry(publisherMock, runnable -> {}, 60_000),
+        new DownloadRequestValidationRules());
+    prepareTestPostRequest();
+    testPostRequest.add("modelNames", "model-a,../model-b");
+
+    // when
+    // then
+    thrown.expect(ValidationException.class);
+    sut.submitBuilds(testPostRequest);
+  }
+
+  @Test
+  public void submitBuild_modelNameWithPathSeparator_exceptionThrown() throws Exception {
+    // given
+    EngineBuildsController sut = new EngineBuildsController(
+        new EngineBuildRegistry(publisherMock, runnable -> {}, 60_000),
+        new DownloadRequestValidationRules());
+    prepareTestPostRequest();
+
+    // when
+    // then
+    thrown.expect(ValidationException.class);
+    sut.submitBuild(testPostRequest, "models\\" + testModelName);
+  }
+
+  private void prepareTestPostRequest() {
+    testPostRequest.add("hostname", testHost);
+    testPostRequest.add("login", testUsername);
+    testPostRequest.add("password", testPassword);
+  }
+}
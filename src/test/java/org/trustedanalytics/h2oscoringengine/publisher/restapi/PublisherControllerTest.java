@@ -20,22 +20,36 @@ import static org.junit.Assert.assertEquals;
 import static org.mockito.Matchers.any;
 import static org.mockito.Matchers.eq;
 import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
 import static org.mockito.Mockito.verify;
 import static org.mockito.Mockito.when;
 
+import java.io.ByteArrayOutputStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
 import java.nio.file.Paths;
 import java.util.UUID;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
 import org.junit.Test;
 import org.mockito.ArgumentCaptor;
+import org.springframework.core.io.FileSystemResource;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.ResponseEntity;
 import org.springframework.mock.web.MockHttpServletResponse;
 import org.springframework.util.LinkedMultiValueMap;
 import org.springframework.util.MultiValueMap;
+import org.springframework.web.context.request.async.DeferredResult;
+import org.springframework.web.servlet.mvc.method.annotation.StreamingResponseBody;
 import org.trustedanalytics.h2oscoringengine.publisher.EngineBuildingException;
 import org.trustedanalytics.h2oscoringengine.publisher.EnginePublishingException;
 import org.trustedanalytics.h2oscoringengine.publisher.Publisher;
+import org.trustedanalytics.h2oscoringengine.publisher.builds.BuildRejectedException;
 import org.trustedanalytics.h2oscoringengine.publisher.http.BasicAuthServerCredentials;
 import org.trustedanalytics.h2oscoringengine.publisher.restapi.validation.DownloadRequestValidationRules;
 import org.trustedanalytics.h2oscoringengine.publisher.restapi.validation.ValidationException;
+import org.trustedanalytics.h2oscoringengine.publisher.steps.ScoringEngineStreamingStep;
 
 public class PublisherControllerTest {
 
@@ -73,6 +87,49 @@ public class PublisherControllerTest {
     assertEquals(testPassword, credentialsCaptor.getValue().getPassword());
   }
 
+  @Test
+  public void downloadEngine_responseWritten_scoringEngineJarReleased() throws Exception {
+    // given
+    PublisherController controller =
+        new PublisherController(publisherMock, new DownloadRequestValidationRules());
+    testPostRequest.add("hostname", testHost);
+    testPostRequest.add("login", testUsername);
+    testPostRequest.add("password", testPassword);
+    Path testJar = Files.createTempFile("some-engine", ".jar");
+
+    // when
+    when(publisherMock.getScoringEngineJar(any(), any())).thenReturn(testJar);
+    FileSystemResource resource =
+        controller.downloadEngine(new MockHttpServletResponse(), testPostRequest, testModelName);
+    verify(publisherMock, never()).releaseScoringEngineJar(any());
+    resource.getInputStream().close();
+
+    // then
+    verify(publisherMock).releaseScoringEngineJar(testJar);
+  }
+
+  @Test
+  public void streamEngine_responseBodyWritten_scoringEngineStreamed() throws Exception {
+    // given
+    PublisherController controller =
+        new PublisherController(publisherMock, new DownloadRequestValidationRules());
+    testPostRequest.add("hostname", testHost);
+    testPostRequest.add("login", testUsername);
+    testPostRequest.add("password", testPassword);
+    ScoringEngineStreamingStep streamingStepMock = mock(ScoringEngineStreamingStep.class);
+    ByteArrayOutputStream testOutput = new ByteArrayOutputStream();
+
+    // when
+    when(publisherMock.streamScoringEngineJar(any(), eq(testModelName)))
+        .thenReturn(streamingStepMock);
+    StreamingResponseBody body =
+        controller.streamEngine(new MockHttpServletResponse(), testPostRequest, testModelName);
+    body.writeTo(testOutput);
+
+    // then
+    verify(streamingStepMock).streamScoringEngine(testOutput);
+  }
+
   @Test
   public void publishEngine_callsPublisher() throws EnginePublishingException {
     // given
@@ -80,12 +137,35 @@ public class PublisherControllerTest {
         new PublisherController(publisherMock, new DownloadRequestValidationRules());
     ScoringEngineData testPublishRequest =
         new ScoringEngineData(testModelId, testArtifactId, testScoringEngineName);
+    when(publisherMock.publishScoringEngine(testPublishRequest))
+        .thenReturn(CompletableFuture.completedFuture(null));
 
     // when
-    sut.publishEngine(testPublishRequest);
+    DeferredResult<ResponseEntity<Void>> result = sut.publishEngine(testPublishRequest);
     
     //then
     verify(publisherMock).publishScoringEngine(testPublishRequest);
+    assertEquals(HttpStatus.OK, ((ResponseEntity<?>) result.getResult()).getStatusCode());
+  }
+
+  @Test
+  public void publishEngine_publishingFailed_exceptionSetAsErrorResult()
+      throws EnginePublishingException {
+    // given
+    PublisherController sut =
+        new PublisherController(publisherMock, new DownloadRequestValidationRules());
+    ScoringEngineData testPublishRequest =
+        new ScoringEngineData(testModelId, testArtifactId, testScoringEngineName);
+    EnginePublishingException publishingException = new EnginePublishingException("some error");
+    CompletableFuture<Void> publishing = new CompletableFuture<>();
+    when(publisherMock.publishScoringEngine(testPublishRequest)).thenReturn(publishing);
+
+    // when
+    DeferredResult<ResponseEntity<Void>> result = sut.publishEngine(testPublishRequest);
+    publishing.completeExceptionally(new CompletionException(publishingException));
+
+    //then
+    assertEquals(publishingException, result.getResult());
   }
 
   @Test
@@ -118,4 +198,20 @@ public class PublisherControllerTest {
     // then
     assertThat(message, is(equalTo(testException.getMessage())));
   }
+
+  @Test
+  public void handleBuildRejectedException_returns429WithRetryAfter() {
+    // given
+    PublisherController controller =
+        new PublisherController(publisherMock, new DownloadRequestValidationRules());
+
+    // when
+    BuildRejectedException testException = new BuildRejectedException(testExceptionMesage, 30);
+    ResponseEntity<String> response = controller.handleBuildRejectedException(testException);
+
+    // then
+    assertThat(response.getStatusCode(), equalTo(HttpStatus.TOO_MANY_REQUESTS));
+    assertThat(response.getHeaders().getFirst(HttpHeaders.RETRY_AFTER), equalTo("30"));
+    assertThat(response.getBody(), equalTo(testExceptionMesage));
+  }
 }
@@ -0,0 +1,69 @@
+/**
+ * Copyright (c) 2016 Intel Corporation
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file except
+ * in compliance with the License. You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software distributed under the License
+ * is distributed on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express
+ * or implied. See the License for the specific language governing permissions and limitations under
+ * the License.
+ */
+package org.trustedanalytics.h2oscoringengine.publisher.restapi.validation;
+
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.ExpectedException;
+
+public class ModelNameValidatorTest {
+
+  @Rule
+  public final ExpectedException thrown = ExpectedException.none();
+
+  @Test
+  public void validate_nameWithDotsInside_doesntThrowException() {
+    // when
+    ModelNameValidator.validate("gbm..v2.1");
+
+    // then
+    // no exception is thrown
+  }
+
+  @Test
+  public void validate_parentDirectory_exceptionThrown() {
+    // then
+    thrown.expect(ValidationException.class);
+
+    // when
+    ModelNameValidator.validate("..");
+  }
+
+  @Test
+  public void validate_nameStartingWithDot_exceptionThrown() {
+    // then
+    thrown.expect(ValidationException.class);
+
+    // when
+    ModelNameValidator.validate(".model");
+  }
+
+  @Test
+  public void validate_nameWithPathSeparator_exceptionThrown() {
+    // then
+    thrown.expect(ValidationException.class);
+
+    // when
+    ModelNameValidator.validate("models/some-model");
+  }
+
+  @Test
+  public void validate_nameWithNullCharacter_exceptionThrown() {
+    // then
+    thrown.expect(ValidationException.class);
+
+    // when
+    ModelNameValidator.validate("some-model\0");
+  }
+}
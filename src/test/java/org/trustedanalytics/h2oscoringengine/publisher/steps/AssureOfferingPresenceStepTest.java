@@ -15,6 +15,7 @@
 package org.trustedanalytics.h2oscoringengine.publisher.steps;
 
 import static org.hamcrest.Matchers.containsString;
+import static org.hamcrest.Matchers.isA;
 import static org.junit.Assert.assertNotNull;
 import static org.mockito.Matchers.any;
 import static org.mockito.Matchers.eq;
@@ -22,14 +23,12 @@ import static org.mockito.Mockito.mock;
 import static org.mockito.Mockito.verify;
 import static org.mockito.Mockito.verifyZeroInteractions;
 import static org.mockito.Mockito.when;
-import static org.trustedanalytics.h2oscoringengine.publisher.tapapi.TestTapApiResponses.oneOfferingJson;
-import static org.trustedanalytics.h2oscoringengine.publisher.tapapi.TestTapApiResponses.twoOfferingsJson;
 
-import com.fasterxml.jackson.databind.ObjectMapper;
-import com.fasterxml.jackson.databind.node.ObjectNode;
 import java.io.IOException;
 import java.util.Arrays;
 import java.util.UUID;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
 import org.junit.Rule;
 import org.junit.Test;
 import org.junit.rules.ExpectedException;
@@ -39,12 +38,15 @@ import org.trustedanalytics.h2oscoringengine.publisher.restapi.ScoringEngineData
 import org.trustedanalytics.h2oscoringengine.publisher.tapapi.OfferingCreationException;
 import org.trustedanalytics.h2oscoringengine.publisher.tapapi.OfferingCreator;
 import org.trustedanalytics.h2oscoringengine.publisher.tapapi.OfferingData;
+import org.trustedanalytics.h2oscoringengine.publisher.tapapi.OfferingSummary;
 import org.trustedanalytics.h2oscoringengine.publisher.tapapi.OfferingsFetcher;
+import org.trustedanalytics.h2oscoringengine.publisher.tapapi.OfferingsIndex;
 import org.trustedanalytics.modelcatalog.rest.client.ModelCatalogReaderClient;
 
 public class AssureOfferingPresenceStepTest {
 
   private final OfferingsFetcher offeringsFetcherMock = mock(OfferingsFetcher.class);
+  private final OfferingsIndex offeringsIndexMock = mock(OfferingsIndex.class);
   private final OfferingCreator offeringCreatorMock = mock(OfferingCreator.class);
   private final AssureOfferingPresenceStepConfig config =
       new AssureOfferingPresenceStepConfig(1, 0, "READY");
@@ -52,8 +54,10 @@ public class AssureOfferingPresenceStepTest {
   private final UUID testArtifactId = UUID.randomUUID();
   private final ModelCatalogReaderClient modelCatalogClientMock =
       ModelCatalogMocks.mockThatReturnsArtifact(testModelId, testArtifactId);
-  private final AssureOfferingPresenceStep sut = new AssureOfferingPresenceStep(config,
-      offeringsFetcherMock, offeringCreatorMock, modelCatalogClientMock);
+  private final OfferingReadinessTracker readinessTracker =
+      new OfferingReadinessTracker(offeringsFetcherMock, config);
+  private final AssureOfferingPresenceStep sut = new AssureOfferingPresenceStep(readinessTracker,
+      offeringsIndexMock, offeringCreatorMock, modelCatalogClientMock);
 
   private final String testModelName = "some-model-name";
   private final ScoringEngineData testScoringEngineData =
@@ -68,16 +72,15 @@ public class AssureOfferingPresenceStepTest {
   public void ensureOfferingExists_OfferingsFetcherReturnedOneOffering_NextStepReturned()
       throws Exception {
     // given
-    when(
-        offeringsFetcherMock.fetchModelOfferings(testModelId.toString(), testArtifactId.toString()))
-            .thenReturn(
-                oneOfferingJson(testModelId.toString(), testArtifactId.toString(), testOfferingId));
+    when(offeringsIndexMock.find(testModelId.toString(), testArtifactId.toString()))
+        .thenReturn(Arrays.asList(testOffering));
 
     // when
-    OfferingInstanceCreationStep nextStep = sut.ensureOfferingExists(testScoringEngineData);
+    CompletableFuture<OfferingInstanceCreationStep> nextStep =
+        sut.ensureOfferingExists(testScoringEngineData);
 
     // then
-    assertNotNull(nextStep);
+    assertNotNull(nextStep.getNow(null));
     verifyZeroInteractions(offeringCreatorMock);
   }
 
@@ -85,30 +88,32 @@ public class AssureOfferingPresenceStepTest {
   public void ensureOfferingExist_OfferingsFetcherReturnedNoOfferings_OfferingCreatedAndNextStepReturned()
       throws Exception {
     // given
-    when(offeringsFetcherMock.fetchModelOfferings(eq(testModelId.toString()),
+    when(offeringsIndexMock.find(eq(testModelId.toString()),
         eq(testArtifactId.toString()))).thenReturn(Arrays.asList());
     when(offeringCreatorMock.createJavaScoringEngineOffering(any(), any()))
         .thenReturn(testOffering);
-    ObjectMapper mapper = new ObjectMapper();
-    ObjectNode offeringInfo = mapper.createObjectNode();
-    offeringInfo.put("state", "READY");
-    when(offeringsFetcherMock.fetchModelOffering(eq(testOfferingId))).thenReturn(offeringInfo);
+    when(offeringsFetcherMock.fetchOfferingSummaries()).thenReturn(Arrays
+        .asList(new OfferingSummary(testOfferingId, "test-plan-id", "READY", null, null)));
 
     // when
-    OfferingInstanceCreationStep nextStep = sut.ensureOfferingExists(testScoringEngineData);
+    CompletableFuture<OfferingInstanceCreationStep> nextStep =
+        sut.ensureOfferingExists(testScoringEngineData);
+    readinessTracker.checkOfferings();
 
     // then
-    assertNotNull(nextStep);
+    assertNotNull(nextStep.getNow(null));
     verify(offeringCreatorMock).createJavaScoringEngineOffering(any(), any());
+    verify(offeringsIndexMock).offeringCreated(testModelId.toString(), testArtifactId.toString(),
+        testOffering);
   }
 
   @Test
   public void ensureOfferingExists_OfferingsFetcherReturnedMoreThanOne_ExceptionThrown()
       throws Exception {
     // given
-    when(offeringsFetcherMock.fetchModelOfferings(eq(testModelId.toString()),
+    when(offeringsIndexMock.find(eq(testModelId.toString()),
         eq(testArtifactId.toString()))).thenReturn(
-            twoOfferingsJson(testModelId.toString(), testArtifactId.toString(), testOfferingId));
+            Arrays.asList(testOffering, new OfferingData("some-other-offering-id", "plan-id")));
 
     // when
     // then
@@ -121,7 +126,7 @@ public class AssureOfferingPresenceStepTest {
   public void ensureOfferingExists_OfferingsFetcherThrewException_ExceptionThrown()
       throws Exception {
     // given
-    when(offeringsFetcherMock.fetchModelOfferings(eq(testModelId.toString()),
+    when(offeringsIndexMock.find(eq(testModelId.toString()),
         eq(testArtifactId.toString()))).thenThrow(new IOException());
 
     // when
@@ -135,7 +140,7 @@ public class AssureOfferingPresenceStepTest {
   public void ensureOfferingExists_OfferingCreatorThrewException_ExceptionThrown()
       throws Exception {
     // given
-    when(offeringsFetcherMock.fetchModelOfferings(eq(testModelId.toString()),
+    when(offeringsIndexMock.find(eq(testModelId.toString()),
         eq(testArtifactId.toString()))).thenReturn(Arrays.asList());
     when(offeringCreatorMock.createJavaScoringEngineOffering(any(), any()))
         .thenThrow(new OfferingCreationException("", new IOException()));
@@ -150,20 +155,22 @@ public class AssureOfferingPresenceStepTest {
   @Test
   public void ensureOfferingExists_OfferingCreatedButNotReady_ExceptionThrown() throws Exception {
     // given
-    when(offeringsFetcherMock.fetchModelOfferings(eq(testModelId.toString()),
+    when(offeringsIndexMock.find(eq(testModelId.toString()),
         eq(testArtifactId.toString()))).thenReturn(Arrays.asList());
     when(offeringCreatorMock.createJavaScoringEngineOffering(any(), any()))
         .thenReturn(testOffering);
-    ObjectMapper mapper = new ObjectMapper();
-    ObjectNode offeringInfo = mapper.createObjectNode();
-    offeringInfo.putObject("entity").put("state", "DEPLOYING");
-    when(offeringsFetcherMock.fetchModelOffering(eq(testOfferingId))).thenReturn(offeringInfo);
+    when(offeringsFetcherMock.fetchOfferingSummaries()).thenReturn(Arrays
+        .asList(new OfferingSummary(testOfferingId, "test-plan-id", "DEPLOYING", null, null)));
 
     // when
+    CompletableFuture<OfferingInstanceCreationStep> nextStep =
+        sut.ensureOfferingExists(testScoringEngineData);
+    readinessTracker.checkOfferings();
+
     // then
-    thrown.expect(EnginePublishingException.class);
-    thrown.expectMessage(containsString("Unable to create scoring engine offering"));
-    sut.ensureOfferingExists(testScoringEngineData);
+    thrown.expect(ExecutionException.class);
+    thrown.expectCause(isA(EnginePublishingException.class));
+    nextStep.get();
   }
 
   @Test
@@ -172,8 +179,8 @@ public class AssureOfferingPresenceStepTest {
     // given
     ModelCatalogReaderClient modelCatalogMock =
         ModelCatalogMocks.mockThatReturnsFileWithError(testModelId, testArtifactId);
-    AssureOfferingPresenceStep sut =
-        new AssureOfferingPresenceStep(offeringsFetcherMock, offeringCreatorMock, modelCatalogMock);
+    AssureOfferingPresenceStep sut = new AssureOfferingPresenceStep(readinessTracker,
+        offeringsIndexMock, offeringCreatorMock, modelCatalogMock);
 
     // when
     // then
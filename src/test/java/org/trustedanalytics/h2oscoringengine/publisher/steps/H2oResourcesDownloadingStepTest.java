@@ -25,11 +25,17 @@ import static org.mockito.Mockito.when;
 import java.io.IOException;
 import java.nio.file.Path;
 import java.nio.file.Paths;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import org.junit.After;
 import org.junit.Before;
 import org.junit.Rule;
 import org.junit.Test;
 import org.junit.rules.ExpectedException;
 import org.trustedanalytics.h2oscoringengine.publisher.EngineBuildingException;
+import org.trustedanalytics.h2oscoringengine.publisher.cache.GenModelCache;
 import org.trustedanalytics.h2oscoringengine.publisher.http.FilesDownloader;
 
 public class H2oResourcesDownloadingStepTest {
@@ -47,6 +53,7 @@ public class H2oResourcesDownloadingStepTest {
       testPath.resolve(expectedModelFileNameForDash);
 
   private FilesDownloader downloaderMock = mock(FilesDownloader.class);
+  private final ExecutorService downloadExecutor = Executors.newFixedThreadPool(2);
 
   @Rule
   public final ExpectedException thrown = ExpectedException.none();
@@ -63,6 +70,11 @@ public class H2oResourcesDownloadingStepTest {
         eq(expectedPathForModelNameWithDash))).thenReturn(expectedPathForModelNameWithDash);
   }
 
+  @After
+  public void tearDown() {
+    downloadExecutor.shutdownNow();
+  }
+
   @Test
   public void downloadResources_modelAndLibraryDownloadCallsOccured() throws Exception {
     // given
@@ -119,4 +131,43 @@ public class H2oResourcesDownloadingStepTest {
     thrown.expect(EngineBuildingException.class);
     step.downloadResources(downloaderMock, testModelNameWithDash, testPath);
   }
+
+  @Test
+  public void downloadResources_executorGiven_modelAndLibraryDownloadedConcurrently()
+      throws Exception {
+    // given
+    H2oResourcesDownloadingStep step =
+        new H2oResourcesDownloadingStep(GenModelCache.disabled(), downloadExecutor);
+    CountDownLatch bothDownloadsStarted = new CountDownLatch(2);
+
+    // when
+    when(downloaderMock.download(any(), any())).thenAnswer(invocation -> {
+      bothDownloadsStarted.countDown();
+      if (!bothDownloadsStarted.await(5, TimeUnit.SECONDS)) {
+        throw new IOException("Downloads were not run concurrently");
+      }
+      return invocation.getArguments()[1];
+    });
+    ModelCompilationStep result = step.downloadResources(downloaderMock, testModelName, testPath);
+
+    // then
+    assertThat(result.getLibPath(), equalTo(expectedPathForLib));
+    assertThat(result.getModelPojoPath(), equalTo(expectedPathForModel));
+  }
+
+  @Test
+  public void downloadResources_executorGivenAndFilesDownloaderError_exceptionThrown()
+      throws Exception {
+    // given
+    H2oResourcesDownloadingStep step =
+        new H2oResourcesDownloadingStep(GenModelCache.disabled(), downloadExecutor);
+
+    // when
+    when(downloaderMock.download(any(), any())).thenThrow(new IOException("Resource not found."));
+
+    // then
+    thrown.expect(EngineBuildingException.class);
+    thrown.expectMessage("Resource not found.");
+    step.downloadResources(downloaderMock, testModelName, testPath);
+  }
 }
@@ -0,0 +1,134 @@
+/**
+ * Copyright (c) 2016 Intel Corporation
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file except
+ * in compliance with the License. You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software distributed under the License
+ * is distributed on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express
+ * or implied. See the License for the specific language governing permissions and limitations under
+ * the License.
+ */
+package org.trustedanalytics.h2oscoringengine.publisher.steps;
+
+import static org.hamcrest.Matchers.isA;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.verifyZeroInteractions;
+import static org.mockito.Mockito.when;
+
+import java.io.IOException;
+import java.util.Arrays;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.ExpectedException;
+import org.trustedanalytics.h2oscoringengine.publisher.tapapi.OfferingCreationException;
+import org.trustedanalytics.h2oscoringengine.publisher.tapapi.OfferingSummary;
+import org.trustedanalytics.h2oscoringengine.publisher.tapapi.OfferingsFetcher;
+
+public class OfferingReadinessTrackerTest {
+
+  private final OfferingsFetcher offeringsFetcherMock = mock(OfferingsFetcher.class);
+
+  @Rule
+  public final ExpectedException thrown = ExpectedException.none();
+
+  @Test
+  public void checkOfferings_manyOfferingsPending_statesFetchedOnceAndReadyOfferingsCompleted()
+      throws Exception {
+    // given
+    OfferingReadinessTracker sut = new OfferingReadinessTracker(offeringsFetcherMock,
+        new AssureOfferingPresenceStepConfig(3, 0, "READY"));
+    when(offeringsFetcherMock.fetchOfferingSummaries()).thenReturn(
+        Arrays.asList(offering("offering-1", "READY"), offering("offering-2", "DEPLOYING")));
+
+    // when
+    CompletableFuture<Void> firstOfferingReady = sut.awaitReady("offering-1");
+    CompletableFuture<Void> secondOfferingReady = sut.awaitReady("offering-2");
+    sut.checkOfferings();
+
+    // then
+    verify(offeringsFetcherMock, times(1)).fetchOfferingSummaries();
+    assertTrue(firstOfferingReady.isDone());
+    assertFalse(secondOfferingReady.isDone());
+    assertEquals(1, sut.getPendingCount());
+  }
+
+  @Test
+  public void checkOfferings_offeringNotReadyInConfiguredChecks_completedExceptionally()
+      throws Exception {
+    // given
+    OfferingReadinessTracker sut = new OfferingReadinessTracker(offeringsFetcherMock,
+        new AssureOfferingPresenceStepConfig(2, 0, "READY"));
+    when(offeringsFetcherMock.fetchOfferingSummaries())
+        .thenReturn(Arrays.asList(offering("offering-1", "DEPLOYING")));
+
+    // when
+    CompletableFuture<Void> offeringReady = sut.awaitReady("offering-1");
+    sut.checkOfferings();
+    sut.checkOfferings();
+
+    // then
+    assertEquals(0, sut.getPendingCount());
+    thrown.expect(ExecutionException.class);
+    thrown.expectCause(isA(OfferingCreationException.class));
+    offeringReady.get();
+  }
+
+  @Test
+  public void checkOfferings_fetchingStatesFailed_offeringStillPending() throws Exception {
+    // given
+    OfferingReadinessTracker sut = new OfferingReadinessTracker(offeringsFetcherMock,
+        new AssureOfferingPresenceStepConfig(2, 0, "READY"));
+    when(offeringsFetcherMock.fetchOfferingSummaries()).thenThrow(new IOException());
+
+    // when
+    CompletableFuture<Void> offeringReady = sut.awaitReady("offering-1");
+    sut.checkOfferings();
+
+    // then
+    assertFalse(offeringReady.isDone());
+    assertEquals(1, sut.getPendingCount());
+  }
+
+  @Test
+  public void checkOfferings_noOfferingDueForCheck_statesNotFetched() throws Exception {
+    // given
+    OfferingReadinessTracker sut = new OfferingReadinessTracker(offeringsFetcherMock,
+        new AssureOfferingPresenceStepConfig(2, 60000, "READY"));
+
+    // when
+    sut.awaitReady("offering-1");
+    sut.checkOfferings();
+
+    // then
+    verifyZeroInteractions(offeringsFetcherMock);
+  }
+
+  @Test
+  public void retryIntervalAfter_failedChecks_intervalDoubledUpToMaximum() {
+    // given
+    AssureOfferingPresenceStepConfig config =
+        new AssureOfferingPresenceStepConfig(10, 1000, 5000, "READY");
+
+    // when
+    // then
+    assertEquals(1000, config.retryIntervalAfter(0));
+    assertEquals(2000, config.retryIntervalAfter(1));
+    assertEquals(4000, config.retryIntervalAfter(2));
+    assertEquals(5000, config.retryIntervalAfter(3));
+    assertEquals(5000, config.retryIntervalAfter(100));
+  }
+
+  private OfferingSummary offering(String offeringId, String state) {
+    return new OfferingSummary(offeringId, "some-plan-id", state, null, null);
+  }
+}
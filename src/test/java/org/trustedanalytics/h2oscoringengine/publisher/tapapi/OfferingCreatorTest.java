@@ -13,11 +13,16 @@
  */
 package org.trustedanalytics.h2oscoringengine.publisher.tapapi;
 
+import static org.hamcrest.Matchers.containsString;
 import static org.junit.Assert.assertEquals;
 import static org.mockito.Matchers.any;
 import static org.mockito.Matchers.eq;
 import static org.mockito.Mockito.mock;
 import static org.mockito.Mockito.when;
+import static org.springframework.test.web.client.match.MockRestRequestMatchers.content;
+import static org.springframework.test.web.client.match.MockRestRequestMatchers.method;
+import static org.springframework.test.web.client.match.MockRestRequestMatchers.requestTo;
+import static org.springframework.test.web.client.response.MockRestResponseCreators.withSuccess;
 import static org.trustedanalytics.h2oscoringengine.publisher.tapapi.OfferingCreator
     .TAP_API_SERVICE_CREATE_OFFERING_PATH;
 import static org.trustedanalytics.h2oscoringengine.publisher.tapapi.TestTapApiResponses
@@ -32,7 +37,9 @@ import org.junit.Test;
 import org.junit.rules.ExpectedException;
 import org.springframework.http.HttpMethod;
 import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
 import org.springframework.http.ResponseEntity;
+import org.springframework.test.web.client.MockRestServiceServer;
 import org.springframework.web.client.HttpServerErrorException;
 import org.springframework.web.client.RestTemplate;
 import org.trustedanalytics.h2oscoringengine.publisher.restapi.ScoringEngineData;
@@ -85,6 +92,33 @@ public class OfferingCreatorTest {
     sut.createJavaScoringEngineOffering(testScoringEngineData, testEngineBytes);
   }
 
+  @Test
+  public void createJavaScoringEngineOffering_calledTwice_jarStreamedAndConvertersUnchanged()
+      throws Exception {
+    // given
+    RestTemplate tapApiRestTemplate = new RestTemplate();
+    int convertersCount = tapApiRestTemplate.getMessageConverters().size();
+    MockRestServiceServer tapApiMock = MockRestServiceServer.createServer(tapApiRestTemplate);
+    for (int i = 0; i < 2; i++) {
+      tapApiMock.expect(requestTo(tapApiTestUrl + TAP_API_SERVICE_CREATE_OFFERING_PATH))
+          .andExpect(method(HttpMethod.POST))
+          .andExpect(content().string(containsString("some-string")))
+          .andRespond(withSuccess(offeringCreated("some-id"), MediaType.APPLICATION_JSON));
+    }
+
+    OfferingCreator sut =
+        new OfferingCreator(tapApiRestTemplate, tapApiTestUrl, new ObjectMapper());
+
+    // when
+    sut.createJavaScoringEngineOffering(testScoringEngineData, testEngineBytes);
+    sut.createJavaScoringEngineOffering(testScoringEngineData,
+        new ByteArrayInputStream("some-string".getBytes()));
+
+    // then
+    tapApiMock.verify();
+    assertEquals(convertersCount, tapApiRestTemplate.getMessageConverters().size());
+  }
+
   @Test
   public void createJavaScoringEngine_TapApiRespondedWithError_ExceptionThrown() throws Exception {
     // given
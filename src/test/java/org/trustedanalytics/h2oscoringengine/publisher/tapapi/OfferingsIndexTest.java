@@ -0,0 +1,163 @@
+/**
+ * Copyright (c) 2016 Intel Corporation
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file except
+ * in compliance with the License. You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software distributed under the License
+ * is distributed on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express
+ * or implied. See the License for the specific language governing permissions and limitations under
+ * the License.
+ */
+package org.trustedanalytics.h2oscoringengine.publisher.tapapi;
+
+import static org.hamcrest.Matchers.empty;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertThat;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+import java.util.Arrays;
+import java.util.List;
+import org.junit.Before;
+import org.junit.Test;
+
+public class OfferingsIndexTest {
+
+  private final OfferingsFetcher offeringsFetcherMock = mock(OfferingsFetcher.class);
+  private final String testModelId = "some-model-id";
+  private final String testArtifactId = "some-artifact-id";
+  private final String testOfferingId = "some-offering-id";
+  private final List<OfferingSummary> testOfferings = Arrays.asList(
+      new OfferingSummary(testOfferingId, "some-plan-id", "READY", testModelId, testArtifactId),
+      new OfferingSummary("other-offering-id", "some-plan-id", "READY", null, null));
+
+  @Before
+  public void setUp() throws Exception {
+    when(offeringsFetcherMock.fetchOfferingSummaries()).thenReturn(testOfferings);
+  }
+
+  @Test
+  public void find_indexNotLoaded_offeringsFetchedAndModelOfferingFound() throws Exception {
+    // given
+    OfferingsIndex sut = new OfferingsIndex(offeringsFetcherMock, 60000);
+
+    // when
+    List<OfferingData> offerings = sut.find(testModelId, testArtifactId);
+
+    // then
+    assertEquals(1, offerings.size());
+    assertEquals(testOfferingId, offerings.get(0).getOfferingId());
+  }
+
+  @Test
+  public void find_otherArtifactOfModel_noOfferingsFound() throws Exception {
+    // given
+    OfferingsIndex sut = new OfferingsIndex(offeringsFetcherMock, 60000);
+
+    // when
+    List<OfferingData> offerings = sut.find(testModelId, "some-other-artifact-id");
+
+    // then
+    assertThat(offerings, empty());
+  }
+
+  @Test
+  public void find_indexLoadedRecently_offeringsNotFetchedAgain() throws Exception {
+    // given
+    OfferingsIndex sut = new OfferingsIndex(offeringsFetcherMock, 60000);
+
+    // when
+    sut.find(testModelId, testArtifactId);
+    sut.find(testModelId, testArtifactId);
+
+    // then
+    verify(offeringsFetcherMock, times(1)).fetchOfferingSummaries();
+  }
+
+  @Test
+  public void find_artifactMissingInRecentlyLoadedIndex_offeringsFetchedAgainAndOfferingFound()
+      throws Exception {
+    // given
+    OfferingsIndex sut = new OfferingsIndex(offeringsFetcherMock, 60000);
+    sut.refresh();
+    when(offeringsFetcherMock.fetchOfferingSummaries()).thenReturn(Arrays.asList(
+        new OfferingSummary("new-offering-id", "some-plan-id", "READY", testModelId,
+            "new-artifact-id")));
+
+    // when
+    List<OfferingData> offerings = sut.find(testModelId, "new-artifact-id");
+
+    // then
+    verify(offeringsFetcherMock, times(2)).fetchOfferingSummaries();
+    assertEquals(1, offerings.size());
+    assertEquals("new-offering-id", offerings.get(0).getOfferingId());
+  }
+
+  @Test
+  public void find_artifactMissingInIndexLoadedByTheLookup_offeringsFetchedOnce()
+      throws Exception {
+    // given
+    OfferingsIndex sut = new OfferingsIndex(offeringsFetcherMock, 60000);
+
+    // when
+    List<OfferingData> offerings = sut.find(testModelId, "some-other-artifact-id");
+
+    // then
+    verify(offeringsFetcherMock, times(1)).fetchOfferingSummaries();
+    assertThat(offerings, empty());
+  }
+
+  @Test
+  public void find_maxAgeZero_offeringsFetchedOnEveryLookup() throws Exception {
+    // given
+    OfferingsIndex sut = new OfferingsIndex(offeringsFetcherMock, 0);
+
+    // when
+    sut.find(testModelId, testArtifactId);
+    sut.find(testModelId, testArtifactId);
+
+    // then
+    verify(offeringsFetcherMock, times(2)).fetchOfferingSummaries();
+  }
+
+  @Test
+  public void offeringCreated_offeringFoundWithoutRefresh() throws Exception {
+    // given
+    OfferingsIndex sut = new OfferingsIndex(offeringsFetcherMock, 60000);
+    sut.refresh();
+    OfferingData createdOffering = new OfferingData("created-offering-id", "some-plan-id");
+
+    // when
+    sut.offeringCreated("created-model-id", testArtifactId, createdOffering);
+    List<OfferingData> offerings = sut.find("created-model-id", testArtifactId);
+
+    // then
+    verify(offeringsFetcherMock, times(1)).fetchOfferingSummaries();
+    assertEquals(1, offerings.size());
+    assertEquals(createdOffering, offerings.get(0));
+    assertEquals(1, sut.find(testModelId, testArtifactId).size());
+  }
+
+  @Test
+  public void refresh_offeringCreatedWhileFetching_createdOfferingKept() throws Exception {
+    // given
+    OfferingsIndex sut = new OfferingsIndex(offeringsFetcherMock, 60000);
+    OfferingData createdOffering = new OfferingData("created-offering-id", "some-plan-id");
+    when(offeringsFetcherMock.fetchOfferingSummaries()).thenAnswer(invocation -> {
+      sut.offeringCreated("created-model-id", testArtifactId, createdOffering);
+      return testOfferings;
+    });
+
+    // when
+    sut.refresh();
+
+    // then
+    assertEquals(1, sut.find("created-model-id", testArtifactId).size());
+    assertEquals(1, sut.find(testModelId, testArtifactId).size());
+  }
+}
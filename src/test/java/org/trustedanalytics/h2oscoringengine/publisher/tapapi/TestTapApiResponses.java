@@ -14,15 +14,11 @@
 package org.trustedanalytics.h2oscoringengine.publisher.tapapi;
 
 import com.fasterxml.jackson.core.JsonProcessingException;
-import com.fasterxml.jackson.databind.JsonNode;
 import com.fasterxml.jackson.databind.ObjectMapper;
-import java.io.IOException;
 import java.util.Arrays;
 import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
-import java.util.stream.Collectors;
-import java.util.stream.StreamSupport;
 
 public class TestTapApiResponses {
 
@@ -40,26 +36,11 @@ public class TestTapApiResponses {
     return mapper.writeValueAsString(offeringsList);
   }
 
-  public static List<JsonNode> oneOfferingJson(String modelId, String artifactId, String offeringId)
-      throws IOException {
-    ObjectMapper mapper = new ObjectMapper();
-    JsonNode jsonArrayNode = mapper.readTree(oneOfferingString(modelId, artifactId, offeringId));
-        
-    return StreamSupport.stream(jsonArrayNode.spliterator(), true).collect(Collectors.toList());
-  }
-
-  public static List<JsonNode> twoOfferingsJson(String modelId, String artifactId,
-      String offeringId) throws IOException {
-    List<JsonNode> json = oneOfferingJson(modelId, artifactId, offeringId);
-    json.addAll(oneOfferingJson(modelId, artifactId, "some-other-offering-id"));
-    return json;
-  }
-
   public static String offeringCreated(String offeringId) {
     return "{\"id\":\"" + offeringId + "\"}";
   }
 
-  public static String offeringReady() {
-    return "{\"state\":\"READY\"}";
+  public static String readyOfferingString(String offeringId) {
+    return "[{\"id\":\"" + offeringId + "\",\"state\":\"READY\"}]";
   }
 }